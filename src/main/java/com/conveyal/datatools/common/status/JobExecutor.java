@@ -0,0 +1,327 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes {@link MonitorableJob}s (and other background tasks) on a set of bounded thread pools. Each pool has:
+ * - a configurable number of threads, with job types assigned to pools by configuration (by default, most jobs run in
+ *   the {@link #HEAVY_POOL}, lightweight tasks, such as email notifications, run in the {@link #LIGHT_POOL} and feed
+ *   downloads run in the {@link #FETCH_POOL}),
+ * - a priority queue so that {@link MonitorableJob.Priority#INTERACTIVE} jobs requested by users start ahead of
+ *   {@link MonitorableJob.Priority#BATCH} jobs (e.g., nightly auto-fetches), with FIFO order within a priority class,
+ * - optional limits on the number of jobs that may run at once for a single user or project, so that one large batch
+ *   of work cannot occupy every thread in the pool, and
+ * - a bound on the number of queued jobs, beyond which new jobs are rejected (and failed) rather than queued.
+ *
+ * All settings are optional and read from the application.jobs config section, e.g.:
+ *
+ *   application:
+ *     jobs:
+ *       max_queued_jobs: 1000
+ *       max_running_jobs_per_user: 0 # 0 = no limit
+ *       max_running_jobs_per_project: 2
+ *       pool_threads:
+ *         heavy: 4
+ *         light: 1
+ *         sub_jobs: 4
+ *         fetch: 8
+ *         deploy: 2
+ *       job_type_pools:
+ *         DEPLOY_TO_OTP: deploy
+ *
+ * Queue depth and other metrics for each pool are available via {@link #getMetrics()}.
+ */
+public class JobExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(JobExecutor.class);
+    /** Pool for long-lived CPU-intensive tasks (e.g., feed loading/validation). */
+    public static final String HEAVY_POOL = "heavy";
+    /** Pool for tasks that should finish quickly (e.g., email notifications). */
+    public static final String LIGHT_POOL = "light";
+    /** Pool for sub-jobs that run concurrently with their sibling sub-jobs (see MonitorableJob#addDependentJob). */
+    public static final String SUB_JOB_POOL = "sub_jobs";
+    /**
+     * Pool for feed downloads, which spend most of their time waiting on the network. Feed processing is queued
+     * separately in the heavy pool (see FetchSingleFeedJob), so slow servers do not hold up processing.
+     */
+    public static final String FETCH_POOL = "fetch";
+    private static final String CONFIG_PREFIX = "application.jobs.";
+    private static final int DEFAULT_HEAVY_THREADS = 4;
+    private static final int DEFAULT_LIGHT_THREADS = 1;
+    private static final int DEFAULT_FETCH_THREADS = 8;
+    private static final int DEFAULT_MAX_QUEUED_JOBS = 1000;
+
+    private static final Map<String, Pool> pools = new ConcurrentHashMap<>();
+    /** Sequence used to keep tasks of equal priority in FIFO order. */
+    private static final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Queue the job for execution in the pool assigned to its job type and record it in the {@link JobJournal}. If the
+     * pool's queue is full, the job is failed (so that the failure is visible to the user via the job status) and false
+     * is returned. False is also returned if the job is a duplicate of a recoverable job that is already queued or
+     * running.
+     */
+    public static boolean execute(MonitorableJob job) {
+        if (!JobJournal.recordQueued(job)) {
+            // An identical job is already queued or running (see RecoverableJob#retrieveIdempotencyKey).
+            job.status.completeSuccessfully("Skipped because an identical job is already queued or running.");
+            return false;
+        }
+        String poolName = getPoolName(job.type);
+        Runnable runnable = () -> {
+            JobJournal.recordStarted(job);
+            try {
+                job.run();
+            } finally {
+                JobJournal.recordFinished(job);
+            }
+        };
+        QueuedTask task = new QueuedTask(runnable, job.priority, job.retrieveUserId(), job.retrieveProjectId());
+        boolean queued = getPool(poolName).enqueue(task);
+        if (!queued) {
+            job.status.fail(String.format("Job could not be started because the %s job queue is full.", poolName));
+            JobJournal.recordFinished(job);
+        }
+        return queued;
+    }
+
+    /**
+     * Queue a lightweight background task that is not a {@link MonitorableJob} (e.g., sending notifications) in the
+     * {@link #LIGHT_POOL} at batch priority.
+     */
+    public static boolean executeTask(Runnable task) {
+        return getPool(LIGHT_POOL).enqueue(new QueuedTask(task, MonitorableJob.Priority.BATCH, null, null));
+    }
+
+    /**
+     * Queue a sub-job run in the {@link #SUB_JOB_POOL}. Per-user and per-project limits do not apply here because the
+     * parent job has already been admitted (and holds a thread) under those limits. The parent job runs any sub-job
+     * that is still queued once it has nothing else to do, so a rejected sub-job is still run eventually.
+     */
+    static boolean executeSubJob(Runnable subJobRun, MonitorableJob.Priority priority) {
+        return getPool(SUB_JOB_POOL).enqueue(new QueuedTask(subJobRun, priority, null, null));
+    }
+
+    /**
+     * Get a snapshot of the current metrics (queue depth, running jobs, etc.) for each pool that has been used, keyed on
+     * pool name.
+     */
+    public static Map<String, PoolMetrics> getMetrics() {
+        Map<String, PoolMetrics> metrics = new TreeMap<>();
+        for (Pool pool : pools.values()) metrics.put(pool.name, pool.getMetrics());
+        return metrics;
+    }
+
+    /** Get the metrics for a single pool, or null if the pool has not been used. */
+    public static PoolMetrics getMetrics(String poolName) {
+        Pool pool = pools.get(poolName);
+        return pool != null ? pool.getMetrics() : null;
+    }
+
+    /**
+     * Determine which pool a job type should run in. This is the pool configured in application.jobs.job_type_pools
+     * for the job type or, if none is configured, the light pool for quick jobs (e.g., making a project public), the
+     * fetch pool for feed downloads and the heavy pool for everything else.
+     */
+    private static String getPoolName(MonitorableJob.JobType type) {
+        String property = CONFIG_PREFIX + "job_type_pools." + type.name();
+        if (DataManager.hasConfigProperty(property)) return DataManager.getConfigPropertyAsText(property);
+        switch (type) {
+            case MAKE_PROJECT_PUBLIC:
+                return LIGHT_POOL;
+            case FETCH_SINGLE_FEED:
+                return FETCH_POOL;
+            default:
+                return HEAVY_POOL;
+        }
+    }
+
+    /**
+     * Get the pool for the given name, lazily constructing it (according to the config) on first use so that pools are
+     * not created before the server config has been loaded.
+     */
+    private static Pool getPool(String name) {
+        return pools.computeIfAbsent(name, poolName -> {
+            int defaultThreads = LIGHT_POOL.equals(poolName)
+                ? DEFAULT_LIGHT_THREADS
+                : FETCH_POOL.equals(poolName) ? DEFAULT_FETCH_THREADS : DEFAULT_HEAVY_THREADS;
+            return new Pool(
+                poolName,
+                getConfigInt("pool_threads." + poolName, defaultThreads),
+                getConfigInt("max_queued_jobs", DEFAULT_MAX_QUEUED_JOBS),
+                getConfigInt("max_running_jobs_per_user", 0),
+                getConfigInt("max_running_jobs_per_project", 0)
+            );
+        });
+    }
+
+    private static int getConfigInt(String name, int defaultValue) {
+        String property = CONFIG_PREFIX + name;
+        if (!DataManager.hasConfigProperty(property)) return defaultValue;
+        JsonNode node = DataManager.getConfigProperty(property);
+        return node.asInt(defaultValue);
+    }
+
+    /**
+     * A runnable waiting in (or running from) a pool along with the information needed to schedule it.
+     */
+    private static class QueuedTask implements Comparable<QueuedTask> {
+        final Runnable runnable;
+        final MonitorableJob.Priority priority;
+        final String userId;
+        final String projectId;
+        final long sequenceNumber = sequence.getAndIncrement();
+        final long queuedTime = System.currentTimeMillis();
+
+        QueuedTask(Runnable runnable, MonitorableJob.Priority priority, String userId, String projectId) {
+            this.runnable = runnable;
+            this.priority = priority != null ? priority : MonitorableJob.Priority.INTERACTIVE;
+            this.userId = userId;
+            this.projectId = projectId;
+        }
+
+        @Override
+        public int compareTo(QueuedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+
+    /**
+     * A fixed number of worker threads fed from a priority queue. Tasks are only handed to the worker threads when a
+     * thread is free and the task's user/project limits allow it to start, so a task that is ineligible to start does
+     * not block eligible tasks of lower priority behind it.
+     */
+    private static class Pool {
+        final String name;
+        final int threads;
+        final int maxQueuedJobs;
+        final int maxRunningPerUser;
+        final int maxRunningPerProject;
+        final ExecutorService workers;
+        /** Tasks waiting to start, ordered by priority and then by time queued. Guarded by this pool's lock. */
+        final TreeSet<QueuedTask> queue = new TreeSet<>();
+        final Map<String, Integer> runningByUser = new HashMap<>();
+        final Map<String, Integer> runningByProject = new HashMap<>();
+        int running;
+        long completed;
+        long rejected;
+
+        Pool(String name, int threads, int maxQueuedJobs, int maxRunningPerUser, int maxRunningPerProject) {
+            this.name = name;
+            this.threads = Math.max(1, threads);
+            this.maxQueuedJobs = maxQueuedJobs;
+            this.maxRunningPerUser = maxRunningPerUser;
+            this.maxRunningPerProject = maxRunningPerProject;
+            this.workers = Executors.newFixedThreadPool(this.threads);
+            LOG.info("Created {} job pool with {} threads", name, this.threads);
+        }
+
+        synchronized boolean enqueue(QueuedTask task) {
+            if (queue.size() >= maxQueuedJobs) {
+                rejected++;
+                LOG.warn("Rejected task in {} job pool because queue is full ({} tasks)", name, queue.size());
+                return false;
+            }
+            queue.add(task);
+            dispatch();
+            return true;
+        }
+
+        /** Start as many queued tasks as free threads and per-user/per-project limits allow. */
+        private synchronized void dispatch() {
+            Iterator<QueuedTask> iterator = queue.iterator();
+            while (running < threads && iterator.hasNext()) {
+                QueuedTask task = iterator.next();
+                if (isAtLimit(runningByUser, task.userId, maxRunningPerUser) ||
+                    isAtLimit(runningByProject, task.projectId, maxRunningPerProject)) {
+                    continue;
+                }
+                iterator.remove();
+                running++;
+                increment(runningByUser, task.userId, 1);
+                increment(runningByProject, task.projectId, 1);
+                workers.execute(() -> run(task));
+            }
+        }
+
+        private void run(QueuedTask task) {
+            try {
+                task.runnable.run();
+            } catch (Throwable t) {
+                // MonitorableJob#run handles its own exceptions, so this should only happen for plain tasks.
+                LOG.error("Unhandled exception in {} job pool task", name, t);
+            } finally {
+                finished(task);
+            }
+        }
+
+        private synchronized void finished(QueuedTask task) {
+            running--;
+            completed++;
+            increment(runningByUser, task.userId, -1);
+            increment(runningByProject, task.projectId, -1);
+            dispatch();
+        }
+
+        private static boolean isAtLimit(Map<String, Integer> runningByKey, String key, int limit) {
+            return key != null && limit > 0 && runningByKey.getOrDefault(key, 0) >= limit;
+        }
+
+        private static void increment(Map<String, Integer> runningByKey, String key, int delta) {
+            if (key == null) return;
+            int count = runningByKey.getOrDefault(key, 0) + delta;
+            if (count > 0) runningByKey.put(key, count);
+            else runningByKey.remove(key);
+        }
+
+        synchronized PoolMetrics getMetrics() {
+            PoolMetrics metrics = new PoolMetrics();
+            metrics.name = name;
+            metrics.threads = threads;
+            metrics.running = running;
+            metrics.queued = queue.size();
+            for (QueuedTask task : queue) {
+                if (task.priority == MonitorableJob.Priority.INTERACTIVE) metrics.queuedInteractive++;
+                else metrics.queuedBatch++;
+            }
+            metrics.maxQueued = maxQueuedJobs;
+            metrics.completed = completed;
+            metrics.rejected = rejected;
+            long now = System.currentTimeMillis();
+            metrics.longestWaitMillis = queue.stream().mapToLong(task -> now - task.queuedTime).max().orElse(0);
+            metrics.runningByProject = new HashMap<>(runningByProject);
+            return metrics;
+        }
+    }
+
+    /**
+     * Point-in-time metrics for a single pool.
+     */
+    public static class PoolMetrics {
+        public String name;
+        public int threads;
+        public int running;
+        public int queued;
+        public int queuedInteractive;
+        public int queuedBatch;
+        public int maxQueued;
+        public long completed;
+        public long rejected;
+        /** How long the longest-waiting queued task has been waiting. */
+        public long longestWaitMillis;
+        public Map<String, Integer> runningByProject;
+    }
+}
@@ -0,0 +1,233 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.jobs.FetchProjectFeedsJob;
+import com.conveyal.datatools.manager.jobs.FetchSingleFeedJob;
+import com.conveyal.datatools.manager.models.JobRecord;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+
+/**
+ * Records each job queued via {@link JobExecutor} in the jobRecords Mongo collection (its type, owner, progress and,
+ * for {@link RecoverableJob}s, the parameters needed to re-create it), so that work queued or running when the server
+ * stops is not silently lost. On startup, {@link #recoverJobs()} marks the records of any such jobs as interrupted and
+ * queues new jobs in place of those that are recoverable (up to {@link #MAX_RECOVERY_ATTEMPTS} times, so that a job
+ * that crashes the server is not retried forever). Other interrupted jobs (e.g., deployments, which depend on
+ * external state) must be re-triggered manually, but their records show what was interrupted and at what stage.
+ *
+ * The journal also prevents duplicate work: a recoverable job is not queued if another job with the same idempotency
+ * key is already queued or running.
+ *
+ * Journal writes are best-effort: a failure to write to the journal is logged but does not affect the job.
+ */
+public class JobJournal {
+    private static final Logger LOG = LoggerFactory.getLogger(JobJournal.class);
+    /** How long the records of finished jobs are kept. */
+    private static final long RETENTION_DAYS = 30;
+    /**
+     * How many times the same work is recovered after being interrupted. Once this is reached, the record of the
+     * interrupted job is marked as failed instead.
+     */
+    static final int MAX_RECOVERY_ATTEMPTS = 3;
+    /** Factories for re-creating recoverable jobs from their parameters, keyed on job type. */
+    private static final Map<MonitorableJob.JobType, BiFunction<Map<String, String>, Auth0UserProfile, MonitorableJob>>
+        factoriesForJobTypes = new HashMap<>();
+    /** Job IDs of the queued or running recoverable jobs, keyed on idempotency key. */
+    private static final Map<String, String> activeJobIdsForKeys = new ConcurrentHashMap<>();
+    /** IDs of the jobs with a journal record that have not yet finished. */
+    private static final Map<String, Boolean> journaledJobIds = new ConcurrentHashMap<>();
+    /** The recovery attempt of each re-created job that is being queued, keyed on job ID (see #recordQueued). */
+    private static final Map<String, Integer> recoveryAttemptsForJobIds = new ConcurrentHashMap<>();
+
+    static {
+        factoriesForJobTypes.put(MonitorableJob.JobType.FETCH_SINGLE_FEED, FetchSingleFeedJob::recover);
+        factoriesForJobTypes.put(MonitorableJob.JobType.FETCH_PROJECT_FEEDS, FetchProjectFeedsJob::recover);
+    }
+
+    /**
+     * Register the factory used to re-create recoverable jobs of the type (see {@link #recoverJobs}). The built-in job
+     * types are registered on class initialization, so this is only needed for other types (e.g., in tests). This must
+     * be called before {@link #recoverJobs}.
+     */
+    static void registerRecoverableJobType(
+        MonitorableJob.JobType type,
+        BiFunction<Map<String, String>, Auth0UserProfile, MonitorableJob> factory
+    ) {
+        factoriesForJobTypes.put(type, factory);
+    }
+
+    /**
+     * Record that the job has been queued. Returns false (without recording the job) if the job is recoverable and
+     * another job with the same idempotency key is already queued or running.
+     */
+    static boolean recordQueued(MonitorableJob job) {
+        String key = null;
+        if (job instanceof RecoverableJob) {
+            key = ((RecoverableJob) job).retrieveIdempotencyKey();
+            String activeJobId = activeJobIdsForKeys.putIfAbsent(key, job.jobId);
+            if (activeJobId != null) {
+                LOG.info("Not queuing {} job {} because job {} is already active for {}", job.type, job.jobId, activeJobId, key);
+                return false;
+            }
+        }
+        if (!isEnabled()) return true;
+        JobRecord record = new JobRecord();
+        record.id = job.jobId;
+        record.userId = job.retrieveUserId();
+        record.userEmail = job.retrieveEmail();
+        record.type = job.type.name();
+        record.name = job.name;
+        record.priority = job.priority != null ? job.priority.name() : null;
+        record.state = JobRecord.State.QUEUED;
+        record.stage = job.status.message;
+        record.recoveryAttempts = recoveryAttemptsForJobIds.getOrDefault(job.jobId, 0);
+        if (key != null) {
+            record.idempotencyKey = key;
+            record.parameters = ((RecoverableJob) job).retrieveRecoveryParameters();
+        }
+        try {
+            Persistence.jobRecords.create(record);
+            journaledJobIds.put(job.jobId, true);
+        } catch (Exception e) {
+            LOG.warn("Could not record queued job {}", job.jobId, e);
+        }
+        return true;
+    }
+
+    /** Record that the job has started running. */
+    static void recordStarted(MonitorableJob job) {
+        update(job, new Document("state", JobRecord.State.RUNNING.name()).append("dateStarted", new Date()));
+    }
+
+    /**
+     * Record the progress of the job through its sub-jobs (see {@link MonitorableJob#runSubJobs}). This is a no-op for
+     * jobs without a journal record (e.g., sub-jobs).
+     */
+    static void recordProgress(MonitorableJob job, int subJobsCompleted, int subJobsTotal) {
+        update(job, new Document("stage", job.status.message)
+            .append("percentComplete", job.status.percentComplete)
+            .append("subJobsCompleted", subJobsCompleted)
+            .append("subJobsTotal", subJobsTotal));
+    }
+
+    /** Record that the job has finished (successfully or with an error). */
+    static void recordFinished(MonitorableJob job) {
+        if (job instanceof RecoverableJob) {
+            activeJobIdsForKeys.remove(((RecoverableJob) job).retrieveIdempotencyKey(), job.jobId);
+        }
+        JobRecord.State state = job.status.error ? JobRecord.State.FAILED : JobRecord.State.COMPLETED;
+        update(job, new Document("state", state.name())
+            .append("stage", job.status.message)
+            .append("percentComplete", job.status.percentComplete)
+            .append("dateFinished", new Date()));
+        journaledJobIds.remove(job.jobId);
+    }
+
+    private static void update(MonitorableJob job, Document updates) {
+        if (!journaledJobIds.containsKey(job.jobId)) return;
+        try {
+            Persistence.jobRecords.update(job.jobId, updates);
+        } catch (Exception e) {
+            LOG.warn("Could not update journal record for job {}", job.jobId, e);
+        }
+    }
+
+    /**
+     * Mark the records of jobs that were queued or running when the server last stopped as interrupted and queue new
+     * jobs in place of those that can be recovered. This also removes the records of jobs that finished before the
+     * retention period. This should be called once on startup, before any jobs are queued.
+     */
+    public static void recoverJobs() {
+        if (!isEnabled()) return;
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RETENTION_DAYS));
+        Persistence.jobRecords.removeFiltered(and(
+            in("state", JobRecord.State.COMPLETED.name(), JobRecord.State.FAILED.name(), JobRecord.State.INTERRUPTED.name()),
+            lt("dateFinished", cutoff)
+        ));
+        recoverInterruptedJobs(null);
+    }
+
+    /**
+     * Recover the jobs for the records (matching the filter, if provided) that are still queued or running (see
+     * {@link #recoverJobs()}). A job that has already been recovered {@link #MAX_RECOVERY_ATTEMPTS} times has its
+     * record marked as failed instead.
+     */
+    static void recoverInterruptedJobs(Bson recordFilter) {
+        Bson unfinished = in("state", JobRecord.State.QUEUED.name(), JobRecord.State.RUNNING.name());
+        List<JobRecord> records = Persistence.jobRecords.getFiltered(
+            recordFilter != null ? and(unfinished, recordFilter) : unfinished
+        );
+        for (JobRecord record : records) {
+            if (record.recoveryAttempts >= MAX_RECOVERY_ATTEMPTS) {
+                LOG.error(
+                    "{} job {} ({}) was interrupted at stage `{}` after {} recovery attempts and will not be re-queued.",
+                    record.type,
+                    record.id,
+                    record.name,
+                    record.stage,
+                    record.recoveryAttempts
+                );
+                Persistence.jobRecords.update(record.id, new Document("state", JobRecord.State.FAILED.name())
+                    .append("dateFinished", new Date()));
+                continue;
+            }
+            MonitorableJob job = recreateJob(record);
+            Document updates = new Document("state", JobRecord.State.INTERRUPTED.name()).append("dateFinished", new Date());
+            if (job != null) {
+                updates.append("recoveredByJobId", job.jobId);
+            }
+            Persistence.jobRecords.update(record.id, updates);
+            if (job != null) {
+                LOG.info("Re-queuing interrupted {} job {} as job {}", record.type, record.id, job.jobId);
+                // The record of the re-created job carries the number of attempts to recover the same work.
+                recoveryAttemptsForJobIds.put(job.jobId, record.recoveryAttempts + 1);
+                try {
+                    JobExecutor.execute(job);
+                } finally {
+                    recoveryAttemptsForJobIds.remove(job.jobId);
+                }
+            } else {
+                LOG.warn("{} job {} ({}) was interrupted at stage `{}` and was not re-queued.", record.type, record.id, record.name, record.stage);
+            }
+        }
+    }
+
+    /** Re-create the job for the record, or return null if the job type is not recoverable. */
+    private static MonitorableJob recreateJob(JobRecord record) {
+        if (record.parameters == null) return null;
+        try {
+            BiFunction<Map<String, String>, Auth0UserProfile, MonitorableJob> factory =
+                factoriesForJobTypes.get(MonitorableJob.JobType.valueOf(record.type));
+            if (factory == null) return null;
+            Auth0UserProfile owner = Auth0UserProfile.SYSTEM_USER_ID.equals(record.userId)
+                ? Auth0UserProfile.createSystemUser()
+                : new Auth0UserProfile(record.userEmail, record.userId);
+            MonitorableJob job = factory.apply(record.parameters, owner);
+            if (job != null && record.priority != null) job.priority = MonitorableJob.Priority.valueOf(record.priority);
+            return job;
+        } catch (Exception e) {
+            LOG.error("Could not recover job {}", record.id, e);
+            return null;
+        }
+    }
+
+    /** The journal is only enabled once the application database has been initialized. */
+    private static boolean isEnabled() {
+        return Persistence.jobRecords != null;
+    }
+}
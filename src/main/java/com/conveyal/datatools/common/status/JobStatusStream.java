@@ -0,0 +1,216 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.JsonViews;
+import com.conveyal.datatools.manager.utils.json.JsonManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes job status changes to clients as Server-Sent Events, so that the UI does not need to poll
+ * {@link com.conveyal.datatools.manager.controllers.api.StatusController} for the status of its jobs.
+ *
+ * Connections are held open with asynchronous servlet requests (i.e., they do not occupy a request thread) and a single
+ * scheduler thread checks the jobs of connected users at a fixed interval, sending a "job" event for each job whose
+ * status has changed since it was last sent to that connection. High-frequency status updates are therefore coalesced
+ * into at most one event per job per interval, and users without active jobs cost nothing beyond an occasional
+ * heartbeat. As with polling, finished (completed or errored) jobs are removed from the user's active jobs once their
+ * final status has been sent.
+ *
+ * The interval is read from the application.jobs.status_stream_interval_ms config property (default 1000).
+ */
+public class JobStatusStream {
+    private static final Logger LOG = LoggerFactory.getLogger(JobStatusStream.class);
+    private static final String INTERVAL_PROPERTY = "application.jobs.status_stream_interval_ms";
+    private static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    /** Send a comment at least this often so that dead connections are detected and proxies do not time out. */
+    private static final long HEARTBEAT_MILLIS = 15000;
+    /** Delay before the client should reconnect if the connection is lost. */
+    private static final long RETRY_MILLIS = 5000;
+    private static final JsonManager<MonitorableJob> json =
+        new JsonManager<>(MonitorableJob.class, JsonViews.UserInterface.class);
+
+    private static final Map<String, Set<Subscriber>> subscribersForUserIds = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Spark HTTP endpoint that opens an event stream of job status changes for the requesting user. The current status
+     * of each of the user's jobs is sent shortly after connecting.
+     */
+    public static Object subscribe(Request req, Response res) throws IOException {
+        Auth0UserProfile userProfile = req.attribute("user");
+        HttpServletResponse response = res.raw();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        // Override the gzip encoding set for all API responses (events are written directly to the response).
+        response.setHeader("Content-Encoding", "identity");
+        response.setHeader("Cache-Control", "no-cache");
+        // Disable response buffering by nginx (if present) so that events are delivered immediately.
+        response.setHeader("X-Accel-Buffering", "no");
+        AsyncContext context = req.raw().startAsync();
+        // Connections are closed when a write fails (see the heartbeat) rather than timing out.
+        context.setTimeout(0);
+        Subscriber subscriber = new Subscriber(userProfile.getUser_id(), context);
+        context.addListener(subscriber);
+        // Commit the response so that Spark does not write a response body once this route returns.
+        subscriber.writer.write(String.format("retry: %d\n\n", RETRY_MILLIS));
+        response.flushBuffer();
+        subscribersForUserIds.computeIfAbsent(subscriber.userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        startScheduler();
+        LOG.info("Opened job status stream for user {}", userProfile.getEmail());
+        return "";
+    }
+
+    private static synchronized void startScheduler() {
+        if (scheduler != null) return;
+        long intervalMillis = DataManager.hasConfigProperty(INTERVAL_PROPERTY)
+            ? DataManager.getConfigProperty(INTERVAL_PROPERTY).asLong(DEFAULT_INTERVAL_MILLIS)
+            : DEFAULT_INTERVAL_MILLIS;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-status-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(JobStatusStream::sendUpdates, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send any job status changes to each connected client. Any exception must be caught here, otherwise the scheduler
+     * would stop running this task.
+     */
+    private static void sendUpdates() {
+        long now = System.currentTimeMillis();
+        try {
+            for (Map.Entry<String, Set<Subscriber>> entry : subscribersForUserIds.entrySet()) {
+                String userId = entry.getKey();
+                Set<MonitorableJob> userJobs = DataManager.userJobsMap.getOrDefault(userId, Collections.emptySet());
+                Set<MonitorableJob> finishedJobs = new HashSet<>();
+                for (Subscriber subscriber : entry.getValue()) {
+                    try {
+                        subscriber.send(userJobs, finishedJobs, now);
+                    } catch (Exception e) {
+                        LOG.info("Closing job status stream for user {}: {}", userId, e.getMessage());
+                        subscriber.close();
+                    }
+                }
+                if (!finishedJobs.isEmpty()) {
+                    // Finished jobs are in their final state, so remove them now that the client has received them.
+                    Set<MonitorableJob> activeJobs = DataManager.userJobsMap.get(userId);
+                    if (activeJobs != null) activeJobs.removeAll(finishedJobs);
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Error sending job status updates", e);
+        }
+    }
+
+    /**
+     * A single client connection. Only the scheduler thread writes events to the connection after it has been opened.
+     */
+    private static class Subscriber implements AsyncListener {
+        private final String userId;
+        private final AsyncContext context;
+        private final PrintWriter writer;
+        /** The last status sent for each job (used to determine which job statuses have changed). */
+        private final Map<String, String> sentStatusForJobIds = new HashMap<>();
+        private long lastWriteTime = System.currentTimeMillis();
+
+        Subscriber(String userId, AsyncContext context) throws IOException {
+            this.userId = userId;
+            this.context = context;
+            this.writer = context.getResponse().getWriter();
+        }
+
+        /**
+         * Send an event for each job whose status has changed (or a heartbeat if there is nothing to send), adding any
+         * finished jobs that have been sent to the provided set.
+         */
+        void send(Set<MonitorableJob> jobs, Set<MonitorableJob> finishedJobs, long now) throws IOException {
+            Set<String> jobIds = new HashSet<>();
+            boolean wrote = false;
+            for (MonitorableJob job : jobs) {
+                jobIds.add(job.jobId);
+                // Comparing the serialized status (rather than specific fields) accounts for subclasses of Status
+                // with additional fields (e.g., the deployment status).
+                String status = json.write(job.status);
+                if (!status.equals(sentStatusForJobIds.get(job.jobId))) {
+                    writeEvent("job", json.write(job));
+                    sentStatusForJobIds.put(job.jobId, status);
+                    wrote = true;
+                }
+                if (job.status.completed || job.status.error) finishedJobs.add(job);
+            }
+            sentStatusForJobIds.keySet().retainAll(jobIds);
+            if (!wrote && now - lastWriteTime >= HEARTBEAT_MILLIS) {
+                writer.write(": heartbeat\n\n");
+                wrote = true;
+            }
+            if (wrote) {
+                writer.flush();
+                // PrintWriter does not throw exceptions, so check whether the write failed (e.g., client disconnected).
+                if (writer.checkError()) throw new IOException("Client disconnected");
+                lastWriteTime = now;
+            }
+        }
+
+        private void writeEvent(String event, String data) {
+            // Event data is JSON without line breaks, so it fits on a single data line.
+            writer.write("event: " + event + "\n");
+            writer.write("data: " + data + "\n\n");
+        }
+
+        void close() {
+            unsubscribe();
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // The request has already been completed (e.g., by the container after an error).
+            }
+        }
+
+        private void unsubscribe() {
+            Set<Subscriber> subscribers = subscribersForUserIds.get(userId);
+            if (subscribers != null) subscribers.remove(this);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            unsubscribe();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Nothing to do.
+        }
+    }
+}
@@ -12,9 +12,17 @@ import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.conveyal.datatools.manager.controllers.api.StatusController.getJobsForUser;
 
@@ -36,6 +44,11 @@ public abstract class MonitorableJob implements Runnable, Serializable {
     // Name is not final in case it needs to be amended during job processing.
     public String name;
     public final String jobId = UUID.randomUUID().toString();
+    /**
+     * Scheduling priority used by {@link JobExecutor}. Jobs owned by the system user (e.g., scheduled auto-fetches)
+     * default to batch priority so that they do not delay jobs that a user is actively waiting on.
+     */
+    public Priority priority;
 
     /**
      * Additional jobs that will be run after the main logic of this job has completed.
@@ -43,6 +56,12 @@ public abstract class MonitorableJob implements Runnable, Serializable {
      */
     protected List<MonitorableJob> subJobs = new ArrayList<>();
 
+    /**
+     * The sibling sub-jobs (of the same parent job) that must complete successfully before this sub-job can start. Sub-jobs
+     * whose dependencies are all satisfied at the same time are run concurrently (see {@link #runSubJobs()}).
+     */
+    private List<MonitorableJob> dependencies = new ArrayList<>();
+
     public enum JobType {
         UNKNOWN_TYPE,
         ARBITRARY_FEED_TRANSFORM,
@@ -69,6 +88,15 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         MERGE_FEED_VERSIONS
     }
 
+    /**
+     * Priority classes for job execution. Queued jobs are started in the order of the priority class (in the order
+     * declared here) and then in the order they were queued.
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
     public MonitorableJob(Auth0UserProfile owner, String name, JobType type) {
         // Prevent the creation of a job if the user is null.
         if (owner == null) {
@@ -78,6 +106,9 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         this.name = name;
         status.name = name;
         this.type = type;
+        this.priority = Auth0UserProfile.SYSTEM_USER_ID.equals(owner.getUser_id())
+            ? Priority.BATCH
+            : Priority.INTERACTIVE;
         registerJob();
     }
 
@@ -112,6 +143,14 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         return this.owner.getEmail();
     }
 
+    /**
+     * The ID of the project this job operates on, if any. This is used by {@link JobExecutor} to limit the number of
+     * jobs that run concurrently for a single project, so subclasses that operate on a project should override it.
+     */
+    public String retrieveProjectId() {
+        return null;
+    }
+
     public File retrieveFile () {
         return file;
     }
@@ -145,31 +184,16 @@ public abstract class MonitorableJob implements Runnable, Serializable {
                 parentJobErrored = true;
                 cancelMessage = String.format("Task cancelled due to error in %s task", getClass().getSimpleName());
             }
-            // Immediately run any sub-jobs in sequence in the current thread.
-            // This hogs the current thread pool thread but makes execution order predictable.
-            int subJobNumber = 1;
-            int subJobsTotal = subJobs.size() + 1;
-
-            for (MonitorableJob subJob : subJobs) {
-                String subJobName = subJob.getClass().getSimpleName();
-                if (!parentJobErrored && !subTaskErrored) {
-                    // Calculate completion based on number of sub jobs remaining.
-                    double percentComplete = subJobNumber * 100D / subJobsTotal;
-                    // Run sub-task if no error has errored during parent job or previous sub-task execution.
-                    status.update(String.format("Waiting on %s...", subJobName), percentComplete);
-                    subJob.run();
-                    // Record if there has been an error in the execution of the sub-task. (Note: this will not
-                    // incorrectly overwrite a 'true' value with 'false' because the sub-task is only run if
-                    // jobHasErrored is false.
-                    if (subJob.status.error) {
-                        subTaskErrored = true;
-                        cancelMessage = String.format("Task cancelled due to error in %s task", subJobName);
-                    }
-                } else {
-                    // Cancel (fail) next sub-task and continue.
-                    subJob.cancel(cancelMessage);
+            if (parentJobErrored) {
+                // Cancel (fail) all sub-tasks.
+                for (MonitorableJob subJob : subJobs) subJob.cancel(cancelMessage);
+            } else {
+                // Run sub-jobs in dependency order (concurrently where they do not depend on one another).
+                String erroredSubJobName = runSubJobs();
+                if (erroredSubJobName != null) {
+                    subTaskErrored = true;
+                    cancelMessage = String.format("Task cancelled due to error in %s task", erroredSubJobName);
                 }
-                subJobNumber += 1;
             }
             // FIXME: should jobFinished be run if task or any sub-task fails?
             if (subTaskErrored) {
@@ -194,6 +218,76 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         LOG.info("{} (jobId={}) {} in {} ms", type, jobId, status.error ? "errored" : "completed", status.duration);
     }
 
+    /**
+     * Run the sub-jobs of this job once the dependencies of each have completed successfully. Sub-jobs that become
+     * ready at the same time run concurrently: one runs in the current thread and the rest are handed to the
+     * {@link JobExecutor#SUB_JOB_POOL}. While waiting, the current thread also runs any handed-off sub-job that the
+     * pool has not yet started, so a saturated pool can delay (but never deadlock) the parent job. Sub-jobs added with
+     * {@link #addNextJob} each depend on the previously added sub-job, so in the common case sub-jobs run in sequence
+     * in the current thread, exactly as they were added.
+     *
+     * If a sub-job errors, no further sub-jobs are started (those not yet started are cancelled), but any sub-jobs
+     * already running are allowed to finish before this method returns.
+     *
+     * @return the simple class name of the first sub-job that errored, or null if all sub-jobs succeeded
+     */
+    private String runSubJobs() throws InterruptedException {
+        BlockingQueue<SubJobRun> finishedRuns = new LinkedBlockingQueue<>();
+        List<MonitorableJob> pending = new ArrayList<>(subJobs);
+        Set<MonitorableJob> succeeded = new HashSet<>();
+        List<SubJobRun> unfinished = new ArrayList<>();
+        String erroredSubJobName = null;
+        int subJobsTotal = subJobs.size() + 1;
+        int subJobsFinished = 0;
+        while (erroredSubJobName == null && (!pending.isEmpty() || !unfinished.isEmpty())) {
+            // Collect every pending sub-job whose dependencies have all succeeded.
+            List<SubJobRun> ready = new ArrayList<>();
+            for (Iterator<MonitorableJob> iterator = pending.iterator(); iterator.hasNext(); ) {
+                MonitorableJob subJob = iterator.next();
+                if (succeeded.containsAll(subJob.dependencies)) {
+                    iterator.remove();
+                    ready.add(new SubJobRun(subJob, finishedRuns));
+                }
+            }
+            unfinished.addAll(ready);
+            boolean waitForFinishedRun = false;
+            if (!ready.isEmpty()) {
+                // Hand all but the first ready sub-job to the pool and run the first in this thread.
+                for (SubJobRun run : ready.subList(1, ready.size())) JobExecutor.executeSubJob(run, priority);
+                SubJobRun first = ready.get(0);
+                // Calculate completion based on number of sub jobs finished.
+                double percentComplete = (subJobsFinished + 1) * 100D / subJobsTotal;
+                status.update(String.format("Waiting on %s...", first.job.getClass().getSimpleName()), percentComplete);
+                JobJournal.recordProgress(this, subJobsFinished, subJobs.size());
+                first.run();
+            } else if (finishedRuns.isEmpty()) {
+                // Nothing is ready to start, so run a handed-off sub-job that has not started yet (if any) or wait
+                // for a running sub-job to finish.
+                SubJobRun unstarted = unfinished.stream().filter(run -> !run.isClaimed()).findFirst().orElse(null);
+                if (unstarted != null) unstarted.run();
+                else waitForFinishedRun = true;
+            }
+            // Record the outcome of any sub-jobs that have finished.
+            SubJobRun finished = waitForFinishedRun ? finishedRuns.take() : finishedRuns.poll();
+            for (; finished != null; finished = finishedRuns.poll()) {
+                unfinished.remove(finished);
+                subJobsFinished++;
+                if (finished.job.status.error) {
+                    if (erroredSubJobName == null) erroredSubJobName = finished.job.getClass().getSimpleName();
+                } else {
+                    succeeded.add(finished.job);
+                }
+            }
+        }
+        if (erroredSubJobName != null) {
+            // Cancel (fail) sub-tasks that have not started and wait for any that are running to finish.
+            String cancelMessage = String.format("Task cancelled due to error in %s task", erroredSubJobName);
+            for (MonitorableJob subJob : pending) subJob.cancel(cancelMessage);
+            for (SubJobRun run : unfinished) run.cancelOrAwait(cancelMessage);
+        }
+        return erroredSubJobName;
+    }
+
     /**
      * An alternative method to run(), this method updates job status with error and should contain any other
      * clean up steps needed to complete job in an errored state (generally due to failure in a previous task in
@@ -207,14 +301,32 @@ public abstract class MonitorableJob implements Runnable, Serializable {
     }
 
     /**
-     * Enqueues a sub-job to be run when the main logic of this job has finished.
+     * Enqueues a sub-job to be run when the main logic of this job has finished. Each job added here depends on the
+     * previously added sub-job (i.e., sub-jobs run one after another in the order they were added).
      */
     public void addNextJob(MonitorableJob ...jobs) {
         for (MonitorableJob job : jobs) {
-            job.parentJobId = this.jobId;
-            job.parentJobType = this.type;
-            subJobs.add(job);
+            if (subJobs.isEmpty()) addDependentJob(job);
+            else addDependentJob(job, subJobs.get(subJobs.size() - 1));
+        }
+    }
+
+    /**
+     * Enqueues a sub-job to be run when the main logic of this job has finished and each of the provided sub-jobs
+     * (which must already have been added to this job) has completed successfully. A sub-job with no dependencies
+     * starts as soon as the main logic of this job has finished. Sub-jobs that do not depend on each other may run
+     * concurrently.
+     */
+    public void addDependentJob(MonitorableJob job, MonitorableJob ...dependencies) {
+        for (MonitorableJob dependency : dependencies) {
+            if (!subJobs.contains(dependency)) {
+                throw new IllegalArgumentException("Sub-job dependencies must be added to the parent job first.");
+            }
         }
+        job.parentJobId = this.jobId;
+        job.parentJobType = this.type;
+        job.dependencies = Arrays.asList(dependencies);
+        subJobs.add(job);
     }
 
     /** Convenience wrapper for a {@link List} of jobs. */
@@ -222,12 +334,55 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         for (MonitorableJob job : jobs) addNextJob(job);
     }
 
+    /**
+     * Wrapper for a single run of a sub-job that can be claimed exactly once, either by a {@link JobExecutor} thread or
+     * by the parent job's thread, and which reports itself to the parent's queue of finished runs once complete.
+     */
+    private static class SubJobRun implements Runnable {
+        private final MonitorableJob job;
+        private final BlockingQueue<SubJobRun> finishedRuns;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        SubJobRun(MonitorableJob job, BlockingQueue<SubJobRun> finishedRuns) {
+            this.job = job;
+            this.finishedRuns = finishedRuns;
+        }
+
+        boolean isClaimed() {
+            return claimed.get();
+        }
+
+        /** Run the sub-job unless another thread has already claimed it. */
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) return;
+            try {
+                job.run();
+            } finally {
+                done.countDown();
+                finishedRuns.add(this);
+            }
+        }
+
+        /** Cancel the sub-job if it has not started or otherwise wait for it to finish. */
+        void cancelOrAwait(String message) throws InterruptedException {
+            if (claimed.compareAndSet(false, true)) job.cancel(message);
+            else done.await();
+        }
+    }
+
     /**
      * Represents the current status of this job.
      */
     public static class Status {
+        /** Minimum time between INFO log messages for updates within the same stage (see {@link #update}). */
+        private static final long LOG_INTERVAL_MILLIS = 10000;
+        /** Minimum time between message/percent updates from {@link #update(String, long, long)}. */
+        private static final long COUNT_UPDATE_INTERVAL_MILLIS = 250;
+
         /** What message (defined in messages.<lang>) should be displayed to the user? */
-        public String message;
+        public volatile String message;
 
         /** Detailed exception method to display to user (to help with support requests) */
         public String exceptionType;
@@ -246,7 +401,7 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         public String name;
 
         /** How much of task is complete? */
-        public double percentComplete;
+        public volatile double percentComplete;
 
         public long startTime = System.currentTimeMillis();
         public long duration;
@@ -260,27 +415,51 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         // Name of file/item once completed
         public String completedName;
 
+        // The stage and time of the last update logged at INFO level (see #log). These are only written by the thread
+        // updating the job, so no synchronization is needed.
+        private String loggedStage;
+        private long loggedTime;
+        // The stage and time of the last counted update applied to the message (see #update(String, long, long)).
+        private String countUpdateStage;
+        private long countUpdateTime;
+
         /**
-         * Update status message and percent complete. This method should be used while job is still in progress.
+         * Update status message and percent complete. This method should be used while job is still in progress. The
+         * message is also used as the stage for logging, so an update is only logged at INFO level if the message has
+         * changed or some time has passed since the last logged update (other updates are logged at DEBUG level).
          */
         public void update (String message, double percentComplete) {
-            LOG.info("Job updated `{}`: `{}`\n{}", name, message, getCallingMethodTrace());
             this.message = message;
             this.percentComplete = percentComplete;
+            log(message);
         }
 
         /**
-         * Gets stack trace from method calling {@link #update(String, double)} or {@link #fail(String)} for logging
-         * purposes.
+         * Update the status with the number of completed units of work (e.g., rows or files) for the provided stage.
+         * This is cheap enough to be called for every unit of work in a tight loop: the message and percent complete
+         * are only updated when the stage changes, once the last unit is complete, or if some time has passed since
+         * they were last updated for the same stage.
          */
-        private String getCallingMethodTrace() {
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            // Get trace from method calling update or fail. To trace this back:
-            // 0. this thread
-            // 1. this method
-            // 2. Status#update or Status#fail
-            // 3. line where update/fail is called in server job
-            return stackTrace.length >= 3 ? stackTrace[3].toString() : "WARNING: Stack trace not found.";
+        public void update (String stage, long completed, long total) {
+            long now = System.currentTimeMillis();
+            boolean sameStage = Objects.equals(stage, countUpdateStage);
+            if (sameStage && completed < total && now - countUpdateTime < COUNT_UPDATE_INTERVAL_MILLIS) return;
+            countUpdateStage = stage;
+            countUpdateTime = now;
+            this.message = String.format("%s (%d/%d)", stage, completed, total);
+            this.percentComplete = total > 0 ? Math.round(completed * 10000d / total) / 100d : 0;
+            log(stage);
+        }
+
+        private void log(String stage) {
+            long now = System.currentTimeMillis();
+            if (!Objects.equals(stage, loggedStage) || now - loggedTime >= LOG_INTERVAL_MILLIS) {
+                loggedStage = stage;
+                loggedTime = now;
+                LOG.info("Job `{}` [{}]: `{}` ({}%)", name, stage, message, percentComplete);
+            } else {
+                LOG.debug("Job `{}` [{}]: `{}` ({}%)", name, stage, message, percentComplete);
+            }
         }
 
         /**
@@ -316,7 +495,7 @@ public abstract class MonitorableJob implements Runnable, Serializable {
             if (e != null) {
                 this.exceptionDetails = ExceptionUtils.getStackTrace(e);
                 this.exceptionType = e.getMessage();
-                // If exception is null, overloaded fail method was called and message already logged with trace.
+                // If exception is null, overloaded fail method was called and message already logged.
                 String logMessage = String.format("Job `%s` failed with message: `%s`", name, message);
                 LOG.warn(logMessage, e);
             }
@@ -327,8 +506,7 @@ public abstract class MonitorableJob implements Runnable, Serializable {
          * Fail job status with message.
          */
         public void fail (String message) {
-            // Log error with stack trace from calling method in job.
-            LOG.error("Job failed with message {}\n{}", message, getCallingMethodTrace());
+            LOG.error("Job `{}` failed with message `{}`", name, message);
             fail(message, null);
         }
     }
@@ -0,0 +1,20 @@
+package com.conveyal.datatools.common.status;
+
+import java.util.Map;
+
+/**
+ * A {@link MonitorableJob} that can be re-created from its {@link JobJournal} record and queued again if the server
+ * stops before the job completes. Implementing classes must also register a factory for their job type with
+ * {@link JobJournal}.
+ */
+public interface RecoverableJob {
+    /**
+     * Key that identifies the work performed by the job (e.g., fetching a specific feed source). Only one job with a
+     * given key may be queued or running at a time, so that the same work is not queued twice (e.g., by a user and by a
+     * recovered job).
+     */
+    String retrieveIdempotencyKey();
+
+    /** The parameters needed to re-create the job (see {@link JobJournal}). */
+    Map<String, String> retrieveRecoveryParameters();
+}
@@ -0,0 +1,329 @@
+package com.conveyal.datatools.common.utils;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.DeliveryMode;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.PersistableTransfer;
+import com.amazonaws.services.s3.transfer.PersistableUpload;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
+import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.utils.HashUtils;
+import com.conveyal.datatools.manager.utils.json.JsonUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Uploads files to S3 (and copies objects within S3) using multipart transfers that share a single, bounded pool of
+ * transfer threads (rather than each transfer constructing its own {@link TransferManager} and thread pool).
+ *
+ * While a multipart upload is in progress, its state (i.e., the multipart upload ID) is persisted to the state
+ * directory, so if the upload is interrupted (e.g., by a server restart or a network failure), the next upload of the
+ * same content to the same key resumes the existing multipart upload instead of starting over. The state is keyed on
+ * the S3 key and a digest of the file content (rather than the local path), so the upload can be resumed from a file
+ * that has been rebuilt or moved (e.g., a deployment bundle rebuilt in a new temp file). The state is removed once the
+ * upload completes.
+ *
+ * All settings are optional and read from the application.data.s3_transfer config section, e.g.:
+ *
+ *   application:
+ *     data:
+ *       s3_transfer:
+ *         threads: 10
+ *         part_size_mb: 16
+ *         multipart_threshold_mb: 16
+ *         state_dir: /tmp/s3_transfers # defaults to s3_transfers within application.data.gtfs
+ */
+public class S3TransferService {
+    private static final Logger LOG = LoggerFactory.getLogger(S3TransferService.class);
+    private static final String CONFIG_PREFIX = "application.data.s3_transfer.";
+    private static final long MB = 1024 * 1024;
+    private static final int DEFAULT_THREADS = 10;
+    private static final int DEFAULT_PART_SIZE_MB = 16;
+
+    private static ExecutorService transferExecutor;
+    private static File stateDirectory;
+
+    /**
+     * Upload the file to the bucket/key (resuming a previously interrupted upload of the same file if possible),
+     * blocking until the upload completes. The optional progress consumer receives the percent of the file that has
+     * been transferred.
+     */
+    public static TransferStats upload(
+        AmazonS3 s3Client,
+        String bucket,
+        String key,
+        File file,
+        DoubleConsumer onProgress
+    ) throws InterruptedException, AmazonClientException {
+        TransferManager transferManager = buildTransferManager(s3Client);
+        long startTime = System.currentTimeMillis();
+        // Only multipart uploads can be resumed, so there is no need to hash files below the multipart threshold.
+        String contentDigest = file.length() >= getMultipartThreshold() ? HashUtils.hashFile(file) : "";
+        File stateFile = contentDigest.isEmpty() ? null : getStateFile(bucket, key, contentDigest);
+        UploadProgress progress = new UploadProgress(stateFile, contentDigest, onProgress);
+        try {
+            boolean resumed = false;
+            PersistableUpload persistedUpload = readPersistedUpload(stateFile, file, bucket, key, contentDigest);
+            if (persistedUpload != null) {
+                LOG.info("Resuming multipart upload of {} to s3://{}/{}", file.getAbsolutePath(), bucket, key);
+                try {
+                    Upload upload = transferManager.resumeUpload(persistedUpload);
+                    progress.track(upload);
+                    upload.addProgressListener(progress);
+                    upload.waitForCompletion();
+                    resumed = true;
+                } catch (AmazonClientException e) {
+                    // The multipart upload may have expired or been aborted, in which case we need to start over.
+                    LOG.warn("Could not resume upload to s3://{}/{}. Restarting upload.", bucket, key, e);
+                }
+            }
+            if (!resumed) {
+                Upload upload = transferManager.upload(new PutObjectRequest(bucket, key, file), progress);
+                progress.track(upload);
+                upload.waitForCompletion();
+            }
+            if (onProgress != null) {
+                onProgress.accept(100);
+            }
+            deleteState(stateFile);
+            TransferStats stats = new TransferStats(file.length(), System.currentTimeMillis() - startTime, resumed);
+            LOG.info("Uploaded {} to s3://{}/{} ({})", file.getAbsolutePath(), bucket, key, stats);
+            return stats;
+        } finally {
+            // Shut down the transfer manager without shutting down the shared thread pool or the S3 client (which may
+            // be shared with other S3 operations).
+            transferManager.shutdownNow(false);
+        }
+    }
+
+    /** Shorthand for {@link #upload(AmazonS3, String, String, File, DoubleConsumer)} without a progress consumer. */
+    public static TransferStats upload(AmazonS3 s3Client, String bucket, String key, File file)
+        throws InterruptedException, AmazonClientException {
+        return upload(s3Client, bucket, key, file, null);
+    }
+
+    /**
+     * Copy an object within S3, blocking until the copy completes. Unlike {@link AmazonS3#copyObject}, which is limited
+     * to objects of up to 5 GB, large objects are copied in parts.
+     */
+    public static void copy(
+        AmazonS3 s3Client,
+        String sourceBucket,
+        String sourceKey,
+        String destinationBucket,
+        String destinationKey
+    ) throws InterruptedException, AmazonClientException {
+        TransferManager transferManager = buildTransferManager(s3Client);
+        try {
+            transferManager
+                .copy(new CopyObjectRequest(sourceBucket, sourceKey, destinationBucket, destinationKey))
+                .waitForCopyResult();
+        } finally {
+            transferManager.shutdownNow(false);
+        }
+    }
+
+    /**
+     * Construct a transfer manager for the client that uses the shared transfer thread pool. Transfer managers are
+     * cheap to construct when they do not construct their own thread pool, so one is constructed per upload (rather
+     * than keeping one per S3 client, which may be specific to a deployment job's credentials/region).
+     */
+    private static TransferManager buildTransferManager(AmazonS3 s3Client) {
+        return TransferManagerBuilder.standard()
+            .withS3Client(s3Client)
+            .withExecutorFactory(S3TransferService::getTransferExecutor)
+            .withShutDownThreadPools(false)
+            .withMinimumUploadPartSize(getPartSize())
+            .withMultipartUploadThreshold(getMultipartThreshold())
+            .build();
+    }
+
+    private static long getPartSize() {
+        return getConfigInt("part_size_mb", DEFAULT_PART_SIZE_MB) * MB;
+    }
+
+    private static long getMultipartThreshold() {
+        return getConfigInt("multipart_threshold_mb", (int) (getPartSize() / MB)) * MB;
+    }
+
+    private static synchronized ExecutorService getTransferExecutor() {
+        if (transferExecutor == null) {
+            int threads = getConfigInt("threads", DEFAULT_THREADS);
+            AtomicInteger threadCount = new AtomicInteger();
+            transferExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "s3-transfer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return transferExecutor;
+    }
+
+    private static synchronized File getStateDirectory() {
+        if (stateDirectory == null) {
+            String property = CONFIG_PREFIX + "state_dir";
+            stateDirectory = DataManager.hasConfigProperty(property)
+                ? new File(DataManager.getConfigPropertyAsText(property))
+                : new File(DataManager.getConfigPropertyAsText("application.data.gtfs"), "s3_transfers");
+            if (!stateDirectory.exists() && !stateDirectory.mkdirs()) {
+                LOG.warn("Could not create S3 transfer state directory {}", stateDirectory.getAbsolutePath());
+            }
+        }
+        return stateDirectory;
+    }
+
+    private static File getStateFile(String bucket, String key, String contentDigest) {
+        String name = Hashing.sha256()
+            .hashString(bucket + "/" + key + "#" + contentDigest, StandardCharsets.UTF_8)
+            .toString();
+        return new File(getStateDirectory(), name + ".json");
+    }
+
+    /**
+     * Read the persisted state for an interrupted upload of the same content to the bucket/key. If there is no such
+     * state, null is returned. The returned upload reads from the provided file, which need not be the file that the
+     * interrupted upload read from.
+     */
+    private static PersistableUpload readPersistedUpload(
+        File stateFile,
+        File file,
+        String bucket,
+        String key,
+        String contentDigest
+    ) {
+        if (stateFile == null || !stateFile.exists()) return null;
+        try {
+            UploadState state = JsonUtil.objectMapper.readValue(stateFile, UploadState.class);
+            if (contentDigest.equals(state.contentDigest)) {
+                ObjectNode persistedJson = (ObjectNode) JsonUtil.objectMapper.readTree(state.persistableUpload);
+                persistedJson.put("file", file.getAbsolutePath());
+                PersistableUpload upload = PersistableTransfer.deserializeFrom(persistedJson.toString());
+                if (bucket.equals(upload.getBucketName()) && key.equals(upload.getKey())) {
+                    return upload;
+                }
+            }
+            LOG.info("Discarding stale upload state for s3://{}/{}", bucket, key);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not read upload state {}", stateFile.getAbsolutePath(), e);
+        }
+        deleteState(stateFile);
+        return null;
+    }
+
+    private static void deleteState(File stateFile) {
+        if (stateFile != null && stateFile.exists() && !stateFile.delete()) {
+            LOG.warn("Could not delete upload state {}", stateFile.getAbsolutePath());
+        }
+    }
+
+    private static int getConfigInt(String name, int defaultValue) {
+        String property = CONFIG_PREFIX + name;
+        if (!DataManager.hasConfigProperty(property)) return defaultValue;
+        JsonNode node = DataManager.getConfigProperty(property);
+        return node.asInt(defaultValue);
+    }
+
+    /**
+     * Reports the progress of an upload and persists the upload state as soon as the multipart upload has been
+     * initiated (i.e., once it can be resumed). Events are delivered synchronously, so the state is persisted before
+     * any parts are uploaded.
+     */
+    private static class UploadProgress implements S3ProgressListener, DeliveryMode {
+        private final File stateFile;
+        private final String contentDigest;
+        private final DoubleConsumer onProgress;
+        private volatile Upload upload;
+
+        UploadProgress(File stateFile, String contentDigest, DoubleConsumer onProgress) {
+            this.stateFile = stateFile;
+            this.contentDigest = contentDigest;
+            this.onProgress = onProgress;
+        }
+
+        /** Set the upload to report progress for (progress events received before this is set are ignored). */
+        void track(Upload upload) {
+            this.upload = upload;
+        }
+
+        @Override
+        public boolean isSyncCallSafe() {
+            return true;
+        }
+
+        @Override
+        public void progressChanged(ProgressEvent progressEvent) {
+            Upload currentUpload = upload;
+            if (onProgress != null && currentUpload != null) {
+                onProgress.accept(currentUpload.getProgress().getPercentTransferred());
+            }
+        }
+
+        @Override
+        public void onPersistableTransfer(PersistableTransfer persistableTransfer) {
+            if (stateFile == null || !(persistableTransfer instanceof PersistableUpload)) return;
+            UploadState state = new UploadState();
+            state.contentDigest = contentDigest;
+            state.persistableUpload = persistableTransfer.serialize();
+            try {
+                JsonUtil.objectMapper.writeValue(stateFile, state);
+            } catch (IOException e) {
+                // Failing to persist the state only means that the upload cannot be resumed.
+                LOG.warn("Could not persist upload state {}", stateFile.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /** Persisted state for a multipart upload along with the digest of the content being uploaded. */
+    public static class UploadState {
+        public String contentDigest;
+        public String persistableUpload;
+    }
+
+    /**
+     * Statistics for a completed upload.
+     */
+    public static class TransferStats {
+        public final long bytes;
+        public final long durationMillis;
+        /** Whether a previously interrupted multipart upload was resumed. */
+        public final boolean resumed;
+
+        TransferStats(long bytes, long durationMillis, boolean resumed) {
+            this.bytes = bytes;
+            this.durationMillis = durationMillis;
+            this.resumed = resumed;
+        }
+
+        public double megabytesPerSecond() {
+            return durationMillis > 0 ? (double) bytes / MB / (durationMillis / 1000.0) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%.1f MB in %.1f s, %.2f MB/s%s",
+                (double) bytes / MB,
+                durationMillis / 1000.0,
+                megabytesPerSecond(),
+                resumed ? ", resumed" : ""
+            );
+        }
+    }
+}
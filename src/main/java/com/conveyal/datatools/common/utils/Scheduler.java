@@ -25,9 +25,11 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.Utils.getTimezone;
 import static com.google.common.collect.Multimaps.synchronizedListMultimap;
+import static com.mongodb.client.model.Filters.eq;
 
 /**
  * This class centralizes the logic associated with scheduling and cancelling tasks (organized as a {@link ScheduledJob})
@@ -54,16 +56,15 @@ public class Scheduler {
      */
     public static void initialize() {
         LOG.info("Scheduling recurring project auto fetches");
-        for (Project project : Persistence.projects.getAll()) {
-            if (project.autoFetchFeeds) {
-                scheduleAutoFeedFetch(project, 1);
-            }
+        // Only projects with auto fetch enabled are pulled from Mongo (and only one batch at a time is held in memory).
+        try (Stream<Project> projects = Persistence.projects.stream(eq("autoFetchFeeds", true))) {
+            projects.forEach(project -> scheduleAutoFeedFetch(project, 1));
         }
         LOG.info("Scheduling feed expiration notifications");
         // Get all active feed sources
-        for (FeedSource feedSource : Persistence.feedSources.getAll()) {
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.streamAll()) {
             // Schedule expiration notification jobs for the latest feed version
-            scheduleExpirationNotifications(feedSource);
+            feedSources.forEach(Scheduler::scheduleExpirationNotifications);
         }
     }
 
@@ -1,8 +1,15 @@
 package com.conveyal.datatools.common.utils;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import com.bugsnag.Bugsnag;
 import com.bugsnag.Report;
+import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -20,9 +27,13 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 import static com.conveyal.datatools.manager.DataManager.getBugsnag;
@@ -43,26 +54,187 @@ public class SparkUtils {
      * Write out the supplied file to the Spark response as an octet-stream.
      */
     public static HttpServletResponse downloadFile(File file, String filename, Request req, Response res) {
+        return downloadFile(file, filename, null, req, res);
+    }
+
+    /**
+     * Write out the supplied file to the Spark response as an octet-stream. The file is transferred to the response
+     * with {@link FileChannel#transferTo} rather than being copied through heap buffers. If an ETag is provided (e.g.,
+     * the content hash for a feed version), conditional requests are answered with 304 Not Modified. Byte range
+     * requests are honored so that clients can resume interrupted downloads of large files.
+     */
+    public static HttpServletResponse downloadFile(File file, String filename, String etag, Request req, Response res) {
         if (file == null) logMessageAndHalt(req, 404, "File is null");
+        if (!file.exists()) logMessageAndHalt(req, 404, "File not found");
         HttpServletResponse raw = res.raw();
-        raw.setContentType("application/octet-stream");
-        raw.setHeader("Content-Disposition", "attachment; filename=" + filename);
-        // Override the gzip content encoding applied to standard API responses.
-        res.header("Content-Encoding", "identity");
+        ByteRange range = prepareDownload(filename, etag, file.length(), req, res);
+        if (range == null) return raw;
         try (
-            FileInputStream fileInputStream = new FileInputStream(file);
+            FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
             ServletOutputStream outputStream = raw.getOutputStream()
         ) {
-            // Write the file input stream to the response's output stream.
-            ByteStreams.copy(fileInputStream, outputStream);
-            // TODO: Is flushing the stream necessary?
-            outputStream.flush();
+            WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+            long position = range.start;
+            long remaining = range.length();
+            while (remaining > 0) {
+                long transferred = fileChannel.transferTo(position, remaining, outputChannel);
+                position += transferred;
+                remaining -= transferred;
+            }
         } catch (IOException e) {
             logMessageAndHalt(req, 500, "Could not write file to output stream", e);
         }
         return raw;
     }
 
+    /**
+     * Write out the stored file for the provided ID (e.g., a feed version's GTFS zip) to the Spark response. If the
+     * file is not available locally and the application uses S3 storage, the object is streamed directly from S3 to
+     * the response (rather than first downloading the object to a temp file).
+     */
+    public static HttpServletResponse downloadStoredFile(
+        FeedStore feedStore,
+        String id,
+        String filename,
+        String etag,
+        Request req,
+        Response res
+    ) {
+        File file = feedStore.getLocalFeed(id);
+        if (file != null || !DataManager.useS3) return downloadFile(file, filename, etag, req, res);
+        return downloadS3Object(FeedStore.s3Client, DataManager.feedBucket, FeedStore.getS3Key(id), filename, etag, req, res);
+    }
+
+    /**
+     * Stream the S3 object to the Spark response as an octet-stream (honoring conditional and byte range requests in
+     * the same way as {@link #downloadFile(File, String, String, Request, Response)}).
+     */
+    public static HttpServletResponse downloadS3Object(
+        AmazonS3 s3Client,
+        String bucket,
+        String key,
+        String filename,
+        String etag,
+        Request req,
+        Response res
+    ) {
+        HttpServletResponse raw = res.raw();
+        long length = 0;
+        try {
+            length = s3Client.getObjectMetadata(bucket, key).getContentLength();
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == 404) logMessageAndHalt(req, 404, "File not found");
+            logMessageAndHalt(req, 500, "Could not retrieve file from S3", e);
+        }
+        ByteRange range = prepareDownload(filename, etag, length, req, res);
+        if (range == null || range.length() == 0) return raw;
+        GetObjectRequest getObjectRequest = new GetObjectRequest(bucket, key);
+        if (range.length() < length) getObjectRequest.setRange(range.start, range.end);
+        try (
+            S3Object object = s3Client.getObject(getObjectRequest);
+            InputStream inputStream = object.getObjectContent();
+            ServletOutputStream outputStream = raw.getOutputStream()
+        ) {
+            ByteStreams.copy(inputStream, outputStream);
+        } catch (IOException | AmazonClientException e) {
+            logMessageAndHalt(req, 500, "Could not write file to output stream", e);
+        }
+        return raw;
+    }
+
+    /**
+     * Set the headers for a file download and determine which bytes of the file should be sent. Returns null if the
+     * response is complete without a body (i.e., 304 Not Modified). Halts with 416 if the requested range cannot be
+     * satisfied.
+     */
+    private static ByteRange prepareDownload(String filename, String etag, long length, Request req, Response res) {
+        HttpServletResponse raw = res.raw();
+        raw.setContentType("application/octet-stream");
+        raw.setHeader("Content-Disposition", "attachment; filename=" + filename);
+        // Override the gzip content encoding applied to standard API responses.
+        res.header("Content-Encoding", "identity");
+        raw.setHeader("Accept-Ranges", "bytes");
+        String quotedEtag = etag != null && !etag.isEmpty() ? "\"" + etag + "\"" : null;
+        if (quotedEtag != null) {
+            raw.setHeader("ETag", quotedEtag);
+            String ifNoneMatch = req.headers("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(quotedEtag))) {
+                raw.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return null;
+            }
+        }
+        ByteRange range = new ByteRange(0, length - 1);
+        String rangeHeader = req.headers("Range");
+        String ifRange = req.headers("If-Range");
+        // Only honor the range if there is no If-Range condition or the condition matches the current file.
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(quotedEtag))) {
+            ByteRange requestedRange = ByteRange.parse(rangeHeader, length);
+            if (requestedRange == null) {
+                raw.setHeader("Content-Range", "bytes */" + length);
+                logMessageAndHalt(req, 416, "Requested range not satisfiable");
+            }
+            // Multiple ranges are not supported, in which case the full file is sent.
+            if (requestedRange != ByteRange.UNSUPPORTED) {
+                range = requestedRange;
+                raw.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                raw.setHeader("Content-Range", String.format("bytes %d-%d/%d", range.start, range.end, length));
+            }
+        }
+        raw.setContentLengthLong(range.length());
+        return range;
+    }
+
+    /**
+     * An inclusive range of bytes within a file (see https://tools.ietf.org/html/rfc7233#section-2.1).
+     */
+    private static class ByteRange {
+        /** Placeholder for syntactically valid range requests that are not supported (i.e., multiple ranges). */
+        static final ByteRange UNSUPPORTED = new ByteRange(0, -1);
+        final long start;
+        final long end;
+
+        ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+
+        /**
+         * Parse a Range header (e.g., bytes=0-499, bytes=500- or bytes=-500) for a file of the provided length. Returns
+         * null if the range cannot be satisfied.
+         */
+        static ByteRange parse(String header, long length) {
+            if (!header.startsWith("bytes=")) return UNSUPPORTED;
+            String spec = header.substring("bytes=".length()).trim();
+            if (spec.contains(",")) return UNSUPPORTED;
+            int dash = spec.indexOf('-');
+            if (dash < 0) return UNSUPPORTED;
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    // Suffix range, i.e. the last n bytes.
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength <= 0) return null;
+                    start = Math.max(0, length - suffixLength);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                }
+                if (start >= length || start > end) return null;
+                return new ByteRange(start, end);
+            } catch (NumberFormatException e) {
+                return UNSUPPORTED;
+            }
+        }
+    }
+
     /**
      * Constructs a JSON string containing the provided key/value pair.
      */
@@ -13,8 +13,8 @@ import spark.Session;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
@@ -30,11 +30,16 @@ public class EditorLockController {
 
     private static final JsonManager<EditorLockController> json = new JsonManager<>(EditorLockController.class, JsonViews.UserInterface.class);
     private static final Logger LOG = LoggerFactory.getLogger(EditorLockController.class);
-    public static final Map<String, EditorSession> sessionsForFeedIds = new HashMap<>();
+    /**
+     * Active editor sessions keyed on feed ID. This is read without locking on every editor write (see
+     * EditorController#getNamespaceAndValidateSession), whereas the handlers that acquire/release locks synchronize
+     * on this class so that their check-then-act sequences are atomic.
+     */
+    public static final Map<String, EditorSession> sessionsForFeedIds = new ConcurrentHashMap<>();
     private static final long SESSION_LENGTH_IN_SECONDS = 10 * 60; // Ten minutes
 
 
-    private static String lockFeed (Request req, Response res) {
+    private static synchronized String lockFeed (Request req, Response res) {
         // FIXME: why is content type not being set in before()/after()?
         res.type("application/json");
         Auth0UserProfile userProfile = req.attribute("user");
@@ -137,7 +142,7 @@ public class EditorLockController {
         }
     }
 
-    private static String deleteFeedLock(Request req, Response res) {
+    private static synchronized String deleteFeedLock(Request req, Response res) {
         // FIXME: why is content type not being set in before()/after()?
         res.type("application/json");
         Auth0UserProfile userProfile = req.attribute("user");
@@ -197,8 +202,9 @@ public class EditorLockController {
         public final String sessionId;
         public final String userId;
         public final String userEmail;
-        public long lastCheckIn;
-        public long lastEdit;
+        // Updated from request threads without locking.
+        public volatile long lastCheckIn;
+        public volatile long lastEdit;
 
         EditorSession (String feedId, String sessionId, Auth0UserProfile userProfile) {
             this.feedId = feedId;
@@ -3,6 +3,7 @@ package com.conveyal.datatools.editor.controllers.api;
 import com.conveyal.datatools.common.utils.AWSUtils;
 import com.conveyal.datatools.common.utils.SparkUtils;
 import com.conveyal.datatools.editor.controllers.EditorLockController;
+import com.conveyal.datatools.editor.utils.EditorNamespaceCache;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.JsonViews;
@@ -17,6 +18,7 @@ import com.conveyal.gtfs.storage.StorageException;
 import com.conveyal.gtfs.util.InvalidNamespaceException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.dbutils.DbUtils;
 import org.eclipse.jetty.http.HttpStatus;
@@ -60,6 +62,7 @@ public abstract class EditorController<T extends Entity> {
     private static final Logger LOG = LoggerFactory.getLogger(EditorController.class);
     private DataSource datasource;
     private final String classToLowercase;
+    private static final int MAX_BULK_OPERATIONS = 10000;
     private static final String SNAKE_CASE_REGEX = "\\b[a-z]+(_[a-z]+)*\\b";
     private static final ObjectMapper mapper = new ObjectMapper();
     public static final JsonManager<Entity> json = new JsonManager<>(Entity.class, JsonViews.UserInterface.class);
@@ -110,6 +113,8 @@ public abstract class EditorController<T extends Entity> {
         post(ROOT_ROUTE, this::createOrUpdate, json::write);
         // Update entity request
         put(ROOT_ROUTE + ID_PARAM, this::createOrUpdate, json::write);
+        // Bulk request (apply a batch of create, update, and delete operations in a single transaction).
+        post(ROOT_ROUTE + "/bulk", this::applyBulkOperations, json::write);
         // Patch table request (set values for certain fields for all or some of the records in a table).
         patch(ROOT_ROUTE, this::patchTable, json::write);
         // Handle uploading agency and route branding to s3
@@ -294,6 +299,97 @@ public abstract class EditorController<T extends Entity> {
         return formatJSON(String.format("Deleted %d.", tripIds.length), 200);
     }
 
+    /**
+     * HTTP endpoint to apply a batch of create, update, and delete operations to the table in a single transaction, so
+     * that saving many entities at once (e.g., the trips in a timetable) requires one request and one commit. The body
+     * must be a JSON array of operations in the form:
+     *
+     *   [{"operation": "create", "entity": {...}}, {"operation": "update", "id": 1, "entity": {...}},
+     *    {"operation": "delete", "id": 2}]
+     *
+     * Operations are applied in order. If any operation fails, none of the operations are committed and the response
+     * indicates the index of the failed operation. Otherwise, the response contains a result for each operation (the
+     * saved entity for creates/updates and the deleted ID for deletes) in the same order as the request.
+     */
+    private String applyBulkOperations(Request req, Response res) {
+        long startTime = System.currentTimeMillis();
+        String namespace = getNamespaceAndValidateSession(req);
+        JsonNode operations = null;
+        try {
+            operations = mapper.readTree(req.body());
+        } catch (IOException e) {
+            logMessageAndHalt(req, 400, "Invalid json", e);
+        }
+        if (operations == null || !operations.isArray()) {
+            logMessageAndHalt(req, 400, "Bulk request body must be a JSON array of operations.");
+        }
+        if (operations.size() > MAX_BULK_OPERATIONS) {
+            logMessageAndHalt(req, 400, String.format("Bulk request cannot exceed %d operations.", MAX_BULK_OPERATIONS));
+        }
+        JdbcTableWriter tableWriter = null;
+        int index = 0;
+        try {
+            tableWriter = new JdbcTableWriter(table, datasource, namespace);
+            ArrayNode results = mapper.createArrayNode();
+            for (JsonNode operation : operations) {
+                // Apply each operation WITHOUT auto-committing so that the batch is committed (or discarded) as a whole.
+                results.add(applyOperation(tableWriter, operation));
+                index++;
+            }
+            tableWriter.commit();
+            ObjectNode response = getObjectNode(
+                String.format("Applied %d %s operation(s).", results.size(), classToLowercase),
+                HttpStatus.OK_200,
+                null
+            );
+            response.set("results", results);
+            return response.toString();
+        } catch (InvalidNamespaceException e) {
+            logMessageAndHalt(req, 400, "Invalid namespace");
+        } catch (IllegalArgumentException | IOException e) {
+            logMessageAndHalt(req, 400, String.format("Invalid operation at index %d. No changes were saved.", index), e);
+        } catch (Exception e) {
+            String message = String.format("Error applying operation at index %d. No changes were saved.", index);
+            logMessageAndHalt(req, 500, message, e);
+        } finally {
+            // Closing the writer without committing discards any operations applied before a failure.
+            if (tableWriter != null) tableWriter.close();
+            LOG.info("Bulk operation ({} operations) took {} msec", operations.size(), System.currentTimeMillis() - startTime);
+        }
+        return null;
+    }
+
+    /**
+     * Apply a single operation from a bulk request (see {@link #applyBulkOperations}) without committing, returning
+     * the result for the operation.
+     */
+    private JsonNode applyOperation(JdbcTableWriter tableWriter, JsonNode operation) throws Exception {
+        String type = operation.path("operation").asText();
+        JsonNode id = operation.get("id");
+        JsonNode entity = operation.get("entity");
+        if (!"create".equals(type) && (id == null || !id.canConvertToInt())) {
+            throw new IllegalArgumentException("Integer id must be provided for " + type + " operation.");
+        }
+        if (!"delete".equals(type) && (entity == null || !entity.isObject())) {
+            throw new IllegalArgumentException("Entity must be provided for " + type + " operation.");
+        }
+        switch (type) {
+            case "create":
+                return mapper.readTree(tableWriter.create(entity.toString(), false));
+            case "update":
+                return mapper.readTree(tableWriter.update(id.asInt(), entity.toString(), false));
+            case "delete":
+                int result = tableWriter.delete(id.asInt(), false);
+                if (result != 1) {
+                    // If exactly one entity was not deleted, throw an error.
+                    throw new SQLException(String.format("Could not delete %s %d. Result: %d", classToLowercase, id.asInt(), result));
+                }
+                return mapper.createObjectNode().put("id", id.asInt());
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + type);
+        }
+    }
+
     /**
      * HTTP endpoint to delete one GTFS editor entity specified by the integer ID field.
      */
@@ -417,8 +513,10 @@ public abstract class EditorController<T extends Entity> {
     private static String getNamespaceAndValidateSession(Request req) {
         String feedId = req.queryParams("feedId");
         String sessionId = req.queryParams("sessionId");
-        FeedSource feedSource = Persistence.feedSources.getById(feedId);
-        if (feedSource == null) {
+        // Resolve the namespace from the cache to avoid a database round trip on every edit. The feed source is only
+        // fetched if the namespace is not found (to determine the cause) or to construct an error message.
+        String namespace = EditorNamespaceCache.getNamespace(feedId);
+        if (namespace == null && Persistence.feedSources.getById(feedId) == null) {
             logMessageAndHalt(req, 400, "Feed ID is invalid");
         }
         // FIXME: Switch to using spark session IDs rather than query parameter?
@@ -433,6 +531,7 @@ public abstract class EditorController<T extends Entity> {
             if (!currentSession.sessionId.equals(sessionId)) {
                 // This session does not match the current active session for the feed.
                 Auth0UserProfile userProfile = req.attribute("user");
+                FeedSource feedSource = Persistence.feedSources.getById(feedId);
                 if (currentSession.userEmail.equals(userProfile.getEmail())) {
                     LOG.warn("User {} already has editor session {} for feed {}. Same user cannot make edits on session {}.", currentSession.userEmail, currentSession.sessionId, feedId, req.session().id());
                     logMessageAndHalt(req, 400, "You have another editing session open for " + feedSource.name);
@@ -442,10 +541,9 @@ public abstract class EditorController<T extends Entity> {
                 }
             } else {
                 currentSession.lastEdit = System.currentTimeMillis();
-                LOG.info("Updating session {} last edit time to {}", sessionId, currentSession.lastEdit);
+                LOG.debug("Updating session {} last edit time to {}", sessionId, currentSession.lastEdit);
             }
         }
-        String namespace = feedSource.editorNamespace;
         if (namespace == null) {
             logMessageAndHalt(req, 400, "Cannot edit feed that has not been snapshotted (namespace is null).");
         }
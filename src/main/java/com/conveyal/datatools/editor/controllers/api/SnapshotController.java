@@ -1,6 +1,7 @@
 package com.conveyal.datatools.editor.controllers.api;
 
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.utils.SparkUtils;
 import com.conveyal.datatools.editor.jobs.CreateSnapshotJob;
 import com.conveyal.datatools.editor.jobs.ExportSnapshotToGTFSJob;
@@ -26,7 +27,7 @@ import java.io.IOException;
 import java.util.Collection;
 
 import static com.conveyal.datatools.common.utils.AWSUtils.downloadFromS3;
-import static com.conveyal.datatools.common.utils.SparkUtils.downloadFile;
+import static com.conveyal.datatools.common.utils.SparkUtils.downloadStoredFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static spark.Spark.delete;
@@ -102,7 +103,7 @@ public class SnapshotController {
             createSnapshotJob.addNextJob(new CreateFeedVersionFromSnapshotJob(feedSource, snapshot, userProfile));
         }
         // Begin asynchronous execution.
-        DataManager.heavyExecutor.execute(createSnapshotJob);
+        JobExecutor.execute(createSnapshotJob);
         return SparkUtils.formatJobMessage(createSnapshotJob.jobId, "Creating snapshot.");
     }
 
@@ -123,7 +124,7 @@ public class SnapshotController {
         boolean preserveBuffer = "true".equals(req.queryParams("preserveBuffer")) && feedSource.editorNamespace != null;
         CreateSnapshotJob createSnapshotJob =
                 new CreateSnapshotJob(userProfile, snapshot, true, false, preserveBuffer);
-        DataManager.heavyExecutor.execute(createSnapshotJob);
+        JobExecutor.execute(createSnapshotJob);
         return formatJobMessage(createSnapshotJob.jobId, "Importing version as snapshot.");
     }
 
@@ -162,7 +163,7 @@ public class SnapshotController {
         String name = "Restore snapshot " + snapshotToRestore.name;
         Snapshot snapshot = new Snapshot(name, feedSource.id, snapshotToRestore.namespace);
         CreateSnapshotJob createSnapshotJob = new CreateSnapshotJob(userProfile, snapshot, true, false, preserveBuffer);
-        DataManager.heavyExecutor.execute(createSnapshotJob);
+        JobExecutor.execute(createSnapshotJob);
         return formatJobMessage(createSnapshotJob.jobId, "Restoring snapshot...");
     }
 
@@ -176,7 +177,7 @@ public class SnapshotController {
         // Create and kick off export job.
         // FIXME: what if a snapshot is already written to S3?
         ExportSnapshotToGTFSJob exportSnapshotToGTFSJob = new ExportSnapshotToGTFSJob(userProfile,  snapshot);
-        DataManager.heavyExecutor.execute(exportSnapshotToGTFSJob);
+        JobExecutor.execute(exportSnapshotToGTFSJob);
         return formatJobMessage(exportSnapshotToGTFSJob.jobId, "Exporting snapshot to GTFS.");
     }
 
@@ -252,7 +253,7 @@ public class SnapshotController {
         Snapshot snapshot = token.retrieveSnapshot();
         Persistence.tokens.removeById(token.id);
         String fileName = snapshot.id + ".zip";
-        return downloadFile(FeedVersion.feedStore.getFeed(fileName), fileName, req, res);
+        return downloadStoredFile(FeedVersion.feedStore, fileName, fileName, null, req, res);
     }
 
     public static void register (String apiPrefix) {
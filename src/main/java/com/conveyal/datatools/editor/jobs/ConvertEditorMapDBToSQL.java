@@ -9,6 +9,7 @@ import com.conveyal.datatools.editor.models.transit.ServiceCalendar;
 import com.conveyal.datatools.editor.models.transit.Trip;
 import com.conveyal.datatools.editor.models.transit.TripPattern;
 import com.conveyal.datatools.editor.models.transit.TripPatternStop;
+import com.conveyal.datatools.editor.utils.EditorNamespaceCache;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -104,6 +105,7 @@ public class ConvertEditorMapDBToSQL extends MonitorableJob {
                 LOG.info("Updating active snapshot to {}", matchingSnapshot.id);
                 FeedSource updatedFeedSource = Persistence.feedSources.updateField(
                         feedSource.id, "editorNamespace", matchingSnapshot.namespace);
+                EditorNamespaceCache.invalidate(feedSource.id);
                 LOG.info("Editor namespace: {}", updatedFeedSource.editorNamespace);
             }
             connection.commit();
@@ -1,6 +1,7 @@
 package com.conveyal.datatools.editor.jobs;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.editor.utils.EditorNamespaceCache;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -157,6 +158,7 @@ public class CreateSnapshotJob extends MonitorableJob {
                         "editorNamespace",
                         snapshot.namespace
                 );
+                EditorNamespaceCache.invalidate(feedSource.id);
             }
             status.completeSuccessfully("Created snapshot!");
         }
@@ -0,0 +1,41 @@
+package com.conveyal.datatools.editor.utils;
+
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.persistence.Persistence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the editor namespace (i.e., the active editor buffer) for each feed source so that the editor write path does
+ * not need to query Mongo for the feed source on every create/update/delete.
+ *
+ * Any code that changes a feed source's editorNamespace (e.g., {@link com.conveyal.datatools.editor.jobs.CreateSnapshotJob}
+ * updating the buffer or a feed source being replaced/deleted) must call {@link #invalidate} after the change has been
+ * persisted. Because the namespace is loaded within {@link ConcurrentHashMap#computeIfAbsent}, an invalidation for a
+ * feed waits for any in-progress load of that feed to finish, so a stale namespace read before the update cannot be
+ * stored after the invalidation.
+ */
+public class EditorNamespaceCache {
+    private static final Map<String, String> namespacesForFeedIds = new ConcurrentHashMap<>();
+
+    /**
+     * Get the editor namespace for the feed source, or null if the feed source does not exist or has not been
+     * snapshotted (null results are not cached).
+     */
+    public static String getNamespace(String feedId) {
+        if (feedId == null) return null;
+        return namespacesForFeedIds.computeIfAbsent(feedId, id -> {
+            FeedSource feedSource = Persistence.feedSources.getById(id);
+            return feedSource != null ? feedSource.editorNamespace : null;
+        });
+    }
+
+    /**
+     * Remove the cached namespace for the feed source. This should be called after the feed source's editor namespace
+     * has been updated in (or the feed source removed from) the database.
+     */
+    public static void invalidate(String feedId) {
+        if (feedId != null) namespacesForFeedIds.remove(feedId);
+    }
+}
@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.editor.datastore.GlobalTx;
 import com.conveyal.datatools.editor.datastore.VersionedDataStore;
@@ -20,7 +21,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.conveyal.datatools.manager.DataManager.initializeApplication;
@@ -103,9 +103,11 @@ public class ConvertMain {
             Set<MonitorableJob> activeJobs = StatusController.filterActiveJobs(StatusController.getAllJobs());
             LOG.info(String.format("%d/%d jobs still active. Checking for completion again in 5 seconds...", activeJobs.size(), totalJobs));
 //            LOG.info(String.join(", ", activeJobs.stream().map(job -> job.name).collect(Collectors.toList())));
-            int jobsInExecutor = ((ThreadPoolExecutor) DataManager.heavyExecutor).getActiveCount();
-            LOG.info(String.format("Jobs in thread pool executor: %d", jobsInExecutor));
-            LOG.info(String.format("Jobs completed by executor: %d", ((ThreadPoolExecutor) DataManager.heavyExecutor).getCompletedTaskCount()));
+            JobExecutor.PoolMetrics metrics = JobExecutor.getMetrics(JobExecutor.HEAVY_POOL);
+            if (metrics != null) {
+                LOG.info(String.format("Jobs in thread pool executor: %d (%d queued)", metrics.running, metrics.queued));
+                LOG.info(String.format("Jobs completed by executor: %d", metrics.completed));
+            }
             Thread.sleep(5000);
         }
         long durationInMillis = System.currentTimeMillis() - startTime;
@@ -141,11 +143,11 @@ public class ConvertMain {
                     if (!feedSourcesEncountered.contains(feedSource.id)) {
                         // If this is the first feed encountered, load the editor buffer.
                         ConvertEditorMapDBToSQL convertEditorBufferToSQL = new ConvertEditorMapDBToSQL(snapshot.id.a, null);
-                        DataManager.heavyExecutor.execute(convertEditorBufferToSQL);
+                        JobExecutor.execute(convertEditorBufferToSQL);
                         count++;
                     }
                     ConvertEditorMapDBToSQL convertEditorMapDBToSQL = new ConvertEditorMapDBToSQL(snapshot.id.a, snapshot.id.b);
-                    DataManager.heavyExecutor.execute(convertEditorMapDBToSQL);
+                    JobExecutor.execute(convertEditorMapDBToSQL);
                     LOG.info(count + "/" + snapshotCount + " snapshot conversion queued");
                     feedSourcesEncountered.add(feedSource.id);
                     count++;
@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager;
 
 import com.bugsnag.Bugsnag;
+import com.conveyal.datatools.common.status.JobJournal;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.CorsFilter;
 import com.conveyal.datatools.common.utils.RequestSummary;
@@ -54,8 +55,6 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
@@ -98,11 +97,7 @@ public class DataManager {
     // ObjectMapper that loads in YAML config files
     private static final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
 
-
-    // Heavy executor should contain long-lived CPU-intensive tasks (e.g., feed loading/validation)
-    public static Executor heavyExecutor = Executors.newFixedThreadPool(4);
-    // light executor is for tasks for things that should finish quickly (e.g., email notifications)
-    public static Executor lightExecutor = Executors.newSingleThreadExecutor();
+    // Note: background jobs are executed via JobExecutor, which manages bounded, configurable pools.
 
     public static String feedBucket;
     public static String bucketFolder;
@@ -165,6 +160,9 @@ public class DataManager {
         // Initialize MongoDB storage
         Persistence.initialize();
 
+        // Re-queue (or mark as interrupted) any jobs that were queued or running when the server last stopped.
+        JobJournal.recoverJobs();
+
         // Initialize scheduled tasks
         Scheduler.initialize();
     }
@@ -65,6 +65,12 @@ public class Auth0Connection {
         if (token == null) {
             logMessageAndHalt(req, 401, "Could not find authorization token");
         }
+        // Skip verification if the token has already been verified (and has not expired).
+        Auth0UserProfile cachedProfile = VerifiedTokenCache.get(token);
+        if (cachedProfile != null) {
+            req.attribute("user", cachedProfile);
+            return;
+        }
         // Handle getting the verifier outside of the below verification try/catch, which is intended to catch issues
         // with the client request. (getVerifier has its own exception/halt handling).
         verifier = getVerifier(req);
@@ -74,6 +80,7 @@ public class Auth0Connection {
             Map<String, Object> jwt = verifier.verify(token);
             remapTokenValues(jwt);
             Auth0UserProfile profile = MAPPER.convertValue(jwt, Auth0UserProfile.class);
+            VerifiedTokenCache.put(token, profile, jwt.get("exp"));
             // The user attribute is used on the server side to check user permissions and does not have all of the
             // fields that the raw Auth0 profile string does.
             req.attribute("user", profile);
@@ -19,6 +19,9 @@ public class Auth0UserProfile {
     String email;
     String user_id;
     AppMetadata app_metadata;
+    /** Index of this user's permissions, built on first use and cleared if the app metadata changes. */
+    @JsonIgnore
+    private transient volatile PermissionIndex permissionIndex;
 
     public Auth0UserProfile() {}
 
@@ -53,6 +56,9 @@ public class Auth0UserProfile {
         return adminUser;
     }
 
+    /** User ID assigned to the system user (i.e., the owner of autonomous server jobs). */
+    public static final String SYSTEM_USER_ID = "user_id:system";
+
     /**
      * Utility method for creating a system user (for autonomous server jobs).
      */
@@ -68,7 +74,7 @@ public class Auth0UserProfile {
         Auth0UserProfile.AppMetadata adminAppMetaData = new Auth0UserProfile.AppMetadata();
         adminAppMetaData.setDatatoolsInfo(adminDatatoolsInfo);
 
-        Auth0UserProfile adminUser = new Auth0UserProfile("system", "user_id:system");
+        Auth0UserProfile adminUser = new Auth0UserProfile("system", SYSTEM_USER_ID);
         adminUser.setApp_metadata(adminAppMetaData);
         return adminUser;
     }
@@ -91,6 +97,7 @@ public class Auth0UserProfile {
 
     public void setApp_metadata(AppMetadata app_metadata) {
         this.app_metadata = app_metadata;
+        this.permissionIndex = null;
     }
 
     public AppMetadata getApp_metadata() { return app_metadata; }
@@ -101,6 +108,25 @@ public class Auth0UserProfile {
         this.app_metadata.getDatatoolsInfo().setPermissions(datatoolsInfo.permissions);
         this.app_metadata.getDatatoolsInfo().setProjects(datatoolsInfo.projects);
         this.app_metadata.getDatatoolsInfo().setSubscriptions(datatoolsInfo.subscriptions);
+        this.permissionIndex = null;
+    }
+
+    /**
+     * Get the index of this user's permissions, which is used for all permission checks below. The index is built from
+     * the app metadata on first use (profiles are cached for the lifetime of the user's token, so this generally
+     * happens once per login rather than once per request).
+     */
+    PermissionIndex retrievePermissionIndex() {
+        PermissionIndex index = permissionIndex;
+        if (index == null) {
+            boolean authDisabled = Auth0Connection.authDisabled();
+            DatatoolsInfo datatoolsInfo = authDisabled || app_metadata == null || app_metadata.datatools == null
+                ? null
+                : app_metadata.getDatatoolsInfo();
+            index = new PermissionIndex(datatoolsInfo, authDisabled);
+            permissionIndex = index;
+        }
+        return index;
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
@@ -287,38 +313,17 @@ public class Auth0UserProfile {
     public boolean hasProject(String projectID, String organizationId) {
         if (canAdministerApplication()) return true;
         if (canAdministerOrganization(organizationId)) return true;
-        if(app_metadata.getDatatoolsInfo() == null || app_metadata.getDatatoolsInfo().projects == null) return false;
-        for(Project project : app_metadata.getDatatoolsInfo().projects) {
-            if (project.project_id.equals(projectID)) return true;
-        }
-        return false;
+        return retrievePermissionIndex().hasProject(projectID);
     }
 
     public boolean canAdministerApplication() {
         // NOTE: user can administer application by default if running without authentication
-        if (Auth0Connection.authDisabled()) return true;
-
-        if(app_metadata.getDatatoolsInfo() != null && app_metadata.getDatatoolsInfo().permissions != null) {
-            for(Permission permission : app_metadata.getDatatoolsInfo().permissions) {
-                if(permission.type.equals("administer-application")) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return retrievePermissionIndex().administerApplication;
     }
 
     public boolean canAdministerOrganization() {
         if (canAdministerApplication()) return true;
-        Organization org = getAuth0Organization();
-        if(app_metadata.getDatatoolsInfo() != null && org != null) {
-            for(Permission permission : org.permissions) {
-                if(permission.type.equals("administer-organization")) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return retrievePermissionIndex().administeredOrganizationId != null;
     }
 
     public Organization getAuth0Organization() {
@@ -341,59 +346,31 @@ public class Auth0UserProfile {
         if (organizationId == null) {
             return false;
         }
-        Organization org = getAuth0Organization();
-        if (org != null && org.organizationId.equals(organizationId)) {
-            for(Permission permission : org.permissions) {
-                if(permission.type.equals("administer-organization")) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return organizationId.equals(retrievePermissionIndex().administeredOrganizationId);
     }
 
     public boolean canAdministerProject(String projectID, String organizationId) {
         if(canAdministerApplication()) return true;
         if(canAdministerOrganization(organizationId)) return true;
-        for(Project project : app_metadata.getDatatoolsInfo().projects) {
-            if (project.project_id.equals(projectID)) {
-                for(Permission permission : project.permissions) {
-                    if(permission.type.equals("administer-project")) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return retrievePermissionIndex().canAdministerProject(projectID);
     }
 
     /** Check that user can administer project. Organization ID is drawn from persisted project. */
     public boolean canAdministerProject(String projectId) {
         if (canAdministerApplication()) return true;
+        PermissionIndex index = retrievePermissionIndex();
+        if (index.canAdministerProject(projectId)) return true;
+        // Only look up the project if the user administers an organization (which may own the project).
+        if (index.administeredOrganizationId == null) return false;
         com.conveyal.datatools.manager.models.Project p = Persistence.projects.getById(projectId);
-        if (p != null && canAdministerOrganization(p.organizationId)) return true;
-        for (Project project : app_metadata.getDatatoolsInfo().projects) {
-            if (project.project_id.equals(projectId)) {
-                for (Permission permission : project.permissions) {
-                    if (permission.type.equals("administer-project")) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return p != null && canAdministerOrganization(p.organizationId);
     }
 
     public boolean canViewFeed(String organizationId, String projectID, String feedID) {
         if (canAdministerApplication() || canAdministerProject(projectID, organizationId)) {
             return true;
         }
-        for(Project project : app_metadata.getDatatoolsInfo().projects) {
-            if (project.project_id.equals(projectID)) {
-                return checkFeedPermission(project, feedID, "view-feed");
-            }
-        }
-        return false;
+        return retrievePermissionIndex().hasFeedPermission(projectID, feedID, PermissionIndex.VIEW_FEED);
     }
 
     /** Check that user has manage feed or view feed permissions. */
@@ -405,39 +382,21 @@ public class Auth0UserProfile {
         if (canAdministerApplication() || canAdministerProject(projectID, organizationId)) {
             return true;
         }
-        Project[] projectList = app_metadata.getDatatoolsInfo().projects;
-        for(Project project : projectList) {
-            if (project.project_id.equals(projectID)) {
-                return checkFeedPermission(project, feedID, "manage-feed");
-            }
-        }
-        return false;
+        return retrievePermissionIndex().hasFeedPermission(projectID, feedID, PermissionIndex.MANAGE_FEED);
     }
 
     public boolean canEditGTFS(String organizationId, String projectID, String feedID) {
         if (canAdministerApplication() || canAdministerProject(projectID, organizationId)) {
             return true;
         }
-        Project[] projectList = app_metadata.getDatatoolsInfo().projects;
-        for(Project project : projectList) {
-            if (project.project_id.equals(projectID)) {
-                return checkFeedPermission(project, feedID, "edit-gtfs");
-            }
-        }
-        return false;
+        return retrievePermissionIndex().hasFeedPermission(projectID, feedID, PermissionIndex.EDIT_GTFS);
     }
 
     public boolean canApproveGTFS(String organizationId, String projectID, String feedID) {
         if (canAdministerApplication() || canAdministerProject(projectID, organizationId)) {
             return true;
         }
-        Project[] projectList = app_metadata.getDatatoolsInfo().projects;
-        for(Project project : projectList) {
-            if (project.project_id.equals(projectID)) {
-                return checkFeedPermission(project, feedID, "approve-gtfs");
-            }
-        }
-        return false;
+        return retrievePermissionIndex().hasFeedPermission(projectID, feedID, PermissionIndex.APPROVE_GTFS);
     }
 
     public boolean checkFeedPermission(Project project, String feedID, String permissionType) {
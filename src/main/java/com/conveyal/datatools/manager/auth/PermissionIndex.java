@@ -0,0 +1,104 @@
+package com.conveyal.datatools.manager.auth;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index of the permissions in a user's Auth0 profile, so that permission checks (which may be made for every feed
+ * source in a list response) are map lookups and bit tests rather than scans over the profile's project, permission and
+ * feed arrays. The index is built once per profile (see {@link Auth0UserProfile#retrievePermissionIndex()}) and is
+ * immutable.
+ */
+class PermissionIndex {
+    static final int VIEW_FEED = 1;
+    static final int MANAGE_FEED = 1 << 1;
+    static final int EDIT_GTFS = 1 << 2;
+    static final int APPROVE_GTFS = 1 << 3;
+    private static final Map<String, Integer> bitsForFeedPermissionTypes = new HashMap<>();
+
+    static {
+        bitsForFeedPermissionTypes.put("view-feed", VIEW_FEED);
+        bitsForFeedPermissionTypes.put("manage-feed", MANAGE_FEED);
+        bitsForFeedPermissionTypes.put("edit-gtfs", EDIT_GTFS);
+        bitsForFeedPermissionTypes.put("approve-gtfs", APPROVE_GTFS);
+    }
+
+    final boolean administerApplication;
+    /** The ID of the user's organization if the user can administer it, otherwise null. */
+    final String administeredOrganizationId;
+    private final Map<String, ProjectPermissions> permissionsForProjectIds;
+
+    PermissionIndex(Auth0UserProfile.DatatoolsInfo datatoolsInfo, boolean authDisabled) {
+        boolean administerApplication = authDisabled;
+        String administeredOrganizationId = null;
+        Map<String, ProjectPermissions> permissionsForProjectIds = new HashMap<>();
+        if (datatoolsInfo != null) {
+            administerApplication |= hasPermission(datatoolsInfo.permissions, "administer-application");
+            Auth0UserProfile.Organization[] organizations = datatoolsInfo.organizations;
+            if (organizations != null && organizations.length != 0 && organizations[0] != null &&
+                hasPermission(organizations[0].permissions, "administer-organization")) {
+                administeredOrganizationId = organizations[0].organizationId;
+            }
+            if (datatoolsInfo.projects != null) {
+                for (Auth0UserProfile.Project project : datatoolsInfo.projects) {
+                    permissionsForProjectIds
+                        .computeIfAbsent(project.project_id, id -> new ProjectPermissions())
+                        .add(project);
+                }
+            }
+        }
+        this.administerApplication = administerApplication;
+        this.administeredOrganizationId = administeredOrganizationId;
+        this.permissionsForProjectIds = Collections.unmodifiableMap(permissionsForProjectIds);
+    }
+
+    boolean hasProject(String projectId) {
+        return permissionsForProjectIds.containsKey(projectId);
+    }
+
+    boolean canAdministerProject(String projectId) {
+        ProjectPermissions permissions = permissionsForProjectIds.get(projectId);
+        return permissions != null && permissions.administerProject;
+    }
+
+    /** Check whether the user has the feed permission (one of the bits defined above) for the project's feed. */
+    boolean hasFeedPermission(String projectId, String feedId, int permission) {
+        ProjectPermissions permissions = permissionsForProjectIds.get(projectId);
+        if (permissions == null) return false;
+        int bits = permissions.allFeedsBits | permissions.bitsForFeedIds.getOrDefault(feedId, 0);
+        return (bits & permission) != 0;
+    }
+
+    private static boolean hasPermission(Auth0UserProfile.Permission[] permissions, String type) {
+        if (permissions == null) return false;
+        for (Auth0UserProfile.Permission permission : permissions) {
+            if (type.equals(permission.type)) return true;
+        }
+        return false;
+    }
+
+    /** The permissions for a single project. */
+    private static class ProjectPermissions {
+        boolean administerProject;
+        /** Permission bits that apply to every feed in the project (i.e., granted for the "*" feed). */
+        int allFeedsBits;
+        final Map<String, Integer> bitsForFeedIds = new HashMap<>();
+
+        void add(Auth0UserProfile.Project project) {
+            if (project.permissions == null) return;
+            for (Auth0UserProfile.Permission permission : project.permissions) {
+                if ("administer-project".equals(permission.type)) administerProject = true;
+                Integer bit = bitsForFeedPermissionTypes.get(permission.type);
+                if (bit == null) continue;
+                // Permission-specific feeds take precedence over the project's default feeds.
+                String[] feeds = permission.feeds != null ? permission.feeds : project.defaultFeeds;
+                if (feeds == null) continue;
+                for (String feedId : feeds) {
+                    if ("*".equals(feedId)) allFeedsBits |= bit;
+                    else bitsForFeedIds.merge(feedId, bit, (a, b) -> a | b);
+                }
+            }
+        }
+    }
+}
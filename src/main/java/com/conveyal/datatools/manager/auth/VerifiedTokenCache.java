@@ -0,0 +1,60 @@
+package com.conveyal.datatools.manager.auth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the user profiles for tokens that have been verified by {@link Auth0Connection}, so that the token signature
+ * does not need to be verified (and the claims converted into a profile) on every request. A cached profile is only
+ * returned until the token expires (or at most {@link #MAX_AGE_MILLIS} after it was verified, whichever is sooner),
+ * after which the token must be verified again (and will be rejected if it has expired).
+ *
+ * Cached profiles are shared between requests with the same token, so controllers must not modify the user profile
+ * attached to a request.
+ */
+class VerifiedTokenCache {
+    /** Maximum number of tokens (i.e., concurrent user sessions) to cache. */
+    private static final int MAX_TOKENS = 1000;
+    private static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /** Cached tokens in access order (i.e., least recently used first). */
+    private static final Map<String, Entry> entriesForTokens = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_TOKENS;
+        }
+    };
+
+    /** Get the profile for the token, or null if the token has not been verified or its cache entry has expired. */
+    static synchronized Auth0UserProfile get(String token) {
+        Entry entry = entriesForTokens.get(token);
+        if (entry == null) return null;
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            entriesForTokens.remove(token);
+            return null;
+        }
+        return entry.profile;
+    }
+
+    /**
+     * Cache the profile for a verified token. The expiration is taken from the token's exp claim (in seconds since the
+     * epoch), if present.
+     */
+    static synchronized void put(String token, Auth0UserProfile profile, Object expirationClaim) {
+        long expiresAt = System.currentTimeMillis() + MAX_AGE_MILLIS;
+        if (expirationClaim instanceof Number) {
+            expiresAt = Math.min(expiresAt, TimeUnit.SECONDS.toMillis(((Number) expirationClaim).longValue()));
+        }
+        entriesForTokens.put(token, new Entry(profile, expiresAt));
+    }
+
+    private static class Entry {
+        final Auth0UserProfile profile;
+        final long expiresAt;
+
+        Entry(Auth0UserProfile profile, long expiresAt) {
+            this.profile = profile;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.conveyal.datatools.manager.controllers;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.status.MonitorableJob;
-import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
 import com.conveyal.datatools.manager.jobs.ValidateFeedJob;
@@ -20,19 +20,25 @@ import com.conveyal.gtfs.validator.ValidationResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.http.HttpServletResponse;
+
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.mongodb.client.model.Filters.and;
@@ -51,8 +57,9 @@ import static spark.Spark.post;
 public class DumpController {
     public static final Logger LOG = LoggerFactory.getLogger(DumpController.class);
     /**
-     * Represents a snapshot of the database. This requires loading the entire database into RAM.
-     * This shouldn't be an issue, though, as the feeds are stored separately. This is only metadata.
+     * Represents a snapshot of the database. Loading a dump requires reading the entire database into RAM. This shouldn't
+     * be an issue, though, as the feeds are stored separately. This is only metadata. Note: {@link #dump} streams the
+     * same structure directly from the database, so any field added here should also be added there.
      */
     public static class DatabaseState {
         public Collection<Project> projects;
@@ -88,17 +95,25 @@ public class DumpController {
      * is permitted (e.g., using a cloned database on a local development machine). Otherwise, application data is
      * visible to the entire world.
      */
-    public static DatabaseState dump (Request req, Response res) throws JsonProcessingException {
-//        // FIXME this appears to be capable of using unbounded amounts of memory (it copies an entire database into memory)
-        DatabaseState db = new DatabaseState();
-        db.projects = Persistence.projects.getAll();
-        db.feedSources = Persistence.feedSources.getAll();
-        db.feedVersions = Persistence.feedVersions.getAll();
-        db.notes = Persistence.notes.getAll();
-        db.deployments = Persistence.deployments.getAll();
-        db.externalProperties = Persistence.externalFeedSourceProperties.getAll();
-        db.snapshots = Persistence.snapshots.getAll();
-        return db;
+    public static HttpServletResponse dump (Request req, Response res) {
+        // Each collection is streamed from Mongo directly into the response (matching the structure of DatabaseState)
+        // so that memory usage does not grow with the size of the database.
+        Map<String, Supplier<Stream<?>>> collections = new LinkedHashMap<>();
+        collections.put("projects", Persistence.projects::streamAll);
+        collections.put("feedSources", Persistence.feedSources::streamAll);
+        collections.put("feedVersions", Persistence.feedVersions::streamAll);
+        collections.put("notes", Persistence.notes::streamAll);
+        collections.put("deployments", Persistence.deployments::streamAll);
+        collections.put("externalProperties", Persistence.externalFeedSourceProperties::streamAll);
+        collections.put("snapshots", Persistence.snapshots::streamAll);
+        HttpServletResponse raw = res.raw();
+        raw.setContentType("application/json");
+        try {
+            json.writeStreams(collections, raw.getOutputStream());
+        } catch (IOException e) {
+            logMessageAndHalt(req, 500, "Could not write database dump to output stream", e);
+        }
+        return raw;
     }
     // FIXME: This can now be authenticated because users are stored in Auth0.
     // this is not authenticated, because it has to happen with a bare database (i.e. no users)
@@ -347,25 +362,26 @@ public class DumpController {
      */
     public static boolean validateAll (boolean load, boolean force, String filterFeedId) throws Exception {
         LOG.info("validating all feeds...");
-        Collection<FeedVersion> allVersions = Persistence.feedVersions.getAll();
-        for(FeedVersion version: allVersions) {
-            ValidationResult result = version.validationResult;
-            if(!force && result != null && result.fatalException != null) {
-                // If the force option is not true and the validation result did not fail, re-validate.
-                continue;
-            }
-            MonitorableJob job;
-            if (filterFeedId != null && !version.feedSourceId.equals(filterFeedId)) {
-                // Skip all feeds except Cortland for now.
-                continue;
-            }
-            Auth0UserProfile systemUser = Auth0UserProfile.createSystemUser();
-            if (load) {
-                job = new ProcessSingleFeedJob(version, systemUser, false);
-            } else {
-                job = new ValidateFeedJob(version, systemUser, false);
+        // Filter on feed source (if requested) in the database query and iterate over a cursor rather than loading
+        // every feed version into memory.
+        Bson filter = filterFeedId != null ? eq("feedSourceId", filterFeedId) : null;
+        try (Stream<FeedVersion> versions = Persistence.feedVersions.stream(filter)) {
+            for (Iterator<FeedVersion> iterator = versions.iterator(); iterator.hasNext(); ) {
+                FeedVersion version = iterator.next();
+                ValidationResult result = version.validationResult;
+                if(!force && result != null && result.fatalException != null) {
+                    // If the force option is not true and the validation result did not fail, re-validate.
+                    continue;
+                }
+                MonitorableJob job;
+                Auth0UserProfile systemUser = Auth0UserProfile.createSystemUser();
+                if (load) {
+                    job = new ProcessSingleFeedJob(version, systemUser, false);
+                } else {
+                    job = new ValidateFeedJob(version, systemUser, false);
+                }
+                JobExecutor.execute(job);
             }
-            DataManager.heavyExecutor.execute(job);
         }
         // ValidateAllFeedsJob validateAllFeedsJob = new ValidateAllFeedsJob("system", force, load);
         return true;
@@ -382,7 +398,7 @@ public class DumpController {
             boolean load = request.queryParams("load") != null && request.queryParams("load").equals("true");
             return validateAll(load, force, null);
         }, json::write);
-        get(apiPrefix + "dump", DumpController::dump, json::write);
+        get(apiPrefix + "dump", DumpController::dump);
         LOG.warn("registered dump w/ prefix " + apiPrefix);
     }
 }
@@ -10,10 +10,10 @@ import com.amazonaws.services.ec2.model.Instance;
 import com.amazonaws.services.ec2.model.Reservation;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3URI;
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.AWSUtils;
 import com.conveyal.datatools.common.utils.SparkUtils;
-import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.jobs.DeployJob;
 import com.conveyal.datatools.manager.models.Deployment;
@@ -33,9 +33,9 @@ import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
-import java.io.File;
-import java.io.FileInputStream;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -153,31 +153,24 @@ public class DeploymentController {
     }
 
     /**
-     * Download all of the GTFS files in the feed.
+     * Download all of the GTFS files in the feed. The bundle is streamed directly to the response rather than written to
+     * a temp file first.
      *
      * TODO: Should there be an option to download the OSM network as well?
      */
-    private static FileInputStream downloadDeployment (Request req, Response res) throws IOException {
+    private static HttpServletResponse downloadDeployment (Request req, Response res) throws IOException {
         Deployment deployment = getDeploymentWithPermissions(req, res);
-        // Create temp file in order to generate input stream.
-        File temp = File.createTempFile("deployment", ".zip");
-        // just include GTFS, not any of the ancillary information
-        deployment.dump(temp, false, false, false);
-        FileInputStream fis = new FileInputStream(temp);
         String cleanName = deployment.name.replaceAll("[^a-zA-Z0-9]", "");
-        res.type("application/zip");
-        res.header("Content-Disposition", String.format("attachment;filename=%s.zip", cleanName));
-
-        // Delete temp file to avoid filling up disk space.
-        // Note: file will not actually be deleted until download has completed.
-        // http://stackoverflow.com/questions/24372279
-        if (temp.delete()) {
-            LOG.info("Temp deployment file at {} successfully deleted.", temp.getAbsolutePath());
-        } else {
-            LOG.warn("Temp deployment file at {} could not be deleted. Disk space may fill up!", temp.getAbsolutePath());
+        HttpServletResponse raw = res.raw();
+        raw.setContentType("application/zip");
+        raw.setHeader("Content-Disposition", String.format("attachment;filename=%s.zip", cleanName));
+        // Override the gzip content encoding applied to standard API responses.
+        raw.setHeader("Content-Encoding", "identity");
+        // just include GTFS, not any of the ancillary information
+        try (OutputStream out = raw.getOutputStream()) {
+            deployment.dump(out, false, false, false);
         }
-
-        return fis;
+        return raw;
     }
 
     /**
@@ -485,7 +478,7 @@ public class DeploymentController {
 
         // Execute the deployment job and keep track of it in the jobs for server map.
         DeployJob job = new DeployJob(deployment, userProfile, otpServer);
-        DataManager.heavyExecutor.execute(job);
+        JobExecutor.execute(job);
         deploymentJobsByServer.put(target, job);
 
         return SparkUtils.formatJobMessage(job.jobId, "Deployment initiating.");
@@ -1,5 +1,7 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobExecutor;
+import com.conveyal.datatools.editor.utils.EditorNamespaceCache;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.auth.Actions;
@@ -30,11 +32,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
 import static com.conveyal.datatools.common.utils.SparkUtils.getPOJOFromRequestBody;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.conveyal.datatools.manager.models.ExternalFeedSourceProperty.constructId;
+import static com.mongodb.client.model.Filters.eq;
 import static spark.Spark.delete;
 import static spark.Spark.get;
 import static spark.Spark.post;
@@ -69,18 +73,18 @@ public class FeedSourceController {
         if (project == null) {
             logMessageAndHalt(req, 400, "Must provide valid projectId query param to retrieve feed sources.");
         }
-        Collection<FeedSource> projectFeedSources = project.retrieveProjectFeedSources();
-        for (FeedSource source: projectFeedSources) {
-            String orgId = source.organizationId();
-            // If user can view or manage feed, add to list of feeds to return. NOTE: By default most users with access
-            // to a project should be able to view all feed sources. Custom privileges would need to be provided to
-            // override this behavior.
-            if (
-                source.projectId != null && source.projectId.equals(projectId) &&
-                    user.canManageOrViewFeed(orgId, source.projectId, source.id)
-            ) {
-                feedSourcesToReturn.add(source);
-            }
+        // Stream the project's feed sources so that only those the user is permitted to see are held in memory.
+        try (Stream<FeedSource> projectFeedSources = Persistence.feedSources.stream(eq("projectId", projectId))) {
+            // All feed sources share the parent project's organization, so avoid looking up the project per source.
+            String orgId = project.organizationId;
+            projectFeedSources.forEach(source -> {
+                // If user can view or manage feed, add to list of feeds to return. NOTE: By default most users with
+                // access to a project should be able to view all feed sources. Custom privileges would need to be
+                // provided to override this behavior.
+                if (user.canManageOrViewFeed(orgId, source.projectId, source.id)) {
+                    feedSourcesToReturn.add(source);
+                }
+            });
         }
         return feedSourcesToReturn;
     }
@@ -163,8 +167,18 @@ public class FeedSourceController {
         if (formerFeedSource.url != null && !formerFeedSource.url.equals(updatedFeedSource.url)) {
             LOG.info("Feed source fetch URL has been modified. Resetting lastFetched value from {} to {}", formerFeedSource.lastFetched, null);
             updatedFeedSource.lastFetched = null;
+            updatedFeedSource.lastFetchETag = null;
+            updatedFeedSource.lastFetchLastModified = null;
+            updatedFeedSource.lastFetchContentLength = null;
+        } else {
+            // The fetch validators are managed by the server, so keep them when the request body omits them.
+            updatedFeedSource.lastFetchETag = formerFeedSource.lastFetchETag;
+            updatedFeedSource.lastFetchLastModified = formerFeedSource.lastFetchLastModified;
+            updatedFeedSource.lastFetchContentLength = formerFeedSource.lastFetchContentLength;
         }
         Persistence.feedSources.replace(feedSourceId, updatedFeedSource);
+        // The replaced feed source may reference a different editor buffer.
+        EditorNamespaceCache.invalidate(feedSourceId);
         // Notify feed- and project-subscribed users after successful save
         NotifyUsersForSubscriptionJob.createNotification(
             "feed-updated",
@@ -252,10 +266,10 @@ public class FeedSourceController {
         }
         LOG.info("Fetching feed at {} for source {}", s.url, s.name);
         Auth0UserProfile userProfile = req.attribute("user");
-        // Run in light executor, but if a new feed is found, do not continue thread (a new one will be started in
-        // heavyExecutor in the body of the fetch job.
+        // If a new feed is found, do not continue thread (a separate processing job will be queued in the body of the
+        // fetch job).
         FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(s, userProfile, false);
-        DataManager.lightExecutor.execute(fetchSingleFeedJob);
+        JobExecutor.execute(fetchSingleFeedJob);
 
         // Return the jobId so that the requester can track the job's progress.
         return formatJobMessage(fetchSingleFeedJob.jobId, "Fetching latest feed source.");
@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.utils.SparkUtils;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
@@ -17,6 +18,7 @@ import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -38,6 +40,7 @@ import java.util.Set;
 import static com.conveyal.datatools.common.utils.AWSUtils.downloadFromS3;
 import static com.conveyal.datatools.common.utils.SparkUtils.copyRequestStreamIntoFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.downloadFile;
+import static com.conveyal.datatools.common.utils.SparkUtils.downloadStoredFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.conveyal.datatools.manager.controllers.api.FeedSourceController.checkFeedSourcePermissions;
@@ -67,7 +70,8 @@ public class FeedVersionController  {
     private static Collection<FeedVersion> getAllFeedVersionsForFeedSource(Request req, Response res) {
         // Check permissions and get the FeedSource whose FeedVersions we want.
         FeedSource feedSource = requestFeedSourceById(req, Actions.VIEW);
-        return feedSource.retrieveFeedVersions();
+        // Resolve related objects (e.g., previous/next version IDs) in bulk ahead of serialization.
+        return FeedVersion.prefetchRelatedObjects(feedSource.retrieveFeedVersions());
     }
 
     public static FeedSource requestFeedSourceById(Request req, Actions action, String paramName) {
@@ -113,7 +117,7 @@ public class FeedVersionController  {
 
         // Check that the hashes of the feeds don't match, i.e. that the feed has changed since the last version.
         // (as long as there is a latest version, i.e. the feed source is not completely new)
-        if (latestVersion != null && latestVersion.hash.equals(newFeedVersion.hash)) {
+        if (newFeedVersion.hasSameContentAs(latestVersion)) {
             // Uploaded feed matches latest. Delete GTFS file because it is a duplicate.
             LOG.error("Upload version {} matches latest version {}.", newFeedVersion.id, latestVersion.id);
             newGtfsFile.delete();
@@ -123,12 +127,17 @@ public class FeedVersionController  {
             logMessageAndHalt(req, 304, "Uploaded feed is identical to the latest version known to the database.");
         }
 
+        for (FeedVersion identicalVersion : newFeedVersion.retrieveVersionsWithSameContent()) {
+            // Identical content in other feed sources is permitted, but note it in case it was uploaded by mistake.
+            LOG.info("Uploaded version {} is identical to version {} (feed source {}).", newFeedVersion.id,
+                identicalVersion.id, identicalVersion.feedSourceId);
+        }
         newFeedVersion.name = newFeedVersion.formattedTimestamp() + " Upload";
         // TODO newFeedVersion.fileTimestamp still exists
 
         // Must be handled by executor because it takes a long time.
         ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(newFeedVersion, userProfile, true);
-        DataManager.heavyExecutor.execute(processSingleFeedJob);
+        JobExecutor.execute(processSingleFeedJob);
 
         return formatJobMessage(processSingleFeedJob.jobId, "Feed version is processing.");
     }
@@ -154,7 +163,7 @@ public class FeedVersionController  {
         }
         CreateFeedVersionFromSnapshotJob createFromSnapshotJob =
             new CreateFeedVersionFromSnapshotJob(feedSource, snapshot, userProfile);
-        DataManager.heavyExecutor.execute(createFromSnapshotJob);
+        JobExecutor.execute(createFromSnapshotJob);
 
         return true;
     }
@@ -197,7 +206,15 @@ public class FeedVersionController  {
 
     private static HttpServletResponse downloadFeedVersionDirectly(Request req, Response res) {
         FeedVersion version = requestFeedVersion(req, Actions.VIEW);
-        return downloadFile(version.retrieveGtfsFile(), version.id, req, res);
+        return downloadStoredFile(FeedVersion.feedStore, version.id, version.id, getETag(version), req, res);
+    }
+
+    /**
+     * Get the ETag for a feed version's GTFS file, which is the full-content hash of the file. Legacy hashes only
+     * sample the file (see HashUtils#hashFileSample), so they cannot be used to validate resumed downloads.
+     */
+    private static String getETag(FeedVersion version) {
+        return HashUtils.isLegacyHash(version.hash) ? null : version.hash;
     }
 
     /**
@@ -261,18 +278,25 @@ public class FeedVersionController  {
 
     /**
      * HTTP endpoint to initiate an export of a shapefile containing the stops or routes of one or
-     * more feed versions. NOTE: the job ID returned must be used by the requester to download the
-     * zipped shapefile once the job has completed.
+     * more feed versions (or GeoJSON files if the format query param is GEOJSON). NOTE: the job ID
+     * returned must be used by the requester to download the zipped shapefile once the job has completed.
      */
     private static String exportGis (Request req, Response res) throws IOException {
         String type = req.queryParams("type");
         Auth0UserProfile userProfile = req.attribute("user");
         List<String> feedIds = Arrays.asList(req.queryParams("feedId").split(","));
+        String format = req.queryParamOrDefault("format", GisExportJob.ExportFormat.SHAPEFILE.name());
+        GisExportJob.ExportFormat exportFormat = null;
+        try {
+            exportFormat = GisExportJob.ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logMessageAndHalt(req, 400, String.format("Unsupported GIS export format: %s", format));
+        }
         File temp = File.createTempFile("gis_" + type, ".zip");
-        // Create and run shapefile export.
+        // Create and run shapefile (or GeoJSON) export.
         GisExportJob.ExportType exportType = GisExportJob.ExportType.valueOf(type);
-        GisExportJob gisExportJob = new GisExportJob(exportType, temp, feedIds, userProfile);
-        DataManager.heavyExecutor.execute(gisExportJob);
+        GisExportJob gisExportJob = new GisExportJob(exportType, exportFormat, temp, feedIds, userProfile);
+        JobExecutor.execute(gisExportJob);
         // Do not use S3 to store the file, which should only be stored ephemerally (until requesting
         // user has downloaded file).
         FeedDownloadToken token = new FeedDownloadToken(gisExportJob);
@@ -346,7 +370,7 @@ public class FeedVersionController  {
         // Kick off merge feeds job.
         Auth0UserProfile userProfile = req.attribute("user");
         MergeFeedsJob mergeFeedsJob = new MergeFeedsJob(userProfile, versions, "merged", mergeType);
-        DataManager.heavyExecutor.execute(mergeFeedsJob);
+        JobExecutor.execute(mergeFeedsJob);
         return SparkUtils.formatJobMessage(mergeFeedsJob.jobId, "Merging feed versions...");
     }
 
@@ -370,8 +394,7 @@ public class FeedVersionController  {
         LOG.info("Using token {} to download feed version {}", token.id, version.id);
         // Remove token so that it cannot be used again for feed download
         Persistence.tokens.removeById(tokenValue);
-        File file = version.retrieveGtfsFile();
-        return downloadFile(file, version.id, req, res);
+        return downloadStoredFile(FeedVersion.feedStore, version.id, version.id, getETag(version), req, res);
     }
 
     public static void register (String apiPrefix) {
@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.utils.SparkUtils;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
@@ -75,12 +76,11 @@ public class GtfsPlusController {
         LOG.info("Downloading GTFS+ file for FeedVersion " + feedVersionId);
 
         // check for saved
-        File file = gtfsPlusStore.getFeed(feedVersionId);
-        if (file == null) {
+        if (!gtfsPlusStore.feedExists(feedVersionId)) {
             return getGtfsPlusFromGtfs(feedVersionId, req, res);
         }
         LOG.info("Returning updated GTFS+ data");
-        return SparkUtils.downloadFile(file, file.getName() + ".zip", req, res);
+        return SparkUtils.downloadStoredFile(gtfsPlusStore, feedVersionId, feedVersionId + ".zip", null, req, res);
     }
 
     /**
@@ -128,7 +128,12 @@ public class GtfsPlusController {
             logMessageAndHalt(req, 500, "An error occurred while trying to create a gtfs file", e);
         }
 
-        return SparkUtils.downloadFile(gtfsPlusFile, gtfsPlusFile.getName() + ".zip", req, res);
+        try {
+            return SparkUtils.downloadFile(gtfsPlusFile, gtfsPlusFile.getName() + ".zip", req, res);
+        } finally {
+            // The extracted GTFS+ tables are only needed for this download.
+            gtfsPlusFile.delete();
+        }
     }
 
     /** HTTP endpoint used to return the last modified timestamp for a GTFS+ feed. Essentially this is used as a way to
@@ -239,7 +244,7 @@ public class GtfsPlusController {
 
         // Must be handled by executor because it takes a long time.
         ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(newFeedVersion, profile, true);
-        DataManager.heavyExecutor.execute(processSingleFeedJob);
+        JobExecutor.execute(processSingleFeedJob);
 
         return formatJobMessage(processSingleFeedJob.jobId, "Feed version is processing.");
     }
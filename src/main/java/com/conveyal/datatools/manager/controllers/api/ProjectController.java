@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.common.utils.SparkUtils;
 import com.conveyal.datatools.manager.DataManager;
@@ -27,9 +28,10 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.AWSUtils.downloadFromS3;
-import static com.conveyal.datatools.common.utils.SparkUtils.downloadFile;
+import static com.conveyal.datatools.common.utils.SparkUtils.downloadStoredFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.conveyal.datatools.manager.DataManager.publicPath;
@@ -53,11 +55,13 @@ public class ProjectController {
      */
     private static Collection<Project> getAllProjects(Request req, Response res) {
         Auth0UserProfile userProfile = req.attribute("user");
-        // TODO: move this filtering into database query to reduce traffic / memory
-        return Persistence.projects.getAll().stream()
+        // Projects are streamed from the database so that only those visible to the user are held in memory.
+        try (Stream<Project> projects = Persistence.projects.streamAll()) {
+            return projects
                 .filter(p -> req.pathInfo().matches(publicPath) || userProfile.hasProject(p.id, p.organizationId))
                 .map(p -> checkProjectPermissions(req, p, "view"))
                 .collect(Collectors.toList());
+        }
     }
 
     /**
@@ -256,7 +260,7 @@ public class ProjectController {
             }
         }
         MergeFeedsJob mergeFeedsJob = new MergeFeedsJob(userProfile, feedVersions, project.id, REGIONAL);
-        DataManager.heavyExecutor.execute(mergeFeedsJob);
+        JobExecutor.execute(mergeFeedsJob);
         // Return job ID to requester for monitoring job status.
         return formatJobMessage(mergeFeedsJob.jobId, "Merge operation is processing.");
     }
@@ -298,7 +302,7 @@ public class ProjectController {
         }
         // Run as lightweight job.
         PublishProjectFeedsJob publishProjectFeedsJob = new PublishProjectFeedsJob(p, userProfile);
-        DataManager.lightExecutor.execute(publishProjectFeedsJob);
+        JobExecutor.execute(publishProjectFeedsJob);
         return formatJobMessage(publishProjectFeedsJob.jobId, "Publishing public feeds");
     }
 
@@ -377,7 +381,7 @@ public class ProjectController {
 
         Persistence.tokens.removeById(token.id);
         String fileName = project.id + ".zip";
-        return downloadFile(FeedVersion.feedStore.getFeed(fileName), fileName, req, res);
+        return downloadStoredFile(FeedVersion.feedStore, fileName, fileName, null, req, res);
     }
 
 }
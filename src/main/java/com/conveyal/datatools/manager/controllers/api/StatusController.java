@@ -1,10 +1,14 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobExecutor;
+import com.conveyal.datatools.common.status.JobStatusStream;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.RequestSummary;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.JsonViews;
+import com.conveyal.datatools.manager.persistence.FeedCache;
+import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import com.google.common.collect.Sets;
 import org.slf4j.Logger;
@@ -17,6 +21,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -57,6 +62,28 @@ public class StatusController {
             .collect(Collectors.toList());
     }
 
+    /**
+     * Admin API route to return queue metrics (queue depth, running jobs, etc.) for each job execution pool.
+     */
+    private static Map<String, JobExecutor.PoolMetrics> getJobQueuesRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        if (!userProfile.canAdministerApplication()) {
+            logMessageAndHalt(req, 401, "User not authorized to view job queues");
+        }
+        return JobExecutor.getMetrics();
+    }
+
+    /**
+     * Admin API route to return hit/miss and disk usage metrics for the cache of feeds downloaded from S3.
+     */
+    private static FeedCache.Metrics getFeedCacheRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        if (!userProfile.canAdministerApplication()) {
+            logMessageAndHalt(req, 401, "User not authorized to view feed cache");
+        }
+        return FeedStore.getCacheMetrics();
+    }
+
     public static Set<MonitorableJob> getAllJobs() {
         return DataManager.userJobsMap.values().stream()
                 .flatMap(Collection::stream)
@@ -174,8 +201,13 @@ public class StatusController {
     public static void register (String apiPrefix) {
 
         get(apiPrefix + "secure/status/requests", StatusController::getAllRequestsRoute, json::write);
+        get(apiPrefix + "secure/status/queues", StatusController::getJobQueuesRoute, json::write);
+        get(apiPrefix + "secure/status/feedcache", StatusController::getFeedCacheRoute, json::write);
         // These endpoints return all jobs for the current user, all application jobs, or a specific job
         get(apiPrefix + "secure/status/jobs", StatusController::getUserJobsRoute, json::write);
+        // Stream of status changes for the current user's jobs (alternative to polling the endpoint above). Note: this
+        // must be registered before the jobId route.
+        get(apiPrefix + "secure/status/jobs/stream", JobStatusStream::subscribe);
         // FIXME Change endpoint for all jobs (to avoid overlap with jobId param)?
         get(apiPrefix + "secure/status/jobs/all", StatusController::getAllJobsRoute, json::write);
         get(apiPrefix + "secure/status/jobs/:jobId", StatusController::getOneJobRoute, json::write);
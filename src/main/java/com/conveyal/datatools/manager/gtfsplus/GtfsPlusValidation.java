@@ -1,28 +1,30 @@
 package com.conveyal.datatools.manager.gtfsplus;
 
-import com.conveyal.datatools.common.utils.Consts;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
-import com.conveyal.gtfs.GTFSFeed;
+import com.csvreader.CsvReader;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.apache.commons.io.input.BOMInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -32,6 +34,16 @@ public class GtfsPlusValidation implements Serializable {
     private static final Logger LOG = LoggerFactory.getLogger(GtfsPlusValidation.class);
     private static final FeedStore gtfsPlusStore = new FeedStore(DataManager.GTFS_PLUS_SUBDIR);
     private static final String NOT_FOUND = "not found in GTFS";
+    /** Number of feed versions for which table validation results are kept (see {@link #getTableResult}). */
+    private static final int MAX_CACHED_VERSIONS = 50;
+    /** Validation results for the tables of recently validated feed versions, keyed on feed version ID. */
+    private static final Map<String, Map<String, TableResult>> tableResultsForVersions =
+        new LinkedHashMap<String, Map<String, TableResult>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, TableResult>> eldest) {
+                return size() > MAX_CACHED_VERSIONS;
+            }
+        };
 
     // Public fields to appear in validation JSON.
     public final String feedVersionId;
@@ -46,9 +58,9 @@ public class GtfsPlusValidation implements Serializable {
     }
 
     /**
-     * Validate a GTFS+ feed and return a list of issues encountered.
-     * FIXME: For now this uses the MapDB-backed GTFSFeed class. Which actually suggests that this might
-     *   should be contained within a MonitorableJob.
+     * Validate a GTFS+ feed and return a list of issues encountered. References to GTFS entities (routes, stops, etc.)
+     * are checked against the feed version's SQL namespace (see {@link ReferenceIds}). Tables whose contents have not
+     * changed since they were last validated for the feed version are not validated again.
      */
     public static GtfsPlusValidation validate(String feedVersionId) throws Exception {
         GtfsPlusValidation validation = new GtfsPlusValidation(feedVersionId);
@@ -58,29 +70,11 @@ public class GtfsPlusValidation implements Serializable {
         LOG.info("Validating GTFS+ for " + feedVersionId);
 
         FeedVersion feedVersion = Persistence.feedVersions.getById(feedVersionId);
-        // Load the main GTFS file.
-        // FIXME: Swap MapDB-backed GTFSFeed for use of SQL data?
-        File gtfsFeedDbFile = gtfsPlusStore.getFeedFile(feedVersionId + ".db");
-        String gtfsFeedDbFilePath = gtfsFeedDbFile.getAbsolutePath();
-        GTFSFeed gtfsFeed;
-        try {
-            // This check for existence must occur before GTFSFeed is instantiated (and the file must be discarded
-            // immediately).
-            boolean dbExists = gtfsFeedDbFile.isFile();
-            gtfsFeed = new GTFSFeed(gtfsFeedDbFilePath);
-            if (!dbExists) {
-                LOG.info("Loading GTFS file into new MapDB file (.db).");
-                gtfsFeed.loadFromFile(new ZipFile(feedVersion.retrieveGtfsFile().getAbsolutePath()));
-            }
-        } catch (Exception e) {
-            LOG.error("MapDB file for GTFSFeed appears to be corrupted. Deleting and trying to load from zip file.", e);
-            // Error loading MapDB file. Delete and try to reload.
-            gtfsFeedDbFile.delete();
-            new File(gtfsFeedDbFilePath + ".p").delete();
-            LOG.info("Attempt #2 to load GTFS file into new MapDB file (.db).");
-            gtfsFeed = new GTFSFeed(gtfsFeedDbFilePath);
-            gtfsFeed.loadFromFile(new ZipFile(feedVersion.retrieveGtfsFile().getAbsolutePath()));
+        if (feedVersion.namespace == null) {
+            throw new IllegalStateException("Feed version must be loaded into the GTFS database to run GTFS+ validation.");
         }
+        deleteMapDbFiles(feedVersionId);
+        ReferenceIds referenceIds = ReferenceIds.forNamespace(feedVersion.namespace);
 
         // check for saved GTFS+ data
         File file = gtfsPlusStore.getFeed(feedVersionId);
@@ -93,27 +87,75 @@ public class GtfsPlusValidation implements Serializable {
             LOG.info("GTFS+ Validation -- Validating user-saved GTFS+ data (unpublished)");
         }
         int gtfsPlusTableCount = 0;
-        ZipFile zipFile = new ZipFile(file);
-        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
-        while (entries.hasMoreElements()) {
-            final ZipEntry entry = entries.nextElement();
-            for (int i = 0; i < DataManager.gtfsPlusConfig.size(); i++) {
-                JsonNode tableNode = DataManager.gtfsPlusConfig.get(i);
-                if (tableNode.get("name").asText().equals(entry.getName())) {
-                    LOG.info("Validating GTFS+ table: " + entry.getName());
+        int revalidatedTableCount = 0;
+        try (ZipFile zipFile = new ZipFile(file)) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                for (int i = 0; i < DataManager.gtfsPlusConfig.size(); i++) {
+                    JsonNode tableNode = DataManager.gtfsPlusConfig.get(i);
+                    if (!tableNode.get("name").asText().equals(entry.getName())) continue;
                     gtfsPlusTableCount++;
-                    // Skip any byte order mark that may be present. Files must be UTF-8,
-                    // but the GTFS spec says that "files that include the UTF byte order mark are acceptable".
-                    InputStream bis = new BOMInputStream(zipFile.getInputStream(entry));
-                    validateTable(validation.issues, tableNode, bis, gtfsFeed);
+                    TableResult result = getTableResult(feedVersionId, entry);
+                    if (result == null) {
+                        LOG.info("Validating GTFS+ table: " + entry.getName());
+                        revalidatedTableCount++;
+                        result = new TableResult(entry);
+                        // Skip any byte order mark that may be present. Files must be UTF-8,
+                        // but the GTFS spec says that "files that include the UTF byte order mark are acceptable".
+                        try (InputStream bis = new BOMInputStream(zipFile.getInputStream(entry))) {
+                            validateTable(result.issues, tableNode, bis, referenceIds);
+                        }
+                        putTableResult(feedVersionId, result);
+                    } else {
+                        LOG.info("GTFS+ table {} has not changed since last validation.", entry.getName());
+                    }
+                    validation.issues.addAll(result.issues);
                 }
             }
         }
-        gtfsFeed.close();
-        LOG.info("GTFS+ tables found: {}/{}", gtfsPlusTableCount, DataManager.gtfsPlusConfig.size());
+        LOG.info(
+            "GTFS+ tables found: {}/{} ({} validated)",
+            gtfsPlusTableCount,
+            DataManager.gtfsPlusConfig.size(),
+            revalidatedTableCount
+        );
         return validation;
     }
 
+    /**
+     * Get the cached validation result for the table if its contents are unchanged (according to the size and CRC in
+     * the zip entry), otherwise null.
+     */
+    static TableResult getTableResult(String feedVersionId, ZipEntry entry) {
+        synchronized (tableResultsForVersions) {
+            Map<String, TableResult> tableResults = tableResultsForVersions.get(feedVersionId);
+            TableResult result = tableResults != null ? tableResults.get(entry.getName()) : null;
+            return result != null && result.matches(entry) ? result : null;
+        }
+    }
+
+    private static void putTableResult(String feedVersionId, TableResult result) {
+        // Entries without a CRC cannot be checked for changes, so there is no point in keeping their results.
+        if (result.crc == -1) return;
+        synchronized (tableResultsForVersions) {
+            tableResultsForVersions.computeIfAbsent(feedVersionId, id -> new HashMap<>()).put(result.tableName, result);
+        }
+    }
+
+    /**
+     * Delete the MapDB file that earlier versions of GTFS+ validation created for the feed version, which is no longer
+     * needed now that references are checked against the GTFS database.
+     */
+    private static void deleteMapDbFiles(String feedVersionId) {
+        File dbFile = gtfsPlusStore.getFeedFile(feedVersionId + ".db");
+        if (dbFile.isFile()) {
+            LOG.info("Deleting unused GTFS+ MapDB file {}", dbFile.getAbsolutePath());
+            dbFile.delete();
+            new File(dbFile.getAbsolutePath() + ".p").delete();
+        }
+    }
+
     /**
      * Validate a single GTFS+ table using the table specification found in gtfsplus.yml.
      */
@@ -121,13 +163,18 @@ public class GtfsPlusValidation implements Serializable {
         Collection<ValidationIssue> issues,
         JsonNode specTable,
         InputStream inputStreamToValidate,
-        GTFSFeed gtfsFeed
+        ReferenceIds referenceIds
     ) throws IOException {
         String tableId = specTable.get("id").asText();
         // Read in table data from input stream.
-        BufferedReader in = new BufferedReader(new InputStreamReader(inputStreamToValidate));
-        String line = in.readLine();
-        String[] inputHeaders = line.split(",");
+        CsvReader csvReader = new CsvReader(inputStreamToValidate, ',', StandardCharsets.UTF_8);
+        // Stop the reader from failing on very long values (e.g., a corrupted file with unbalanced quotes).
+        csvReader.setSafetySwitch(false);
+        if (!csvReader.readHeaders()) {
+            issues.add(new ValidationIssue(tableId, null, -1, "Table is empty (no header row found)."));
+            return;
+        }
+        String[] inputHeaders = csvReader.getHeaders();
         List<String> fieldList = Arrays.asList(inputHeaders);
         JsonNode[] fieldsFound = new JsonNode[inputHeaders.length];
         JsonNode specFields = specTable.get("fields");
@@ -147,8 +194,8 @@ public class GtfsPlusValidation implements Serializable {
         // Iterate over each row and validate each field value.
         int rowIndex = 0;
         int rowsWithWrongNumberOfColumns = 0;
-        while ((line = in.readLine()) != null) {
-            String[] values = line.split(Consts.COLUMN_SPLIT, -1);
+        while (csvReader.readRecord()) {
+            String[] values = csvReader.getValues();
             // First, check that row has the correct number of fields.
             if (values.length != fieldsFound.length) {
                 rowsWithWrongNumberOfColumns++;
@@ -158,10 +205,11 @@ public class GtfsPlusValidation implements Serializable {
             for (int f = 0; f < fieldsFound.length; f++) {
                 // If value exists for index, use that. Otherwise, default to null to avoid out of bounds exception.
                 String val = f < values.length ? values[f] : null;
-                validateTableValue(issues, tableId, rowIndex, val, fieldsFound[f], gtfsFeed);
+                validateTableValue(issues, tableId, rowIndex, val, fieldsFound[f], referenceIds);
             }
             rowIndex++;
         }
+        csvReader.close();
         // Add issue for wrong number of columns after processing all rows.
         // Note: We considered adding an issue for each row, but opted for the single error approach because there's no
         // concept of a row-level issue in the UI right now. So we would potentially need to add that to the UI
@@ -186,7 +234,7 @@ public class GtfsPlusValidation implements Serializable {
         int rowIndex,
         String value,
         JsonNode specField,
-        GTFSFeed gtfsFeed
+        ReferenceIds referenceIds
     ) {
         if (specField == null) return;
         String fieldName = specField.get("name").asText();
@@ -227,28 +275,13 @@ public class GtfsPlusValidation implements Serializable {
                 }
                 break;
             case "GTFS_ROUTE":
-                if (!gtfsFeed.routes.containsKey(value)) {
-                    issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Route")));
-                }
-                break;
             case "GTFS_STOP":
-                if (!gtfsFeed.stops.containsKey(value)) {
-                    issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Stop")));
-                }
-                break;
             case "GTFS_TRIP":
-                if (!gtfsFeed.trips.containsKey(value)) {
-                    issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Trip")));
-                }
-                break;
             case "GTFS_FARE":
-                if (!gtfsFeed.fares.containsKey(value)) {
-                    issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Fare")));
-                }
-                break;
             case "GTFS_SERVICE":
-                if (!gtfsFeed.services.containsKey(value)) {
-                    issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Service")));
+                ReferenceIds.Type type = ReferenceIds.Type.valueOf(specField.get("inputType").asText());
+                if (!referenceIds.contains(type, value)) {
+                    issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, type.entityName)));
                 }
                 break;
         }
@@ -259,4 +292,22 @@ public class GtfsPlusValidation implements Serializable {
     private static String missingIdText(String value, String entity) {
         return String.join(" ", entity, "ID", value, NOT_FOUND);
     }
+
+    /** The issues found for a GTFS+ table, along with the size and CRC of the zip entry that was validated. */
+    static class TableResult {
+        final String tableName;
+        final long size;
+        final long crc;
+        final List<ValidationIssue> issues = new ArrayList<>();
+
+        TableResult(ZipEntry entry) {
+            this.tableName = entry.getName();
+            this.size = entry.getSize();
+            this.crc = entry.getCrc();
+        }
+
+        boolean matches(ZipEntry entry) {
+            return crc != -1 && crc == entry.getCrc() && size == entry.getSize();
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package com.conveyal.datatools.manager.gtfsplus;
+
+import com.conveyal.datatools.manager.DataManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The IDs of the GTFS entities (routes, stops, etc.) that GTFS+ tables may reference, read from a feed version's SQL
+ * namespace. Each set of IDs is loaded on first use and kept for the feed version (the data in a feed version's
+ * namespace never changes), so repeated GTFS+ validations of the same version do not query the database again.
+ */
+class ReferenceIds {
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceIds.class);
+    /** Number of feed versions for which reference IDs are kept in memory. */
+    private static final int MAX_CACHED_VERSIONS = 4;
+    /** Reference IDs for the most recently validated feed versions, keyed on namespace. */
+    private static final Map<String, ReferenceIds> idsForNamespaces =
+        new LinkedHashMap<String, ReferenceIds>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ReferenceIds> eldest) {
+                return size() > MAX_CACHED_VERSIONS;
+            }
+        };
+
+    /** The GTFS entity types that may be referenced by GTFS+ fields (named for the field input types). */
+    enum Type {
+        GTFS_ROUTE("Route", "route_id", "routes"),
+        GTFS_STOP("Stop", "stop_id", "stops"),
+        GTFS_TRIP("Trip", "trip_id", "trips"),
+        GTFS_FARE("Fare", "fare_id", "fare_attributes"),
+        GTFS_SERVICE("Service", "service_id", "calendar", "calendar_dates");
+
+        final String entityName;
+        final String idField;
+        final String[] tables;
+
+        Type(String entityName, String idField, String... tables) {
+            this.entityName = entityName;
+            this.idField = idField;
+            this.tables = tables;
+        }
+    }
+
+    private final String namespace;
+    private final Map<Type, Set<String>> idsForTypes = new EnumMap<>(Type.class);
+
+    private ReferenceIds(String namespace) {
+        this.namespace = namespace;
+    }
+
+    /** Get the reference IDs for the namespace (i.e., the SQL schema of a loaded feed version). */
+    static synchronized ReferenceIds forNamespace(String namespace) {
+        return idsForNamespaces.computeIfAbsent(namespace, ReferenceIds::new);
+    }
+
+    /** Check whether the feed contains an entity of the given type with the ID. */
+    boolean contains(Type type, String id) {
+        return id != null && getIds(type).contains(id);
+    }
+
+    private synchronized Set<String> getIds(Type type) {
+        return idsForTypes.computeIfAbsent(type, this::loadIds);
+    }
+
+    private Set<String> loadIds(Type type) {
+        Set<String> ids = new HashSet<>();
+        try (Connection connection = DataManager.GTFS_DATA_SOURCE.getConnection()) {
+            for (String table : type.tables) {
+                // Optional tables (e.g., calendar_dates) may not exist in the namespace. Check before querying, because
+                // connections do not auto-commit, so a failed query would abort the transaction (and with it the
+                // queries for the remaining tables).
+                if (!tableExists(connection, table)) {
+                    LOG.info("No {} table in {}, skipping {} IDs", table, namespace, type.entityName);
+                    continue;
+                }
+                String sql = String.format("select %s from %s.%s", type.idField, namespace, table);
+                try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+                    while (resultSet.next()) ids.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(String.format("Could not read %s IDs from %s.", type.entityName, namespace), e);
+        }
+        LOG.info("Loaded {} {} IDs for {}", ids.size(), type.entityName, namespace);
+        return Collections.unmodifiableSet(ids);
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet tables = connection.getMetaData().getTables(null, namespace, table, new String[] {"TABLE"})) {
+            return tables.next();
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.conveyal.datatools.manager.jobs;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
-import com.amazonaws.event.ProgressListener;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.AmazonEC2Exception;
 import com.amazonaws.services.ec2.model.CreateImageRequest;
@@ -17,12 +16,12 @@ import com.amazonaws.services.ec2.model.InstanceNetworkInterfaceSpecification;
 import com.amazonaws.services.ec2.model.InstanceType;
 import com.amazonaws.services.ec2.model.RunInstancesRequest;
 import com.amazonaws.services.ec2.model.Tag;
+import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing;
+import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancingClient;
+import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancingClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3URI;
-import com.amazonaws.services.s3.model.CopyObjectRequest;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
-import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -46,15 +45,19 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.amazonaws.waiters.Waiter;
 import com.amazonaws.waiters.WaiterParameters;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.AWSUtils;
+import com.conveyal.datatools.common.utils.S3TransferService;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.controllers.api.DeploymentController;
@@ -63,6 +66,8 @@ import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.EC2Info;
 import com.conveyal.datatools.manager.models.EC2InstanceSummary;
 import com.conveyal.datatools.manager.models.OtpServer;
+import com.conveyal.datatools.manager.persistence.DeploymentBundleCache;
+import com.conveyal.datatools.manager.persistence.FeedCache;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.StringUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -97,6 +102,13 @@ public class DeployJob extends MonitorableJob {
     private static final String OTP_GRAPH_FILENAME = "Graph.obj";
     public static final String OTP_RUNNER_STATUS_FILE = "status.json";
     private static final long TEN_MINUTES_IN_MILLISECONDS = 10 * 60 * 1000;
+    /** Amount of the bundle to send to an OTP server between updates of the server's upload progress. */
+    private static final long DELIVERY_CHUNK_BYTES = 8 * 1024 * 1024;
+    /** Number of times to check that the router is available after an OTP server has built the graph. */
+    private static final int ROUTER_CHECK_ATTEMPTS = 10;
+    private static final int ROUTER_CHECK_TIMEOUT_MILLIS = 10 * 1000;
+    private static final long ROUTER_CHECK_INTERVAL_MILLIS = 6 * 1000;
+    private static ExecutorService graphDeliveryExecutor;
     // Note: using a cloudfront URL for these download repo URLs will greatly increase download/deploy speed.
     private static final String R5_REPO_URL = DataManager.hasConfigProperty("modules.deployment.r5_download_url")
         ? DataManager.getConfigPropertyAsText("modules.deployment.r5_download_url")
@@ -119,6 +131,7 @@ public class DeployJob extends MonitorableJob {
 
     private AmazonEC2 ec2;
     private AmazonS3 s3Client;
+    private AmazonElasticLoadBalancing elbClient;
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z");
 
     /** The deployment to deploy */
@@ -127,8 +140,10 @@ public class DeployJob extends MonitorableJob {
     /** The OTP server to deploy to (also contains S3 information). */
     private final OtpServer otpServer;
 
-    /** Temporary file that contains the deployment data */
-    private File deploymentTempFile;
+    /** Pinned file in the {@link DeploymentBundleCache} that contains the deployment data */
+    private FeedCache.Pin bundle;
+    /** Key of the deployment bundle in the {@link DeploymentBundleCache} (and on S3, see {@link #getS3CachedBundleKey}) */
+    private String bundleKey;
 
     /** This hides the status field on the parent class, providing additional fields. */
     public DeployStatus status;
@@ -147,8 +162,13 @@ public class DeployJob extends MonitorableJob {
         return deployment.projectId;
     }
 
+    @Override
+    public String retrieveProjectId() {
+        return deployment.projectId;
+    }
+
     /** Increment the completed servers count (for use during ELB deployment) and update the job status. */
-    public void incrementCompletedServers() {
+    public synchronized void incrementCompletedServers() {
         status.numServersCompleted++;
         int totalServers = otpServer.ec2Info.instanceCount;
         if (totalServers < 1) totalServers = 1;
@@ -226,29 +246,27 @@ public class DeployJob extends MonitorableJob {
                 )
         ) {
             if (otpServer.s3Bucket != null) totalTasks++;
-            try {
-                deploymentTempFile = File.createTempFile("deployment", ".zip");
-            } catch (IOException e) {
-                status.fail("Could not create temp file for deployment", e);
-                return;
-            }
-
-            LOG.info("Created deployment bundle file: " + deploymentTempFile.getAbsolutePath());
 
-            // Dump the deployment bundle to the temp file.
+            // Get the deployment bundle from the bundle cache, building it (or downloading a copy built by another
+            // instance from S3) if it is not cached locally.
             try {
                 status.message = "Creating transit bundle (GTFS and OSM)";
                 // Only download OSM extract if an OSM extract does not exist at a public URL and not skipping extract.
                 boolean includeOsm = deployment.osmExtractUrl == null && !deployment.skipOsmExtract;
                 // TODO: At this stage, perform a HEAD request on OSM extract URL to verify that it exists before
                 //  continuing with deployment. The same probably goes for the specified OTP jar file.
-                this.deployment.dump(deploymentTempFile, true, includeOsm, true);
+                bundleKey = deployment.retrieveBundleKey(includeOsm);
+                bundle = DeploymentBundleCache.pinBundle(bundleKey, file -> {
+                    if (!downloadCachedBundleFromS3(file)) this.deployment.dump(file, true, includeOsm, true);
+                });
                 tasksCompleted++;
             } catch (Exception e) {
                 status.fail("Error dumping deployment", e);
                 return;
             }
 
+            LOG.info("Using deployment bundle file: " + bundle.file.getAbsolutePath());
+
             status.percentComplete = 100.0 * (double) tasksCompleted / totalTasks;
             LOG.info("Deployment pctComplete = {}", status.percentComplete);
             status.built = true;
@@ -300,16 +318,40 @@ public class DeployJob extends MonitorableJob {
         String bucket = uri.getBucket();
         status.message = "Uploading bundle to " + getS3BundleURI();
         status.uploadingS3 = true;
-        LOG.info("Uploading deployment {} to {}", deployment.name, uri.toString());
-        // Use Transfer Manager so we can monitor S3 bundle upload progress.
-        TransferManager transferManager = TransferManagerBuilder.standard().withS3Client(s3Client).build();
-        final Upload uploadBundle = transferManager.upload(bucket, uri.getKey(), deploymentTempFile);
-        uploadBundle.addProgressListener(
-            (ProgressListener) progressEvent -> status.percentUploaded = uploadBundle.getProgress().getPercentTransferred()
-        );
-        uploadBundle.waitForCompletion();
-        // Check if router config exists and upload as separate file using transfer manager. Note: this is because we
-        // need the router-config separately from the bundle for EC2 instances that download the graph only.
+        String cachedBundleKey = getS3CachedBundleKey();
+        boolean copiedFromCache = false;
+        if (s3Client.doesObjectExist(bucket, cachedBundleKey)) {
+            // The same bundle has already been uploaded (e.g., for a deployment to another server), so copy it within
+            // S3 rather than uploading it again.
+            LOG.info("Copying cached bundle s3://{}/{} to {}", bucket, cachedBundleKey, uri.toString());
+            try {
+                S3TransferService.copy(s3Client, bucket, cachedBundleKey, bucket, uri.getKey());
+                status.percentUploaded = 100;
+                copiedFromCache = true;
+            } catch (AmazonClientException e) {
+                LOG.warn("Could not copy cached bundle s3://{}/{}. Uploading bundle instead.", bucket, cachedBundleKey, e);
+            }
+        }
+        if (!copiedFromCache) {
+            LOG.info("Uploading deployment {} to {}", deployment.name, uri.toString());
+            S3TransferService.TransferStats stats = S3TransferService.upload(
+                s3Client,
+                bucket,
+                uri.getKey(),
+                bundle.file,
+                percentUploaded -> status.percentUploaded = percentUploaded
+            );
+            status.uploadMegabytesPerSecond = stats.megabytesPerSecond();
+            // Keep a content-addressed copy of the bundle so that later deployments with the same inputs can reuse it.
+            // The bundle has been uploaded at this point, so failing to cache it should not fail the deployment.
+            try {
+                S3TransferService.copy(s3Client, bucket, uri.getKey(), bucket, cachedBundleKey);
+            } catch (AmazonClientException e) {
+                LOG.warn("Could not cache bundle at s3://{}/{}", bucket, cachedBundleKey, e);
+            }
+        }
+        // Check if router config exists and upload as separate file. Note: this is because we need the router-config
+        // separately from the bundle for EC2 instances that download the graph only.
         byte[] routerConfigAsBytes = deployment.generateRouterConfig();
         if (routerConfigAsBytes != null) {
             LOG.info("Uploading router-config.json to s3 bucket");
@@ -319,21 +361,14 @@ public class DeployJob extends MonitorableJob {
             out.write(routerConfigAsBytes);
             out.close();
             // Upload router config.
-            transferManager
-                .upload(bucket, getS3FolderURI().getKey() + "/router-config.json", routerConfigFile)
-                .waitForCompletion();
+            S3TransferService.upload(s3Client, bucket, getS3FolderURI().getKey() + "/router-config.json", routerConfigFile);
             // Delete temp file.
             routerConfigFile.delete();
         }
-        // Shutdown the Transfer Manager, but don't shut down the underlying S3 client.
-        // The default behavior for shutdownNow shut's down the underlying s3 client
-        // which will cause any following s3 operations to fail.
-        transferManager.shutdownNow(false);
 
         // copy to [name]-latest.zip
         String copyKey = getLatestS3BundleKey();
-        CopyObjectRequest copyObjRequest = new CopyObjectRequest(bucket, uri.getKey(), uri.getBucket(), copyKey);
-        s3Client.copyObject(copyObjRequest);
+        S3TransferService.copy(s3Client, bucket, uri.getKey(), uri.getBucket(), copyKey);
         LOG.info("Copied to s3://{}/{}", bucket, copyKey);
         LOG.info("Uploaded to {}", getS3BundleURI());
         status.update("Upload to S3 complete.", status.percentComplete + 10);
@@ -342,115 +377,225 @@ public class DeployJob extends MonitorableJob {
 
     /**
      * Builds the OTP graph over wire, i.e., send the data over an HTTP POST request to boot/replace the existing graph
-     * using the OTP Routers#buildGraphOverWire endpoint.
+     * using the OTP Routers#buildGraphOverWire endpoint. The servers are divided into batches according to the OTP
+     * server's {@link OtpServer.DeliveryStrategy}. The servers in a batch receive the bundle concurrently (reading the
+     * same bundle file), and the next batch only starts once every server in the batch has built the graph and its
+     * router responds to requests. If delivery to any server fails, the remaining batches are skipped.
      */
-    private boolean buildGraphOverWire() {
-        // Send the deployment file over the wire to each OTP server.
-        for (String rawUrl : otpServer.internalUrl) {
-            status.message = "Deploying to " + rawUrl;
-            status.uploading = true;
+    boolean buildGraphOverWire() {
+        status.servers = new ArrayList<>();
+        for (String rawUrl : otpServer.internalUrl) status.servers.add(new ServerDeliveryStatus(rawUrl));
+        status.uploading = true;
+        List<List<ServerDeliveryStatus>> batches = getDeliveryBatches(status.servers);
+        for (List<ServerDeliveryStatus> batch : batches) {
+            status.message = batch.size() == 1
+                ? "Deploying to " + batch.get(0).url
+                : String.format("Deploying to %d servers", batch.size());
             LOG.info(status.message);
-
-            URL url;
-            try {
-                url = new URL(rawUrl + "/routers/" + getRouterId());
-            } catch (MalformedURLException e) {
-                status.fail(String.format("Malformed deployment URL %s", rawUrl), e);
-                return false;
+            List<Future<?>> deliveries = new ArrayList<>();
+            for (ServerDeliveryStatus server : batch) {
+                deliveries.add(getGraphDeliveryExecutor().submit(() -> deliverGraph(server)));
             }
-
-            // grab them synchronously, so that we only take down one OTP server at a time
-            HttpURLConnection conn;
-            try {
-                conn = (HttpURLConnection) url.openConnection();
-            } catch (IOException e) {
-                status.fail(String.format("Unable to open URL of OTP server %s", url), e);
+            for (Future<?> delivery : deliveries) {
+                try {
+                    delivery.get();
+                } catch (InterruptedException e) {
+                    // Stop the deliveries in progress (which are not otherwise tied to this thread) along with the
+                    // remaining batches.
+                    for (Future<?> otherDelivery : deliveries) otherDelivery.cancel(true);
+                    skipPendingServers();
+                    Thread.currentThread().interrupt();
+                    status.fail("Interrupted while deploying to OTP servers", e);
+                    return false;
+                } catch (ExecutionException e) {
+                    // deliverGraph records its own failures, so this should never happen.
+                    status.fail("Unexpected error while deploying to OTP server", e);
+                    return false;
+                }
+            }
+            List<ServerDeliveryStatus> failed = batch.stream()
+                .filter(server -> server.state == ServerDeliveryState.FAILED)
+                .collect(Collectors.toList());
+            if (!failed.isEmpty()) {
+                // Skip deploying to any other servers. There is no reason to take out the rest of the servers, it's
+                // going to have the same result.
+                skipPendingServers();
+                status.fail(failed.size() == 1
+                    ? failed.get(0).message
+                    : String.format("Deployment failed on %d servers. %s", failed.size(), failed.get(0).message));
                 return false;
             }
+        }
+        status.uploading = false;
+        return true;
+    }
 
-            conn.addRequestProperty("Content-Type", "application/zip");
-            conn.setDoOutput(true);
-            // graph build can take a long time but not more than an hour, I should think
-            conn.setConnectTimeout(60 * 60 * 1000);
-            conn.setFixedLengthStreamingMode(deploymentTempFile.length());
+    /** Mark the servers that have not started receiving the bundle as skipped once delivery has been stopped. */
+    private void skipPendingServers() {
+        for (ServerDeliveryStatus server : status.servers) {
+            if (server.state == ServerDeliveryState.PENDING) server.state = ServerDeliveryState.SKIPPED;
+        }
+        status.uploading = false;
+    }
+
+    /**
+     * Divide the servers into the batches that receive the bundle at the same time according to the OTP server's
+     * delivery strategy.
+     */
+    List<List<ServerDeliveryStatus>> getDeliveryBatches(List<ServerDeliveryStatus> servers) {
+        OtpServer.DeliveryStrategy strategy = otpServer.deliveryStrategy != null
+            ? otpServer.deliveryStrategy
+            : OtpServer.DeliveryStrategy.ROLLING;
+        List<List<ServerDeliveryStatus>> batches = new ArrayList<>();
+        if (servers.isEmpty()) return batches;
+        switch (strategy) {
+            case PARALLEL:
+                batches.add(servers);
+                break;
+            case CANARY:
+                batches.add(servers.subList(0, 1));
+                if (servers.size() > 1) batches.add(servers.subList(1, servers.size()));
+                break;
+            case ROLLING:
+            default:
+                int batchSize = Math.max(1, otpServer.deliveryBatchSize);
+                for (int i = 0; i < servers.size(); i += batchSize) {
+                    batches.add(servers.subList(i, Math.min(i + batchSize, servers.size())));
+                }
+                break;
+        }
+        return batches;
+    }
+
+    /**
+     * Send the bundle to a single OTP server, wait for the server to build the graph and check that the router is
+     * available. The outcome is recorded in the server's delivery status rather than failing the job, because other
+     * servers may be receiving the bundle at the same time.
+     */
+    void deliverGraph(ServerDeliveryStatus server) {
+        String routerUrl = server.url + "/routers/" + getRouterId();
+        URL url;
+        try {
+            url = new URL(routerUrl);
+        } catch (MalformedURLException e) {
+            server.fail(String.format("Malformed deployment URL %s", server.url), e);
+            return;
+        }
+
+        HttpURLConnection conn;
+        try {
+            conn = (HttpURLConnection) url.openConnection();
+        } catch (IOException e) {
+            server.fail(String.format("Unable to open URL of OTP server %s", url), e);
+            return;
+        }
 
+        conn.addRequestProperty("Content-Type", "application/zip");
+        conn.setDoOutput(true);
+        // graph build can take a long time but not more than an hour, I should think
+        conn.setConnectTimeout(60 * 60 * 1000);
+        long bundleSize = bundle.file.length();
+        conn.setFixedLengthStreamingMode(bundleSize);
+
+        server.state = ServerDeliveryState.UPLOADING;
+        // Each server reads the bundle file with its own channel, so concurrent deliveries share the OS page cache
+        // rather than needing separate copies of the bundle.
+        try (FileChannel input = new FileInputStream(bundle.file).getChannel()) {
+            conn.connect();
             // this makes it a post request so that we can upload our file
-            WritableByteChannel post;
-            try {
-                post = Channels.newChannel(conn.getOutputStream());
-            } catch (IOException e) {
-                status.fail(String.format("Could not open channel to OTP server %s", url), e);
-                return false;
+            try (WritableByteChannel post = Channels.newChannel(conn.getOutputStream())) {
+                long position = 0;
+                while (position < bundleSize) {
+                    position += input.transferTo(position, Math.min(DELIVERY_CHUNK_BYTES, bundleSize - position), post);
+                    server.percentUploaded = 100.0 * position / bundleSize;
+                }
             }
+        } catch (FileNotFoundException e) {
+            server.fail("Internal error: could not read dumped deployment!", e);
+            return;
+        } catch (IOException e) {
+            server.fail(String.format("Unable to transfer deployment to server %s", url), e);
+            return;
+        }
 
-            // retrieveById the input file
-            FileChannel input;
-            try {
-                input = new FileInputStream(deploymentTempFile).getChannel();
-            } catch (FileNotFoundException e) {
-                status.fail("Internal error: could not read dumped deployment!", e);
-                return false;
+        // wait for the server to build the graph
+        // TODO: timeouts?
+        server.state = ServerDeliveryState.BUILDING;
+        try {
+            int code = conn.getResponseCode();
+            if (code != HttpURLConnection.HTTP_CREATED) {
+                // Get input/error stream from connection response.
+                InputStream stream = code < HttpURLConnection.HTTP_BAD_REQUEST
+                    ? conn.getInputStream()
+                    : conn.getErrorStream();
+                String response;
+                try (Scanner scanner = new Scanner(stream)) {
+                    scanner.useDelimiter("\\Z");
+                    response = scanner.hasNext() ? scanner.next() : "";
+                }
+                server.fail(String.format("Got response code %d from server %s due to %s", code, server.url, response), null);
+                return;
             }
+        } catch (IOException e) {
+            server.fail(String.format("Could not finish request to server %s", url), e);
+            return;
+        }
 
-            try {
-                conn.connect();
-            } catch (IOException e) {
-                status.fail(String.format("Unable to open connection to OTP server %s", url), e);
-                return false;
-            }
+        // Gate the delivery on the router responding to requests with the new graph.
+        server.state = ServerDeliveryState.CHECKING_HEALTH;
+        if (!waitForRouter(url)) {
+            server.fail(String.format("Router at %s did not become available after graph build", url), null);
+            return;
+        }
+        server.state = ServerDeliveryState.COMPLETED;
+        serverDeliveryCompleted();
+    }
 
-            // copy
+    /** Check the router URL until it responds successfully, returning false if it does not within the allowed attempts. */
+    private static boolean waitForRouter(URL routerUrl) {
+        for (int attempt = 1; attempt <= ROUTER_CHECK_ATTEMPTS; attempt++) {
             try {
-                input.transferTo(0, Long.MAX_VALUE, post);
+                HttpURLConnection conn = (HttpURLConnection) routerUrl.openConnection();
+                conn.setConnectTimeout(ROUTER_CHECK_TIMEOUT_MILLIS);
+                conn.setReadTimeout(ROUTER_CHECK_TIMEOUT_MILLIS);
+                int code = conn.getResponseCode();
+                conn.disconnect();
+                if (code == HttpURLConnection.HTTP_OK) return true;
+                LOG.info("Router {} responded with {} (attempt {})", routerUrl, code, attempt);
             } catch (IOException e) {
-                status.fail(String.format("Unable to transfer deployment to server %s", url), e);
-                return false;
+                LOG.info("Router {} not available (attempt {}): {}", routerUrl, attempt, e.getMessage());
             }
-
             try {
-                post.close();
-            } catch (IOException e) {
-                status.fail(String.format("Error finishing connection to server %s", url), e);
+                Thread.sleep(ROUTER_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 return false;
             }
+        }
+        return false;
+    }
 
-            try {
-                input.close();
-            } catch (IOException e) {
-                // do nothing
-                LOG.warn("Could not close input stream for deployment file.");
-            }
-
-            status.uploading = false;
-
-            // wait for the server to build the graph
-            // TODO: timeouts?
-            try {
-                int code = conn.getResponseCode();
-                if (code != HttpURLConnection.HTTP_CREATED) {
-                    // Get input/error stream from connection response.
-                    InputStream stream = code < HttpURLConnection.HTTP_BAD_REQUEST
-                        ? conn.getInputStream()
-                        : conn.getErrorStream();
-                    String response;
-                    try (Scanner scanner = new Scanner(stream)) {
-                        scanner.useDelimiter("\\Z");
-                        response = scanner.next();
-                    }
-                    status.fail(String.format("Got response code %d from server due to %s", code, response));
-                    // Skip deploying to any other servers.
-                    // There is no reason to take out the rest of the servers, it's going to have the same result.
-                    return false;
-                }
-            } catch (IOException e) {
-                status.fail(String.format("Could not finish request to server %s", url), e);
-            }
+    /** Update the job progress once a server has received the bundle and built the graph. */
+    private synchronized void serverDeliveryCompleted() {
+        status.numServersCompleted++;
+        tasksCompleted++;
+        status.percentComplete = 100.0 * (double) tasksCompleted / totalTasks;
+    }
 
-            status.numServersCompleted++;
-            tasksCompleted++;
-            status.percentComplete = 100.0 * (double) tasksCompleted / totalTasks;
+    /**
+     * Get the executor used to deliver bundles to OTP servers. Threads are created as needed because each delivery
+     * mostly waits for the server to build the graph, and idle threads are discarded.
+     */
+    private static synchronized ExecutorService getGraphDeliveryExecutor() {
+        if (graphDeliveryExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            graphDeliveryExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "graph-delivery-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        return true;
+        return graphDeliveryExecutor;
     }
 
     private String getS3BundleURI() {
@@ -466,16 +611,38 @@ public class DeployJob extends MonitorableJob {
         return String.format("%s/%s/%s-latest.zip", bundlePrefix, deployment.projectId, name);
     }
 
+    /**
+     * Get the S3 key for the content-addressed copy of the bundle (see {@link Deployment#retrieveBundleKey}), which is
+     * shared by all deployments with the same inputs. These copies are not evicted by Data Tools, so the bucket should
+     * have a lifecycle rule that expires objects under the cache prefix.
+     */
+    private String getS3CachedBundleKey() {
+        return String.format("%s/cache/%s.zip", bundlePrefix, bundleKey);
+    }
+
+    /**
+     * Download the content-addressed copy of the bundle from S3 to the file, returning false if there is no copy (or S3
+     * storage is not in use).
+     */
+    private boolean downloadCachedBundleFromS3(File file) {
+        if (!DataManager.useS3 || s3Bucket == null) return false;
+        String key = getS3CachedBundleKey();
+        try {
+            if (!s3Client.doesObjectExist(s3Bucket, key)) return false;
+            LOG.info("Downloading cached bundle s3://{}/{}", s3Bucket, key);
+            status.message = "Downloading cached transit bundle";
+            return s3Client.getObject(new GetObjectRequest(s3Bucket, key), file) != null;
+        } catch (AmazonClientException e) {
+            LOG.warn("Could not download cached bundle s3://{}/{}. Rebuilding bundle.", s3Bucket, key, e);
+            return false;
+        }
+    }
+
     @Override
     public void jobFinished () {
-        // Delete temp file containing OTP deployment (OSM extract and GTFS files) so that the server's disk storage
-        // does not fill up.
-        if (deployType.equals(DeployType.REPLACE) && deploymentTempFile != null) {
-            boolean deleted = deploymentTempFile.delete();
-            if (!deleted) {
-                LOG.error("Deployment {} not deleted! Disk space in danger of filling up.", deployment.id);
-            }
-        }
+        // Unpin the deployment bundle (OSM extract and GTFS files) so that it can be evicted from the bundle cache
+        // once the cache is over budget.
+        if (bundle != null) bundle.close();
         String message;
         // FIXME: For some reason status duration is not getting set properly in MonitorableJob.
         status.duration = System.currentTimeMillis() - status.startTime;
@@ -596,18 +763,19 @@ public class DeployJob extends MonitorableJob {
                     ServerController.terminateInstances(ec2, remainingInstances);
                     return;
                 }
-                // Create new thread pool to monitor server setup so that the servers are monitored in parallel.
-                ExecutorService service = Executors.newFixedThreadPool(status.numServersRemaining);
+                // Start monitoring all of the servers so that they are monitored in parallel by the shared server
+                // status poller.
                 for (Instance instance : remainingInstances) {
                     // Note: new instances are added
                     MonitorServerStatusJob monitorServerStatusJob = new MonitorServerStatusJob(owner, this, instance, true);
                     remainingServerMonitorJobs.add(monitorServerStatusJob);
-                    service.submit(monitorServerStatusJob);
+                    monitorServerStatusJob.startMonitoring();
+                }
+                // Wait for each monitor job to finish on this thread. Once they have all finished, we can consider the
+                // servers up and running (or they have failed to initialize properly).
+                for (MonitorServerStatusJob monitorServerStatusJob : remainingServerMonitorJobs) {
+                    monitorServerStatusJob.run();
                 }
-                // Shutdown thread pool once the jobs are completed and wait for its termination. Once terminated, we can
-                // consider the servers up and running (or they have failed to initialize properly).
-                service.shutdown();
-                service.awaitTermination(4, TimeUnit.HOURS);
             }
             // Check if any of the monitor jobs encountered any errors and terminate the job's associated instance.
             for (MonitorServerStatusJob job : remainingServerMonitorJobs) {
@@ -990,6 +1158,25 @@ public class DeployJob extends MonitorableJob {
         return s3Client;
     }
 
+    /** Get the EC2 client for this job, which is shared with the {@link MonitorServerStatusJob}s for its instances. */
+    @JsonIgnore
+    public AmazonEC2 getEC2Client() {
+        return ec2;
+    }
+
+    /** Get the load balancer client for this job (created on first use). */
+    @JsonIgnore
+    public synchronized AmazonElasticLoadBalancing getELBClient() {
+        if (elbClient == null) {
+            AmazonElasticLoadBalancingClientBuilder elbBuilder = AmazonElasticLoadBalancingClient.builder()
+                .withCredentials(credentials);
+            elbClient = customRegion == null
+                ? elbBuilder.build()
+                : elbBuilder.withRegion(customRegion).build();
+        }
+        return elbClient;
+    }
+
     /**
      * Represents the current status of this job.
      */
@@ -1004,6 +1191,9 @@ public class DeployJob extends MonitorableJob {
         /** How much of the bundle has been uploaded? */
         public double percentUploaded;
 
+        /** Throughput of the bundle upload to S3 (once complete). */
+        public double uploadMegabytesPerSecond;
+
         /** To how many servers have we successfully deployed thus far? */
         public int numServersCompleted;
 
@@ -1015,6 +1205,41 @@ public class DeployJob extends MonitorableJob {
         /** Where can the user see the result? */
         public String baseUrl;
 
+        /** Progress of the delivery to each OTP server when building the graph over wire. */
+        public List<ServerDeliveryStatus> servers;
+
+    }
+
+    /**
+     * The state of the bundle delivery to a single OTP server (see {@link DeployJob#buildGraphOverWire}).
+     */
+    public static class ServerDeliveryStatus implements Serializable {
+        private static final long serialVersionUID = 1L;
+        /** The internal URL of the OTP server. */
+        public String url;
+        // State and progress are updated by the delivery threads and read by the deploy job thread and status requests.
+        public volatile ServerDeliveryState state = ServerDeliveryState.PENDING;
+        /** How much of the bundle has been sent to the server? */
+        public volatile double percentUploaded;
+        /** Reason for failure, if the delivery failed. */
+        public String message;
+
+        /** Empty constructor for serialization */
+        public ServerDeliveryStatus () { }
+
+        public ServerDeliveryStatus (String url) {
+            this.url = url;
+        }
+
+        void fail (String message, Exception e) {
+            LOG.error(message, e);
+            this.message = message;
+            this.state = ServerDeliveryState.FAILED;
+        }
+    }
+
+    public enum ServerDeliveryState {
+        PENDING, UPLOADING, BUILDING, CHECKING_HEALTH, COMPLETED, FAILED, SKIPPED
     }
 
     /**
@@ -191,8 +191,9 @@ public class FeedUpdater {
     /**
      * NOTE: This method is not in use, but should be strongly considered as an alternative approach if/when RTD is able
      * to maintain md5 checksums when copying a file from "waiting" folder to "completed".
-     * Find matching feed version for a feed source based on md5. NOTE: This is no longer in use because MTC's RTD system
-     * does NOT preserve MD5 checksums when moving a file from the "waiting" to "completed" folders on S3.
+     * Find matching feed version for a feed source based on the content hash of the feed file (see
+     * {@link HashUtils#hashFile}). NOTE: This is no longer in use because MTC's RTD system does NOT preserve MD5
+     * checksums when moving a file from the "waiting" to "completed" folders on S3.
      */
     private FeedVersion findMatchingFeedVersion(String keyName, FeedSource feedSource) throws IOException {
         String filename = keyName.split("/")[1];
@@ -202,14 +203,22 @@ public class FeedUpdater {
         File file = new File(FeedStore.basePath, filename);
         OutputStream out = new FileOutputStream(file);
         ByteStreams.copy(in, out);
-        String md5 = HashUtils.hashFile(file);
+        String contentHash = HashUtils.hashFile(file);
+        // Versions created before full-content hashing have a legacy hash.
+        String legacyHash = HashUtils.hashFileSample(file);
         Collection<FeedVersion> versions = feedSource.retrieveFeedVersions();
-        LOG.info("Searching for md5 {} across {} versions for {} ({})", md5, versions.size(), feedSource.name, feedSource.id);
+        LOG.info(
+            "Searching for content hash {} across {} versions for {} ({})",
+            contentHash,
+            versions.size(),
+            feedSource.name,
+            feedSource.id
+        );
         FeedVersion matchingVersion = null;
         int count = 0;
         for (FeedVersion feedVersion : versions) {
-            LOG.info("version {} md5: {}", count++, feedVersion.hash);
-            if (feedVersion.hash.equals(md5)) {
+            LOG.info("version {} hash: {}", count++, feedVersion.hash);
+            if (contentHash.equals(feedVersion.hash) || legacyHash.equals(feedVersion.hash)) {
                 matchingVersion = feedVersion;
                 LOG.info("Found local version that matches latest file on S3  (SQL namespace={})", feedVersion.namespace);
                 if (!feedVersion.namespace.equals(feedSource.publishedVersionId)) {
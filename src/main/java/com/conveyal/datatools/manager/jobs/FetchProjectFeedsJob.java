@@ -1,8 +1,9 @@
 package com.conveyal.datatools.manager.jobs;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.RecoverableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
-import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -14,11 +15,13 @@ import org.slf4j.LoggerFactory;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Created by landon on 3/25/16.
  */
-public class FetchProjectFeedsJob extends MonitorableJob {
+public class FetchProjectFeedsJob extends MonitorableJob implements RecoverableJob {
     public static final Logger LOG = LoggerFactory.getLogger(FetchProjectFeedsJob.class);
     public String projectId;
 
@@ -27,6 +30,31 @@ public class FetchProjectFeedsJob extends MonitorableJob {
         this.projectId = project.id;
     }
 
+    @Override
+    public String retrieveProjectId() {
+        return projectId;
+    }
+
+    @Override
+    public String retrieveIdempotencyKey() {
+        return "fetch-project:" + projectId;
+    }
+
+    @Override
+    public Map<String, String> retrieveRecoveryParameters() {
+        return Collections.singletonMap("projectId", projectId);
+    }
+
+    /**
+     * Re-create an interrupted fetch job (see {@link com.conveyal.datatools.common.status.JobJournal}), or return null
+     * if the project no longer exists.
+     */
+    public static FetchProjectFeedsJob recover(Map<String, String> parameters, Auth0UserProfile owner) {
+        Project project = Persistence.projects.getById(parameters.get("projectId"));
+        if (project == null) return null;
+        return new FetchProjectFeedsJob(project, owner);
+    }
+
     @Override
     public void jobLogic() {
         Project project = Persistence.projects.getById(projectId);
@@ -53,11 +81,13 @@ public class FetchProjectFeedsJob extends MonitorableJob {
             }
             // No need to track overall status on this FetchProjectFeedsJob. All "child" jobs execute in threadpool,
             // so we don't know their status.
-            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, true);
-            // Run this in a heavy executor with continueThread = true, so that fetch/process jobs for each
-            // feed source execute in order (i.e., fetch feed source A, then process; next, fetch feed source b, then
-            // process).
-            DataManager.heavyExecutor.execute(fetchSingleFeedJob);
+            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, false);
+            // Child jobs share this job's priority (i.e., batch priority for scheduled fetches).
+            fetchSingleFeedJob.priority = priority;
+            // Run this with continueThread = false, so that downloads run concurrently in the fetch pool (subject to
+            // per-host rate limits) and each fetched feed is queued for processing in the heavy pool, rather than
+            // holding a heavy thread while waiting on the network.
+            JobExecutor.execute(fetchSingleFeedJob);
         }
     }
 
@@ -1,13 +1,18 @@
 package com.conveyal.datatools.manager.jobs;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.common.status.MonitorableJob;
-import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.common.status.RecoverableJob;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-public class FetchSingleFeedJob extends MonitorableJob {
+import java.util.HashMap;
+import java.util.Map;
+
+public class FetchSingleFeedJob extends MonitorableJob implements RecoverableJob {
 
     private FeedSource feedSource;
     private FeedVersion result;
@@ -45,6 +50,35 @@ public class FetchSingleFeedJob extends MonitorableJob {
         return result != null ? result.parentFeedSource().id : null;
     }
 
+    @Override
+    public String retrieveProjectId() {
+        return feedSource.projectId;
+    }
+
+    @Override
+    public String retrieveIdempotencyKey() {
+        return "fetch-feed-source:" + feedSource.id;
+    }
+
+    @Override
+    public Map<String, String> retrieveRecoveryParameters() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("feedSourceId", feedSource.id);
+        parameters.put("continueThread", String.valueOf(continueThread));
+        return parameters;
+    }
+
+    /**
+     * Re-create an interrupted fetch job (see {@link com.conveyal.datatools.common.status.JobJournal}), or return null
+     * if the feed source no longer exists. Because a fetch only creates a new version if the feed has changed since the
+     * latest stored version, re-running a fetch that was interrupted during processing does not create a duplicate.
+     */
+    public static FetchSingleFeedJob recover(Map<String, String> parameters, Auth0UserProfile owner) {
+        FeedSource feedSource = Persistence.feedSources.getById(parameters.get("feedSourceId"));
+        if (feedSource == null) return null;
+        return new FetchSingleFeedJob(feedSource, owner, Boolean.parseBoolean(parameters.get("continueThread")));
+    }
+
     @Override
     public void jobLogic () {
         // TODO: fetch automatically vs. manually vs. in-house
@@ -53,19 +87,19 @@ public class FetchSingleFeedJob extends MonitorableJob {
         // Null result indicates that a fetch was not needed (GTFS has not been modified)
         // True failures will throw exceptions.
         if (result != null) {
-            // FetchSingleFeedJob should typically be run in a lightExecutor because it is a fairly lightweight task.
-            // ProcessSingleFeedJob often follows a fetch and requires significant time to complete,
-            // so FetchSingleFeedJob ought to be run in the heavyExecutor. Technically, the "fetch" completes
-            // quickly and the "processing" happens over time. So, we run the processing in a separate thread in order
-            // to match this user and system expectation.
+            // FetchSingleFeedJob is a fairly lightweight task, but ProcessSingleFeedJob often follows a fetch and
+            // requires significant time to complete. Technically, the "fetch" completes quickly and the "processing"
+            // happens over time. So, we queue the processing as a separate job in order to match this user and system
+            // expectation.
             //
-            // The exception (continueThread = true) is provided for FetchProjectFeedsJob, when we want the feeds to
-            // fetch and then process in sequence.
+            // The exception (continueThread = true) is provided for callers that want the feed to be fetched and then
+            // processed in sequence on the same thread.
             ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(result, this.owner, true);
+            processSingleFeedJob.priority = priority;
             if (continueThread) {
                 addNextJob(processSingleFeedJob);
             } else {
-                DataManager.heavyExecutor.execute(processSingleFeedJob);
+                JobExecutor.execute(processSingleFeedJob);
             }
         }
     }
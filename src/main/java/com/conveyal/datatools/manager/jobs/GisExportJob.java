@@ -6,26 +6,26 @@ import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.json.JsonUtil;
 import com.conveyal.gtfs.loader.Feed;
 import com.conveyal.gtfs.loader.Requirement;
 import com.conveyal.gtfs.loader.Table;
 import com.conveyal.gtfs.model.Agency;
 import com.conveyal.gtfs.model.Route;
 import com.conveyal.gtfs.model.Stop;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.io.Files;
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.LineString;
-import com.vividsolutions.jts.geom.Point;
-import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.io.FileUtils;
 import org.geotools.data.DataUtilities;
-import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureWriter;
 import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.data.simple.SimpleFeatureStore;
-import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.feature.SchemaException;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.opengis.feature.simple.SimpleFeature;
@@ -33,265 +33,479 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/** Export routes or stops for a GTFS feed version as a shapefile. */
+/**
+ * Export routes or stops for one or more GTFS feed versions as a zipped shapefile (or GeoJSON file). Each feed version
+ * is written to its own layer (i.e., its own .shp or .geojson file in the zip) by a sub-job, so the feed versions are
+ * exported concurrently. Features are streamed from the GTFS database to the layer files as they are read, so the
+ * size of an export is not limited by memory.
+ */
 public class GisExportJob extends MonitorableJob {
     public static final Logger LOG = LoggerFactory.getLogger(GisExportJob.class);
+    /** Number of rows to fetch at a time when streaming shape points and pattern stops from the database. */
+    private static final int FETCH_SIZE = 10000;
     public ExportType exportType;
+    public ExportFormat exportFormat;
     public Collection<String> feedIds;
+    /** Temp directory that the layers are written to before being zipped. */
+    private File outDir;
+    private final AtomicInteger featureCount = new AtomicInteger();
 
     public GisExportJob(ExportType exportType, File file, Collection<String> feedIds, Auth0UserProfile owner) {
+        this(exportType, ExportFormat.SHAPEFILE, file, feedIds, owner);
+    }
+
+    public GisExportJob(
+        ExportType exportType,
+        ExportFormat exportFormat,
+        File file,
+        Collection<String> feedIds,
+        Auth0UserProfile owner
+    ) {
         super(
             owner,
             String.format("Export %s GIS for feed", exportType.toString().toLowerCase()),
             JobType.EXPORT_GIS
         );
         this.exportType = exportType;
+        this.exportFormat = exportFormat;
         this.file = file;
         this.feedIds = feedIds;
         status.update("Beginning export", 5);
     }
 
+    /**
+     * Add a sub-job to export each feed version as a layer and a final sub-job to zip the layers once all of them have
+     * been written.
+     */
     @Override public void jobLogic() {
-        LOG.info("Storing shapefile for feeds {} at {}", feedIds, file.getAbsolutePath());
-        File outDir = Files.createTempDir();
-        LOG.info("Temp directory for shapefile: {}", outDir.getAbsolutePath());
-        File outShp = new File(outDir, file.getName().replaceAll("\\.zip", "") + ".shp");
-        Connection connection = null;
-        try {
-            GeometryFactory geometryFactory = new GeometryFactory();
-            ShapefileDataStoreFactory dataStoreFactory = new ShapefileDataStoreFactory();
-
-            Map<String, Serializable> params = new HashMap<>();
-            params.put("url", outShp.toURI().toURL());
-
-            ShapefileDataStore datastore = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
-            datastore.forceSchemaCRS(DefaultGeographicCRS.WGS84);
+        LOG.info("Storing {} for feeds {} at {}", exportFormat, feedIds, file.getAbsolutePath());
+        outDir = Files.createTempDir();
+        LOG.info("Temp directory for GIS export: {}", outDir.getAbsolutePath());
+        String baseName = file.getName().replaceAll("\\.zip", "");
+        Set<String> layerNames = new HashSet<>();
+        List<MonitorableJob> layerJobs = new ArrayList<>();
+        for (String feedId : feedIds) {
+            FeedVersion version = Persistence.feedVersions.getById(feedId);
+            if (version == null) {
+                status.fail(String.format("Could not find version %s", feedId));
+                return;
+            }
+            // A single layer keeps the name of the export file. Otherwise, each layer is named for its feed source.
+            String layerName = baseName;
+            if (feedIds.size() > 1) {
+                String feedName = version.parentFeedSource().name.replaceAll("[^A-Za-z0-9_-]", "_");
+                layerName = String.join("_", baseName, feedName);
+                for (int i = 2; layerNames.contains(layerName); i++) {
+                    layerName = String.join("_", baseName, feedName, Integer.toString(i));
+                }
+            }
+            layerNames.add(layerName);
+            LayerExportJob layerJob = new LayerExportJob(version, layerName);
+            addDependentJob(layerJob);
+            layerJobs.add(layerJob);
+        }
+        addDependentJob(new ZipLayersJob(), layerJobs.toArray(new MonitorableJob[0]));
+        status.update(String.format("Exporting %d layers", layerJobs.size()), 10);
+    }
 
-            final SimpleFeatureType STOP_TYPE = DataUtilities.createType(
-                    "Stop",
-                    String.join(",",
-                        // Geometry must be the first attribute for a shapefile (and must be named
-                        // "the_geom"). We must include SRID, otherwise the projection will be undefined.
-                        "the_geom:Point:srid=4326",
-                        "name:String",
-                        "code:String",
-                        "desc:String",
-                        "id:String",
-                        "agency:String"
-                    )
-                );
+    /** Clean up the temporary layer files (whether or not the export succeeded). */
+    @Override public void jobFinished() {
+        if (outDir == null) return;
+        try {
+            FileUtils.deleteDirectory(outDir);
+        } catch (IOException e) {
+            LOG.warn("Could not delete temp directory {}", outDir.getAbsolutePath(), e);
+        }
+    }
 
-            final SimpleFeatureType ROUTE_TYPE = DataUtilities.createType(
-                "Route", // <- the name for our feature type
+    /** Build the feature type for the export type. */
+    private SimpleFeatureType createFeatureType() throws SchemaException {
+        if (exportType.equals(ExportType.STOPS)) {
+            return DataUtilities.createType(
+                "Stop",
                 String.join(",",
                     // Geometry must be the first attribute for a shapefile (and must be named
                     // "the_geom"). We must include SRID, otherwise the projection will be undefined.
-                    "the_geom:LineString:srid=4326",
-                    "pattName:String",
-                    "shortName:String",
-                    "longName:String",
+                    "the_geom:Point:srid=4326",
+                    "name:String",
+                    "code:String",
                     "desc:String",
-                    "type:String",
-                    "url:String",
-                    "routeColor:String",
-                    "textColor:String",
-                    "shapeId:String",
+                    "id:String",
                     "agency:String"
                 )
             );
-            SimpleFeatureBuilder featureBuilder;
-            DefaultFeatureCollection features = new DefaultFeatureCollection();
-            // Get connection for use in fetching patterns. This is outside of for loop so we're
-            // not connecting multiple times.
-            connection = DataManager.GTFS_DATA_SOURCE.getConnection();
-            for (String feedId : feedIds) {
-                // Get feed version and connection to RDBMS feed.
-                FeedVersion version = Persistence.feedVersions.getById(feedId);
-                if (version == null) {
-                    throw new IllegalStateException(String.format("Could not find version %s", feedId));
-                }
-                Feed feed = new Feed(DataManager.GTFS_DATA_SOURCE, version.namespace);
-                Agency agency = feed.agencies.iterator().next();
-                String agencyName = agency != null
-                    ? agency.agency_name
-                    : version.parentFeedSource().name;
-                status.update(
-                    String.format(
-                        "Exporting %s for %s",
-                        exportType.toString().toLowerCase(),
-                        agencyName),
-                    40
-                );
+        }
+        return DataUtilities.createType(
+            "Route", // <- the name for our feature type
+            String.join(",",
+                // Geometry must be the first attribute for a shapefile (and must be named
+                // "the_geom"). We must include SRID, otherwise the projection will be undefined.
+                "the_geom:LineString:srid=4326",
+                "pattName:String",
+                "shortName:String",
+                "longName:String",
+                "desc:String",
+                "type:String",
+                "url:String",
+                "routeColor:String",
+                "textColor:String",
+                "shapeId:String",
+                "agency:String"
+            )
+        );
+    }
+
+    /** Open a writer for a new layer in the export format. */
+    private LayerWriter openLayer(String layerName, SimpleFeatureType featureType) throws IOException {
+        switch (exportFormat) {
+            case GEOJSON:
+                return new GeoJsonLayerWriter(new File(outDir, layerName + ".geojson"), layerName, featureType);
+            case SHAPEFILE:
+            default:
+                return new ShapefileLayerWriter(new File(outDir, layerName + ".shp"), featureType);
+        }
+    }
+
+    /**
+     * Writes the stops or routes (patterns) of a single feed version to a layer.
+     */
+    private class LayerExportJob extends MonitorableJob {
+        private final FeedVersion version;
+        private final String layerName;
+        private final GeometryFactory geometryFactory = new GeometryFactory();
+
+        LayerExportJob(FeedVersion version, String layerName) {
+            super(GisExportJob.this.owner, String.format("Export GIS layer %s", layerName), JobType.EXPORT_GIS);
+            this.version = version;
+            this.layerName = layerName;
+        }
+
+        @Override public void jobLogic() throws Exception {
+            Feed feed = new Feed(DataManager.GTFS_DATA_SOURCE, version.namespace);
+            Agency agency = feed.agencies.iterator().next();
+            String agencyName = agency != null
+                ? agency.agency_name
+                : version.parentFeedSource().name;
+            status.update(
+                String.format(
+                    "Exporting %s for %s",
+                    exportType.toString().toLowerCase(),
+                    agencyName),
+                40
+            );
+            int count;
+            try (LayerWriter writer = openLayer(layerName, createFeatureType())) {
                 if (exportType.equals(ExportType.STOPS)) {
-                    datastore.createSchema(STOP_TYPE);
-                    featureBuilder = new SimpleFeatureBuilder(STOP_TYPE);
-                    for (Stop stop : feed.stops) {
-                        Point point = geometryFactory.createPoint(
-                            new Coordinate(stop.stop_lon, stop.stop_lat)
-                        );
-                        LOG.info(point.toString());
-                        featureBuilder.add(point);
-                        featureBuilder.add(stop.stop_name);
-                        featureBuilder.add(stop.stop_code);
-                        featureBuilder.add(stop.stop_desc);
-                        featureBuilder.add(stop.stop_id);
-                        featureBuilder.add(agencyName);
-                        // Build feature (null id arg will generate default ID).
-                        SimpleFeature feature = featureBuilder.buildFeature(null);
-                        features.add(feature);
-                    }
+                    count = writeStops(feed, agencyName, writer);
                 } else if (exportType.equals(ExportType.ROUTES)) {
-                    datastore.createSchema(ROUTE_TYPE);
-                    featureBuilder = new SimpleFeatureBuilder(ROUTE_TYPE);
-                    // There is not a clean way to fetch patterns out of the RDBMS and it may not
-                    // be worth building a structured way with JDBCTableReader simply for
-                    // exporting a shapefile. If there are future similar cases, we may need to
-                    // refactor this into a more structured operation using Java objects or
-                    // com.conveyal.gtfs.loader.Feed
-                    // Note: we use generateSelectSql for PROPRIETARY because we encountered an issue with some feeds
-                    // (perhaps legacy) not containing the column patterns#direction_id.
-                    // See https://github.com/ibi-group/datatools-server/issues/203
-                    // TODO: replace with Table#generateSelectAllSql
-                    String patternsSql = Table.PATTERNS.generateSelectSql(version.namespace, Requirement.PROPRIETARY);
-                    PreparedStatement statement = connection.prepareStatement(patternsSql);
+                    count = writeRoutes(feed, agencyName, writer);
+                } else {
+                    throw new IllegalStateException("Invalid type");
+                }
+            }
+            featureCount.addAndGet(count);
+            LOG.info("Wrote {} features to layer {}", count, layerName);
+        }
+
+        private int writeStops(Feed feed, String agencyName, LayerWriter writer) throws IOException {
+            int count = 0;
+            for (Stop stop : feed.stops) {
+                writer.write(
+                    geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat)),
+                    stop.stop_name,
+                    stop.stop_code,
+                    stop.stop_desc,
+                    stop.stop_id,
+                    agencyName
+                );
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Write a feature for each trip pattern. Note that this will yield several lines for routes that have multiple
+         * patterns. There's no real good way to reconcile the shapes of multiple patterns. Rather than querying the
+         * points for each pattern separately, all shape points (and, for patterns without a shape, all pattern stops)
+         * are streamed in a single ordered query and each pattern is written as soon as its points have been read.
+         */
+        private int writeRoutes(Feed feed, String agencyName, LayerWriter writer) throws IOException, SQLException {
+            Map<String, Route> routesById = new HashMap<>();
+            for (Route route : feed.routes) routesById.put(route.route_id, route);
+            RouteFeatureWriter routeWriter = new RouteFeatureWriter(routesById, agencyName, writer);
+            try (Connection connection = DataManager.GTFS_DATA_SOURCE.getConnection()) {
+                // Results are only streamed (rather than read into memory all at once) with auto-commit disabled.
+                connection.setAutoCommit(false);
+                // There is not a clean way to fetch patterns out of the RDBMS and it may not
+                // be worth building a structured way with JDBCTableReader simply for
+                // exporting a shapefile. If there are future similar cases, we may need to
+                // refactor this into a more structured operation using Java objects or
+                // com.conveyal.gtfs.loader.Feed
+                // Note: we use generateSelectSql for PROPRIETARY because we encountered an issue with some feeds
+                // (perhaps legacy) not containing the column patterns#direction_id.
+                // See https://github.com/ibi-group/datatools-server/issues/203
+                // TODO: replace with Table#generateSelectAllSql
+                String patternsSql = Table.PATTERNS.generateSelectSql(version.namespace, Requirement.PROPRIETARY);
+                Map<String, List<String[]>> patternsForShapeIds = new HashMap<>();
+                Map<String, List<String[]>> patternsWithoutShapes = new HashMap<>();
+                try (PreparedStatement statement = connection.prepareStatement(patternsSql)) {
                     ResultSet resultSet = statement.executeQuery();
-                    // we loop over trip patterns. Note that this will yield several lines for routes that have
-                    // multiple patterns. There's no real good way to reconcile the shapes of multiple patterns.
                     while (resultSet.next()) {
-                        String pattern_id = resultSet.getString("pattern_id");
-                        String route_id = resultSet.getString("route_id");
-                        String name = resultSet.getString("name");
-                        String shape_id = resultSet.getString("shape_id");
-                        LineString shape;
-                        if (shape_id != null) {
-                            // Select shape points for pattern shape and build line string.
-                            PreparedStatement shapeStatement = connection.prepareStatement(
-                                String.format(
-                                    "select shape_pt_lon, shape_pt_lat, shape_pt_sequence, "
-                                        + "shape_id from %s.shapes where shape_id = ? "
-                                        + "order by shape_pt_sequence",
-                                    version.namespace
-                                ));
-                            shapeStatement.setString(1, shape_id);
-                            ResultSet shapePointsResultSet = shapeStatement.executeQuery();
-                            // Construct line string from shape points.
-                            List<Coordinate> coordinates = new ArrayList<>();
-                            while (shapePointsResultSet.next()) {
-                                double lon = shapePointsResultSet.getDouble(1);
-                                double lat = shapePointsResultSet.getDouble(2);
-                                coordinates.add(new Coordinate(lon, lat));
-                            }
-                            Coordinate[] coords = new Coordinate[coordinates.size()];
-                            coords = coordinates.toArray(coords);
-                            shape = geometryFactory.createLineString(coords);
+                        String[] pattern = new String[] {
+                            resultSet.getString("pattern_id"),
+                            resultSet.getString("route_id"),
+                            resultSet.getString("name"),
+                            resultSet.getString("shape_id")
+                        };
+                        if (pattern[3] != null) {
+                            patternsForShapeIds.computeIfAbsent(pattern[3], id -> new ArrayList<>()).add(pattern);
                         } else {
-                            LOG.info("Building pattern {} from stops", pattern_id);
-                            // Build the shape from the pattern stops if there is no shape for
-                            // pattern.
-                            PreparedStatement stopsStatement = connection.prepareStatement(
-                                String.format(
-                                    "select stop_lon, stop_lat, stops.stop_id, stop_sequence, pattern_id"
-                                        + " from %s.stops as stops, %s.pattern_stops as ps"
-                                        + " where pattern_id = ? and stops.stop_id = ps.stop_id"
-                                        + " order by pattern_id, stop_sequence",
-                                    version.namespace, version.namespace
-                                ));
-                            stopsStatement.setString(1, pattern_id);
-                            List<Coordinate> coordinates = new ArrayList<>();
-                            ResultSet stopsResultSet = stopsStatement.executeQuery();
-                            while (stopsResultSet.next()) {
-                                double lon = stopsResultSet.getDouble(1);
-                                double lat = stopsResultSet.getDouble(2);
-                                coordinates.add(new Coordinate(lon, lat));
-                            }
-                            Coordinate[] coords = new Coordinate[coordinates.size()];
-                            coords = coordinates.toArray(coords);
-                            shape = geometryFactory.createLineString(coords);
+                            LOG.info("Building pattern {} from stops", pattern[0]);
+                            patternsWithoutShapes.computeIfAbsent(pattern[0], id -> new ArrayList<>()).add(pattern);
                         }
+                    }
+                }
+                if (!patternsForShapeIds.isEmpty()) {
+                    String shapesSql = String.format(
+                        "select shape_id, shape_pt_lon, shape_pt_lat from %s.shapes order by shape_id, shape_pt_sequence",
+                        version.namespace
+                    );
+                    routeWriter.writeLines(connection, shapesSql, patternsForShapeIds);
+                }
+                if (!patternsWithoutShapes.isEmpty()) {
+                    // Build the shape from the pattern stops if there is no shape for pattern.
+                    String patternStopsSql = String.format(
+                        "select ps.pattern_id, stop_lon, stop_lat from %s.stops as stops, %s.pattern_stops as ps"
+                            + " where stops.stop_id = ps.stop_id order by ps.pattern_id, ps.stop_sequence",
+                        version.namespace, version.namespace
+                    );
+                    routeWriter.writeLines(connection, patternStopsSql, patternsWithoutShapes);
+                }
+                connection.rollback();
+            }
+            return routeWriter.count;
+        }
+    }
 
-                        Route route = feed.routes.get(route_id);
-                        if (route == null) {
-                            LOG.warn("Route ({}) for pattern {} does not exist. Skipping pattern"
-                                , route_id, pattern_id);
-                            continue;
-                        }
-                        featureBuilder.add(shape);
-                        featureBuilder.add(name);
-                        featureBuilder.add(route.route_short_name);
-                        featureBuilder.add(route.route_long_name);
-                        featureBuilder.add(route.route_desc);
-                        featureBuilder.add(route.route_type);
-                        featureBuilder.add(route.route_url);
-                        featureBuilder.add(route.route_color);
-                        featureBuilder.add(route.route_text_color);
-                        featureBuilder.add(shape_id);
-                        featureBuilder.add(agencyName);
-                        SimpleFeature feature = featureBuilder.buildFeature(null);
-                        features.add(feature);
+    /**
+     * Writes pattern features from a query that returns the points of each line (ordered by line ID and sequence).
+     */
+    private static class RouteFeatureWriter {
+        private final GeometryFactory geometryFactory = new GeometryFactory();
+        private final Map<String, Route> routesById;
+        private final String agencyName;
+        private final LayerWriter writer;
+        int count;
+
+        RouteFeatureWriter(Map<String, Route> routesById, String agencyName, LayerWriter writer) {
+            this.routesById = routesById;
+            this.agencyName = agencyName;
+            this.writer = writer;
+        }
+
+        /**
+         * Stream the results of the query (line ID, lon, lat) and write a feature for each pattern using each line.
+         * Any patterns whose line has no points are written with an empty line string.
+         */
+        void writeLines(Connection connection, String sql, Map<String, List<String[]>> patternsForLineIds)
+            throws SQLException, IOException {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(FETCH_SIZE);
+                ResultSet resultSet = statement.executeQuery();
+                String lineId = null;
+                List<Coordinate> coordinates = new ArrayList<>();
+                while (resultSet.next()) {
+                    String nextLineId = resultSet.getString(1);
+                    // Note: the line ID may be null (e.g., for a pattern without a shape).
+                    if (!Objects.equals(nextLineId, lineId)) {
+                        if (lineId != null) writePatterns(patternsForLineIds.remove(lineId), coordinates);
+                        lineId = nextLineId;
+                        coordinates.clear();
                     }
-                } else {
-                    throw new IllegalStateException("Invalid type");
+                    // Skip the points of lines that are not used by any pattern.
+                    if (!patternsForLineIds.containsKey(lineId)) continue;
+                    coordinates.add(new Coordinate(resultSet.getDouble(2), resultSet.getDouble(3)));
                 }
+                if (lineId != null) writePatterns(patternsForLineIds.remove(lineId), coordinates);
             }
-            if (features.size() == 0) {
-                throw new IllegalStateException("Cannot write shapefile with zero features!");
+            for (List<String[]> patterns : patternsForLineIds.values()) {
+                writePatterns(patterns, new ArrayList<>());
             }
-            // Save the file
-
-            Transaction transaction = new DefaultTransaction("create");
+        }
 
-            String typeName = datastore.getTypeNames()[0];
-            SimpleFeatureSource featureSource = datastore.getFeatureSource(typeName);
-            // Check that we have read-write access to disk:
-            // http://docs.geotools.org/stable/userguide/library/data/featuresource.html
-            if (featureSource instanceof SimpleFeatureStore) {
-                SimpleFeatureStore featureStore = (SimpleFeatureStore) featureSource;
-                featureStore.setTransaction(transaction);
-                try {
-                    LOG.info("Adding {} features to shapefile.", features.size());
-                    featureStore.addFeatures(features);
-                    transaction.commit();
-                } catch (Exception e)  {
-                    e.printStackTrace();
-                    transaction.rollback();
-                    throw e;
-                } finally {
-                    transaction.close();
+        private void writePatterns(List<String[]> patterns, List<Coordinate> coordinates) throws IOException {
+            if (patterns == null) return;
+            Geometry shape = geometryFactory.createLineString(coordinates.toArray(new Coordinate[0]));
+            for (String[] pattern : patterns) {
+                String patternId = pattern[0];
+                String routeId = pattern[1];
+                Route route = routesById.get(routeId);
+                if (route == null) {
+                    LOG.warn("Route ({}) for pattern {} does not exist. Skipping pattern", routeId, patternId);
+                    continue;
                 }
-            } else {
-                // If this is thrown, there could be some other issue unrelated to read/write
-                // access, for example, during development of this feature this error was thrown
-                // when there were no features contained within the shapefile.
-                throw new Exception(typeName + " does not support read/write access (or other "
-                    + "unknown issue).");
+                writer.write(
+                    shape,
+                    pattern[2],
+                    route.route_short_name,
+                    route.route_long_name,
+                    route.route_desc,
+                    route.route_type,
+                    route.route_url,
+                    route.route_color,
+                    route.route_text_color,
+                    pattern[3],
+                    agencyName
+                );
+                count++;
             }
-            LOG.info("Zipping shapefile {}", file.getAbsolutePath());
-            // zip the file
-            DirectoryZip.zip(outDir, file);
+        }
+    }
+
+    /**
+     * Zips the layers once they have all been written.
+     */
+    private class ZipLayersJob extends MonitorableJob {
+        ZipLayersJob() {
+            super(GisExportJob.this.owner, "Zip GIS export", JobType.EXPORT_GIS);
+        }
 
-            // Clean up temporary files.
-            for (File f : outDir.listFiles()) {
-                f.delete();
+        @Override public void jobLogic() throws IOException {
+            if (featureCount.get() == 0) {
+                status.fail("Cannot write GIS export with zero features!");
+                return;
             }
-            outDir.delete();
+            LOG.info("Zipping {} features to {}", featureCount.get(), file.getAbsolutePath());
+            DirectoryZip.zip(outDir, file);
             status.completeSuccessfully("Export complete!");
-        } catch (Exception e) {
-            status.fail("An exception occurred during the GIS export", e);
-        } finally {
-            if (connection != null) DbUtils.closeQuietly(connection);
+        }
+    }
+
+    /** Writes features to a single layer as they are produced. */
+    private interface LayerWriter extends Closeable {
+        /** Write a feature with the geometry and the (non-geometry) attribute values in feature type order. */
+        void write(Geometry geometry, Object... values) throws IOException;
+    }
+
+    /**
+     * Writes features directly to a shapefile. The auto-commit transaction is used so that features are not buffered in
+     * memory until a commit.
+     */
+    private static class ShapefileLayerWriter implements LayerWriter {
+        private final ShapefileDataStore datastore;
+        private final FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter;
+        private final SimpleFeatureBuilder featureBuilder;
+
+        ShapefileLayerWriter(File shpFile, SimpleFeatureType featureType) throws IOException {
+            Map<String, Serializable> params = new HashMap<>();
+            params.put("url", shpFile.toURI().toURL());
+            datastore = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(params);
+            datastore.forceSchemaCRS(DefaultGeographicCRS.WGS84);
+            datastore.createSchema(featureType);
+            String typeName = datastore.getTypeNames()[0];
+            featureWriter = datastore.getFeatureWriterAppend(typeName, Transaction.AUTO_COMMIT);
+            featureBuilder = new SimpleFeatureBuilder(datastore.getSchema());
+        }
+
+        @Override public void write(Geometry geometry, Object... values) throws IOException {
+            // The feature builder converts the values to the attribute types (e.g., route type to string).
+            featureBuilder.add(geometry);
+            featureBuilder.addAll(values);
+            SimpleFeature feature = featureBuilder.buildFeature(null);
+            SimpleFeature next = featureWriter.next();
+            next.setAttributes(feature.getAttributes());
+            featureWriter.write();
+        }
+
+        @Override public void close() throws IOException {
+            try {
+                featureWriter.close();
+            } finally {
+                datastore.dispose();
+            }
+        }
+    }
+
+    /**
+     * Writes features to a GeoJSON feature collection (in WGS84, as required by the GeoJSON spec).
+     */
+    private static class GeoJsonLayerWriter implements LayerWriter {
+        private final JsonGenerator generator;
+        private final List<String> attributeNames = new ArrayList<>();
+        private final List<Class<?>> attributeBindings = new ArrayList<>();
+
+        GeoJsonLayerWriter(File file, String layerName, SimpleFeatureType featureType) throws IOException {
+            // Skip the geometry, which is the first attribute.
+            for (int i = 1; i < featureType.getAttributeCount(); i++) {
+                attributeNames.add(featureType.getDescriptor(i).getLocalName());
+                attributeBindings.add(featureType.getDescriptor(i).getType().getBinding());
+            }
+            generator = JsonUtil.objectMapper.getFactory().createGenerator(file, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeStringField("type", "FeatureCollection");
+            generator.writeStringField("name", layerName);
+            generator.writeArrayFieldStart("features");
+        }
+
+        @Override public void write(Geometry geometry, Object... values) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "Feature");
+            generator.writeObjectFieldStart("geometry");
+            generator.writeStringField("type", geometry.getGeometryType());
+            generator.writeFieldName("coordinates");
+            if (geometry.getDimension() == 0) {
+                writeCoordinate(geometry.getCoordinate());
+            } else {
+                generator.writeStartArray();
+                for (Coordinate coordinate : geometry.getCoordinates()) writeCoordinate(coordinate);
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("properties");
+            for (int i = 0; i < attributeNames.size(); i++) {
+                Object value = i < values.length ? values[i] : null;
+                // Convert values to the attribute types as the shapefile writer does (e.g., route type to string), so
+                // that both formats have the same schema.
+                if (value != null && String.class.equals(attributeBindings.get(i))) value = value.toString();
+                generator.writeObjectField(attributeNames.get(i), value);
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        private void writeCoordinate(Coordinate coordinate) throws IOException {
+            generator.writeStartArray();
+            generator.writeNumber(coordinate.x);
+            generator.writeNumber(coordinate.y);
+            generator.writeEndArray();
+        }
+
+        @Override public void close() throws IOException {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.close();
         }
     }
 
     public enum ExportType { ROUTES, STOPS }
+
+    public enum ExportFormat { SHAPEFILE, GEOJSON }
 }
@@ -8,6 +8,7 @@ import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.persistence.FeedCache;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.error.NewGTFSError;
@@ -17,15 +18,22 @@ import com.conveyal.gtfs.loader.ReferenceTracker;
 import com.conveyal.gtfs.loader.Table;
 import com.csvreader.CsvReader;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.supercsv.io.CsvListWriter;
 import org.supercsv.prefs.CsvPreference;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
@@ -33,6 +41,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -40,7 +49,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -65,7 +79,7 @@ import static com.conveyal.gtfs.loader.Field.getFieldIndex;
  * but in essence, this strategy attempts to merge a current and future feed into
  * a combined file. For certain entities (specifically stops and routes) it uses
  * alternate fields as primary keys (stop_code and route_short_name) if they are
- * available. There is some complexity related to this in {@link #constructMergedTable(Table, List, ZipOutputStream)}.
+ * available. There is some complexity related to this in {@link #constructMergedTable(Table, List, ZipOutputStream, MergeFeedsResult)}.
  * Another defining characteristic is to prefer entities defined in the "future"
  * file if there are matching entities in the current file.
  * Future merge strategies could be added here. For example, some potential customers have mentioned a desire to
@@ -126,6 +140,7 @@ public class MergeFeedsJob extends MonitorableJob {
 
     private static final Logger LOG = LoggerFactory.getLogger(MergeFeedsJob.class);
     public static final ObjectMapper mapper = new ObjectMapper();
+    private static final HashFunction FINGERPRINT_HASH = Hashing.murmur3_128();
     private final Set<FeedVersion> feedVersions;
     private final FeedSource feedSource;
     private final ReferenceTracker referenceTracker = new ReferenceTracker();
@@ -140,6 +155,14 @@ public class MergeFeedsJob extends MonitorableJob {
      */
     final FeedVersion mergedVersion;
     public boolean failOnDuplicateTripId = true;
+    /**
+     * Whether tables should be merged concurrently (each into its own temporary file before the merged zip is
+     * assembled). This only applies to {@link MergeFeedsType#REGIONAL} merges, where every identifier is scoped to its
+     * feed and tables can be merged independently. {@link MergeFeedsType#SERVICE_PERIOD} merges always run serially
+     * because the skipped/remapped IDs tracked for one table (e.g., calendar) determine how later tables (e.g., trips)
+     * are merged.
+     */
+    public boolean mergeTablesInParallel = true;
 
     public MergeFeedsJob(Auth0UserProfile owner, Set<FeedVersion> feedVersions, String file, MergeFeedsType mergeType) {
         this(owner, feedVersions, file, mergeType, true);
@@ -193,6 +216,12 @@ public class MergeFeedsJob extends MonitorableJob {
         this.mergeFeedsResult = new MergeFeedsResult(mergeType);
     }
 
+    @Override
+    public String retrieveProjectId() {
+        if (projectId != null) return projectId;
+        return feedSource != null ? feedSource.projectId : null;
+    }
+
     /**
      * The final stage handles clean up (deleting temp file) and adding the next job to process the
      * new merged version (assuming the merge did not fail).
@@ -219,8 +248,6 @@ public class MergeFeedsJob extends MonitorableJob {
         // Create the zipfile.
         ZipOutputStream out = new ZipOutputStream(new FileOutputStream(mergedTempFile));
         LOG.info("Created merge file: " + mergedTempFile.getAbsolutePath());
-        List<FeedToMerge> feedsToMerge = collectAndSortFeeds(feedVersions);
-
         // Determine which tables to merge (only merge GTFS+ tables for MTC extension).
         final List<Table> tablesToMerge =
             Arrays.stream(Table.tablesInOrder)
@@ -231,10 +258,7 @@ public class MergeFeedsJob extends MonitorableJob {
             // regional and MTC merge strategies.
             tablesToMerge.addAll(Arrays.asList(GtfsPlusTable.tables));
         }
-        int numberOfTables = tablesToMerge.size();
-        // Loop over GTFS tables and merge each feed one table at a time.
-        for (int i = 0; i < numberOfTables; i++) {
-            Table table = tablesToMerge.get(i);
+        tablesToMerge.removeIf(table -> {
             if (mergeType.equals(REGIONAL) && table.name.equals(Table.FEED_INFO.name)) {
                 // It does not make sense to include the feed_info table when performing a
                 // regional feed merge because this file is intended to contain data specific to
@@ -242,25 +266,36 @@ public class MergeFeedsJob extends MonitorableJob {
                 // TODO: Perhaps future work can generate a special feed_info file for the merged
                 //  file.
                 LOG.warn("Skipping feed_info table for regional merge.");
-                continue;
+                return true;
             }
             if (table.name.equals(Table.PATTERNS.name) || table.name.equals(Table.PATTERN_STOP.name)) {
                 LOG.warn("Skipping editor-only table {}.", table.name);
-                continue;
+                return true;
             }
-            double percentComplete = Math.round((double) i / numberOfTables * 10000d) / 100d;
-            status.update("Merging " + table.name, percentComplete);
-            // Perform the merge.
-            LOG.info("Writing {} to merged feed", table.name);
-            int mergedLineNumber = constructMergedTable(table, feedsToMerge, out);
-            if (mergedLineNumber == 0) {
-                LOG.warn("Skipping {} table. No entries found in zip files.", table.name);
-            } else if (mergedLineNumber == -1) {
-                LOG.error("Merge {} table failed!", table.name);
+            return false;
+        });
+        List<FeedToMerge> feedsToMerge = collectAndSortFeeds(feedVersions);
+        try {
+            if (mergeTablesInParallel && mergeType.equals(REGIONAL)) {
+                mergeTablesInParallel(tablesToMerge, feedsToMerge, out);
+            } else {
+                int numberOfTables = tablesToMerge.size();
+                // Loop over GTFS tables and merge each feed one table at a time.
+                for (int i = 0; i < numberOfTables; i++) {
+                    Table table = tablesToMerge.get(i);
+                    status.update("Merging " + table.name, i, numberOfTables);
+                    // Perform the merge.
+                    LOG.info("Writing {} to merged feed", table.name);
+                    int mergedLineNumber = constructMergedTable(table, feedsToMerge, out, mergeFeedsResult);
+                    logMergedTableResult(table, mergedLineNumber);
+                }
             }
+            // Close output stream for zip file.
+            out.close();
+        } finally {
+            // Release the input feeds (so that they may be evicted from the feed cache).
+            for (FeedToMerge feed : feedsToMerge) feed.close();
         }
-        // Close output stream for zip file.
-        out.close();
         if (mergeFeedsResult.failed) {
             // Fail job if the merge result indicates something went wrong.
             status.fail("Merging feed versions failed.");
@@ -279,21 +314,99 @@ public class MergeFeedsJob extends MonitorableJob {
         }
     }
 
+    /**
+     * Merge each table concurrently into its own temporary single-entry zip file and then copy the table entries (in
+     * the original table order) into the merged zip file as soon as each table is complete. Each table is merged with
+     * its own {@link MergeFeedsResult}, which is combined into {@link #mergeFeedsResult} once the table is complete, so
+     * that the results do not need to be shared between threads. The temporary files are written without compression
+     * because the entries are compressed when they are copied into the merged zip.
+     */
+    private void mergeTablesInParallel(List<Table> tablesToMerge, List<FeedToMerge> feedsToMerge,
+        ZipOutputStream out) throws IOException {
+        int numberOfTables = tablesToMerge.size();
+        int threads = Math.max(1, Math.min(numberOfTables, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<File> tableFiles = new ArrayList<>();
+        try {
+            List<Future<MergeFeedsResult>> tableResults = new ArrayList<>();
+            for (Table table : tablesToMerge) {
+                File tableFile = File.createTempFile(table.name, ".zip");
+                tableFiles.add(tableFile);
+                tableResults.add(executor.submit(() -> {
+                    MergeFeedsResult tableResult = new MergeFeedsResult(mergeType);
+                    LOG.info("Writing {} to temp file {}", table.name, tableFile.getAbsolutePath());
+                    try (ZipOutputStream tableOut = new ZipOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tableFile))
+                    )) {
+                        tableOut.setLevel(Deflater.NO_COMPRESSION);
+                        int mergedLineNumber = constructMergedTable(table, feedsToMerge, tableOut, tableResult);
+                        logMergedTableResult(table, mergedLineNumber);
+                    }
+                    return tableResult;
+                }));
+            }
+            for (int i = 0; i < numberOfTables; i++) {
+                Table table = tablesToMerge.get(i);
+                MergeFeedsResult tableResult = tableResults.get(i).get();
+                mergeFeedsResult.combine(tableResult);
+                copyTableEntry(tableFiles.get(i), out);
+                status.update("Merged " + table.name, i + 1, numberOfTables);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging tables", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Could not merge tables", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            for (File tableFile : tableFiles) {
+                if (!tableFile.delete()) LOG.warn("Could not delete temp file {}", tableFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Copy the table entry (if any) from a temporary single-entry zip file written by
+     * {@link #mergeTablesInParallel} into the merged zip file.
+     */
+    private static void copyTableEntry(File tableFile, ZipOutputStream out) throws IOException {
+        try (ZipFile tableZip = new ZipFile(tableFile)) {
+            Enumeration<? extends ZipEntry> entries = tableZip.entries();
+            // If no lines were merged for the table, the zip will not contain an entry.
+            if (!entries.hasMoreElements()) return;
+            ZipEntry tableEntry = entries.nextElement();
+            out.putNextEntry(new ZipEntry(tableEntry.getName()));
+            try (InputStream in = tableZip.getInputStream(tableEntry)) {
+                ByteStreams.copy(in, out);
+            }
+            out.closeEntry();
+        }
+    }
+
+    private static void logMergedTableResult(Table table, int mergedLineNumber) {
+        if (mergedLineNumber == 0) {
+            LOG.warn("Skipping {} table. No entries found in zip files.", table.name);
+        } else if (mergedLineNumber == -1) {
+            LOG.error("Merge {} table failed!", table.name);
+        }
+    }
+
     /**
      * Collect zipFiles for each feed version before merging tables.
      * Note: feed versions are sorted by first calendar date so that future dataset is iterated over first. This is
      * required for the MTC merge strategy which prefers entities from the future dataset over past entities.
      */
     private List<FeedToMerge> collectAndSortFeeds(Set<FeedVersion> feedVersions) {
-        return feedVersions.stream().map(version -> {
+        return feedVersions.stream().filter(version -> version.validationResult != null
+            && version.validationResult.firstCalendarDate != null).map(version -> {
             try {
                 return new FeedToMerge(version);
             } catch (Exception e) {
                 LOG.error("Could not create zip file for version: {}", version.version);
                 return null;
             }
-        }).filter(Objects::nonNull).filter(entry -> entry.version.validationResult != null
-            && entry.version.validationResult.firstCalendarDate != null)
+        }).filter(Objects::nonNull)
             // MTC-specific sort mentioned in above comment.
             // TODO: If another merge strategy requires a different sort order, a merge type check should be added.
             .sorted(Comparator.comparing(entry -> entry.version.validationResult.firstCalendarDate,
@@ -341,10 +454,11 @@ public class MergeFeedsJob extends MonitorableJob {
      * @param table        table to merge
      * @param feedsToMerge map of feedSources to zipFiles from which to extract the .txt tables
      * @param out          output stream to write table into
+     * @param result       merge result to record the outcome of merging the table in
      * @return number of lines in merged table
      */
     private int constructMergedTable(Table table, List<FeedToMerge> feedsToMerge,
-        ZipOutputStream out) throws IOException {
+        ZipOutputStream out, MergeFeedsResult result) throws IOException {
         // CSV writer used to write to zip file.
         CsvListWriter writer = new CsvListWriter(new OutputStreamWriter(out), CsvPreference.STANDARD_PREFERENCE);
         String keyField = table.getKeyFieldName();
@@ -363,11 +477,13 @@ public class MergeFeedsJob extends MonitorableJob {
                     break;
             }
         }
-        // Set up objects for tracking the rows encountered
-        Map<String, String[]> rowValuesForStopOrRouteId = new HashMap<>();
-        Set<String> rowStrings = new HashSet<>();
+        // Set up objects for tracking the rows encountered. Only the route/stop ID is needed for stops and routes
+        // (to remap references to a matching route/stop), and only 64-bit fingerprints of rows/IDs are needed to check
+        // for duplicates, which keeps these structures small even for very large tables.
+        Map<String, String> primaryKeyForStopOrRouteKey = new HashMap<>();
+        TLongSet rowFingerprints = new TLongHashSet();
         // Track shape_ids found in future feed in order to check for conflicts with active feed (MTC only).
-        Set<String> shapeIdsInFutureFeed = new HashSet<>();
+        TLongSet shapeIdsInFutureFeed = new TLongHashSet();
         int mergedLineNumber = 0;
         // Get the spec fields to export
         List<Field> specFields = table.specFields();
@@ -391,7 +507,7 @@ public class MergeFeedsJob extends MonitorableJob {
                 // null. If the value becomes non-null, the agency_id is missing and needs to be
                 // replaced with the generated value stored in this variable.
                 String newAgencyId = null;
-                mergeFeedsResult.feedCount++;
+                result.feedCount++;
                 FeedToMerge feed = feedsToMerge.get(feedIndex);
                 FeedVersion version = feed.version;
                 FeedSource feedSource = version.parentFeedSource();
@@ -453,8 +569,8 @@ public class MergeFeedsJob extends MonitorableJob {
                                     otherAgencyId
                                 );
                                 LOG.error(message);
-                                mergeFeedsResult.failed = true;
-                                mergeFeedsResult.failureReasons.add(message);
+                                result.failed = true;
+                                result.failureReasons.add(message);
                                 return -1;
                             }
                             LOG.warn("Skipping {} file for feed {}/{} (future file preferred)",
@@ -536,17 +652,17 @@ public class MergeFeedsJob extends MonitorableJob {
                                     // However... if the second feed was missing stop_codes and the first feed was not,
                                     // fail the merge job.
                                     if (feedIndex == 1 && !stopCodeMissingFromFirstFeed) {
-                                        mergeFeedsResult.failed = true;
-                                        mergeFeedsResult.errorCount++;
-                                        mergeFeedsResult.failureReasons.add(
+                                        result.failed = true;
+                                        result.errorCount++;
+                                        result.failureReasons.add(
                                             stopCodeFailureMessage(stopsMissingStopCodeCount, stopsCount, specialStopsCount)
                                         );
                                     }
                                 } else if (stopsMissingStopCodeCount > 0) {
                                     // If some, but not all, stops are missing stop_code, the merge feeds job must fail.
-                                    mergeFeedsResult.failed = true;
-                                    mergeFeedsResult.errorCount++;
-                                    mergeFeedsResult.failureReasons.add(
+                                    result.failed = true;
+                                    result.errorCount++;
+                                    result.failureReasons.add(
                                         stopCodeFailureMessage(stopsMissingStopCodeCount, stopsCount, specialStopsCount)
                                     );
                                 }
@@ -588,8 +704,8 @@ public class MergeFeedsJob extends MonitorableJob {
                                 String message = String.format(
                                     "Feed %s has multiple agency records but no agency_id values.",
                                     feed.version.id);
-                                mergeFeedsResult.failed = true;
-                                mergeFeedsResult.failureReasons.add(message);
+                                result.failed = true;
+                                result.failureReasons.add(message);
                                 LOG.error(message);
                                 return -1;
                             }
@@ -616,7 +732,7 @@ public class MergeFeedsJob extends MonitorableJob {
                             // See https://github.com/ibi-group/datatools-server/issues/244
                             if (feedIndex == 1 && field.name.equals("service_id")) {
                                 valueToWrite = String.join(":", idScope, val);
-                                mergeFeedsResult.remappedIds.put(
+                                result.remappedIds.put(
                                     getTableScopedValue(table, idScope, val),
                                     valueToWrite
                                 );
@@ -646,7 +762,7 @@ public class MergeFeedsJob extends MonitorableJob {
                                         // Modify service_id and ensure that referencing trips
                                         // have service_id updated.
                                         valueToWrite = String.join(":", idScope, val);
-                                        mergeFeedsResult.remappedIds.put(key, valueToWrite);
+                                        result.remappedIds.put(key, valueToWrite);
                                     }
                                     int startDateIndex =
                                         getFieldIndex(fieldsFoundInZip, "start_date");
@@ -672,7 +788,7 @@ public class MergeFeedsJob extends MonitorableJob {
                                                 keyValue);
                                             String key =
                                                 getTableScopedValue(table, idScope, keyValue);
-                                            mergeFeedsResult.skippedIds.add(key);
+                                            result.skippedIds.add(key);
                                             skipRecord = true;
                                             continue;
                                         }
@@ -695,7 +811,7 @@ public class MergeFeedsJob extends MonitorableJob {
                                     // Track service ID because we want to avoid removing trips that may reference this
                                     // service_id when the service_id is used by calendar_dates that operate in the valid
                                     // date range, i.e., before the future feed's first date.
-                                    if (field.name.equals("service_id")) mergeFeedsResult.serviceIds.add(valueToWrite);
+                                    if (field.name.equals("service_id")) result.serviceIds.add(valueToWrite);
                                     break;
                                 case "calendar_dates":
                                     // Drop any calendar_dates.txt records from the existing feed for dates that are
@@ -709,7 +825,7 @@ public class MergeFeedsJob extends MonitorableJob {
                                                 keyValue,
                                                 futureFeedFirstDate);
                                             String key = getTableScopedValue(table, idScope, keyValue);
-                                            mergeFeedsResult.skippedIds.add(key);
+                                            result.skippedIds.add(key);
                                             skipRecord = true;
                                             continue;
                                         }
@@ -717,7 +833,7 @@ public class MergeFeedsJob extends MonitorableJob {
                                     // Track service ID because we want to avoid removing trips that may reference this
                                     // service_id when the service_id is used by calendar.txt records that operate in
                                     // the valid date range, i.e., before the future feed's first date.
-                                    if (field.name.equals("service_id")) mergeFeedsResult.serviceIds.add(keyValue);
+                                    if (field.name.equals("service_id")) result.serviceIds.add(keyValue);
                                     break;
                                 case "shapes":
                                     // If a shape_id is found in both future and active datasets, all shape points from
@@ -728,15 +844,15 @@ public class MergeFeedsJob extends MonitorableJob {
                                     if (field.name.equals("shape_id")) {
                                         if (feedIndex == 0) {
                                             // Track shape_id if working on future feed.
-                                            shapeIdsInFutureFeed.add(val);
-                                        } else if (shapeIdsInFutureFeed.contains(val)) {
+                                            shapeIdsInFutureFeed.add(fingerprint(val));
+                                        } else if (shapeIdsInFutureFeed.contains(fingerprint(val))) {
                                             // For the active feed, if the shape_id was already processed from the
                                             // future feed, we need to add the feed-scope to avoid weird, hybrid shapes
                                             // with points from both feeds.
                                             valueToWrite = String.join(":", idScope, val);
                                             // Update key value for subsequent ID conflict checks for this row.
                                             keyValue = valueToWrite;
-                                            mergeFeedsResult.remappedIds.put(
+                                            result.remappedIds.put(
                                                 getTableScopedValue(table, idScope, val),
                                                 valueToWrite
                                             );
@@ -756,12 +872,12 @@ public class MergeFeedsJob extends MonitorableJob {
                                     // cause of the failure. Merge result should include all conflicting trip_ids.
                                     for (NewGTFSError error : idErrors) {
                                         if (error.errorType.equals(NewGTFSErrorType.DUPLICATE_ID)) {
-                                            mergeFeedsResult.failureReasons
+                                            result.failureReasons
                                                 .add("Trip ID conflict caused merge failure.");
-                                            mergeFeedsResult.idConflicts.add(error.badValue);
-                                            mergeFeedsResult.errorCount++;
+                                            result.idConflicts.add(error.badValue);
+                                            result.errorCount++;
                                             if (failOnDuplicateTripId)
-                                                mergeFeedsResult.failed = true;
+                                                result.failed = true;
                                             skipRecord = true;
                                         }
                                     }
@@ -821,15 +937,14 @@ public class MergeFeedsJob extends MonitorableJob {
                                             // Extract the route/stop ID value used for the
                                             // route/stop with already encountered matching
                                             // short name/stop code.
-                                            String[] strings = rowValuesForStopOrRouteId.get(
+                                            String keyForMatchingAltId = primaryKeyForStopOrRouteKey.get(
                                                 String.join(":", keyField, val)
                                             );
-                                            String keyForMatchingAltId = strings[0];
                                             if (!keyForMatchingAltId.equals(currentPrimaryKey)) {
                                                 // Remap this row's route_id/stop_id to ensure
                                                 // that referencing entities (trips, stop_times)
                                                 // have their references updated.
-                                                mergeFeedsResult.remappedIds.put(key, keyForMatchingAltId);
+                                                result.remappedIds.put(key, keyForMatchingAltId);
                                             }
                                             skipRecord = true;
                                         }
@@ -845,7 +960,7 @@ public class MergeFeedsJob extends MonitorableJob {
                                                 // Modify route_id and ensure that referencing trips
                                                 // have route_id updated.
                                                 valueToWrite = String.join(":", idScope, val);
-                                                mergeFeedsResult.remappedIds.put(key, valueToWrite);
+                                                result.remappedIds.put(key, valueToWrite);
                                             }
                                         }
                                     } else {
@@ -874,11 +989,11 @@ public class MergeFeedsJob extends MonitorableJob {
                             // If the current foreign ref points to another record that has been skipped, skip this
                             // record and add its primary key to the list of skipped IDs (so that other references can
                             // be properly omitted).
-                            if (mergeFeedsResult.skippedIds.contains(key)) {
+                            if (result.skippedIds.contains(key)) {
                                 // If a calendar#service_id has been skipped, but there were valid service_ids found in
                                 // calendar_dates, do not skip that record for both the calendar_date and any related
                                 // trips.
-                                if (field.name.equals("service_id") && mergeFeedsResult.serviceIds.contains(val)) {
+                                if (field.name.equals("service_id") && result.serviceIds.contains(val)) {
                                     LOG.warn("Not skipping valid service_id {} for {} {}", val, table.name, keyValue);
                                 } else {
                                     String skippedKey = getTableScopedValue(table, idScope, keyValue);
@@ -886,27 +1001,26 @@ public class MergeFeedsJob extends MonitorableJob {
                                         skippedKey = String.join(":", skippedKey,
                                             csvReader.get(getFieldIndex(fieldsFoundInZip, orderField)));
                                     }
-                                    mergeFeedsResult.skippedIds.add(skippedKey);
+                                    result.skippedIds.add(skippedKey);
                                     skipRecord = true;
                                     continue;
                                 }
                             }
                             // If the field is a foreign reference, check to see whether the reference has been
                             // remapped due to a conflicting ID from another feed (e.g., calendar#service_id).
-                            if (mergeFeedsResult.remappedIds.containsKey(key)) {
-                                mergeFeedsResult.remappedReferences++;
+                            if (result.remappedIds.containsKey(key)) {
+                                result.remappedReferences++;
                                 // If the value has been remapped update the value to write.
-                                valueToWrite = mergeFeedsResult.remappedIds.get(key);
+                                valueToWrite = result.remappedIds.get(key);
                             }
                         }
                         rowValues[specFieldIndex] = valueToWrite;
                     } // End of iteration over each field for a row.
                     // Do not write rows that are designated to be skipped.
                     if (skipRecord && this.mergeType.equals(SERVICE_PERIOD)) {
-                        mergeFeedsResult.recordsSkipCount++;
+                        result.recordsSkipCount++;
                         continue;
                     }
-                    String newLine = String.join(",", rowValues);
                     switch (table.name) {
                         // Store row values for route or stop ID (or alternative ID field) in order
                         // to check for ID conflicts. NOTE: This is only intended to be used for
@@ -923,12 +1037,13 @@ public class MergeFeedsJob extends MonitorableJob {
                             // below map.
                             int index = getFieldIndex(sharedSpecFieldsArray, keyField);
                             String key = String.join(":", keyField, rowValues[index]);
-                            rowValuesForStopOrRouteId.put(key, rowValues);
+                            // Primary ID index is always zero because rowValues follows the spec field order.
+                            primaryKeyForStopOrRouteKey.put(key, rowValues[0]);
                             break;
                         case "transfers":
                         case "fare_rules":
                         case "directions": // GTFS+ table
-                            if (!rowStrings.add(newLine)) {
+                            if (!rowFingerprints.add(fingerprint(String.join(",", rowValues)))) {
                                 // The line already exists in the output file, do not append it again. This prevents duplicate
                                 // entries for certain files that do not contain primary keys (e.g., fare_rules and transfers) and
                                 // do not otherwise have convenient ways to track uniqueness (like an order field).
@@ -936,7 +1051,7 @@ public class MergeFeedsJob extends MonitorableJob {
                                 //  Perhaps it makes sense to include all unique fare rules rows, but transfers that share the
                                 //  same from/to stop IDs but different transfer times or other values should not both be
                                 //  included in the merged feed (yet this strategy would fail to filter those out).
-                                mergeFeedsResult.recordsSkipCount++;
+                                result.recordsSkipCount++;
                                 continue;
                             }
                             break;
@@ -972,7 +1087,9 @@ public class MergeFeedsJob extends MonitorableJob {
             throw e;
         }
         // Track the number of lines in the merged table and return final number.
-        mergeFeedsResult.linesPerTable.put(table.name, mergedLineNumber);
+        result.linesPerTable.put(table.name, mergedLineNumber);
+        result.trackedRowFingerprints += rowFingerprints.size() + shapeIdsInFutureFeed.size();
+        result.recordHeapUsage();
         return mergedLineNumber;
     }
 
@@ -1022,6 +1139,15 @@ public class MergeFeedsJob extends MonitorableJob {
         return false;
     }
 
+    /**
+     * Get a 64-bit fingerprint for a value (e.g., a row or ID) used to track values already encountered without
+     * retaining the strings themselves. With a 64-bit hash, a collision is vanishingly unlikely even for tens of
+     * millions of values.
+     */
+    private static long fingerprint(String value) {
+        return FINGERPRINT_HASH.hashUnencodedChars(value).asLong();
+    }
+
     /** Get table-scoped value used for key when remapping references for a particular feed. */
     private static String getTableScopedValue(Table table, String prefix, String id) {
         return String.join(":",
@@ -1034,13 +1160,32 @@ public class MergeFeedsJob extends MonitorableJob {
      * Helper class that collects the feed version and its zip file. Note: this class helps with sorting versions to
      * merge in a list collection.
      */
-    private class FeedToMerge {
+    private class FeedToMerge implements AutoCloseable {
         public FeedVersion version;
         public ZipFile zipFile;
+        /** Keeps the GTFS file in the feed cache while it is being merged. */
+        private final FeedCache.Pin gtfsFile;
 
         FeedToMerge(FeedVersion version) throws IOException {
             this.version = version;
-            this.zipFile = new ZipFile(version.retrieveGtfsFile());
+            this.gtfsFile = version.pinGtfsFile();
+            if (gtfsFile == null) throw new IOException("GTFS file not found for version " + version.id);
+            try {
+                this.zipFile = new ZipFile(gtfsFile.file);
+            } catch (IOException e) {
+                gtfsFile.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close zip file for version {}", version.id, e);
+            }
+            gtfsFile.close();
         }
     }
 }
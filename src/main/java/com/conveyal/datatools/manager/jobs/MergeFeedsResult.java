@@ -33,6 +33,10 @@ public class MergeFeedsResult implements Serializable {
     public Map<String, Integer> linesPerTable = new HashMap<>();
     public int remappedReferences;
     public int recordsSkipCount;
+    /** Number of row/ID fingerprints held in memory to detect duplicates while merging */
+    public long trackedRowFingerprints;
+    /** Peak JVM heap usage (in bytes) observed at the end of merging each table */
+    public long peakHeapUsedBytes;
     public Date startTime;
     public boolean failed;
     /** Set of reasons explaining why merge operation failed */
@@ -42,4 +46,29 @@ public class MergeFeedsResult implements Serializable {
         this.type = type;
         this.startTime = new Date();
     }
+
+    /** Record the current JVM heap usage if it exceeds the previously recorded peak. */
+    public void recordHeapUsage() {
+        Runtime runtime = Runtime.getRuntime();
+        peakHeapUsedBytes = Math.max(peakHeapUsedBytes, runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Add the counts and tracked IDs from another result (e.g., for a single table merged separately) to this result.
+     */
+    public void combine(MergeFeedsResult other) {
+        feedCount += other.feedCount;
+        errorCount += other.errorCount;
+        idConflicts.addAll(other.idConflicts);
+        skippedIds.addAll(other.skippedIds);
+        serviceIds.addAll(other.serviceIds);
+        remappedIds.putAll(other.remappedIds);
+        linesPerTable.putAll(other.linesPerTable);
+        remappedReferences += other.remappedReferences;
+        recordsSkipCount += other.recordsSkipCount;
+        trackedRowFingerprints += other.trackedRowFingerprints;
+        peakHeapUsedBytes = Math.max(peakHeapUsedBytes, other.peakHeapUsedBytes);
+        failed = failed || other.failed;
+        failureReasons.addAll(other.failureReasons);
+    }
 }
@@ -1,24 +1,15 @@
 package com.conveyal.datatools.manager.jobs;
 
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
-import com.amazonaws.services.ec2.model.DescribeInstancesResult;
 import com.amazonaws.services.ec2.model.Instance;
 import com.amazonaws.services.ec2.model.InstanceStateChange;
-import com.amazonaws.services.ec2.model.Reservation;
 import com.amazonaws.services.ec2.model.TerminateInstancesRequest;
 import com.amazonaws.services.ec2.model.TerminateInstancesResult;
 import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing;
-import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancingClient;
-import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancingClientBuilder;
-import com.amazonaws.services.elasticloadbalancingv2.model.DescribeTargetHealthRequest;
-import com.amazonaws.services.elasticloadbalancingv2.model.DescribeTargetHealthResult;
 import com.amazonaws.services.elasticloadbalancingv2.model.RegisterTargetsRequest;
 import com.amazonaws.services.elasticloadbalancingv2.model.TargetDescription;
-import com.amazonaws.services.elasticloadbalancingv2.model.TargetHealthDescription;
 import com.conveyal.datatools.common.status.MonitorableJob;
-import com.conveyal.datatools.common.utils.AWSUtils;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.OtpServer;
@@ -27,37 +18,64 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.conveyal.datatools.manager.jobs.DeployJob.OTP_RUNNER_STATUS_FILE;
 
 /**
  * Job that is dispatched during a {@link DeployJob} that spins up EC2 instances. This handles waiting for the server to
- * come online and for the OTP application/API to become available.
+ * come online and for the OTP application/API to become available. The checks are made by the shared
+ * {@link ServerStatusPoller}, which advances this job through its stages, so running this job only waits for the
+ * monitoring to finish.
  */
 public class MonitorServerStatusJob extends MonitorableJob {
     private static final Logger LOG = LoggerFactory.getLogger(MonitorServerStatusJob.class);
+    /** Maximum time between HTTP checks once checks have failed repeatedly (see {@link #scheduleNextCheck}). */
+    private static final long MAX_CHECK_INTERVAL_MILLIS = 30 * 1000;
     private final DeployJob deployJob;
     private final Deployment deployment;
     private final Instance instance;
     private final boolean graphAlreadyBuilt;
     private final OtpServer otpServer;
-    private final AWSStaticCredentialsProvider credentials;
-    private final AmazonEC2 ec2;
-    private final AmazonElasticLoadBalancing elbClient;
-    private final CloseableHttpClient httpClient = HttpClients.createDefault();
-    // Delay checks by four seconds to give user-data script time to upload the instance's user data log if part of the
-    // script fails (e.g., uploading or downloading a file).
-    private static final int DELAY_SECONDS = 4;
+    private final AtomicBoolean started = new AtomicBoolean();
+    /** Released once the monitoring has finished (successfully or not). */
+    private final CountDownLatch finished = new CountDownLatch(1);
+    // The fields below are guarded by this job's lock, because they are updated by the poller thread (instance state,
+    // target registration and timeouts) and by the HTTP check threads.
+    private volatile Stage stage = Stage.WAITING_FOR_STATUS_FILE;
+    private long stageStartTime;
+    private long nextCheckTime;
+    private boolean checkInProgress;
+    private int failedChecks;
     public long graphTaskSeconds;
 
+    /**
+     * The stages of the server setup, which are advanced by the {@link ServerStatusPoller}.
+     */
+    private enum Stage {
+        /** Waiting for otp-runner to produce its first status file. */
+        WAITING_FOR_STATUS_FILE("Job timed out while waiting for otp-runner to produce a status file!"),
+        /** Waiting for otp-runner to write a status that fulfills the expectations of this job. */
+        WAITING_FOR_OTP_RUNNER("Job timed out while waiting for otp-runner to finish!"),
+        /** Waiting for the router to become available, which indicates that the graph has loaded successfully. */
+        WAITING_FOR_ROUTER("Job timed out while waiting for trip planner to start up."),
+        /** Waiting for the instance to show up in the load balancer target group. */
+        REGISTERING_TARGET("Job timed out while waiting to register EC2 instance with load balancer target group."),
+        FINISHED(null);
+
+        final String timeoutMessage;
+
+        Stage(String timeoutMessage) {
+            this.timeoutMessage = timeoutMessage;
+        }
+    }
+
     public MonitorServerStatusJob(Auth0UserProfile owner, DeployJob deployJob, Instance instance, boolean graphAlreadyBuilt) {
         super(
             owner,
@@ -70,15 +88,6 @@ public class MonitorServerStatusJob extends MonitorableJob {
         this.instance = instance;
         this.graphAlreadyBuilt = graphAlreadyBuilt;
         status.message = "Checking server status...";
-        credentials = AWSUtils.getCredentialsForRole(otpServer.role, "monitor-" + instance.getInstanceId());
-        ec2 = deployJob.getCustomRegion() == null
-            ? AWSUtils.getEC2ClientForCredentials(credentials)
-            : AWSUtils.getEC2ClientForCredentials(credentials, deployJob.getCustomRegion());
-        AmazonElasticLoadBalancingClientBuilder elbBuilder = AmazonElasticLoadBalancingClient.builder()
-            .withCredentials(credentials);
-        elbClient = deployJob.getCustomRegion() == null
-            ? elbBuilder.build()
-            : elbBuilder.withRegion(deployJob.getCustomRegion()).build();
     }
 
     @JsonProperty
@@ -91,214 +100,287 @@ public class MonitorServerStatusJob extends MonitorableJob {
         return deployJob.getDeploymentId();
     }
 
-    @Override
-    public void jobLogic() {
-        // Get OTP URL for instance to check for availability.
-        String ipUrl = "http://" + instance.getPublicIpAddress();
+    /**
+     * Start monitoring the server with the shared {@link ServerStatusPoller}. This does not block, so that a deploy job
+     * can start monitoring all of its servers before waiting for each one (by running this job). Calling this more than
+     * once has no effect.
+     */
+    public void startMonitoring() {
+        if (!started.compareAndSet(false, true)) return;
         if (otpServer.ec2Info == null || otpServer.ec2Info.targetGroupArn == null) {
             // Fail the job from the outset if there is no target group defined.
             failJob("There is no load balancer under which to register ec2 instance.");
+            finish();
+            return;
         }
+        synchronized (this) {
+            enterStage(Stage.WAITING_FOR_STATUS_FILE);
+        }
+        ServerStatusPoller.register(this);
+    }
+
+    @Override
+    public void jobLogic() {
+        startMonitoring();
         try {
-            // Wait for otp-runner to produce first status file
-            long statusCheckStartTime = System.currentTimeMillis();
-            String statusUrl = String.join("/", ipUrl, OTP_RUNNER_STATUS_FILE);
-            boolean otpRunnerStatusAvailable = false;
-            while (!otpRunnerStatusAvailable) {
-                // If the request is successful, the OTP instance has started.
-                waitAndCheckInstanceHealth("otp-runner status file availability check: " + statusUrl);
-                otpRunnerStatusAvailable = checkForSuccessfulRequest(statusUrl);
-                long maxOtpRunnerStartupTimeMillis = 5 * 60 * 1000;
-                if (taskHasTimedOut(statusCheckStartTime, maxOtpRunnerStartupTimeMillis)) {
-                    failJob("Job timed out while waiting for otp-runner to produce a status file!");
-                    return;
-                }
-            }
-            // Wait for otp-runner to write a status that fulfills expectations of this job
-            statusCheckStartTime = System.currentTimeMillis();
-            boolean otpRunnerCompleted = false;
-            while (!otpRunnerCompleted) {
-                // If the request is successful, the OTP instance has started.
-                waitAndCheckInstanceHealth("otp-runner completion check: " + statusUrl);
-                otpRunnerCompleted = checkForOtpRunnerCompletion(statusUrl);
-                // Check if an otp-runner status file check has already failed this job.
-                if (status.error) {
-                    return;
-                }
-                // wait a maximum of 5 hours if building a graph, or 1 hour if just starting a server
-                long maxOtpRunnerWaitTimeMillis = (graphAlreadyBuilt ? 5 : 1) * 60 * 60 * 1000;
-                if (taskHasTimedOut(statusCheckStartTime, maxOtpRunnerWaitTimeMillis)) {
-                    failJob("Job timed out while waiting for otp-runner to finish!");
-                    return;
-                }
-            }
-            graphTaskSeconds = (System.currentTimeMillis() - statusCheckStartTime) / 1000;
-            String message = String.format("Graph build/download completed in %d seconds!", graphTaskSeconds);
-            LOG.info(message);
-            // If only task for this instance is to build the graph (either because that is the deployment purpose or
-            // because this instance type/image is for graph building only), this machine's job is complete and we can
-            // consider this job done.
-            if (isBuildOnlyServer()) {
-                status.completeSuccessfully(message);
-                LOG.info("View logs at {}", getOtpRunnerLogS3Path());
-                return;
-            }
-            // Once this is confirmed, check for the availability of the router, which will indicate that the graph
-            // load has completed successfully.
-            String routerUrl = String.join("/", ipUrl, "otp/routers/default");
-            long routerCheckStartTime = System.currentTimeMillis();
-            boolean routerIsAvailable = false;
-            while (!routerIsAvailable) {
-                // If the request was successful, the graph build is complete!
-                // TODO: Substitute in specific router ID? Or just default to... "default".
-                waitAndCheckInstanceHealth("router to become available: " + routerUrl);
-                routerIsAvailable = checkForSuccessfulRequest(routerUrl);
-                // wait a maximum of 20 minutes to load the graph and for the router to become available.
-                long maxRouterAvailableWaitTimeMillis = 20 * 60 * 1000;
-                if (taskHasTimedOut(routerCheckStartTime, maxRouterAvailableWaitTimeMillis)) {
-                    failJob("Job timed out while waiting for trip planner to start up.");
-                    return;
-                }
-            }
-            status.update("Graph loaded!", 90);
-            // After the router is available, the EC2 instance can be registered with the load balancer.
-            // REGISTER INSTANCE WITH LOAD BALANCER
-            RegisterTargetsRequest registerTargetsRequest = new RegisterTargetsRequest()
-                .withTargetGroupArn(otpServer.ec2Info.targetGroupArn)
-                .withTargets(new TargetDescription().withId(instance.getInstanceId()));
-            boolean targetAddedSuccessfully = false;
-            long registerTargetStartTime = System.currentTimeMillis();
-            while (!targetAddedSuccessfully) {
-                // Register target with target group.
-                elbClient.registerTargets(registerTargetsRequest);
-                waitAndCheckInstanceHealth("instance to register with ELB target group");
-                // Check that the instance ID shows up in the health check.
-                DescribeTargetHealthRequest healthRequest = new DescribeTargetHealthRequest()
-                    .withTargetGroupArn(otpServer.ec2Info.targetGroupArn);
-                DescribeTargetHealthResult healthResult = elbClient.describeTargetHealth(healthRequest);
-                for (TargetHealthDescription health : healthResult.getTargetHealthDescriptions()) {
-                    if (instance.getInstanceId().equals(health.getTarget().getId())) {
-                        LOG.info("Instance {} successfully added to target group!", instance.getInstanceId());
-                        targetAddedSuccessfully = true;
-                    }
-                }
-                // Wait for two minutes.
-                if (taskHasTimedOut(registerTargetStartTime, 2 * 60 * 1000)) {
-                    failJob("Job timed out while waiting to register EC2 instance with load balancer target group.");
-                    return;
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                if (stage != Stage.FINISHED) {
+                    failJob("Interrupted while monitoring server.");
+                    finish();
                 }
             }
-            status.completeSuccessfully(
-                String.format(
-                    "Server successfully registered with load balancer %s. OTP running at %s",
-                    otpServer.ec2Info.targetGroupArn,
-                    routerUrl
-                )
-            );
-            LOG.info("View logs at {}", getOtpRunnerLogS3Path());
-            deployJob.incrementCompletedServers();
-        } catch (InstanceHealthException e) {
-            // If at any point during the job, an instance health check indicates that the EC2 instance being monitored
-            // was terminated or stopped, an InstanceHealthException will be thrown. Whether the instance termination
-            // was accidental or intentional, we want the result to be that the job fails and the deployment be aborted.
-            // This gives us a failsafe in case we kick off a deployment accidentally or otherwise need to cancel the
-            // deployment job (e.g., due to an incorrect configuration).
-            failJob("Ec2 Instance was stopped or terminated before job could complete!");
         }
     }
 
-    private boolean isBuildOnlyServer() {
-        return deployment.buildGraphOnly || (!graphAlreadyBuilt && otpServer.ec2Info.hasSeparateGraphBuildConfig());
+    AmazonEC2 getEC2Client() {
+        return deployJob.getEC2Client();
+    }
+
+    AmazonElasticLoadBalancing getELBClient() {
+        return deployJob.getELBClient();
+    }
+
+    String getTargetGroupArn() {
+        return otpServer.ec2Info.targetGroupArn;
+    }
+
+    boolean isRegisteringTarget() {
+        return stage == Stage.REGISTERING_TARGET;
     }
 
     /**
-     * Gets the expected path to the otp-runner logs that get uploaded to s3
+     * Called by the poller if the instance has entered a state where it is stopped, terminated or about to be stopped or
+     * terminated. Whether the instance termination was accidental or intentional, we want the result to be that the job
+     * fails and the deployment be aborted. This gives us a failsafe in case we kick off a deployment accidentally or
+     * otherwise need to cancel the deployment job (e.g., due to an incorrect configuration).
      */
-    private String getOtpRunnerLogS3Path() {
-        return String.format("%s/%s-otp-runner.log", deployJob.getS3FolderURI(), instance.getInstanceId());
+    synchronized void instanceStopped(String instanceStateName) {
+        if (stage == Stage.FINISHED) return;
+        LOG.warn("Instance {} state no longer healthy! It changed to: {}", instance.getInstanceId(), instanceStateName);
+        failJob("Ec2 Instance was stopped or terminated before job could complete!");
+        finish();
+    }
+
+    /** Called by the poller once the instance shows up in the load balancer target group. */
+    synchronized void targetRegistered() {
+        if (stage != Stage.REGISTERING_TARGET) return;
+        LOG.info("Instance {} successfully added to target group!", instance.getInstanceId());
+        status.completeSuccessfully(
+            String.format(
+                "Server successfully registered with load balancer %s. OTP running at %s",
+                otpServer.ec2Info.targetGroupArn,
+                getRouterUrl()
+            )
+        );
+        LOG.info("View logs at {}", getOtpRunnerLogS3Path());
+        deployJob.incrementCompletedServers();
+        finish();
     }
 
     /**
-     * Helper that fails with a helpful message about where to find uploaded logs.
+     * Fail the job if the current stage has taken too long, returning whether the job has finished.
      */
-    private void failJob(String message) {
-        LOG.error(message);
-        status.fail(String.format("%s Check logs at: %s", message, getOtpRunnerLogS3Path()));
+    synchronized boolean checkForTimeout(long now) {
+        if (stage == Stage.FINISHED) return true;
+        if (now - stageStartTime <= getMaxStageMillis(stage)) return false;
+        failJob(stage.timeoutMessage);
+        finish();
+        return true;
     }
 
-    /** Determine if a specific task has passed time limit for its run time. */
-    private boolean taskHasTimedOut(long startTime, long maxRunTimeMillis) {
-        long runTimeMillis = System.currentTimeMillis() - startTime;
-        return runTimeMillis > maxRunTimeMillis;
+    /**
+     * Claim the next HTTP check if it is due and no check is in progress, returning whether the caller should run
+     * {@link #checkServer}.
+     */
+    synchronized boolean claimServerCheck(long now) {
+        boolean needsCheck = stage == Stage.WAITING_FOR_STATUS_FILE ||
+            stage == Stage.WAITING_FOR_OTP_RUNNER ||
+            stage == Stage.WAITING_FOR_ROUTER;
+        if (!needsCheck || checkInProgress || now < nextCheckTime) return false;
+        checkInProgress = true;
+        return true;
     }
 
     /**
-     * Have the current thread sleep for a few seconds in order to pause during a while loop. Also, before and after
-     * waiting, check the instance health to make sure it is still running. If a user has terminated the instance, the
-     * job should be failed.
+     * Make the HTTP check for the current stage and advance to the next stage if the check shows that the stage is
+     * complete. The request is made without holding this job's lock, so the stage is checked again before advancing
+     * (e.g., the poller may have failed the job in the meantime).
      */
-    private void waitAndCheckInstanceHealth(String waitingFor) throws InstanceHealthException {
-        checkInstanceHealth();
+    void checkServer() {
+        boolean successful = false;
         try {
-            LOG.info("Waiting {} seconds for {}", DELAY_SECONDS, waitingFor);
-            Thread.sleep(1000 * DELAY_SECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            Stage checkedStage = stage;
+            switch (checkedStage) {
+                case WAITING_FOR_STATUS_FILE:
+                    // If the request is successful, the OTP instance has started.
+                    successful = checkForSuccessfulRequest(getStatusUrl());
+                    if (successful) advance(checkedStage, Stage.WAITING_FOR_OTP_RUNNER);
+                    break;
+                case WAITING_FOR_OTP_RUNNER:
+                    OtpRunnerStatus otpRunnerStatus = retrieveOtpRunnerStatus(getStatusUrl());
+                    successful = otpRunnerStatus != null;
+                    if (successful) handleOtpRunnerStatus(otpRunnerStatus);
+                    break;
+                case WAITING_FOR_ROUTER:
+                    // If the request was successful, the graph build is complete!
+                    // TODO: Substitute in specific router ID? Or just default to... "default".
+                    successful = checkForSuccessfulRequest(getRouterUrl());
+                    if (successful && advance(checkedStage, Stage.REGISTERING_TARGET)) registerTarget();
+                    break;
+                default:
+                    successful = true;
+            }
+        } catch (Exception e) {
+            LOG.error("Error checking status of instance {}", instance.getInstanceId(), e);
+        } finally {
+            scheduleNextCheck(successful);
+        }
+    }
+
+    private synchronized void handleOtpRunnerStatus(OtpRunnerStatus otpRunnerStatus) {
+        if (stage != Stage.WAITING_FOR_OTP_RUNNER) return;
+        if (otpRunnerStatus.error) {
+            failJob(otpRunnerStatus.message);
+            finish();
+            return;
+        }
+        status.update(otpRunnerStatus.message, otpRunnerStatus.pctProgress);
+        boolean otpRunnerCompleted = graphAlreadyBuilt || !isBuildOnlyServer()
+            // server that finishes after OTP server is successfully started
+            ? otpRunnerStatus.serverStarted
+            // server that finishes after graph is uploaded
+            : otpRunnerStatus.graphUploaded;
+        if (!otpRunnerCompleted) return;
+        graphTaskSeconds = (System.currentTimeMillis() - stageStartTime) / 1000;
+        String message = String.format("Graph build/download completed in %d seconds!", graphTaskSeconds);
+        LOG.info(message);
+        // If only task for this instance is to build the graph (either because that is the deployment purpose or
+        // because this instance type/image is for graph building only), this machine's job is complete and we can
+        // consider this job done.
+        if (isBuildOnlyServer()) {
+            status.completeSuccessfully(message);
+            LOG.info("View logs at {}", getOtpRunnerLogS3Path());
+            finish();
+            return;
         }
-        checkInstanceHealth();
+        // Otherwise, check for the availability of the router, which will indicate that the graph load has completed
+        // successfully.
+        enterStage(Stage.WAITING_FOR_ROUTER);
     }
 
     /**
-     * Checks whether the instance is running. If it has entered a state where it is stopped, terminated or about to be
-     * stopped or terminated, then this method throws an exception.
+     * After the router is available, the EC2 instance can be registered with the load balancer. The poller then checks
+     * the target group until the instance shows up (see {@link #targetRegistered}).
      */
-    private void checkInstanceHealth() throws InstanceHealthException {
-        DescribeInstancesRequest request = new DescribeInstancesRequest()
-            .withInstanceIds(Collections.singletonList(instance.getInstanceId()));
-        DescribeInstancesResult result = ec2.describeInstances(request);
-        for (Reservation reservation : result.getReservations()) {
-            for (Instance reservationInstance : reservation.getInstances()) {
-                if (reservationInstance.getInstanceId().equals(instance.getInstanceId())) {
-                    // Code 16 is running. Anything above that is either stopped, terminated or about to be stopped or
-                    // terminated
-                    if (reservationInstance.getState().getCode() > 16) {
-                        throw new InstanceHealthException(reservationInstance.getState().getName());
-                    }
-                }
+    private void registerTarget() {
+        status.update("Graph loaded!", 90);
+        RegisterTargetsRequest registerTargetsRequest = new RegisterTargetsRequest()
+            .withTargetGroupArn(otpServer.ec2Info.targetGroupArn)
+            .withTargets(new TargetDescription().withId(instance.getInstanceId()));
+        try {
+            getELBClient().registerTargets(registerTargetsRequest);
+        } catch (AmazonClientException e) {
+            LOG.error("Could not register instance {} with target group", instance.getInstanceId(), e);
+            synchronized (this) {
+                if (stage == Stage.FINISHED) return;
+                failJob("Could not register EC2 instance with load balancer target group.");
+                finish();
             }
         }
     }
 
+    /** Advance from the expected stage to the next stage, returning false if the stage has changed in the meantime. */
+    private synchronized boolean advance(Stage from, Stage to) {
+        if (stage != from) return false;
+        enterStage(to);
+        return true;
+    }
+
+    private void enterStage(Stage next) {
+        stage = next;
+        stageStartTime = System.currentTimeMillis();
+        failedChecks = 0;
+        // Delay the first check in each stage to give the instance time to make progress (and, initially, to give the
+        // user-data script time to upload the instance's user data log if part of the script fails).
+        nextCheckTime = stageStartTime + ServerStatusPoller.POLL_INTERVAL_MILLIS;
+        LOG.info("Instance {}: {}", instance.getInstanceId(), next);
+    }
+
     /**
-     * An exception for when the ec2 Instance has entered a state where it is no longer running.
+     * Schedule the next HTTP check, backing off exponentially (up to {@link #MAX_CHECK_INTERVAL_MILLIS}) while checks
+     * fail (e.g., while otp-runner or OTP are starting up) so that slow instances are not polled needlessly.
      */
-    private class InstanceHealthException extends Exception {
-        public InstanceHealthException(String instanceStateName) {
-            super(String.format("Instance state no longer healthy! It changed to: %s", instanceStateName));
+    synchronized void scheduleNextCheck(boolean successful) {
+        checkInProgress = false;
+        failedChecks = successful ? 0 : failedChecks + 1;
+        long interval = ServerStatusPoller.POLL_INTERVAL_MILLIS << Math.min(failedChecks, 4);
+        nextCheckTime = Math.max(nextCheckTime, System.currentTimeMillis() + Math.min(interval, MAX_CHECK_INTERVAL_MILLIS));
+    }
+
+    /** Stop polling for this server and release the thread running this job (if any). */
+    private synchronized void finish() {
+        stage = Stage.FINISHED;
+        ServerStatusPoller.unregister(this);
+        finished.countDown();
+    }
+
+    private long getMaxStageMillis(Stage stage) {
+        switch (stage) {
+            case WAITING_FOR_STATUS_FILE:
+                return 5 * 60 * 1000;
+            case WAITING_FOR_OTP_RUNNER:
+                // wait a maximum of 5 hours if building a graph, or 1 hour if just starting a server
+                return (graphAlreadyBuilt ? 5 : 1) * 60 * 60 * 1000;
+            case WAITING_FOR_ROUTER:
+                // wait a maximum of 20 minutes to load the graph and for the router to become available.
+                return 20 * 60 * 1000;
+            case REGISTERING_TARGET:
+                return 2 * 60 * 1000;
+            default:
+                return Long.MAX_VALUE;
         }
     }
 
-    private boolean checkForOtpRunnerCompletion(String url) {
+    private String getStatusUrl() {
+        return String.join("/", "http://" + instance.getPublicIpAddress(), OTP_RUNNER_STATUS_FILE);
+    }
+
+    private String getRouterUrl() {
+        return String.join("/", "http://" + instance.getPublicIpAddress(), "otp/routers/default");
+    }
+
+    private boolean isBuildOnlyServer() {
+        return deployment.buildGraphOnly || (!graphAlreadyBuilt && otpServer.ec2Info.hasSeparateGraphBuildConfig());
+    }
+
+    /**
+     * Gets the expected path to the otp-runner logs that get uploaded to s3
+     */
+    private String getOtpRunnerLogS3Path() {
+        return String.format("%s/%s-otp-runner.log", deployJob.getS3FolderURI(), instance.getInstanceId());
+    }
+
+    /**
+     * Helper that fails with a helpful message about where to find uploaded logs.
+     */
+    private void failJob(String message) {
+        LOG.error(message);
+        status.fail(String.format("%s Check logs at: %s", message, getOtpRunnerLogS3Path()));
+    }
+
+    /**
+     * Get the otp-runner status from the provided URL, or null if the status could not be retrieved.
+     */
+    private OtpRunnerStatus retrieveOtpRunnerStatus(String url) {
         HttpGet httpGet = new HttpGet(url);
-        OtpRunnerStatus otpRunnerStatus;
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            otpRunnerStatus = JsonUtil.objectMapper.readValue(response.getEntity().getContent(), OtpRunnerStatus.class);
+        try (CloseableHttpResponse response = ServerStatusPoller.httpClient.execute(httpGet)) {
+            return JsonUtil.objectMapper.readValue(response.getEntity().getContent(), OtpRunnerStatus.class);
         } catch (IOException e) {
-            LOG.error("Could not get otp-runner status from {}", url);
-            e.printStackTrace();
-            return false;
-        }
-        if (otpRunnerStatus.error) {
-            failJob(otpRunnerStatus.message);
-            return false;
-        }
-        status.update(otpRunnerStatus.message, otpRunnerStatus.pctProgress);
-        if (graphAlreadyBuilt || !isBuildOnlyServer()) {
-            // server that finishes after OTP server is successfully started
-            return otpRunnerStatus.serverStarted;
-        } else {
-            // server that finishes after graph is uploaded
-            return otpRunnerStatus.graphUploaded;
+            LOG.error("Could not get otp-runner status from {}: {}", url, e.getMessage());
+            return null;
         }
     }
 
@@ -307,15 +389,14 @@ public class MonitorServerStatusJob extends MonitorableJob {
      */
     private boolean checkForSuccessfulRequest(String url) {
         HttpGet httpGet = new HttpGet(url);
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+        try (CloseableHttpResponse response = ServerStatusPoller.httpClient.execute(httpGet)) {
             HttpEntity entity = response.getEntity();
             int statusCode = response.getStatusLine().getStatusCode();
             // Ensure the response body is fully consumed
             EntityUtils.consume(entity);
             return statusCode == 200;
         } catch (IOException e) {
-            LOG.error("Could not complete request to {}", url);
-            e.printStackTrace();
+            LOG.info("Could not complete request to {}: {}", url, e.getMessage());
         }
         return false;
     }
@@ -324,7 +405,7 @@ public class MonitorServerStatusJob extends MonitorableJob {
     public void jobFinished() {
         if (status.error) {
             // Terminate server.
-            TerminateInstancesResult terminateInstancesResult = ec2.terminateInstances(
+            TerminateInstancesResult terminateInstancesResult = getEC2Client().terminateInstances(
                     new TerminateInstancesRequest().withInstanceIds(instance.getInstanceId())
             );
             InstanceStateChange instanceStateChange = terminateInstancesResult.getTerminatingInstances().get(0);
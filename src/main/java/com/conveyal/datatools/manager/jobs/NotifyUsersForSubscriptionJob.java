@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.jobs;
 
+import com.conveyal.datatools.common.status.JobExecutor;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -42,7 +43,7 @@ public class NotifyUsersForSubscriptionJob implements Runnable {
             return;
         }
         NotifyUsersForSubscriptionJob notifyJob = new NotifyUsersForSubscriptionJob(subscriptionType, target, message);
-        DataManager.lightExecutor.execute(notifyJob);
+        JobExecutor.executeTask(notifyJob);
         LOG.info("Notification job scheduled in light executor");
     }
 
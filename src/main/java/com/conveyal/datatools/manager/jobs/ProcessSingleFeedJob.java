@@ -71,6 +71,11 @@ public class ProcessSingleFeedJob extends MonitorableJob {
         return feedSource.id;
     }
 
+    @Override
+    public String retrieveProjectId() {
+        return feedSource.projectId;
+    }
+
     /**
      * The primary logic in this job handles loading (into Postgres) and validating the incoming GTFS file. However,
      * there are important secondary functions that run {@link ArbitraryTransformJob} to modify either the input GTFS
@@ -126,6 +131,8 @@ public class ProcessSingleFeedJob extends MonitorableJob {
         boolean shouldSnapshot = shouldTransform && rules.hasTransformationsOfType(feedVersion, DbTransformation.class);
         if (shouldSnapshot) {
             Snapshot snapshot = new Snapshot("Transform of " + feedVersion.name, feedVersion);
+            // The snapshot must follow validation: the snapshot job looks up the feed version's namespace in Mongo
+            // (the version is only stored once validation finishes) and a failed validation deletes the namespace.
             addNextJob(new CreateSnapshotJob(owner, snapshot));
             // Apply post-load transformations to snapshotted feed version. Post-load transformations will modify only the
             // snapshot (not the original feed version's namespace), so the snapshot must be published (or loaded into the
@@ -0,0 +1,179 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing;
+import com.amazonaws.services.elasticloadbalancingv2.model.DescribeTargetHealthRequest;
+import com.amazonaws.services.elasticloadbalancingv2.model.TargetHealthDescription;
+import com.google.common.collect.Lists;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * A single scheduler that polls the EC2 instances monitored by all {@link MonitorServerStatusJob}s, rather than each
+ * monitor job occupying a thread that sleeps between checks. On each tick, the poller:
+ *
+ * 1. checks the state of every monitored instance with one DescribeInstances call per EC2 client (i.e., per deploy
+ *    job),
+ * 2. checks the registration of instances with their load balancer target group with one DescribeTargetHealth call per
+ *    target group, and
+ * 3. submits the HTTP checks (otp-runner status and router availability) that are due to a small shared pool.
+ *
+ * The results are reported back to each monitor job, which handles its own state transitions, backoff and timeouts.
+ */
+class ServerStatusPoller {
+    private static final Logger LOG = LoggerFactory.getLogger(ServerStatusPoller.class);
+    static final long POLL_INTERVAL_MILLIS = 4000;
+    /** Number of threads making HTTP checks. Checks time out quickly, so a few threads can serve many instances. */
+    private static final int CHECK_THREADS = 4;
+    private static final int CHECK_TIMEOUT_MILLIS = 10 * 1000;
+    /** Maximum number of instance IDs per DescribeInstances request. */
+    private static final int MAX_INSTANCE_IDS_PER_REQUEST = 100;
+    private static final Set<MonitorServerStatusJob> monitors = ConcurrentHashMap.newKeySet();
+    /** HTTP client shared by all monitors (with timeouts so that an unresponsive instance cannot hold a thread). */
+    static final CloseableHttpClient httpClient = HttpClients.custom()
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout(CHECK_TIMEOUT_MILLIS)
+            .setConnectionRequestTimeout(CHECK_TIMEOUT_MILLIS)
+            .setSocketTimeout(CHECK_TIMEOUT_MILLIS)
+            .build())
+        .setMaxConnPerRoute(2)
+        .setMaxConnTotal(CHECK_THREADS * 2)
+        .build();
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService checkExecutor;
+
+    /** Start polling for the monitor (starting the poller if needed). */
+    static synchronized void register(MonitorServerStatusJob monitor) {
+        if (scheduler == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            checkExecutor = Executors.newFixedThreadPool(CHECK_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "server-status-check-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "server-status-poller");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(
+                ServerStatusPoller::poll,
+                POLL_INTERVAL_MILLIS,
+                POLL_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS
+            );
+        }
+        monitors.add(monitor);
+    }
+
+    /** Stop polling for the monitor (i.e., once the monitor job has finished). */
+    static void unregister(MonitorServerStatusJob monitor) {
+        monitors.remove(monitor);
+    }
+
+    private static void poll() {
+        // Exceptions must not escape, otherwise the scheduled task is cancelled.
+        try {
+            List<MonitorServerStatusJob> active = new ArrayList<>(monitors);
+            if (active.isEmpty()) return;
+            checkInstanceStates(active);
+            checkTargetRegistrations(active);
+            long now = System.currentTimeMillis();
+            for (MonitorServerStatusJob monitor : active) {
+                if (monitor.checkForTimeout(now)) continue;
+                if (monitor.claimServerCheck(now)) checkExecutor.submit(monitor::checkServer);
+            }
+        } catch (Exception e) {
+            LOG.error("Error polling server statuses", e);
+        }
+    }
+
+    /**
+     * Check the state of all monitored instances, with one request per EC2 client. Monitors for instances that have
+     * stopped or terminated are failed.
+     */
+    private static void checkInstanceStates(List<MonitorServerStatusJob> active) {
+        Map<AmazonEC2, List<MonitorServerStatusJob>> monitorsForClients = new IdentityHashMap<>();
+        for (MonitorServerStatusJob monitor : active) {
+            monitorsForClients.computeIfAbsent(monitor.getEC2Client(), client -> new ArrayList<>()).add(monitor);
+        }
+        for (Map.Entry<AmazonEC2, List<MonitorServerStatusJob>> entry : monitorsForClients.entrySet()) {
+            Map<String, MonitorServerStatusJob> monitorsForInstanceIds = entry.getValue().stream()
+                .collect(Collectors.toMap(MonitorServerStatusJob::getInstanceId, monitor -> monitor, (a, b) -> a));
+            for (List<String> ids : Lists.partition(new ArrayList<>(monitorsForInstanceIds.keySet()), MAX_INSTANCE_IDS_PER_REQUEST)) {
+                try {
+                    DescribeInstancesRequest request = new DescribeInstancesRequest().withInstanceIds(ids);
+                    for (Reservation reservation : entry.getKey().describeInstances(request).getReservations()) {
+                        for (Instance instance : reservation.getInstances()) {
+                            // Code 16 is running. Anything above that is either stopped, terminated or about to be
+                            // stopped or terminated.
+                            if (instance.getState().getCode() > 16) {
+                                MonitorServerStatusJob monitor = monitorsForInstanceIds.get(instance.getInstanceId());
+                                if (monitor != null) monitor.instanceStopped(instance.getState().getName());
+                            }
+                        }
+                    }
+                } catch (AmazonClientException e) {
+                    // Try again on the next tick.
+                    LOG.warn("Could not check state of instances {}", ids, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the instances waiting to be registered with a load balancer target group have been registered, with
+     * one request per target group.
+     */
+    private static void checkTargetRegistrations(List<MonitorServerStatusJob> active) {
+        Map<AmazonElasticLoadBalancing, Map<String, List<MonitorServerStatusJob>>> monitorsForTargetGroups =
+            new IdentityHashMap<>();
+        for (MonitorServerStatusJob monitor : active) {
+            if (!monitor.isRegisteringTarget()) continue;
+            monitorsForTargetGroups
+                .computeIfAbsent(monitor.getELBClient(), client -> new HashMap<>())
+                .computeIfAbsent(monitor.getTargetGroupArn(), arn -> new ArrayList<>())
+                .add(monitor);
+        }
+        for (Map.Entry<AmazonElasticLoadBalancing, Map<String, List<MonitorServerStatusJob>>> entry : monitorsForTargetGroups.entrySet()) {
+            for (Map.Entry<String, List<MonitorServerStatusJob>> targetGroup : entry.getValue().entrySet()) {
+                try {
+                    DescribeTargetHealthRequest request = new DescribeTargetHealthRequest()
+                        .withTargetGroupArn(targetGroup.getKey());
+                    Set<String> registeredIds = new HashSet<>();
+                    for (TargetHealthDescription health : entry.getKey().describeTargetHealth(request).getTargetHealthDescriptions()) {
+                        registeredIds.add(health.getTarget().getId());
+                    }
+                    for (MonitorServerStatusJob monitor : targetGroup.getValue()) {
+                        if (registeredIds.contains(monitor.getInstanceId())) monitor.targetRegistered();
+                    }
+                } catch (AmazonClientException e) {
+                    // Try again on the next tick.
+                    LOG.warn("Could not check health of target group {}", targetGroup.getKey(), e);
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.conveyal.datatools.manager.jobs;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.GTFS;
@@ -49,6 +50,10 @@ public class ValidateFeedJob extends MonitorableJob {
                     int count = feedVersion.parentFeedSource().feedVersionCount();
                     feedVersion.version = count + 1;
                     Persistence.feedVersions.create(feedVersion);
+                    if (FeedRetrievalMethod.FETCHED_AUTOMATICALLY.equals(feedVersion.retrievalMethod)) {
+                        // Only now that the fetched version is stored should the next fetch treat it as the latest.
+                        feedVersion.parentFeedSource().storeFetchResult(feedVersion);
+                    }
                 } else {
                     Persistence.feedVersions.replace(feedVersion.id, feedVersion);
                 }
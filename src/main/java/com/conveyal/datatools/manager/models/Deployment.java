@@ -5,7 +5,11 @@ import com.conveyal.datatools.common.utils.AWSUtils;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.controllers.api.DeploymentController;
 import com.conveyal.datatools.manager.jobs.DeployJob;
+import com.conveyal.datatools.manager.persistence.DeploymentBundleCache;
+import com.conveyal.datatools.manager.persistence.FeedCache;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.datatools.manager.utils.StringUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -16,31 +20,43 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.io.ByteStreams;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -51,17 +67,24 @@ import org.slf4j.LoggerFactory;
 import static com.conveyal.datatools.manager.models.FeedVersion.feedStore;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
 
 /**
  * A deployment of (a given version of) OTP on a given set of feeds.
  * @author mattwigway
  *
  */
+@MongoIndex(fields = "projectId")
+@MongoIndex(fields = "feedSourceId")
+@MongoIndex(fields = {"deployedTo", "routerId"})
 @JsonInclude(Include.ALWAYS)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Deployment extends Model implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final Logger LOG = LoggerFactory.getLogger(Deployment.class);
+    /** Number of bundle inputs (GTFS files and OSM extracts) to fetch concurrently when dumping deployments. */
+    private static final int BUNDLE_FETCH_THREADS = 4;
+    private static ExecutorService bundleFetchExecutor;
 
     public String name;
 
@@ -90,37 +113,56 @@ public class Deployment extends Model implements Serializable {
 
     /** All of the feed versions used in this deployment */
     public List<FeedVersion> retrieveFullFeedVersions() {
-        ArrayList<FeedVersion> ret = new ArrayList<>(feedVersionIds.size());
+        return retrieveFullFeedVersions(false);
+    }
 
-        for (String id : feedVersionIds) {
-            FeedVersion v = Persistence.feedVersions.getById(id);
-            if (v != null)
-                ret.add(v);
-            else
-                LOG.error("Reference integrity error for deployment {} ({}), feed version {} does not exist", this.name, this.id, id);
-        }
+    /**
+     * All of the feed versions used in this deployment, optionally with their parent feed sources and previous/next
+     * version IDs prefetched (see {@link FeedVersion#prefetchRelatedObjects}). Only callers that serialize the versions
+     * or otherwise read those related objects for every version should request the prefetch.
+     */
+    public List<FeedVersion> retrieveFullFeedVersions(boolean prefetchRelatedObjects) {
+        List<FeedVersion> versions = retrieveFeedVersionsById();
+        return prefetchRelatedObjects ? FeedVersion.prefetchRelatedObjects(versions) : versions;
+    }
 
-        return ret;
+    /**
+     * All of the feed versions used in this deployment with related objects prefetched, which are serialized in full
+     * in the deployment manifest (see {@link DeploymentFullFeedVersionMixin}).
+     */
+    public List<FeedVersion> retrieveManifestFeedVersions() {
+        return retrieveFullFeedVersions(true);
     }
 
-    /** All of the feed versions used in this deployment, summarized so that the Internet won't break */
-    @JsonProperty("feedVersions")
-    public List<SummarizedFeedVersion> retrieveFeedVersions() {
+    /**
+     * Fetch all of the feed versions referenced by {@link #feedVersionIds} in a single query, preserving the order of the
+     * IDs. Missing feed versions are logged and skipped.
+     */
+    private List<FeedVersion> retrieveFeedVersionsById() {
         // return empty array if feedVersionIds is null
         if (feedVersionIds == null) return new ArrayList<>();
-
-        ArrayList<SummarizedFeedVersion> ret = new ArrayList<>(feedVersionIds.size());
-
+        Map<String, FeedVersion> versionsById = new HashMap<>();
+        for (FeedVersion version : Persistence.feedVersions.getFiltered(in("_id", feedVersionIds))) {
+            versionsById.put(version.id, version);
+        }
+        List<FeedVersion> versions = new ArrayList<>(feedVersionIds.size());
         for (String id : feedVersionIds) {
-            FeedVersion v = Persistence.feedVersions.getById(id);
-
+            FeedVersion v = versionsById.get(id);
             // should never happen but can if someone monkeyed around with dump/restore
             if (v != null)
-                ret.add(new SummarizedFeedVersion(Persistence.feedVersions.getById(id)));
+                versions.add(v);
             else
                 LOG.error("Reference integrity error for deployment {} ({}), feed version {} does not exist", this.name, this.id, id);
         }
+        return versions;
+    }
 
+    /** All of the feed versions used in this deployment, summarized so that the Internet won't break */
+    @JsonProperty("feedVersions")
+    public List<SummarizedFeedVersion> retrieveFeedVersions() {
+        List<FeedVersion> versions = retrieveFullFeedVersions(true);
+        ArrayList<SummarizedFeedVersion> ret = new ArrayList<>(versions.size());
+        for (FeedVersion v : versions) ret.add(new SummarizedFeedVersion(v));
         return ret;
     }
 
@@ -295,88 +337,203 @@ public class Deployment extends Model implements Serializable {
      * @param includeOtpConfig should OTP build-config.json and router-config.json be included?
      */
     public void dump (File output, boolean includeManifest, boolean includeOsm, boolean includeOtpConfig) throws IOException {
-        // Create the zipfile.
-        ZipOutputStream out;
-        try {
-            out = new ZipOutputStream(new FileOutputStream(output));
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            dump(out, includeManifest, includeOsm, includeOtpConfig);
         }
+    }
 
-        if (includeManifest) {
-            // save the manifest at the beginning of the file, for read/seek efficiency
-            ZipEntry manifestEntry = new ZipEntry("manifest.json");
-            out.putNextEntry(manifestEntry);
-            // create the json manifest
-            JsonManager<Deployment> jsonManifest = new JsonManager<>(Deployment.class, JsonViews.UserInterface.class);
-            // this mixin gives us full feed validation results, not summarized
-            jsonManifest.addMixin(Deployment.class, DeploymentFullFeedVersionMixin.class);
-            byte[] manifest = jsonManifest.write(this).getBytes();
-            // Write manifest and close entry.
-            out.write(manifest);
-            out.closeEntry();
-        }
+    /**
+     * Write this deployment as a zip to the given output stream (e.g., an HTTP response), which is not closed. The
+     * GTFS files and OSM extract are fetched concurrently (see {@link #getBundleFetchExecutor()}) while the zip is
+     * written in order, and are written as STORED entries because they are already compressed.
+     * @param includeOsm should an osm.pbf file be included in the dump?
+     * @param includeOtpConfig should OTP build-config.json and router-config.json be included?
+     */
+    public void dump (OutputStream output, boolean includeManifest, boolean includeOsm, boolean includeOtpConfig) throws IOException {
+        List<FeedVersion> versions = this.retrieveFullFeedVersions();
+        // Start fetching the inputs. Pinning each GTFS file ensures that it is not evicted from the feed cache before it
+        // is copied into the bundle.
+        ExecutorService executor = getBundleFetchExecutor();
+        List<Future<FeedCache.Pin>> gtfsFiles = new ArrayList<>();
+        for (FeedVersion v : versions) gtfsFiles.add(executor.submit(v::pinGtfsFile));
+        Future<FeedCache.Pin> osmFile = includeOsm ? executor.submit(this::pinOsmExtract) : null;
+        try {
+            ZipOutputStream out = new ZipOutputStream(output);
+            if (includeManifest) {
+                // save the manifest at the beginning of the file, for read/seek efficiency
+                ZipEntry manifestEntry = new ZipEntry("manifest.json");
+                out.putNextEntry(manifestEntry);
+                // create the json manifest
+                JsonManager<Deployment> jsonManifest = new JsonManager<>(Deployment.class, JsonViews.UserInterface.class);
+                // this mixin gives us full feed validation results, not summarized
+                jsonManifest.addMixin(Deployment.class, DeploymentFullFeedVersionMixin.class);
+                byte[] manifest = jsonManifest.write(this).getBytes();
+                // Write manifest and close entry.
+                out.write(manifest);
+                out.closeEntry();
+            }
 
-        // Write each of the feed version GTFS files into the zip.
-        for (FeedVersion v : this.retrieveFullFeedVersions()) {
-            File gtfsFile = v.retrieveGtfsFile();
-            FileInputStream in;
-            try {
-                in = new FileInputStream(gtfsFile);
-            } catch (FileNotFoundException e1) {
-                LOG.error("Could not retrieve file for {}", v.name);
-                throw new RuntimeException(e1);
+            // Write each of the feed version GTFS files into the zip.
+            for (int i = 0; i < versions.size(); i++) {
+                FeedVersion v = versions.get(i);
+                FeedCache.Pin gtfsFile = awaitBundleInput(gtfsFiles.get(i));
+                if (gtfsFile == null) {
+                    LOG.error("Could not retrieve file for {}", v.name);
+                    throw new RuntimeException(new FileNotFoundException("GTFS file not found for version " + v.id));
+                }
+                try {
+                    writeStoredEntry(out, gtfsFile.file.getName(), gtfsFile.file);
+                } finally {
+                    gtfsFile.close();
+                }
             }
-            ZipEntry e = new ZipEntry(gtfsFile.getName());
-            out.putNextEntry(e);
-            ByteStreams.copy(in, out);
-            try {
-                in.close();
-            } catch (IOException e1) {
-                LOG.warn("Could not close GTFS file input stream {}", gtfsFile.getName());
-                e1.printStackTrace();
+
+            if (osmFile != null) {
+                // Insert the OSM extract into the deployment bundle
+                try (FeedCache.Pin osmExtract = awaitBundleInput(osmFile)) {
+                    writeStoredEntry(out, "osm.pbf", osmExtract.file);
+                }
+            }
+
+            if (includeOtpConfig) {
+                // Write build-config.json and router-config.json into zip file.
+                // Use custom build config if it is not null, otherwise default to project build config.
+                byte[] buildConfigAsBytes = generateBuildConfig();
+                if (buildConfigAsBytes != null) {
+                    // Include build config if not null.
+                    ZipEntry buildConfigEntry = new ZipEntry("build-config.json");
+                    out.putNextEntry(buildConfigEntry);
+                    out.write(buildConfigAsBytes);
+                    out.closeEntry();
+                }
+                // Use custom router config if it is not null, otherwise default to project router config.
+                byte[] routerConfigAsBytes = generateRouterConfig();
+                if (routerConfigAsBytes != null) {
+                    // Include router config if not null.
+                    ZipEntry routerConfigEntry = new ZipEntry("router-config.json");
+                    out.putNextEntry(routerConfigEntry);
+                    out.write(routerConfigAsBytes);
+                    out.closeEntry();
+                }
             }
-            out.closeEntry();
+            // Finally finish the zip output stream (leaving the underlying stream open). The dump is now complete.
+            out.finish();
+        } finally {
+            releaseBundleInputs(gtfsFiles, osmFile);
         }
+    }
 
-        if (includeOsm) {
-            // Extract OSM and insert it into the deployment bundle
-            ZipEntry e = new ZipEntry("osm.pbf");
-            out.putNextEntry(e);
-            InputStream is = downloadOsmExtract(retrieveProjectBounds());
-            ByteStreams.copy(is, out);
+    /**
+     * Get the executor used to fetch bundle inputs (i.e., download GTFS files from S3 and OSM extracts). This is
+     * separate from the S3 transfer executor because fetching a GTFS file may itself use S3 transfers.
+     */
+    private static synchronized ExecutorService getBundleFetchExecutor() {
+        if (bundleFetchExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            bundleFetchExecutor = Executors.newFixedThreadPool(BUNDLE_FETCH_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "bundle-fetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return bundleFetchExecutor;
+    }
+
+    /** Wait for a bundle input to be fetched, rethrowing any exception encountered while fetching it. */
+    private static <T> T awaitBundleInput(Future<T> input) throws IOException {
+        try {
+            return input.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching deployment bundle input", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Unpin the GTFS files and OSM extract. Inputs that were already released are unaffected (closing a pin more than
+     * once has no effect). Inputs that are still being fetched (e.g., if the dump failed part way) are released once
+     * they have been fetched.
+     */
+    private static void releaseBundleInputs(List<Future<FeedCache.Pin>> gtfsFiles, Future<FeedCache.Pin> osmFile) {
+        List<Future<FeedCache.Pin>> inputs = new ArrayList<>(gtfsFiles);
+        if (osmFile != null) inputs.add(osmFile);
+        for (Future<FeedCache.Pin> input : inputs) {
+            if (input.cancel(false)) continue;
             try {
-                is.close();
-            } catch (IOException e1) {
-                LOG.warn("Could not close OSM input stream");
-                e1.printStackTrace();
+                FeedCache.Pin pin = awaitBundleInput(input);
+                if (pin != null) pin.close();
+            } catch (Exception e) {
+                // The error has already been (or will be) reported by the dump.
             }
-            out.closeEntry();
         }
+    }
 
-        if (includeOtpConfig) {
-            // Write build-config.json and router-config.json into zip file.
-            // Use custom build config if it is not null, otherwise default to project build config.
-            byte[] buildConfigAsBytes = generateBuildConfig();
-            if (buildConfigAsBytes != null) {
-                // Include build config if not null.
-                ZipEntry buildConfigEntry = new ZipEntry("build-config.json");
-                out.putNextEntry(buildConfigEntry);
-                out.write(buildConfigAsBytes);
-                out.closeEntry();
-            }
-            // Use custom router config if it is not null, otherwise default to project router config.
-            byte[] routerConfigAsBytes = generateRouterConfig();
-            if (routerConfigAsBytes != null) {
-                // Include router config if not null.
-                ZipEntry routerConfigEntry = new ZipEntry("router-config.json");
-                out.putNextEntry(routerConfigEntry);
-                out.write(routerConfigAsBytes);
-                out.closeEntry();
+    /**
+     * Write the file to the zip without compression. STORED entries must declare their size and CRC before the data,
+     * which requires an extra pass over the file, but this is much cheaper than deflating data that is already
+     * compressed (such as GTFS zips and OSM PBF files).
+     */
+    private static void writeStoredEntry(ZipOutputStream out, String name, File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) crc.update(buffer, 0, read);
+        }
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(file.length());
+        entry.setCompressedSize(file.length());
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        java.nio.file.Files.copy(file.toPath(), out);
+        out.closeEntry();
+    }
+
+    /**
+     * Pin the OSM extract for the project bounds in the deployment bundle cache, downloading it if it is not cached (or
+     * the cached extract has expired).
+     */
+    private FeedCache.Pin pinOsmExtract() throws IOException {
+        Rectangle2D bounds = retrieveProjectBounds();
+        String key = DeploymentBundleCache.getOsmExtractKey(getVexUrl(bounds));
+        return DeploymentBundleCache.pinOsmExtract(key, file -> {
+            try (InputStream is = downloadOsmExtract(bounds)) {
+                java.nio.file.Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+        });
+    }
+
+    /**
+     * Get the key for this deployment's bundle (as built by {@link com.conveyal.datatools.manager.jobs.DeployJob}, i.e.,
+     * with manifest and OTP config) in the {@link DeploymentBundleCache}. This is a digest of the inputs to the bundle:
+     * the feed version IDs (feed versions are immutable), the OSM extract (if included) and the build and router config.
+     * The IDs are sorted, because the order of the feed versions in a deployment does not affect the bundle. Note: the
+     * manifest is not part of the key, so a reused bundle contains the manifest of the deployment that built it.
+     */
+    public String retrieveBundleKey(boolean includeOsm) throws MalformedURLException {
+        MessageDigest digest = HashUtils.newContentDigest();
+        List<String> versionIds = new ArrayList<>();
+        for (FeedVersion version : retrieveFeedVersionsById()) versionIds.add(version.id);
+        Collections.sort(versionIds);
+        for (String versionId : versionIds) {
+            updateDigest(digest, versionId.getBytes(StandardCharsets.UTF_8));
         }
-        // Finally close the zip output stream. The dump file is now complete.
-        out.close();
+        // Separate the feed versions from the remaining inputs.
+        updateDigest(digest, null);
+        String osmExtractKey = includeOsm ? DeploymentBundleCache.getOsmExtractKey(getVexUrl(retrieveProjectBounds())) : null;
+        updateDigest(digest, osmExtractKey != null ? osmExtractKey.getBytes(StandardCharsets.UTF_8) : null);
+        updateDigest(digest, generateBuildConfig());
+        updateDigest(digest, generateRouterConfig());
+        return HashUtils.toHex(digest);
+    }
+
+    /** Add the value to the digest, prefixed with its length (or -1 if null) so that distinct inputs never collide. */
+    private static void updateDigest(MessageDigest digest, byte[] value) {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(value != null ? value.length : -1).array());
+        if (value != null) digest.update(value);
     }
 
     /** Generate build config for deployment as byte array (for writing to file output stream). */
@@ -604,7 +761,7 @@ public class Deployment extends Model implements Serializable {
 
         @JsonProperty("feedVersions")
         @JsonIgnore(false)
-        public abstract Collection<FeedVersion> retrieveFullFeedVersions ();
+        public abstract Collection<FeedVersion> retrieveManifestFeedVersions ();
     }
 
     /**
@@ -1,11 +1,13 @@
 package com.conveyal.datatools.manager.models;
 
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 
 /**
  * Created by demory on 3/30/16.
  */
+@MongoIndex(fields = {"feedSourceId", "resourceType"})
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ExternalFeedSourceProperty extends Model {
     private static final long serialVersionUID = 1L;
@@ -4,13 +4,16 @@ import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.editor.utils.EditorNamespaceCache;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.jobs.NotifyUsersForSubscriptionJob;
 import com.conveyal.datatools.manager.models.transform.FeedTransformRules;
 import com.conveyal.datatools.manager.models.transform.FeedTransformation;
 import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.HashUtils;
+import com.conveyal.datatools.manager.utils.HostRateLimiter;
 import com.conveyal.gtfs.GTFS;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -19,6 +22,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.model.Sorts;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +38,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.conveyal.datatools.manager.utils.StringUtils.getCleanName;
@@ -43,12 +48,16 @@ import static com.mongodb.client.model.Filters.eq;
 /**
  * Created by demory on 3/22/16.
  */
+@MongoIndex(fields = "projectId")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class FeedSource extends Model implements Cloneable {
 
     private static final long serialVersionUID = 1L;
 
     public static final Logger LOG = LoggerFactory.getLogger(FeedSource.class);
+    /** Timeouts for fetching a feed, so that an unresponsive server does not hold a fetch thread indefinitely. */
+    private static final int FETCH_CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int FETCH_READ_TIMEOUT_MILLIS = 120000;
 
     /**
      * The collection of which this feed is a part
@@ -101,6 +110,15 @@ public class FeedSource extends Model implements Cloneable {
      */
     public Date lastFetched;
 
+    /**
+     * The ETag, Last-Modified and Content-Length response headers from the last successful fetch, which are used to
+     * make conditional requests (and to detect unchanged feeds from servers that ignore conditional requests) on the
+     * next fetch. These are reset along with {@link #lastFetched} when the fetch URL changes.
+     */
+    public String lastFetchETag;
+    public String lastFetchLastModified;
+    public Long lastFetchContentLength;
+
     /**
      * When was this feed last updated?
      * FIXME: this is currently dynamically determined by lastUpdated() with calls retrieveLatest().
@@ -208,15 +226,23 @@ public class FeedSource extends Model implements Cloneable {
         }
 
         conn.setDefaultUseCaches(true);
+        conn.setConnectTimeout(FETCH_CONNECT_TIMEOUT_MILLIS);
+        conn.setReadTimeout(FETCH_READ_TIMEOUT_MILLIS);
         // Get latest version to check that the fetched version does not duplicate a feed already loaded.
         FeedVersion latest = retrieveLatest();
         // lastFetched is set to null when the URL changes and when latest feed version is deleted
-        if (latest != null && this.lastFetched != null)
-            conn.setIfModifiedSince(Math.min(latest.updated.getTime(), this.lastFetched.getTime()));
+        boolean conditionalRequest = latest != null && this.lastFetched != null;
+        if (conditionalRequest) {
+            // Prefer the server's own validators from the last fetch over our timestamps.
+            if (lastFetchLastModified != null) conn.setRequestProperty("If-Modified-Since", lastFetchLastModified);
+            else conn.setIfModifiedSince(Math.min(latest.updated.getTime(), this.lastFetched.getTime()));
+            if (lastFetchETag != null) conn.setRequestProperty("If-None-Match", lastFetchETag);
+        }
 
         File newGtfsFile;
 
         try {
+            HostRateLimiter.acquire(url.getHost());
             conn.connect();
             String message;
             int responseCode = conn.getResponseCode();
@@ -228,6 +254,15 @@ public class FeedSource extends Model implements Cloneable {
                     status.completeSuccessfully(message);
                     return null;
                 case HttpURLConnection.HTTP_OK:
+                    if (conditionalRequest && hasUnchangedValidators(conn)) {
+                        // Some servers ignore conditional requests, so avoid downloading the feed if the response
+                        // headers show that it has not changed.
+                        conn.disconnect();
+                        message = String.format("Feed %s has not been modified (response headers match last fetch)", this.name);
+                        LOG.warn(message);
+                        status.completeSuccessfully(message);
+                        return null;
+                    }
                     // Response is OK. Continue on to save the GTFS file.
                     message = String.format("Saving %s feed.", this.name);
                     LOG.info(message);
@@ -235,6 +270,12 @@ public class FeedSource extends Model implements Cloneable {
                     // Create new file from input stream (this also handles hashing the file and other version fields
                     // calculated from the GTFS file.
                     newGtfsFile = version.newGtfsFile(conn.getInputStream());
+                    // Hold on to the response headers until the version has been stored (see storeFetchResult), so
+                    // that a version that fails processing is fetched again rather than treated as not modified.
+                    version.fetchETag = conn.getHeaderField("ETag");
+                    version.fetchLastModified = conn.getHeaderField("Last-Modified");
+                    long contentLength = conn.getContentLengthLong();
+                    version.fetchContentLength = contentLength >= 0 ? contentLength : null;
                     break;
                 case HttpURLConnection.HTTP_MOVED_TEMP:
                 case HttpURLConnection.HTTP_MOVED_PERM:
@@ -270,11 +311,14 @@ public class FeedSource extends Model implements Cloneable {
             e.printStackTrace();
             return null;
         }
-        if (latest != null && version.hash.equals(latest.hash)) {
+        if (version.hasSameContentAs(latest)) {
             // If new version hash equals the hash for the latest version, do not error. Simply indicate that server
             // operators should add If-Modified-Since support to avoid wasting bandwidth.
             String message = String.format("Feed %s was fetched but has not changed; server operators should add If-Modified-Since support to avoid wasting bandwidth", this.name);
             LOG.warn(message);
+            // The latest version (which is already stored) has this content, so the fetch result can be used for the
+            // next fetch. If-Modified-Since remains anchored to the latest version's timestamp.
+            storeFetchResult(version);
             String filePath = newGtfsFile.getAbsolutePath();
             if (newGtfsFile.delete()) {
                 LOG.info("Deleting redundant GTFS file: {}", filePath);
@@ -285,10 +329,13 @@ public class FeedSource extends Model implements Cloneable {
             return null;
         }
         else {
+            Set<String> changedTables = version.retrieveTablesChangedSince(latest);
+            if (changedTables != null) {
+                LOG.info("Tables changed for {} since latest version: {}", this.name, changedTables);
+            }
             version.userId = this.userId;
-
-            // Update last fetched value for feed source.
-            Persistence.feedSources.updateField(this.id, "lastFetched", version.updated);
+            // Note: the last fetched value and fetch validators for the feed source are updated once the version has
+            // been stored (see storeFetchResult).
 
             // Set file timestamp according to last modified header from connection
             version.fileTimestamp = conn.getLastModified();
@@ -303,6 +350,42 @@ public class FeedSource extends Model implements Cloneable {
         }
     }
 
+    /**
+     * Whether the ETag (or, if the server does not provide one, the Last-Modified and Content-Length) response headers
+     * match those from the last fetch.
+     */
+    private boolean hasUnchangedValidators(HttpURLConnection conn) {
+        String eTag = conn.getHeaderField("ETag");
+        if (eTag != null) return eTag.equals(lastFetchETag);
+        long contentLength = conn.getContentLengthLong();
+        String lastModified = conn.getHeaderField("Last-Modified");
+        return contentLength >= 0 && lastModified != null &&
+            Long.valueOf(contentLength).equals(lastFetchContentLength) && lastModified.equals(lastFetchLastModified);
+    }
+
+    /**
+     * Update the last fetched value and fetch validators with the results of fetching the provided version. This should
+     * only be called once the version has been stored, otherwise the next fetch could skip a feed that was never
+     * loaded.
+     */
+    public void storeFetchResult(FeedVersion version) {
+        lastFetched = version.updated;
+        Persistence.feedSources.update(id, applyFetchValidators(version).append("lastFetched", lastFetched));
+    }
+
+    /**
+     * Set the response headers from a fetch for use in conditional requests on the next fetch, returning the update
+     * that stores them.
+     */
+    private Document applyFetchValidators(FeedVersion version) {
+        lastFetchETag = version.fetchETag;
+        lastFetchLastModified = version.fetchLastModified;
+        lastFetchContentLength = version.fetchContentLength;
+        return new Document("lastFetchETag", lastFetchETag)
+            .append("lastFetchLastModified", lastFetchLastModified)
+            .append("lastFetchContentLength", lastFetchContentLength);
+    }
+
     public int compareTo(FeedSource o) {
         return this.name.compareTo(o.name);
     }
@@ -565,6 +648,7 @@ public class FeedSource extends Model implements Cloneable {
 
             // Finally, delete the feed source mongo document.
             Persistence.feedSources.removeById(this.id);
+            EditorNamespaceCache.invalidate(this.id);
         } catch (Exception e) {
             LOG.error("Could not delete feed source", e);
         }
@@ -3,8 +3,11 @@ package com.conveyal.datatools.manager.models;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.persistence.FeedCache;
 import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
 import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.gtfs.BaseGTFSCache;
 import com.conveyal.gtfs.GTFS;
@@ -18,24 +21,42 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import org.bson.codecs.pojo.annotations.BsonProperty;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.manager.DataManager.isExtensionEnabled;
 import static com.conveyal.datatools.manager.utils.StringUtils.getCleanName;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Projections.include;
 import static com.mongodb.client.model.Updates.pull;
 
 /**
@@ -43,6 +64,9 @@ import static com.mongodb.client.model.Updates.pull;
  * @author mattwigway
  *
  */
+@MongoIndex(fields = {"feedSourceId", "version"})
+@MongoIndex(fields = "namespace")
+@MongoIndex(fields = "hash")
 @JsonInclude(Include.ALWAYS)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class FeedVersion extends Model implements Serializable {
@@ -115,12 +139,72 @@ public class FeedVersion extends Model implements Serializable {
 
     public FeedRetrievalMethod retrievalMethod;
 
+    /**
+     * Related objects resolved in bulk by {@link #prefetchRelatedObjects} so that serializing a list of feed versions does
+     * not require several database queries per version. These fields are private (without getters) so that they are
+     * neither stored in Mongo nor serialized to JSON.
+     */
+    private boolean relatedObjectsPrefetched;
+    private FeedSource prefetchedFeedSource;
+    private String prefetchedPreviousVersionId;
+    private String prefetchedNextVersionId;
+
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("feedSource")
     public FeedSource parentFeedSource() {
+        if (relatedObjectsPrefetched) return prefetchedFeedSource;
         return Persistence.feedSources.getById(feedSourceId);
     }
 
+    /**
+     * Resolve the parent feed source and previous/next version IDs for each of the supplied feed versions with one
+     * query for all parent feed sources and one (projected) query for all of their sibling versions, rather than
+     * issuing three queries per version as the individual getters would when the list is serialized. This should be
+     * applied to lists of feed versions returned by read-only endpoints (the prefetched values are not refreshed if
+     * the related objects change afterwards).
+     *
+     * @return the same feed versions, for convenience
+     */
+    public static <C extends Collection<FeedVersion>> C prefetchRelatedObjects(C versions) {
+        Set<String> feedSourceIds = new HashSet<>();
+        for (FeedVersion version : versions) {
+            if (version.feedSourceId != null) feedSourceIds.add(version.feedSourceId);
+        }
+        if (feedSourceIds.isEmpty()) return versions;
+        Map<String, FeedSource> feedSourcesById = new HashMap<>();
+        for (FeedSource feedSource : Persistence.feedSources.getFiltered(in("_id", feedSourceIds))) {
+            feedSourcesById.put(feedSource.id, feedSource);
+        }
+        // Fetch only the fields needed to determine sibling versions for every feed source at once.
+        Map<String, Map<Integer, String>> versionIdsByFeedSource = new HashMap<>();
+        Bson projection = include("_id", "feedSourceId", "version");
+        try (
+            Stream<FeedVersion> siblings = Persistence.feedVersions.stream(
+                in("feedSourceId", feedSourceIds),
+                null,
+                projection,
+                0,
+                0,
+                TypedPersistence.DEFAULT_BATCH_SIZE
+            )
+        ) {
+            siblings.forEach(sibling -> versionIdsByFeedSource
+                .computeIfAbsent(sibling.feedSourceId, id -> new HashMap<>())
+                .put(sibling.version, sibling.id));
+        }
+        for (FeedVersion version : versions) {
+            Map<Integer, String> versionIds = versionIdsByFeedSource.getOrDefault(
+                version.feedSourceId,
+                Collections.emptyMap()
+            );
+            version.prefetchedFeedSource = feedSourcesById.get(version.feedSourceId);
+            version.prefetchedPreviousVersionId = versionIds.get(version.version - 1);
+            version.prefetchedNextVersionId = versionIds.get(version.version + 1);
+            version.relatedObjectsPrefetched = true;
+        }
+        return versions;
+    }
+
     /**
      * Finds the previous version (i.e., the version loaded directly before the current version in time order).
      * @return the previous feed version or <code>null</code> if this is the first version
@@ -136,6 +220,7 @@ public class FeedVersion extends Model implements Serializable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("previousVersionId")
     public String previousVersionId() {
+        if (relatedObjectsPrefetched) return prefetchedPreviousVersionId;
         FeedVersion p = previousVersion();
         return p != null ? p.id : null;
     }
@@ -155,25 +240,58 @@ public class FeedVersion extends Model implements Serializable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("nextVersionId")
     public String nextVersionId() {
+        if (relatedObjectsPrefetched) return prefetchedNextVersionId;
         FeedVersion p = nextVersion();
         return p != null ? p.id : null;
     }
 
     /**
-     * The hash of the feed file, for quick checking if the file has been updated
+     * The hash of the full content of the feed file (see {@link HashUtils#CONTENT_HASH_ALGORITHM}), for checking if the
+     * file has been updated or is identical to another version's file. Note: versions created before full-content
+     * hashing was introduced have a legacy (sampled MD5) hash.
      */
     @JsonView(JsonViews.DataDump.class)
     public String hash;
 
+    /**
+     * The hash of each table (text file) in the feed file, keyed on table name (see {@link HashUtils#toTableHashes}).
+     * These are used to report which tables changed between versions.
+     */
+    @JsonView(JsonViews.DataDump.class)
+    public Map<String, String> tableHashes;
+
+    /**
+     * A hash of the name and content of every entry in the feed file (see {@link HashUtils#combineEntryHashes}), which
+     * is used to determine whether a feed is unchanged when the feed file itself has changed (e.g., because the feed
+     * was re-zipped). Unlike {@link #tableHashes}, this covers files other than GTFS tables (e.g., GTFS-Flex
+     * locations.geojson).
+     */
+    @JsonView(JsonViews.DataDump.class)
+    public String entriesHash;
+
     public File retrieveGtfsFile() {
         return feedStore.getFeed(id);
     }
 
+    /**
+     * Get the GTFS file for this version, ensuring that it is not evicted from the feed cache until the returned pin is
+     * closed (see {@link FeedStore#pinFeed}). This should be used when the file is needed for an extended period
+     * (e.g., while merging feeds).
+     */
+    public FeedCache.Pin pinGtfsFile() {
+        return feedStore.pinFeed(id);
+    }
+
     /**
      * Store a new GTFS file from an input stream representing the GTFS zip file.
      */
     public File newGtfsFile(InputStream inputStream) throws IOException {
-        File file = feedStore.newFeed(id, inputStream, parentFeedSource());
+        // Hash the file and its entries while it is written to avoid reading it a second time.
+        MessageDigest digest = HashUtils.newContentDigest();
+        Map<String, String> entryHashes = new TreeMap<>();
+        File file = feedStore.newFeed(id, inputStream, parentFeedSource(), digest, entryHashes);
+        hash = HashUtils.toHex(digest);
+        assignEntryHashes(entryHashes);
         assignGtfsFileAttributes(file);
         LOG.info("New GTFS file saved: {} ({} bytes)", id, this.fileSize);
         return file;
@@ -221,6 +339,15 @@ public class FeedVersion extends Model implements Serializable {
     /** The last modified timestamp of the original GTFS file uploaded/fetched */
     public Long fileTimestamp;
 
+    /**
+     * The ETag, Last-Modified and Content-Length response headers from the fetch that produced this version. These are
+     * not stored with the version, but are copied to the parent feed source once the version has been stored (see
+     * {@link FeedSource#storeFetchResult}).
+     */
+    public transient String fetchETag;
+    public transient String fetchLastModified;
+    public transient Long fetchContentLength;
+
     /** SQL namespace for GTFS data */
     public String namespace;
 
@@ -292,13 +419,10 @@ public class FeedVersion extends Model implements Serializable {
                 }
                 if (fileUploaded || !isNewVersion) {
                     // Note: If feed is not a new version, it is presumed to already exist on S3, so uploading is not required.
-                    // Delete local copy of feed version after successful s3 upload
-                    boolean fileDeleted = gtfsFile.delete();
-                    if (fileDeleted) {
-                        LOG.info("Local GTFS file deleted after s3 upload");
-                    } else {
-                        LOG.error("Local GTFS file failed to delete. Server may encounter storage capacity issues!");
-                    }
+                    // Move local copy of feed version into the feed cache after successful s3 upload, so that it is
+                    // available for subsequent jobs (e.g., validation or merges) until it is evicted.
+                    FeedVersion.feedStore.moveToCache(this.id, gtfsFile);
+                    LOG.info("Local GTFS file moved to feed cache after s3 upload");
                 } else {
                     LOG.error("Local GTFS file not uploaded not successfully to s3!");
                 }
@@ -447,7 +571,65 @@ public class FeedVersion extends Model implements Serializable {
             fileTimestamp = newGtfsFile.lastModified();
         }
         fileSize = newGtfsFile.length();
-        if (hash == null) hash = HashUtils.hashFile(newGtfsFile);
+        if (hash == null) {
+            // Hash the file and its entries in a single read.
+            MessageDigest digest = HashUtils.newContentDigest();
+            try (InputStream in = new DigestInputStream(new FileInputStream(newGtfsFile), digest)) {
+                assignEntryHashes(HashUtils.hashZipEntries(in));
+                hash = HashUtils.toHex(digest);
+            } catch (IOException e) {
+                LOG.warn("Failed to hash file, using empty string instead", e);
+                hash = "";
+            }
+        }
+        // Fall back on reading the zip file's central directory if the entries could not be hashed from the stream (or
+        // the version was hashed before entry hashes were introduced).
+        if (entriesHash == null) assignEntryHashes(HashUtils.hashZipEntries(newGtfsFile));
+    }
+
+    /** Assign the table hashes and combined entries hash from the hashes of the feed file's zip entries. */
+    private void assignEntryHashes(Map<String, String> entryHashes) {
+        tableHashes = HashUtils.toTableHashes(entryHashes);
+        entriesHash = HashUtils.combineEntryHashes(entryHashes);
+    }
+
+    /**
+     * Whether this version's GTFS file has the same content as the other version's file. Files that differ (e.g.,
+     * because the feed was re-zipped) but contain identical entries (including files other than GTFS tables) are
+     * considered to have the same content. If the
+     * other version was hashed before full-content hashing was introduced, this version's file is hashed in the same
+     * (legacy) manner for the comparison.
+     */
+    public boolean hasSameContentAs(FeedVersion other) {
+        if (other == null || other.hash == null || hash == null) return false;
+        if (HashUtils.isLegacyHash(other.hash) && !HashUtils.isLegacyHash(hash)) {
+            File gtfsFile = retrieveGtfsFile();
+            return gtfsFile != null && other.hash.equals(HashUtils.hashFileSample(gtfsFile));
+        }
+        if (hash.equals(other.hash)) return true;
+        return entriesHash != null && entriesHash.equals(other.entriesHash);
+    }
+
+    /**
+     * Get the names of the tables that were added, removed, or modified in this version compared with the other
+     * version, or null if table hashes are not available for both versions.
+     */
+    public Set<String> retrieveTablesChangedSince(FeedVersion other) {
+        if (other == null || tableHashes == null || other.tableHashes == null) return null;
+        Set<String> changedTables = new TreeSet<>();
+        changedTables.addAll(tableHashes.keySet());
+        changedTables.addAll(other.tableHashes.keySet());
+        changedTables.removeIf(table -> Objects.equals(tableHashes.get(table), other.tableHashes.get(table)));
+        return changedTables;
+    }
+
+    /**
+     * Find versions (in any feed source) with content identical to this version's GTFS file, e.g., to detect the same
+     * GTFS file being uploaded for more than one feed source.
+     */
+    public List<FeedVersion> retrieveVersionsWithSameContent() {
+        if (hash == null) return new ArrayList<>();
+        return Persistence.feedVersions.getFiltered(and(eq("hash", hash), ne("_id", id)));
     }
 
     /**
@@ -0,0 +1,49 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.manager.persistence.MongoIndex;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A durable record of a job queued via {@link com.conveyal.datatools.common.status.JobExecutor}, which is used to
+ * recover jobs that were queued or running when the server stopped (see
+ * {@link com.conveyal.datatools.common.status.JobJournal}). The record ID is the job ID.
+ */
+@MongoIndex(fields = {"state"})
+@MongoIndex(fields = {"dateFinished"})
+public class JobRecord extends Model {
+    private static final long serialVersionUID = 1L;
+
+    public String type;
+    public String name;
+    public String priority;
+    /** Key identifying the work performed by the job (only set for recoverable jobs). */
+    public String idempotencyKey;
+    /** Parameters needed to re-create the job (only set for recoverable jobs). */
+    public Map<String, String> parameters;
+    public State state;
+    /** The latest status message recorded for the job. */
+    public String stage;
+    public double percentComplete;
+    public int subJobsCompleted;
+    public int subJobsTotal;
+    public Date dateStarted;
+    public Date dateFinished;
+    /** For an interrupted job, the ID of the job that was queued in its place on startup (if any). */
+    public String recoveredByJobId;
+    /**
+     * How many times the work performed by this job has been recovered after being interrupted (zero unless the job was
+     * queued in place of an interrupted job).
+     */
+    public int recoveryAttempts;
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        /** The server stopped before the job completed. */
+        INTERRUPTED
+    }
+}
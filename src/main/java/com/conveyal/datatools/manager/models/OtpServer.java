@@ -49,6 +49,13 @@ public class OtpServer extends Model {
     public boolean admin;
     /** S3 bucket name to upload deployment artifacts to (e.g., Graph.obj and/or transit + OSM data). */
     public String s3Bucket;
+    /**
+     * How the bundle is delivered to the {@link #internalUrl}s when building the graph over wire. Defaults to
+     * {@link DeliveryStrategy#ROLLING} (i.e., one server at a time if {@link #deliveryBatchSize} is not set).
+     */
+    public DeliveryStrategy deliveryStrategy;
+    /** Number of servers to deliver the bundle to at once with the {@link DeliveryStrategy#ROLLING} strategy. */
+    public int deliveryBatchSize;
 
     /** Empty constructor for serialization. */
     public OtpServer () {}
@@ -87,6 +94,22 @@ public class OtpServer extends Model {
         return Persistence.projects.getById(projectId);
     }
 
+    /**
+     * Strategies for delivering the bundle to multiple {@link #internalUrl}s. With each strategy, a server's delivery
+     * only succeeds once the server has built the graph and the router responds to requests.
+     */
+    public enum DeliveryStrategy {
+        /** Deliver to all servers at once. This is fastest, but all servers are unavailable during the graph build. */
+        PARALLEL,
+        /**
+         * Deliver to {@link #deliveryBatchSize} servers at a time, stopping if delivery fails so that the remaining
+         * servers keep serving the previous graph.
+         */
+        ROLLING,
+        /** Deliver to the first server and, if that succeeds, to the remaining servers at once. */
+        CANARY
+    }
+
     /**
      * Nothing fancy here. Just delete the Mongo record.
      *
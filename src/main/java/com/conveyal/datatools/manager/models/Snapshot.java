@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.models;
 
 import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.GTFS;
 import com.conveyal.gtfs.loader.FeedLoadResult;
@@ -18,6 +19,7 @@ import java.util.Date;
  * @author mattwigway
  *
  */
+@MongoIndex(fields = {"feedSourceId", "version"})
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Snapshot extends Model {
     public static final long serialVersionUID = 1L;
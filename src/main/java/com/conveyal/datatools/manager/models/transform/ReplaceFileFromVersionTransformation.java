@@ -4,6 +4,7 @@ import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.TableTransformResult;
 import com.conveyal.datatools.manager.models.TransformType;
+import com.conveyal.datatools.manager.persistence.FeedCache;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,8 +54,10 @@ public class ReplaceFileFromVersionTransformation extends ZipTransformation {
         String tableNamePath = "/" + tableName;
 
         // Run the replace transformation
-        Path sourceZipPath = Paths.get(sourceVersion.retrieveGtfsFile().getAbsolutePath());
-        try (FileSystem sourceZipFs = FileSystems.newFileSystem(sourceZipPath, null)) {
+        try (
+            FeedCache.Pin sourceGtfsFile = sourceVersion.pinGtfsFile();
+            FileSystem sourceZipFs = FileSystems.newFileSystem(Paths.get(sourceGtfsFile.file.getAbsolutePath()), null)
+        ) {
             // If the source txt file does not exist, NoSuchFileException will be thrown and caught below.
             Path sourceTxtFilePath = sourceZipFs.getPath(tableNamePath);
             Path targetZipPath = Paths.get(zipTarget.gtfsFile.getAbsolutePath());
@@ -0,0 +1,130 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.utils.HashUtils;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import static com.conveyal.datatools.manager.DataManager.hasConfigProperty;
+
+/**
+ * A local cache of deployment bundles and OSM extracts, so that re-deploying an unchanged deployment (e.g., to another
+ * OTP server) neither rebuilds the bundle nor downloads the OSM extract again. Entries are content-addressed: the name
+ * of each file is derived from a digest of the inputs used to produce it (see
+ * {@link com.conveyal.datatools.manager.models.Deployment#retrieveBundleKey}), so a cached file is never stale and is
+ * shared by all deployments with the same inputs.
+ *
+ * Files are kept in a subdirectory of the GTFS data directory and evicted by a {@link FeedCache} with its own byte
+ * budget. OSM data changes over time, so OSM extracts are only reused within {@link #osmMaxAgeMillis} (see
+ * {@link #getOsmExtractKey}).
+ */
+public class DeploymentBundleCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DeploymentBundleCache.class);
+    private static final long DEFAULT_CACHE_SIZE_MB = 20 * 1024;
+    private static final long DEFAULT_CACHE_MIN_AGE_MINUTES = 60;
+    private static final long DEFAULT_OSM_MAX_AGE_HOURS = 24;
+    private static final String BUNDLE_FILE_PREFIX = "bundle-";
+    private static final String OSM_EXTRACT_FILE_PREFIX = "osm-";
+    private static final long osmMaxAgeMillis = TimeUnit.HOURS.toMillis(
+        hasConfigProperty("application.data.bundle_cache.osm_max_age_hours")
+            ? DataManager.getConfigProperty("application.data.bundle_cache.osm_max_age_hours").asLong()
+            : DEFAULT_OSM_MAX_AGE_HOURS
+    );
+    /** Locks used to ensure that a file missing from the cache is only built once at a time. */
+    private static final Interner<String> buildLocks = Interners.newWeakInterner();
+    private static File cacheDirectory;
+    private static FeedCache cache;
+
+    /** Functional interface for writing the contents of a cache entry to a file. */
+    public interface EntryWriter {
+        void write(File file) throws IOException;
+    }
+
+    /**
+     * Get the key for an OSM extract downloaded from the provided vex URL (which encodes the bounds). The key also
+     * includes the current OSM max age period, so that extracts are downloaded again (and the bundles that contain them
+     * rebuilt) at least once per period.
+     */
+    public static String getOsmExtractKey(URL vexUrl) {
+        MessageDigest digest = HashUtils.newContentDigest();
+        digest.update(vexUrl.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(Long.toString(System.currentTimeMillis() / osmMaxAgeMillis).getBytes(StandardCharsets.UTF_8));
+        return HashUtils.toHex(digest);
+    }
+
+    /**
+     * Pin the cached bundle for the key, building it with the writer if it is not cached.
+     */
+    public static FeedCache.Pin pinBundle(String key, EntryWriter writer) throws IOException {
+        return pin(BUNDLE_FILE_PREFIX + key + ".zip", writer);
+    }
+
+    /**
+     * Pin the cached OSM extract for the key (see {@link #getOsmExtractKey}), downloading it with the writer if it is
+     * not cached.
+     */
+    public static FeedCache.Pin pinOsmExtract(String key, EntryWriter writer) throws IOException {
+        return pin(OSM_EXTRACT_FILE_PREFIX + key + ".pbf", writer);
+    }
+
+    /**
+     * Get hit/miss and disk usage metrics for the bundle cache (or null if it has not been used yet).
+     */
+    public static synchronized FeedCache.Metrics getCacheMetrics() {
+        return cache != null ? cache.getMetrics() : null;
+    }
+
+    private static FeedCache.Pin pin(String fileName, EntryWriter writer) throws IOException {
+        FeedCache cache = getCache();
+        File cacheFile = new File(cacheDirectory, fileName);
+        // Concurrent deployments with the same inputs (e.g., to several servers) wait for the first one to build the
+        // file rather than building it themselves.
+        synchronized (buildLocks.intern(cacheFile.getAbsolutePath())) {
+            FeedCache.Pin cached = cache.acquire(cacheFile, true);
+            if (cached != null) {
+                LOG.info("Reusing cached deployment file {}", fileName);
+                return cached;
+            }
+            // Write to a partial file first so that an interrupted build is never mistaken for a cached file.
+            File partialFile = new File(cacheFile.getPath() + FeedCache.PARTIAL_FILE_SUFFIX);
+            try {
+                writer.write(partialFile);
+                Files.move(partialFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(partialFile.toPath());
+            }
+            return cache.put(cacheFile, true);
+        }
+    }
+
+    private static synchronized FeedCache getCache() {
+        if (cache == null) {
+            File directory = new File(FeedStore.basePath, "bundle_cache");
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IllegalArgumentException("Could not create deployment bundle cache directory " + directory);
+            }
+            long maxSizeMb = hasConfigProperty("application.data.bundle_cache.max_size_mb")
+                ? DataManager.getConfigProperty("application.data.bundle_cache.max_size_mb").asLong()
+                : DEFAULT_CACHE_SIZE_MB;
+            long minAgeMinutes = hasConfigProperty("application.data.bundle_cache.min_age_minutes")
+                ? DataManager.getConfigProperty("application.data.bundle_cache.min_age_minutes").asLong()
+                : DEFAULT_CACHE_MIN_AGE_MINUTES;
+            FeedCache newCache = new FeedCache(maxSizeMb * 1024 * 1024, TimeUnit.MINUTES.toMillis(minAgeMinutes));
+            newCache.index(directory);
+            cacheDirectory = directory;
+            cache = newCache;
+        }
+        return cache;
+    }
+}
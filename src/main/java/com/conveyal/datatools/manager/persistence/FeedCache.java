@@ -0,0 +1,216 @@
+package com.conveyal.datatools.manager.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded on-disk cache of feed files that are stored on S3 (see {@link FeedStore}). Rather than downloading a feed
+ * to a new temp file every time it is needed (e.g., for merges, GTFS+ validation, deployments and transformations), the
+ * downloaded files are kept in the cache directory so that repeated reads of the same feed are served locally.
+ *
+ * Once the total size of the cached files exceeds the byte budget, least recently used files are deleted. Files are
+ * never evicted while they are pinned (see {@link #acquire}) or within the minimum age since they were last accessed,
+ * which protects callers that use a feed file briefly without pinning it. The cache may therefore temporarily exceed
+ * its budget if every file is in use.
+ */
+public class FeedCache {
+    private static final Logger LOG = LoggerFactory.getLogger(FeedCache.class);
+    /** Suffix for files that are being downloaded into the cache directory (and are not yet cache entries). */
+    public static final String PARTIAL_FILE_SUFFIX = ".part";
+
+    private final long maxBytes;
+    private final long minAgeMillis;
+    /** Cache entries in access order (i.e., least recently used first). */
+    private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public FeedCache(long maxBytes, long minAgeMillis) {
+        this.maxBytes = maxBytes;
+        this.minAgeMillis = minAgeMillis;
+    }
+
+    /**
+     * Add the files already in the cache directory (e.g., from before a restart) to the cache so that they count
+     * towards the budget. Files are ordered by their last modified time, which is updated on each cache hit.
+     */
+    public synchronized void index(File directory) {
+        File[] files = directory.listFiles(file -> file.isFile() && !file.getName().endsWith(PARTIAL_FILE_SUFFIX));
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (!entries.containsKey(file)) addEntry(file, file.lastModified());
+        }
+        LOG.info("Indexed {} cached feed files in {}", files.length, directory.getAbsolutePath());
+        evict();
+    }
+
+    /**
+     * Get the cached file, or null if the file is not cached. If pin is true, the file will not be evicted until the
+     * returned pin is closed; otherwise, the file is only protected from eviction by the minimum age (and closing the
+     * pin has no effect).
+     */
+    public synchronized Pin acquire(File file, boolean pin) {
+        Entry entry = entries.get(file);
+        if (entry == null || !file.exists()) {
+            if (entry != null) removeEntry(file);
+            misses++;
+            return null;
+        }
+        hits++;
+        touch(file, entry);
+        return new Pin(this, file, pin ? entry : null);
+    }
+
+    /**
+     * Add a file that has been written to the cache directory, pinning it if requested (see {@link #acquire}), and
+     * evict other files if the cache is over budget.
+     */
+    public synchronized Pin put(File file, boolean pin) {
+        Entry entry = entries.get(file);
+        if (entry == null) {
+            entry = addEntry(file, System.currentTimeMillis());
+        } else {
+            // The file has been replaced, so update its size.
+            totalBytes += file.length() - entry.bytes;
+            entry.bytes = file.length();
+            entry.lastAccessed = System.currentTimeMillis();
+        }
+        Pin result = new Pin(this, file, pin ? entry : null);
+        evict();
+        return result;
+    }
+
+    /**
+     * Remove the file from the cache (the caller is responsible for deleting the file).
+     */
+    public synchronized void remove(File file) {
+        if (entries.containsKey(file)) removeEntry(file);
+    }
+
+    public synchronized Metrics getMetrics() {
+        Metrics metrics = new Metrics();
+        metrics.files = entries.size();
+        metrics.bytes = totalBytes;
+        metrics.maxBytes = maxBytes;
+        metrics.hits = hits;
+        metrics.misses = misses;
+        metrics.evictions = evictions;
+        metrics.pinned = (int) entries.values().stream().filter(entry -> entry.pins > 0).count();
+        return metrics;
+    }
+
+    private Entry addEntry(File file, long lastAccessed) {
+        Entry entry = new Entry(file.length(), lastAccessed);
+        entries.put(file, entry);
+        totalBytes += entry.bytes;
+        return entry;
+    }
+
+    private void removeEntry(File file) {
+        Entry entry = entries.remove(file);
+        totalBytes -= entry.bytes;
+    }
+
+    private void touch(File file, Entry entry) {
+        entry.lastAccessed = System.currentTimeMillis();
+        // Persist the access time so that the LRU order survives restarts (see #index).
+        if (!file.setLastModified(entry.lastAccessed)) {
+            LOG.debug("Could not update last modified time for {}", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Delete least recently used files until the cache is within its budget, skipping files that are pinned or were
+     * accessed within the minimum age.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<File, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<File, Entry> next = iterator.next();
+            Entry entry = next.getValue();
+            if (entry.pins > 0 || now - entry.lastAccessed < minAgeMillis) continue;
+            File file = next.getKey();
+            iterator.remove();
+            totalBytes -= entry.bytes;
+            evictions++;
+            if (file.delete()) {
+                LOG.info("Evicted {} ({} bytes) from feed cache", file.getName(), entry.bytes);
+            } else if (file.exists()) {
+                LOG.warn("Could not delete evicted feed file {}", file.getAbsolutePath());
+            }
+        }
+        if (totalBytes > maxBytes) {
+            LOG.warn("Feed cache is over budget ({} of {} bytes) because all files are in use.", totalBytes, maxBytes);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.pins--;
+        // Pinned files may have been skipped by an earlier eviction.
+        if (entry.pins == 0) evict();
+    }
+
+    private static class Entry {
+        long bytes;
+        long lastAccessed;
+        int pins;
+
+        Entry(long bytes, long lastAccessed) {
+            this.bytes = bytes;
+            this.lastAccessed = lastAccessed;
+        }
+    }
+
+    /**
+     * Wrap a file that is not managed by a cache (e.g., a feed stored locally) so that it can be used in place of a
+     * cached file. Closing the pin has no effect.
+     */
+    public static Pin unpinned(File file) {
+        return new Pin(null, file, null);
+    }
+
+    /**
+     * A cached file that will not be evicted until the pin is closed.
+     */
+    public static class Pin implements AutoCloseable {
+        public final File file;
+        private final FeedCache cache;
+        private Entry entry;
+
+        private Pin(FeedCache cache, File file, Entry entry) {
+            this.cache = cache;
+            this.file = file;
+            this.entry = entry;
+            if (entry != null) entry.pins++;
+        }
+
+        @Override
+        public void close() {
+            if (entry != null) {
+                cache.release(entry);
+                entry = null;
+            }
+        }
+    }
+
+    public static class Metrics {
+        public int files;
+        public int pinned;
+        public long bytes;
+        public long maxBytes;
+        public long hits;
+        public long misses;
+        public long evictions;
+    }
+}
@@ -8,18 +8,17 @@ import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
-import com.amazonaws.services.s3.transfer.Upload;
 import com.conveyal.datatools.common.utils.AWSUtils;
+import com.conveyal.datatools.common.utils.S3TransferService;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.utils.HashUtils;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.io.ByteStreams;
-import gnu.trove.list.TLongList;
-import gnu.trove.list.array.TLongArrayList;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.TeeInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,8 +26,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.conveyal.datatools.manager.DataManager.hasConfigProperty;
 
@@ -44,6 +48,8 @@ public class FeedStore {
     /** Local file storage path if working offline */
     public static final File basePath = new File(DataManager.getConfigPropertyAsText("application.data.gtfs"));
     private final File path;
+    /** Directory for local copies of feeds downloaded from S3 (null if not using s3 storage). */
+    private final File cacheDirectory;
     /** An optional AWS S3 bucket to store the feeds */
     private static String s3Bucket;
 
@@ -53,6 +59,15 @@ public class FeedStore {
     public static AmazonS3 s3Client;
     /** An AWS credentials file to use when uploading to S3 */
     private static final String S3_CREDENTIALS_FILENAME = DataManager.getConfigPropertyAsText("application.data.s3_credentials_file");
+    private static final long DEFAULT_CACHE_SIZE_MB = 10 * 1024;
+    private static final long DEFAULT_CACHE_MIN_AGE_MINUTES = 10;
+    /**
+     * Cache of feeds downloaded from S3, which is shared by all feed stores so that a single budget applies to all
+     * downloaded files (null if not using s3 storage).
+     */
+    private static FeedCache cache;
+    /** Locks used to ensure that a feed missing from the cache is only downloaded once at a time. */
+    private static final Interner<String> downloadLocks = Interners.newWeakInterner();
 
     public FeedStore() {
         this(null);
@@ -68,6 +83,15 @@ public class FeedStore {
         String pathString = basePath.getAbsolutePath();
         if (subdir != null) pathString += File.separator + subdir;
         path = getPath(pathString);
+        if (cache != null) {
+            cacheDirectory = new File(path, "cache");
+            if (!cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+                throw new IllegalArgumentException("Could not create feed cache directory " + cacheDirectory);
+            }
+            cache.index(cacheDirectory);
+        } else {
+            cacheDirectory = null;
+        }
     }
 
     static {
@@ -87,6 +111,16 @@ public class FeedStore {
                 throw new IllegalArgumentException("Fatal error initializing s3Bucket or s3Client");
             }
         }
+        if (DataManager.useS3) {
+            // Keep local copies of feeds downloaded from S3 (within the configured budget).
+            long maxSizeMb = hasConfigProperty("application.data.feed_cache.max_size_mb")
+                ? DataManager.getConfigProperty("application.data.feed_cache.max_size_mb").asLong()
+                : DEFAULT_CACHE_SIZE_MB;
+            long minAgeMinutes = hasConfigProperty("application.data.feed_cache.min_age_minutes")
+                ? DataManager.getConfigProperty("application.data.feed_cache.min_age_minutes").asLong()
+                : DEFAULT_CACHE_MIN_AGE_MINUTES;
+            cache = new FeedCache(maxSizeMb * 1024 * 1024, TimeUnit.MINUTES.toMillis(minAgeMinutes));
+        }
     }
 
     private static File getPath (String pathString) {
@@ -104,11 +138,18 @@ public class FeedStore {
             s3Client.deleteObject(s3Bucket, getS3Key(id));
         }
         // Always delete local copy (whether storing exclusively on local disk or using s3).
-        File feed = getLocalFeed(id);
+        File feed = getStoredFeed(id);
         if (feed != null) {
             boolean deleted = feed.delete();
             if (!deleted) LOG.warn("GTFS file {} not deleted. This may contribute to storage space shortages.", feed.getAbsolutePath());
         }
+        if (cache != null) {
+            File cachedFeed = getCacheFile(id);
+            cache.remove(cachedFeed);
+            if (cachedFeed.exists() && !cachedFeed.delete()) {
+                LOG.warn("Cached GTFS file {} not deleted.", cachedFeed.getAbsolutePath());
+            }
+        }
     }
 
     public static AWSCredentialsProvider getAWSCreds () {
@@ -120,7 +161,7 @@ public class FeedStore {
         }
     }
 
-    private static String getS3Key (String id) {
+    public static String getS3Key (String id) {
         return s3Prefix + id;
     }
 
@@ -132,45 +173,125 @@ public class FeedStore {
     }
 
     /**
-     * Get the feed with the given ID.
+     * Get the feed with the given ID. If using s3 storage and the feed is not available locally, it is downloaded to the
+     * feed cache. Note: the returned file is not protected from eviction from the cache beyond a short minimum age, so
+     * callers that will use the file for an extended period should use {@link #pinFeed} instead.
      */
     public File getFeed (String id) {
+        FeedCache.Pin feed = retrieveFeed(id, false);
+        return feed != null ? feed.file : null;
+    }
+
+    /**
+     * Get the feed with the given ID (see {@link #getFeed}), ensuring that the file will not be evicted from the feed
+     * cache until the returned pin is closed. Returns null if the feed could not be found.
+     */
+    public FeedCache.Pin pinFeed (String id) {
+        return retrieveFeed(id, true);
+    }
+
+    private FeedCache.Pin retrieveFeed (String id, boolean pin) {
         // Whether storing locally or on s3, first try returning the local copy if it exists.
-        File feed = getLocalFeed(id);
-        if (feed != null) return feed;
+        File feed = getStoredFeed(id);
+        if (feed != null) return FeedCache.unpinned(feed);
         // s3 storage
-        if (DataManager.useS3) {
-            String key = getS3Key(id);
-            String uri = String.format("s3://%s/%s", s3Bucket, key);
-            LOG.info("Downloading feed from {}", uri);
-            InputStream objectData;
-            try {
-                S3Object object = s3Client.getObject(
-                    new GetObjectRequest(s3Bucket, key));
-                objectData = object.getObjectContent();
-            } catch (AmazonServiceException ase) {
-                LOG.error("Error downloading " + uri, ase);
-                return null;
-            }
-
-            try {
-                return createTempFile(id, objectData);
-            } catch (IOException e) {
-                // TODO: Log to bugsnag?
-                LOG.error("Error creating temp file", e);
+        if (cache != null) {
+            File cacheFile = getCacheFile(id);
+            synchronized (downloadLocks.intern(cacheFile.getAbsolutePath())) {
+                FeedCache.Pin cachedFeed = cache.acquire(cacheFile, pin);
+                if (cachedFeed != null) return cachedFeed;
+                if (downloadToCache(id, cacheFile)) return cache.put(cacheFile, pin);
             }
         }
         return null;
     }
 
+    /**
+     * Download the feed from S3 to the cache file, returning whether the download was successful.
+     */
+    private boolean downloadToCache (String id, File cacheFile) {
+        String key = getS3Key(id);
+        String uri = String.format("s3://%s/%s", s3Bucket, key);
+        LOG.info("Downloading feed from {}", uri);
+        // Download to a partial file first so that an interrupted download is never mistaken for a cached feed.
+        File partialFile = new File(cacheFile.getPath() + FeedCache.PARTIAL_FILE_SUFFIX);
+        try (
+            S3Object object = s3Client.getObject(new GetObjectRequest(s3Bucket, key));
+            InputStream objectData = object.getObjectContent();
+            OutputStream out = new FileOutputStream(partialFile)
+        ) {
+            ByteStreams.copy(objectData, out);
+        } catch (AmazonServiceException ase) {
+            LOG.error("Error downloading " + uri, ase);
+            partialFile.delete();
+            return false;
+        } catch (IOException e) {
+            LOG.error("Error writing cache file for " + uri, e);
+            partialFile.delete();
+            return false;
+        }
+        try {
+            Files.move(partialFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            LOG.error("Error moving downloaded file to feed cache", e);
+            partialFile.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Move a local feed file (e.g., a new feed version that has been uploaded to S3) into the feed cache so that it can
+     * be reused without downloading it from S3 (until it is evicted). If not using s3 storage, the file is left as is.
+     */
+    public void moveToCache (String id, File file) throws IOException {
+        if (cache == null) return;
+        File cacheFile = getCacheFile(id);
+        if (file.equals(cacheFile)) return;
+        synchronized (downloadLocks.intern(cacheFile.getAbsolutePath())) {
+            Files.move(file.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            cache.put(cacheFile, false);
+        }
+    }
+
+    /**
+     * Get hit/miss and disk usage metrics for the feed cache (or null if not using s3 storage).
+     */
+    public static FeedCache.Metrics getCacheMetrics () {
+        return cache != null ? cache.getMetrics() : null;
+    }
+
+    private File getCacheFile (String id) {
+        return new File(cacheDirectory, id);
+    }
+
+    /**
+     * Whether the feed with the given ID is stored locally, in the feed cache or (if using s3 storage) on S3.
+     */
+    public boolean feedExists (String id) {
+        if (getLocalFeed(id) != null) return true;
+        return cache != null && s3Client.doesObjectExist(s3Bucket, getS3Key(id));
+    }
+
     public String getS3FeedPath (String id) {
         return String.format("s3://%s/%s", s3Bucket, getS3Key(id));
     }
 
     /**
-     * Shorthand to get the local file for the provided id.
+     * Get the local file for the provided id, i.e., the stored file or (if using s3 storage) the copy in the feed
+     * cache. Returns null if there is no local copy.
+     */
+    public File getLocalFeed(String id) {
+        File feed = getStoredFeed(id);
+        if (feed != null || cache == null) return feed;
+        FeedCache.Pin cachedFeed = cache.acquire(getCacheFile(id), false);
+        return cachedFeed != null ? cachedFeed.file : null;
+    }
+
+    /**
+     * Shorthand to get the stored local file for the provided id.
      */
-    private File getLocalFeed(String id) {
+    private File getStoredFeed(String id) {
         File feed = new File(path, id);
         // Don't let folks retrieveById feeds outside of the directory
         if (feed.getParentFile().equals(path) && feed.exists()) {
@@ -187,11 +308,35 @@ public class FeedStore {
      * conclusion of a successful feed processing/validation step.
      */
     public File newFeed (String id, InputStream inputStream, FeedSource feedSource) throws IOException {
+        return newFeed(id, inputStream, feedSource, null, null);
+    }
+
+    /**
+     * Store GTFS file locally (see {@link #newFeed(String, InputStream, FeedSource)}), updating the provided digest
+     * (if not null) with the full content of the file and filling the provided map (if not null) with the hash of each
+     * zip entry (see {@link HashUtils#hashZipEntries(InputStream)}) as the file is written so that the file does not
+     * need to be read a second time in order to hash it.
+     */
+    public File newFeed (
+        String id,
+        InputStream inputStream,
+        FeedSource feedSource,
+        MessageDigest digest,
+        Map<String, String> entryHashes
+    ) throws IOException {
         // write feed to specified ID.
         // NOTE: depending on the feed store, there may not be a feedSource provided (e.g., gtfsplus)
         File file = new File(path, id);
         LOG.info("Writing file to {}", file.getAbsolutePath());
-        ByteStreams.copy(inputStream, new FileOutputStream(file));
+        InputStream in = digest != null ? new DigestInputStream(inputStream, digest) : inputStream;
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (entryHashes != null) {
+                // Every byte read while hashing the zip entries is copied to the file.
+                entryHashes.putAll(HashUtils.hashZipEntries(new TeeInputStream(in, out)));
+            } else {
+                ByteStreams.copy(in, out);
+            }
+        }
         if (feedSource != null && !DataManager.useS3) {
             // Store latest as feed-source-id.zip if feedSource provided and if not using s3
             copyVersionToLatest(file, feedSource);
@@ -209,56 +354,15 @@ public class FeedStore {
         FileUtils.copyFile(version, latest, true);
     }
 
-    private File createTempFile (String name, InputStream in) throws IOException {
-        Path path = Files.createTempFile(name, null);
-        // FIXME: Figure out how to manage temp files created here. Currently, we just call deleteOnExit, but
-        //  this will only delete the file once the java process stops.
-        File tempFile = path.toFile();
-        tempFile.deleteOnExit();
-        ByteStreams.copy(in, new FileOutputStream(tempFile));
-        return tempFile;
-    }
-
     /**
-     * Synchronously upload the GTFS file to S3. This should only be called as part of the FeedVersion load stage.
+     * Synchronously upload the GTFS file to S3 (see {@link S3TransferService}). This should only be called as part of
+     * the FeedVersion load stage.
      */
     public boolean uploadToS3 (File gtfsFile, String s3FileName, FeedSource feedSource) {
         if (s3Bucket != null) {
             try {
                 LOG.info("Uploading feed {} to S3 from {}", s3FileName, gtfsFile.getAbsolutePath());
-                TransferManager tm = TransferManagerBuilder.standard().withS3Client(s3Client).build();
-                PutObjectRequest request = new PutObjectRequest(s3Bucket, getS3Key(s3FileName), gtfsFile);
-                // Subscribe to the event and provide event handler.
-                TLongList transferredBytes = new TLongArrayList();
-                long totalBytes = gtfsFile.length();
-                LOG.info("Total kilobytes: {}", totalBytes / 1000);
-                request.setGeneralProgressListener(progressEvent -> {
-                    if (transferredBytes.size() == 75) {
-                        LOG.info("Each dot is {} kilobytes",transferredBytes.sum() / 1000);
-                    }
-                    if (transferredBytes.size() % 75 == 0) {
-                        System.out.print(".");
-                    }
-//                    LOG.info("Uploaded {}/{}", transferredBytes.sum(), totalBytes);
-                    transferredBytes.add(progressEvent.getBytesTransferred());
-                });
-                // TransferManager processes all transfers asynchronously,
-                // so this call will return immediately.
-                Upload upload = tm.upload(request);
-
-                try {
-                    // You can block and wait for the upload to finish
-                    upload.waitForCompletion();
-                } catch (AmazonClientException | InterruptedException e) {
-                    LOG.error("Unable to upload file, upload aborted.", e);
-                    return false;
-                }
-
-                // Shutdown the Transfer Manager, but don't shut down the underlying S3 client.
-                // The default behavior for shutdownNow shut's down the underlying s3 client
-                // which will cause any following s3 operations to fail.
-                tm.shutdownNow(false);
-
+                S3TransferService.upload(s3Client, s3Bucket, getS3Key(s3FileName), gtfsFile);
                 if (feedSource != null){
                     LOG.info("Copying feed on s3 to latest version");
 
@@ -269,11 +373,16 @@ public class FeedStore {
                     s3Client.copyObject(copyObjRequest);
                 }
                 return true;
-            } catch (AmazonServiceException e) {
+            } catch (AmazonClientException e) {
                 LOG.error("Error uploading feed to S3", e);
                 return false;
+            } catch (InterruptedException e) {
+                LOG.error("Interrupted while uploading feed to S3", e);
+                // Restore the interrupt so that the caller can stop.
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
         return false;
     }
-}
\ No newline at end of file
+}
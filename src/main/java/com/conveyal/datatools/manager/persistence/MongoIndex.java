@@ -0,0 +1,37 @@
+package com.conveyal.datatools.manager.persistence;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index that should exist on the Mongo collection for the annotated {@link com.conveyal.datatools.manager.models.Model}
+ * class. Any model may be annotated multiple times to declare several indexes. On startup, {@link Persistence} checks
+ * each collection's declared indexes against those that exist in the database, creates any that are missing, and
+ * reports any existing indexes that are not declared or have not been used.
+ *
+ * Indexes should be declared for any fields that are regularly used to filter or sort queries (e.g., feed versions
+ * by feed source ID and version number) so that these queries do not require a full collection scan.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(MongoIndex.List.class)
+public @interface MongoIndex {
+    /**
+     * The fields (in order) that make up the index key. All fields are indexed in ascending order, which also supports
+     * descending sorts on the same fields.
+     */
+    String[] fields();
+
+    /** Whether the index should enforce uniqueness for the combination of fields. */
+    boolean unique() default false;
+
+    /** Container annotation that allows {@link MongoIndex} to be repeated on a single class. */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface List {
+        MongoIndex[] value();
+    }
+}
@@ -8,6 +8,7 @@ import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
 import com.conveyal.datatools.manager.models.FeedDownloadToken;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.models.JobRecord;
 import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.models.Organization;
 import com.conveyal.datatools.manager.models.OtpServer;
@@ -24,6 +25,9 @@ import org.bson.codecs.pojo.PojoCodecProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 
 /**
@@ -52,6 +56,7 @@ public class Persistence {
     public static TypedPersistence<OtpServer> servers;
     public static TypedPersistence<Snapshot> snapshots;
     public static TypedPersistence<FeedDownloadToken> tokens;
+    public static TypedPersistence<JobRecord> jobRecords;
 
     public static void initialize () {
 
@@ -113,12 +118,26 @@ public class Persistence {
         servers = new TypedPersistence(mongoDatabase, OtpServer.class);
         snapshots = new TypedPersistence(mongoDatabase, Snapshot.class);
         tokens = new TypedPersistence(mongoDatabase, FeedDownloadToken.class);
+        jobRecords = new TypedPersistence(mongoDatabase, JobRecord.class);
 
-        // TODO: Set up indexes on feed versions by feedSourceId, version #? deployments, feedSources by projectId.
-//        deployments.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedSources.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedVersions.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
-//        snapshots.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
+        // Create any indexes declared on the model classes (with @MongoIndex) that are missing from the database and
+        // report on those that are undeclared or unused.
+        List<TypedPersistence<?>> collections = Arrays.asList(
+            feedSources,
+            projects,
+            feedVersions,
+            deployments,
+            notes,
+            organizations,
+            externalFeedSourceProperties,
+            servers,
+            snapshots,
+            tokens,
+            jobRecords
+        );
+        for (TypedPersistence<?> collection : collections) {
+            collection.reconcileIndexes();
+        }
     }
     
 }
@@ -2,9 +2,13 @@ package com.conveyal.datatools.manager.persistence;
 
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.Model;
+import com.mongodb.MongoException;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.result.DeleteResult;
 import org.bson.Document;
@@ -14,8 +18,16 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Updates.set;
@@ -47,15 +59,20 @@ import static com.mongodb.client.model.Updates.set;
 public class TypedPersistence<T extends Model> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TypedPersistence.class);
+    /** Number of documents fetched from Mongo per round trip when iterating over a cursor. */
+    public static final int DEFAULT_BATCH_SIZE = 100;
 
     private MongoCollection<T> mongoCollection;
     private Constructor<T> noArgConstructor;
     private String collectionName;
+    /** Indexes declared on the model class that should exist for this collection. */
+    private final MongoIndex[] declaredIndexes;
     private final FindOneAndUpdateOptions findOneAndUpdateOptions = new FindOneAndUpdateOptions();
 
     public TypedPersistence(MongoDatabase mongoDatabase, Class<T> clazz) {
         mongoCollection = mongoDatabase.getCollection(clazz.getSimpleName(), clazz);
         collectionName = clazz.getSimpleName();
+        declaredIndexes = clazz.getAnnotationsByType(MongoIndex.class);
         try {
             noArgConstructor = clazz.getConstructor(new Class<?>[0]);
         } catch (NoSuchMethodException ex) {
@@ -128,8 +145,8 @@ public class TypedPersistence<T extends Model> {
     }
 
     /**
-     * This is not memory efficient.
-     * TODO: Always use iterators / streams, always perform selection of subsets on the Mongo server side ("where clause").
+     * This is not memory efficient. Prefer {@link #stream(Bson)} or {@link #getPage(Bson, Bson, int, int)}, which
+     * perform selection of subsets on the Mongo server side and do not hold the entire collection in memory.
      */
     public List<T> getAll () {
         return mongoCollection.find().into(new ArrayList<>());
@@ -144,6 +161,68 @@ public class TypedPersistence<T extends Model> {
         return mongoCollection.find(filter).into(new ArrayList<>());
     }
 
+    /**
+     * Get a single page of objects satisfying the supplied Mongo filter (null matches all documents). The sort, skip and
+     * limit are all applied on the Mongo server side, so only the requested page is transferred and held in memory. A
+     * null sortBy falls back to natural order, which is not guaranteed to be stable across pages.
+     */
+    public List<T> getPage (Bson filter, Bson sortBy, int skip, int limit) {
+        return find(filter, sortBy, null, skip, limit, DEFAULT_BATCH_SIZE).into(new ArrayList<>());
+    }
+
+    /**
+     * Count the objects satisfying the supplied Mongo filter (null matches all documents) without fetching them.
+     */
+    public long count (Bson filter) {
+        return filter != null ? mongoCollection.countDocuments(filter) : mongoCollection.countDocuments();
+    }
+
+    /**
+     * Stream over the objects satisfying the supplied Mongo filter. Documents are pulled from the server in batches of
+     * batchSize as the stream is consumed, so memory usage stays flat regardless of collection size. If provided, the
+     * projection limits the fields returned (fields excluded by the projection will be left null/default on the
+     * returned objects). A limit of zero means no limit.
+     *
+     * The returned stream holds an open Mongo cursor until it is exhausted, so callers that may not consume it entirely
+     * (e.g., because of short-circuiting operations or exceptions) should close it with try-with-resources.
+     */
+    public Stream<T> stream (Bson filter, Bson sortBy, Bson projection, int skip, int limit, int batchSize) {
+        MongoCursor<T> cursor = find(filter, sortBy, projection, skip, limit, batchSize).iterator();
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+            cursor,
+            Spliterator.ORDERED | Spliterator.NONNULL
+        );
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+
+    /** Convenience wrapper for {@link #stream(Bson, Bson, Bson, int, int, int)} with sort and no projection or paging. */
+    public Stream<T> stream (Bson filter, Bson sortBy) {
+        return stream(filter, sortBy, null, 0, 0, DEFAULT_BATCH_SIZE);
+    }
+
+    /** Convenience wrapper for {@link #stream(Bson, Bson, Bson, int, int, int)} with no sort, projection or paging. */
+    public Stream<T> stream (Bson filter) {
+        return stream(filter, null);
+    }
+
+    /** Convenience wrapper for {@link #stream(Bson)} that streams over every object in the collection. */
+    public Stream<T> streamAll () {
+        return stream(null);
+    }
+
+    /**
+     * Construct a find query with the supplied (nullable) filter, sort and projection. Skip and limit values of zero
+     * are ignored.
+     */
+    private FindIterable<T> find (Bson filter, Bson sortBy, Bson projection, int skip, int limit, int batchSize) {
+        FindIterable<T> iterable = filter != null ? mongoCollection.find(filter) : mongoCollection.find();
+        if (sortBy != null) iterable = iterable.sort(sortBy);
+        if (projection != null) iterable = iterable.projection(projection);
+        if (skip > 0) iterable = iterable.skip(skip);
+        if (limit > 0) iterable = iterable.limit(limit);
+        return iterable.batchSize(batchSize);
+    }
+
     /**
      * Expose the internal MongoCollection to the caller.
      * This ties our persistence directly to Mongo for now but is expedient.
@@ -171,6 +250,77 @@ public class TypedPersistence<T extends Model> {
         return getOneFiltered(filter, null);
     }
 
+    /**
+     * Ensure that each index declared on the model class with {@link MongoIndex} exists for this collection, creating
+     * any that are missing. Also logs a report of existing indexes that are not declared on the model class (and so may
+     * be safe to drop) and of those that have not been used since the Mongo server was last started.
+     *
+     * @return the names of any indexes that were created
+     */
+    public List<String> reconcileIndexes () {
+        // Track existing indexes by name and by their ordered list of key fields.
+        Map<List<String>, String> existingIndexNamesByFields = new HashMap<>();
+        for (Document index : mongoCollection.listIndexes()) {
+            Document key = index.get("key", Document.class);
+            existingIndexNamesByFields.put(new ArrayList<>(key.keySet()), index.getString("name"));
+        }
+        List<String> createdIndexes = new ArrayList<>();
+        List<String> declaredIndexNames = new ArrayList<>();
+        for (MongoIndex index : declaredIndexes) {
+            List<String> fields = Arrays.asList(index.fields());
+            String existingName = existingIndexNamesByFields.get(fields);
+            if (existingName != null) {
+                declaredIndexNames.add(existingName);
+                continue;
+            }
+            Document keys = new Document();
+            for (String field : fields) keys.append(field, 1);
+            String createdName = mongoCollection.createIndex(keys, new IndexOptions().unique(index.unique()));
+            LOG.info("Created missing index {} on {} collection", createdName, collectionName);
+            createdIndexes.add(createdName);
+            declaredIndexNames.add(createdName);
+        }
+        // Report on any pre-existing indexes that are either undeclared or unused.
+        Map<String, Long> opsByIndexName = getIndexUsage();
+        for (String indexName : existingIndexNamesByFields.values()) {
+            if ("_id_".equals(indexName)) continue;
+            if (!declaredIndexNames.contains(indexName)) {
+                LOG.warn("Index {} on {} collection is not declared on the model class", indexName, collectionName);
+            }
+            Long ops = opsByIndexName.get(indexName);
+            if (ops != null && ops == 0) {
+                LOG.info("Index {} on {} collection has not been used since server start", indexName, collectionName);
+            }
+        }
+        LOG.info(
+            "{} collection has {} declared indexes ({} created)",
+            collectionName,
+            declaredIndexes.length,
+            createdIndexes.size()
+        );
+        return createdIndexes;
+    }
+
+    /**
+     * Get the number of operations that have used each index since the Mongo server was last started (keyed on index
+     * name). This relies on the $indexStats aggregation stage, which the database user may not be permitted to run, in
+     * which case an empty map is returned.
+     */
+    private Map<String, Long> getIndexUsage () {
+        Map<String, Long> opsByIndexName = new HashMap<>();
+        try {
+            List<Document> pipeline = Collections.singletonList(new Document("$indexStats", new Document()));
+            for (Document stats : mongoCollection.aggregate(pipeline, Document.class)) {
+                Document accesses = stats.get("accesses", Document.class);
+                if (accesses == null || accesses.get("ops") == null) continue;
+                opsByIndexName.put(stats.getString("name"), accesses.get("ops", Number.class).longValue());
+            }
+        } catch (MongoException e) {
+            LOG.warn("Could not retrieve index usage statistics for {} collection", collectionName, e);
+        }
+        return opsByIndexName;
+    }
+
     public boolean removeById (String id) {
         DeleteResult result = mongoCollection.deleteOne(eq(id));
         if (result.getDeletedCount() == 1) {
@@ -1,29 +1,187 @@
 package com.conveyal.datatools.manager.utils;
 
-import com.conveyal.datatools.manager.extensions.mtc.MtcFeedResource;
 import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 
 public class HashUtils {
 
-    public static final Logger LOG = LoggerFactory.getLogger(MtcFeedResource.class);
+    public static final Logger LOG = LoggerFactory.getLogger(HashUtils.class);
+    /** Algorithm used to hash the full content of GTFS files. */
+    public static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+    /**
+     * Length of the hex-encoded legacy MD5 hash (see {@link #hashFileSample}), which is used to detect feed versions
+     * hashed before full-content hashing was introduced.
+     */
+    private static final int LEGACY_HASH_LENGTH = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Construct a new digest for hashing the full content of a file. This can be updated while a file is being written
+     * (e.g., see FeedStore#newFeed) to avoid reading the file a second time just to hash it.
+     */
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Get the hex-encoded hash for a digest that has been updated with the full content of a file. */
+    public static String toHex(MessageDigest digest) {
+        return new String(Hex.encodeHex(digest.digest()));
+    }
 
     /**
-     * Get MD5 hash for the specified file.
+     * Get the full-content hash (see {@link #CONTENT_HASH_ALGORITHM}) for the specified file.
      */
     public static String hashFile(File file)  {
+        MessageDigest digest = newContentDigest();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+            return toHex(digest);
+        } catch (IOException e) {
+            LOG.warn("Failed to hash file, returning empty string instead", e);
+            return "";
+        }
+    }
+
+    /**
+     * Get a full-content hash for each entry (other than directories) in the zip file, keyed on the entry name. Unlike
+     * the hash of the zip file itself, these hashes do not change if a feed is re-zipped without changing its contents
+     * (e.g., with new zip entry timestamps). See {@link #toTableHashes} and {@link #combineEntryHashes} for deriving
+     * the hashes stored for a feed version. If the file cannot be read as a zip file, an empty map is returned.
+     */
+    public static Map<String, String> hashZipEntries(File zipFile) {
+        Map<String, String> hashes = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) continue;
+                MessageDigest digest = newContentDigest();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    int bytesRead;
+                    while ((bytesRead = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, bytesRead);
+                    }
+                }
+                hashes.put(entry.getName(), toHex(digest));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Note: a malformed entry name results in an IllegalArgumentException.
+            LOG.warn("Failed to hash entries of zip file {}", zipFile.getAbsolutePath(), e);
+            hashes.clear();
+        }
+        return hashes;
+    }
+
+    /**
+     * Get the entry hashes (see {@link #hashZipEntries(File)}) for a zip file as it is read from the provided stream.
+     * The stream is always read to the end so that anything wrapping it (e.g., a digest or a copy to disk) sees the
+     * full content, which allows the entries to be hashed in the same pass as the file itself. If the content cannot
+     * be read as a zip file, an empty map is returned. The stream is not closed.
+     */
+    public static Map<String, String> hashZipEntries(InputStream in) throws IOException {
+        Map<String, String> hashes = new TreeMap<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        // Note: the zip stream is not closed because that would close the underlying stream before it is drained.
+        ZipInputStream zip = new ZipInputStream(in);
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            FileInputStream fis = new FileInputStream(file);
-            DigestInputStream dis = new DigestInputStream(fis, md);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+                MessageDigest digest = newContentDigest();
+                int bytesRead;
+                while ((bytesRead = zip.read(buffer)) != -1) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+                hashes.put(entry.getName(), toHex(digest));
+            }
+        } catch (ZipException | EOFException | RuntimeException e) {
+            // Note: a malformed entry name results in an IllegalArgumentException.
+            LOG.warn("Failed to hash entries of zip stream", e);
+            hashes.clear();
+        }
+        // Read the remainder of the stream (e.g., the zip central directory, which follows the entries).
+        while (in.read(buffer) != -1) { }
+        return hashes;
+    }
+
+    /**
+     * Get the hashes of the text files (i.e., GTFS tables) from the provided entry hashes, keyed on the file name
+     * without the .txt extension (with any other periods or dollar signs replaced by underscores so that the keys are
+     * valid MongoDB field names).
+     */
+    public static Map<String, String> toTableHashes(Map<String, String> entryHashes) {
+        Map<String, String> tableHashes = new TreeMap<>();
+        for (Map.Entry<String, String> entry : entryHashes.entrySet()) {
+            String name = entry.getKey();
+            if (!name.endsWith(".txt")) continue;
+            String key = name.substring(0, name.length() - ".txt".length()).replace('.', '_').replace('$', '_');
+            tableHashes.put(key, entry.getValue());
+        }
+        return tableHashes;
+    }
+
+    /**
+     * Combine the provided entry hashes into a single hash covering the name and content of every entry, which is equal
+     * for two zip files exactly when they contain the same files, or null if there are no entries.
+     */
+    public static String combineEntryHashes(Map<String, String> entryHashes) {
+        if (entryHashes.isEmpty()) return null;
+        MessageDigest digest = newContentDigest();
+        // Iterate over the entries in name order so that the order of entries in the zip file does not matter.
+        for (Map.Entry<String, String> entry : new TreeMap<>(entryHashes).entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return toHex(digest);
+    }
+
+    /**
+     * Whether the provided hash was generated by the legacy {@link #hashFileSample} method.
+     */
+    public static boolean isLegacyHash(String hash) {
+        return hash != null && hash.length() == LEGACY_HASH_LENGTH;
+    }
+
+    /**
+     * Get the legacy MD5 hash for the specified file, which samples the file's size, first 1000 bytes, and 5000 bytes
+     * from the middle of the file. This is only used to compare files against feed versions that were hashed before
+     * full-content hashing was introduced (because it can miss changes to the file, it should not otherwise be used).
+     */
+    public static String hashFileSample(File file)  {
+        try (DigestInputStream dis = new DigestInputStream(new FileInputStream(file), MessageDigest.getInstance("MD5"))) {
+            MessageDigest md = dis.getMessageDigest();
             // hash the size
             dis.read(ByteBuffer.allocate(8).putLong(file.length()).array());
             // hash first 1000 bytes
@@ -42,11 +200,9 @@ public class HashUtils {
             else {
                 while (dis.read() != -1) { }
             }
-            dis.close();
             return new String(Hex.encodeHex(md.digest()));
         } catch(Exception e) {
-            LOG.warn("Failed to hash file, returning empty string instead");
-            e.printStackTrace();
+            LOG.warn("Failed to hash file, returning empty string instead", e);
             return "";
         }
     }
@@ -0,0 +1,42 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the rate of requests made to each host when fetching feeds, so that fetching many feeds concurrently (e.g.,
+ * for a project with hundreds of feeds hosted by the same agency or aggregator) does not overload (or get us blocked
+ * by) a single server.
+ *
+ * The rate is read from the application.data.fetch.requests_per_second_per_host config property (default 2).
+ */
+public class HostRateLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(HostRateLimiter.class);
+    private static final String RATE_PROPERTY = "application.data.fetch.requests_per_second_per_host";
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 2;
+    private static final Map<String, RateLimiter> rateLimitersForHosts = new ConcurrentHashMap<>();
+
+    /**
+     * Block until a request to the host is permitted.
+     */
+    public static void acquire(String host) {
+        if (host == null) return;
+        RateLimiter rateLimiter = rateLimitersForHosts.computeIfAbsent(
+            host.toLowerCase(),
+            key -> RateLimiter.create(getRequestsPerSecond())
+        );
+        double waitSeconds = rateLimiter.acquire();
+        if (waitSeconds > 0) LOG.debug("Waited {} s for request to {}", waitSeconds, host);
+    }
+
+    private static double getRequestsPerSecond() {
+        if (!DataManager.hasConfigProperty(RATE_PROPERTY)) return DEFAULT_REQUESTS_PER_SECOND;
+        double requestsPerSecond = DataManager.getConfigProperty(RATE_PROPERTY).asDouble(DEFAULT_REQUESTS_PER_SECOND);
+        return requestsPerSecond > 0 ? requestsPerSecond : DEFAULT_REQUESTS_PER_SECOND;
+    }
+}
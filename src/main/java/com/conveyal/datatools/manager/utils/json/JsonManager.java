@@ -2,12 +2,17 @@ package com.conveyal.datatools.manager.utils.json;
 
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import com.conveyal.datatools.editor.models.transit.GtfsRouteType;
 import com.conveyal.datatools.editor.utils.JacksonSerializers;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -94,6 +99,27 @@ public class JsonManager<T> {
         return ow.writeValueAsString(map);
     }
 
+    /**
+     * Write a JSON object to the output stream with one array field per entry in the supplied map. Each stream is only
+     * opened once the previous one has been written and its elements are serialized one at a time as they are
+     * consumed, so the full set of objects never needs to be held in memory. The output stream is closed on completion.
+     */
+    public void writeStreams (Map<String, Supplier<Stream<?>>> streams, OutputStream out) throws IOException {
+        try (JsonGenerator generator = om.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Supplier<Stream<?>>> entry : streams.entrySet()) {
+                generator.writeArrayFieldStart(entry.getKey());
+                try (Stream<?> stream = entry.getValue().get()) {
+                    for (Iterator<?> iterator = stream.iterator(); iterator.hasNext(); ) {
+                        ow.writeValue(generator, iterator.next());
+                    }
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
     public T read (String s) throws JsonParseException, JsonMappingException, IOException {
         return om.readValue(s, theClass);
     }
@@ -0,0 +1,189 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.JobRecord;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.mongodb.client.model.Filters.eq;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the job records and duplicate detection in {@link JobJournal}.
+ */
+public class JobJournalTest extends UnitTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // Start server so that the application database is initialized.
+        DatatoolsTest.setUp();
+    }
+
+    /**
+     * A recoverable job should not be queued while another job with the same idempotency key is active, but it can be
+     * queued again once the active job has finished.
+     */
+    @Test
+    public void doesNotQueueDuplicateRecoverableJobs() throws InterruptedException {
+        String key = "test:" + UUID.randomUUID().toString();
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingJob first = new BlockingJob(key, release);
+        assertTrue(JobExecutor.execute(first));
+        assertFalse(JobExecutor.execute(new BlockingJob(key, release)));
+        release.countDown();
+        // Wait for the job record to show that the first job has finished.
+        JobRecord record = null;
+        for (int i = 0; i < 100; i++) {
+            record = Persistence.jobRecords.getById(first.jobId);
+            if (record != null && record.state == JobRecord.State.COMPLETED) break;
+            Thread.sleep(100);
+        }
+        assertThat(record.state, equalTo(JobRecord.State.COMPLETED));
+        assertThat(record.idempotencyKey, equalTo(key));
+        BlockingJob next = new BlockingJob(key, release);
+        assertTrue(JobExecutor.execute(next));
+    }
+
+    /**
+     * A job that was running when the server stopped should have its record marked as interrupted on startup and be
+     * re-queued (exactly once) from the parameters in its record.
+     */
+    @Test
+    public void canRecoverInterruptedJob() throws InterruptedException {
+        String marker = UUID.randomUUID().toString();
+        AtomicInteger jobsRecreated = new AtomicInteger();
+        AtomicInteger jobsRun = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(1);
+        JobJournal.registerRecoverableJobType(MonitorableJob.JobType.UNKNOWN_TYPE, (parameters, owner) -> {
+            jobsRecreated.incrementAndGet();
+            return new RecoveredJob(owner, marker, jobsRun, finished);
+        });
+        JobRecord record = createInterruptedRecord(marker, 0);
+
+        // Only recover the record created by this test (rather than any left by other tests).
+        JobJournal.recoverInterruptedJobs(eq("_id", record.id));
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        JobRecord interrupted = Persistence.jobRecords.getById(record.id);
+        assertThat(interrupted.state, equalTo(JobRecord.State.INTERRUPTED));
+        assertThat(interrupted.recoveredByJobId, notNullValue());
+        assertThat(jobsRecreated.get(), equalTo(1));
+        assertThat(jobsRun.get(), equalTo(1));
+        // The recovered job has its own record, which references the same work.
+        JobRecord recovered = Persistence.jobRecords.getById(interrupted.recoveredByJobId);
+        assertThat(recovered.idempotencyKey, equalTo(record.idempotencyKey));
+        assertThat(recovered.recoveryAttempts, equalTo(1));
+    }
+
+    /**
+     * A job whose work has already been recovered the maximum number of times should have its record marked as failed
+     * rather than be re-queued again.
+     */
+    @Test
+    public void doesNotRecoverJobAfterMaxAttempts() {
+        String marker = UUID.randomUUID().toString();
+        AtomicInteger jobsRecreated = new AtomicInteger();
+        JobJournal.registerRecoverableJobType(MonitorableJob.JobType.UNKNOWN_TYPE, (parameters, owner) -> {
+            jobsRecreated.incrementAndGet();
+            return null;
+        });
+        JobRecord record = createInterruptedRecord(marker, JobJournal.MAX_RECOVERY_ATTEMPTS);
+
+        JobJournal.recoverInterruptedJobs(eq("_id", record.id));
+        JobRecord failed = Persistence.jobRecords.getById(record.id);
+        assertThat(failed.state, equalTo(JobRecord.State.FAILED));
+        assertThat(failed.dateFinished, notNullValue());
+        assertThat(failed.recoveredByJobId, nullValue());
+        assertThat(jobsRecreated.get(), equalTo(0));
+    }
+
+    /** Create the record of a recoverable job that was running when the server stopped. */
+    private static JobRecord createInterruptedRecord(String marker, int recoveryAttempts) {
+        JobRecord record = new JobRecord();
+        record.type = MonitorableJob.JobType.UNKNOWN_TYPE.name();
+        record.name = "Interrupted job";
+        record.userId = Auth0UserProfile.SYSTEM_USER_ID;
+        record.state = JobRecord.State.RUNNING;
+        record.idempotencyKey = "test:" + marker;
+        record.parameters = Collections.singletonMap("marker", marker);
+        record.recoveryAttempts = recoveryAttempts;
+        Persistence.jobRecords.create(record);
+        return record;
+    }
+
+    /** Job re-created by {@link JobJournal#recoverInterruptedJobs} in {@link #canRecoverInterruptedJob}. */
+    private static class RecoveredJob extends MonitorableJob implements RecoverableJob {
+        private final String marker;
+        private final AtomicInteger jobsRun;
+        private final CountDownLatch finished;
+
+        RecoveredJob(Auth0UserProfile owner, String marker, AtomicInteger jobsRun, CountDownLatch finished) {
+            super(owner, "Recovered job", JobType.UNKNOWN_TYPE);
+            this.marker = marker;
+            this.jobsRun = jobsRun;
+            this.finished = finished;
+        }
+
+        @Override
+        public void jobLogic() {
+            jobsRun.incrementAndGet();
+        }
+
+        @Override
+        public void jobFinished() {
+            finished.countDown();
+        }
+
+        @Override
+        public String retrieveIdempotencyKey() {
+            return "test:" + marker;
+        }
+
+        @Override
+        public Map<String, String> retrieveRecoveryParameters() {
+            return Collections.singletonMap("marker", marker);
+        }
+    }
+
+    private static class BlockingJob extends MonitorableJob implements RecoverableJob {
+        private final String key;
+        private final CountDownLatch release;
+
+        BlockingJob(String key, CountDownLatch release) {
+            super(user, "Blocking job", JobType.UNKNOWN_TYPE);
+            this.key = key;
+            this.release = release;
+        }
+
+        @Override
+        public void jobLogic() throws InterruptedException {
+            if (!release.await(10, TimeUnit.SECONDS)) status.fail("Job was not released");
+        }
+
+        @Override
+        public String retrieveIdempotencyKey() {
+            return key;
+        }
+
+        @Override
+        public Map<String, String> retrieveRecoveryParameters() {
+            return Collections.emptyMap();
+        }
+    }
+}
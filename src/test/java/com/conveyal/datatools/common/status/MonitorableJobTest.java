@@ -0,0 +1,144 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the sub-job execution in {@link MonitorableJob}.
+ */
+public class MonitorableJobTest extends UnitTest {
+    private static final Logger LOG = LoggerFactory.getLogger(MonitorableJobTest.class);
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    /**
+     * Independent sub-jobs should run concurrently and a sub-job that depends on them should only run once they have
+     * both completed.
+     */
+    @Test
+    public void canRunIndependentSubJobsConcurrently() {
+        List<String> completedJobs = new CopyOnWriteArrayList<>();
+        // Each of the independent jobs can only succeed if the other is running at the same time.
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        TestJob parent = new TestJob("parent", completedJobs, null, false);
+        TestJob first = new TestJob("first", completedJobs, bothRunning, false);
+        TestJob second = new TestJob("second", completedJobs, bothRunning, false);
+        TestJob last = new TestJob("last", completedJobs, null, false);
+        parent.addDependentJob(first);
+        parent.addDependentJob(second);
+        parent.addDependentJob(last, first, second);
+        parent.run();
+        assertFalse(parent.status.error);
+        assertFalse(first.status.error);
+        assertFalse(second.status.error);
+        assertThat(completedJobs.subList(0, 1), contains("parent"));
+        assertThat(completedJobs.subList(1, 3), containsInAnyOrder("first", "second"));
+        assertEquals("last", completedJobs.get(3));
+    }
+
+    /**
+     * An error in a sub-job should cancel the sub-jobs that depend on it and fail the parent job.
+     */
+    @Test
+    public void cancelsDependentSubJobsOnError() {
+        List<String> completedJobs = new CopyOnWriteArrayList<>();
+        TestJob parent = new TestJob("parent", completedJobs, null, false);
+        TestJob failing = new TestJob("failing", completedJobs, null, true);
+        TestJob dependent = new TestJob("dependent", completedJobs, null, false);
+        parent.addNextJob(failing, dependent);
+        parent.run();
+        assertTrue(failing.status.error);
+        assertTrue(dependent.status.error);
+        assertTrue(parent.status.error);
+        assertThat(completedJobs, contains("parent"));
+    }
+
+    /**
+     * Microbenchmark for status updates, which may be called for every unit of work in a tight loop. This logs the
+     * average time per update (rather than asserting on it, which would make the test depend on the machine running
+     * it) and checks that the final update is always applied.
+     */
+    @Test
+    public void canUpdateProgressInTightLoop() {
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        status.name = "benchmark";
+        int total = 1_000_000;
+        // Warm up so that the measured loop is compiled.
+        for (int i = 1; i <= total; i++) status.update("Warming up", i, total);
+        long startTime = System.nanoTime();
+        for (int i = 1; i <= total; i++) status.update("Counting", i, total);
+        long countNanos = System.nanoTime() - startTime;
+        assertEquals("Counting (1000000/1000000)", status.message);
+        assertEquals(100, status.percentComplete, 0);
+        startTime = System.nanoTime();
+        for (int i = 1; i <= total; i++) status.update("Updating", i * 100d / total);
+        long updateNanos = System.nanoTime() - startTime;
+        assertEquals(100, status.percentComplete, 0);
+        LOG.info(
+            "Status updates: {} ns per count update, {} ns per message update",
+            countNanos / total,
+            updateNanos / total
+        );
+    }
+
+    /**
+     * Checks that a counted update for a new stage is always applied, even if it immediately follows an update for
+     * the previous stage, while repeated updates within a stage are throttled.
+     */
+    @Test
+    public void canUpdateProgressOnStageChange() {
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        status.update("Merging agency", 0, 3);
+        assertEquals("Merging agency (0/3)", status.message);
+        status.update("Merged agency", 1, 3);
+        assertEquals("Merged agency (1/3)", status.message);
+        status.update("Merging stops", 1, 3);
+        assertEquals("Merging stops (1/3)", status.message);
+        // A repeated update within the same stage is throttled.
+        status.update("Merging stops", 2, 3);
+        assertEquals("Merging stops (1/3)", status.message);
+    }
+
+    private static class TestJob extends MonitorableJob {
+        private final List<String> completedJobs;
+        private final CountDownLatch latch;
+        private final boolean shouldFail;
+
+        TestJob(String name, List<String> completedJobs, CountDownLatch latch, boolean shouldFail) {
+            super(user, name, JobType.UNKNOWN_TYPE);
+            this.completedJobs = completedJobs;
+            this.latch = latch;
+            this.shouldFail = shouldFail;
+        }
+
+        @Override
+        public void jobLogic() throws InterruptedException {
+            if (shouldFail) {
+                status.fail("Failing on purpose");
+                return;
+            }
+            if (latch != null) {
+                latch.countDown();
+                if (!latch.await(10, TimeUnit.SECONDS)) {
+                    status.fail("Sibling job did not run concurrently");
+                    return;
+                }
+            }
+            completedJobs.add(name);
+        }
+    }
+}
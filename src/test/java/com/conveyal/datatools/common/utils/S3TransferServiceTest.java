@@ -0,0 +1,235 @@
+package com.conveyal.datatools.common.utils;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link S3TransferService} using an in-memory stand-in for S3.
+ */
+public class S3TransferServiceTest extends UnitTest {
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // Start server so that the S3 transfer config (e.g., the test part size) is loaded.
+        DatatoolsTest.setUp();
+    }
+
+    /**
+     * A file larger than the configured part size should be uploaded in multiple parts and reassembled byte-for-byte.
+     */
+    @Test
+    public void canUploadFileInMultipleParts() throws Exception {
+        // The test config sets a part size of 5 MB, so this should be uploaded in three parts.
+        byte[] content = new byte[11 * 1024 * 1024];
+        new Random(1).nextBytes(content);
+        File file = File.createTempFile("s3-transfer-test", ".zip");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        InMemoryS3 s3 = new InMemoryS3();
+        double[] lastPercent = new double[1];
+        S3TransferService.TransferStats stats = S3TransferService.upload(
+            s3,
+            "test-bucket",
+            "gtfs/test.zip",
+            file,
+            percent -> lastPercent[0] = percent
+        );
+        assertEquals(3, s3.partsUploaded.get());
+        assertArrayEquals(content, s3.objects.get("test-bucket/gtfs/test.zip"));
+        assertEquals(content.length, stats.bytes);
+        assertFalse(stats.resumed);
+        assertThat(lastPercent[0], closeTo(100.0, 0.001));
+    }
+
+    /**
+     * If a multipart upload is interrupted, its persisted state should be used to resume the upload of the same content
+     * to the same key, even if the content is now read from another file (e.g., a rebuilt deployment bundle). Only the
+     * parts that were not uploaded before the interruption should be uploaded again.
+     */
+    @Test
+    public void canResumeInterruptedUpload() throws Exception {
+        byte[] content = new byte[11 * 1024 * 1024];
+        new Random(2).nextBytes(content);
+        File file = File.createTempFile("s3-transfer-test", ".zip");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        InMemoryS3 s3 = new InMemoryS3();
+        // Simulate the server stopping partway through the upload: the last part fails and the multipart upload is not
+        // aborted.
+        s3.failingPartNumber = 3;
+        s3.ignoreAborts = true;
+        try {
+            S3TransferService.upload(s3, "test-bucket", "bundles/resume.zip", file);
+            fail("Upload should have been interrupted");
+        } catch (AmazonClientException e) {
+            // Expected.
+        }
+        assertFalse(s3.objects.containsKey("test-bucket/bundles/resume.zip"));
+        assertEquals(1, s3.multipartUploads.size());
+        assertEquals(2, s3.partsUploaded.get());
+
+        File copy = File.createTempFile("s3-transfer-test-copy", ".zip");
+        copy.deleteOnExit();
+        Files.write(copy.toPath(), content);
+        s3.failingPartNumber = 0;
+        S3TransferService.TransferStats stats = S3TransferService.upload(s3, "test-bucket", "bundles/resume.zip", copy);
+        assertTrue(stats.resumed);
+        assertArrayEquals(content, s3.objects.get("test-bucket/bundles/resume.zip"));
+        assertEquals(0, s3.multipartUploads.size());
+        // Parts that were uploaded before the interruption are not uploaded again.
+        assertEquals(3, s3.partsUploaded.get());
+    }
+
+    /**
+     * Minimal in-memory implementation of the S3 operations used for uploads.
+     */
+    private static class InMemoryS3 extends AbstractAmazonS3 {
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        final Map<String, Map<Integer, byte[]>> multipartUploads = new ConcurrentHashMap<>();
+        final AtomicInteger partsUploaded = new AtomicInteger();
+        /** Part number for which uploads fail (once the other parts have been uploaded), or 0 for none. */
+        volatile int failingPartNumber;
+        /** Whether to keep multipart uploads when aborted (as if the server stopped before it could abort them). */
+        volatile boolean ignoreAborts;
+
+        @Override
+        public PutObjectResult putObject(PutObjectRequest request) {
+            try {
+                objects.put(request.getBucketName() + "/" + request.getKey(), Files.readAllBytes(request.getFile().toPath()));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return new PutObjectResult();
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            String uploadId = UUID.randomUUID().toString();
+            multipartUploads.put(uploadId, new ConcurrentSkipListMap<>());
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            result.setUploadId(uploadId);
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) {
+            if (request.getPartNumber() == failingPartNumber) {
+                // Wait for the other parts so that the parts uploaded before the failure are predictable.
+                long deadline = System.currentTimeMillis() + 10000;
+                while (partsUploaded.get() < failingPartNumber - 1 && System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                throw new AmazonClientException("Simulated failure uploading part " + failingPartNumber);
+            }
+            byte[] part = new byte[(int) request.getPartSize()];
+            try {
+                if (request.getInputStream() != null) {
+                    int offset = 0;
+                    while (offset < part.length) {
+                        int read = request.getInputStream().read(part, offset, part.length - offset);
+                        if (read == -1) break;
+                        offset += read;
+                    }
+                } else {
+                    try (RandomAccessFile file = new RandomAccessFile(request.getFile(), "r")) {
+                        file.seek(request.getFileOffset());
+                        file.readFully(part);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            multipartUploads.get(request.getUploadId()).put(request.getPartNumber(), part);
+            partsUploaded.incrementAndGet();
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag(getPartETag(request.getUploadId(), request.getPartNumber()));
+            return result;
+        }
+
+        @Override
+        public PartListing listParts(ListPartsRequest request) {
+            List<PartSummary> summaries = new ArrayList<>();
+            for (Map.Entry<Integer, byte[]> part : multipartUploads.get(request.getUploadId()).entrySet()) {
+                PartSummary summary = new PartSummary();
+                summary.setPartNumber(part.getKey());
+                summary.setSize(part.getValue().length);
+                summary.setETag(getPartETag(request.getUploadId(), part.getKey()));
+                summaries.add(summary);
+            }
+            PartListing listing = new PartListing();
+            listing.setBucketName(request.getBucketName());
+            listing.setKey(request.getKey());
+            listing.setUploadId(request.getUploadId());
+            listing.setParts(summaries);
+            listing.setTruncated(false);
+            return listing;
+        }
+
+        private String getPartETag(String uploadId, int partNumber) {
+            return uploadId + "-" + partNumber;
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            Map<Integer, byte[]> parts = multipartUploads.remove(request.getUploadId());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            // Parts are sorted by part number.
+            for (byte[] part : parts.values()) out.write(part, 0, part.length);
+            objects.put(request.getBucketName() + "/" + request.getKey(), out.toByteArray());
+            CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            return result;
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            if (!ignoreAborts) multipartUploads.remove(request.getUploadId());
+        }
+    }
+}
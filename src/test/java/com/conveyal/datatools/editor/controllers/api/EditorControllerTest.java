@@ -13,7 +13,9 @@ import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.restassured.response.Response;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -22,6 +24,8 @@ import spark.utils.IOUtils;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.conveyal.datatools.TestUtils.createFeedVersion;
 import static com.conveyal.datatools.TestUtils.createFeedVersionFromGtfsZip;
@@ -29,6 +33,7 @@ import static com.conveyal.datatools.manager.auth.Auth0Users.USERS_API_PATH;
 import static com.conveyal.datatools.manager.controllers.api.UserController.TEST_AUTH0_DOMAIN;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 
@@ -119,6 +124,89 @@ public class EditorControllerTest extends UnitTest {
         }
     }
 
+    /**
+     * Make sure that a bulk request is applied in a single transaction, i.e., a failed operation prevents the
+     * operations before it from being saved.
+     */
+    @Test
+    public void bulkRequestIsNotSavedIfAnyOperationFails() throws IOException {
+        LOG.info("Making bulk stops request with failing operation");
+        FeedSource feedSource = Persistence.feedSources.getById(feedVersion.feedSourceId);
+        JsonNode stop = graphqlQuery(feedSource.editorNamespace, "graphql/stops.txt")
+            .get("data").get("feed").get("stops").get(0);
+        int stopId = stop.get("id").asInt();
+        String originalName = stop.get("stop_name").asText();
+        ObjectNode updatedStop = stop.deepCopy();
+        updatedStop.put("stop_name", "Bulk update");
+        ArrayNode operations = mapper.createArrayNode();
+        operations.addObject().put("operation", "update").put("id", stopId).set("entity", updatedStop);
+        // This delete operation has no ID, so it (and therefore the whole request) should fail.
+        operations.addObject().put("operation", "delete");
+        Response response = bulkRequest("stop", feedSource.id, operations);
+        assertThat(response.statusCode(), equalTo(400));
+        assertThat(response.asString(), containsString("index 1"));
+        // The update operation should not have been committed.
+        for (JsonNode result : graphqlQuery(feedSource.editorNamespace, "graphql/stops.txt").get("data").get("feed").get("stops")) {
+            if (result.get("id").asInt() == stopId) assertThat(result.get("stop_name").asText(), equalTo(originalName));
+        }
+    }
+
+    /**
+     * Make sure that all of the operations in a bulk request are committed together and that the response contains a
+     * result for each operation in order.
+     */
+    @Test
+    public void canApplyBulkOperations() throws IOException {
+        LOG.info("Making bulk stops request");
+        FeedSource feedSource = Persistence.feedSources.getById(feedVersion.feedSourceId);
+        JsonNode stop = graphqlQuery(feedSource.editorNamespace, "graphql/stops.txt")
+            .get("data").get("feed").get("stops").get(1);
+        int stopId = stop.get("id").asInt();
+        ObjectNode updatedStop = stop.deepCopy();
+        updatedStop.put("stop_name", "Bulk update");
+        ArrayNode operations = mapper.createArrayNode();
+        String[] newStopIds = new String[] {"BULK_1", "BULK_2"};
+        for (String newStopId : newStopIds) {
+            ObjectNode newStop = stop.deepCopy();
+            newStop.remove("id");
+            newStop.put("stop_id", newStopId);
+            newStop.put("stop_name", "Bulk create " + newStopId);
+            // Keep the new stops west of the stops patched in canPatchStopsConditionally.
+            newStop.put("stop_lon", -122.5);
+            newStop.putNull("stop_desc");
+            operations.addObject().put("operation", "create").set("entity", newStop);
+        }
+        operations.addObject().put("operation", "update").put("id", stopId).set("entity", updatedStop);
+        Response response = bulkRequest("stop", feedSource.id, operations);
+        assertThat(response.statusCode(), equalTo(200));
+        JsonNode results = mapper.readTree(response.asString()).get("results");
+        assertThat(results.size(), equalTo(3));
+        assertThat(results.get(0).get("stop_id").asText(), equalTo(newStopIds[0]));
+        assertThat(results.get(1).get("stop_id").asText(), equalTo(newStopIds[1]));
+        assertThat(results.get(2).get("id").asInt(), equalTo(stopId));
+        // Every operation should have been committed.
+        Map<String, String> stopNamesById = new HashMap<>();
+        for (JsonNode result : graphqlQuery(feedSource.editorNamespace, "graphql/stops.txt").get("data").get("feed").get("stops")) {
+            stopNamesById.put(result.get("stop_id").asText(), result.get("stop_name").asText());
+        }
+        assertThat(stopNamesById.get(newStopIds[0]), equalTo("Bulk create " + newStopIds[0]));
+        assertThat(stopNamesById.get(newStopIds[1]), equalTo("Bulk create " + newStopIds[1]));
+        assertThat(stopNamesById.get(stop.get("stop_id").asText()), equalTo("Bulk update"));
+    }
+
+    /**
+     * Perform bulk request on the feed source ID with the operations.
+     */
+    private static Response bulkRequest(String entity, String feedId, JsonNode operations) {
+        return given()
+            .port(DataManager.PORT)
+            .body(operations)
+            .post(String.format("/api/editor/secure/%s/bulk?feedId=%s", entity, feedId))
+            .then()
+            .extract()
+            .response();
+    }
+
     /**
      * Perform patch table request on the feed source ID with the requested query and patch JSON. A null query will
      * apply the patch JSON to the entire table.
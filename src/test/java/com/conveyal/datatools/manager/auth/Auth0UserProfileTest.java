@@ -0,0 +1,69 @@
+package com.conveyal.datatools.manager.auth;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.DataManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for the permission checks in {@link Auth0UserProfile}.
+ */
+public class Auth0UserProfileTest extends UnitTest {
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // Start server so that the client ID is available from the config.
+        DatatoolsTest.setUp();
+    }
+
+    /**
+     * Feed permissions should apply to the feeds listed for the permission, or to the project's default feeds if the
+     * permission does not list any, and should not apply to other projects.
+     */
+    @Test
+    public void canCheckFeedPermissions() {
+        Auth0UserProfile.Project project = new Auth0UserProfile.Project(
+            "project-1",
+            new Auth0UserProfile.Permission[] {
+                new Auth0UserProfile.Permission("view-feed", null),
+                new Auth0UserProfile.Permission("edit-gtfs", new String[] {"feed-b"})
+            },
+            new String[] {"feed-a", "feed-b"}
+        );
+        Auth0UserProfile.Project otherProject = new Auth0UserProfile.Project(
+            "project-2",
+            new Auth0UserProfile.Permission[] {
+                new Auth0UserProfile.Permission("manage-feed", new String[] {"*"})
+            },
+            new String[] {}
+        );
+        Auth0UserProfile user = createUser(project, otherProject);
+        assertThat(user.canAdministerApplication(), equalTo(false));
+        assertThat(user.canViewFeed(null, "project-1", "feed-a"), equalTo(true));
+        assertThat(user.canViewFeed(null, "project-1", "feed-c"), equalTo(false));
+        assertThat(user.canEditGTFS(null, "project-1", "feed-a"), equalTo(false));
+        assertThat(user.canEditGTFS(null, "project-1", "feed-b"), equalTo(true));
+        assertThat(user.canManageFeed(null, "project-1", "feed-a"), equalTo(false));
+        assertThat(user.canManageFeed(null, "project-2", "any-feed"), equalTo(true));
+        assertThat(user.canViewFeed(null, "project-3", "feed-a"), equalTo(false));
+        assertThat(user.hasProject("project-2", null), equalTo(true));
+        assertThat(user.canAdministerProject("project-1", null), equalTo(false));
+    }
+
+    private static Auth0UserProfile createUser(Auth0UserProfile.Project... projects) {
+        Auth0UserProfile.DatatoolsInfo datatoolsInfo = new Auth0UserProfile.DatatoolsInfo();
+        datatoolsInfo.setClientId(DataManager.getConfigPropertyAsText("AUTH0_CLIENT_ID"));
+        datatoolsInfo.setPermissions(new Auth0UserProfile.Permission[] {});
+        datatoolsInfo.setProjects(projects);
+        Auth0UserProfile.AppMetadata appMetadata = new Auth0UserProfile.AppMetadata();
+        appMetadata.setDatatoolsInfo(datatoolsInfo);
+        Auth0UserProfile user = new Auth0UserProfile("user@example.com", "user_id:test");
+        user.setApp_metadata(appMetadata);
+        return user;
+    }
+}
@@ -2,11 +2,13 @@ package com.conveyal.datatools.manager.gtfsplus;
 
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.jobs.MergeFeedsJobTest;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -14,10 +16,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static com.conveyal.datatools.TestUtils.createFeedVersionFromGtfsZip;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 
 /** Runs test to verify that GTFS+ validation runs as expected. */
 public class GtfsPlusValidationTest extends UnitTest {
@@ -49,4 +57,38 @@ public class GtfsPlusValidationTest extends UnitTest {
         // Expect issues to be zero.
         assertThat("Issues count for clean BART feed is zero", validation.issues.size(), equalTo(0));
     }
+
+    /**
+     * Tables should only be validated again if their contents (according to the size and CRC in the zip entry) have
+     * changed since the last validation of the feed version.
+     */
+    @Test
+    public void canSkipUnchangedTables() throws Exception {
+        GtfsPlusValidation.validate(bartVersion1.id);
+        int gtfsPlusTables = 0;
+        try (ZipFile zipFile = new ZipFile(bartVersion1.retrieveGtfsFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!isGtfsPlusTable(entry.getName())) continue;
+                gtfsPlusTables++;
+                assertThat(GtfsPlusValidation.getTableResult(bartVersion1.id, entry), notNullValue());
+                ZipEntry changedEntry = new ZipEntry(entry.getName());
+                changedEntry.setSize(entry.getSize());
+                changedEntry.setCrc(entry.getCrc() ^ 1);
+                assertThat(GtfsPlusValidation.getTableResult(bartVersion1.id, changedEntry), nullValue());
+            }
+        }
+        assertThat(gtfsPlusTables, greaterThan(0));
+        // Validating again (with the cached table results) should produce the same result.
+        GtfsPlusValidation validation = GtfsPlusValidation.validate(bartVersion1.id);
+        assertThat(validation.issues.size(), equalTo(0));
+    }
+
+    private static boolean isGtfsPlusTable(String entryName) {
+        for (JsonNode tableNode : DataManager.gtfsPlusConfig) {
+            if (tableNode.get("name").asText().equals(entryName)) return true;
+        }
+        return false;
+    }
 }
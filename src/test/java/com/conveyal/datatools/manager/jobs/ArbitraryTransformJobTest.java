@@ -23,9 +23,12 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.zip.ZipEntry;
@@ -158,6 +161,35 @@ public class ArbitraryTransformJobTest extends UnitTest {
         );
     }
 
+    /**
+     * Processing a new version for a feed source with DB transformations should snapshot the version (once it has been
+     * validated and stored) without errors.
+     */
+    @Test
+    public void canSnapshotNewVersionWithDbTransformations() throws IOException {
+        FeedTransformation transformation = DeleteRecordsTransformation.create(
+            "trips",
+            "route_id",
+            Collections.singletonList("1")
+        );
+        feedSource.transformRules.add(new FeedTransformRules(transformation));
+        Persistence.feedSources.replace(feedSource.id, feedSource);
+        sourceVersion = new FeedVersion(feedSource);
+        try (InputStream is = new FileInputStream(zipFolderFiles("fake-agency-with-only-calendar"))) {
+            sourceVersion.newGtfsFile(is);
+        }
+        ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(sourceVersion, user, true);
+        processSingleFeedJob.run();
+        assertEquals("Processing job should not error", false, processSingleFeedJob.status.error);
+        Snapshot snapshot = null;
+        for (Snapshot existingSnapshot : feedSource.retrieveSnapshots()) {
+            if (sourceVersion.id.equals(existingSnapshot.feedVersionId)) snapshot = existingSnapshot;
+        }
+        assertThat(snapshot, Matchers.notNullValue());
+        assertThat(snapshot.namespace, Matchers.notNullValue());
+        assertThat(snapshot.namespace, Matchers.not(Matchers.equalTo(sourceVersion.namespace)));
+    }
+
     @Test
     public void canCloneZipFileAndTransform() throws IOException, SQLException {
         // Generate random UUID for feedId, which gets placed into the csv data.
@@ -19,15 +19,19 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.conveyal.datatools.TestUtils.getBooleanEnvVar;
 import static com.conveyal.datatools.manager.controllers.api.ServerController.getIds;
 import static com.conveyal.datatools.manager.controllers.api.ServerController.terminateInstances;
 import static com.zenika.snapshotmatcher.SnapshotMatcher.matchesSnapshot;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
 /**
@@ -111,6 +115,105 @@ public class DeployJobTest extends UnitTest {
         assertThat(deployJob.constructUserData(true), matchesSnapshot());
     }
 
+    /**
+     * Tests that a rolling delivery with no batch size (or a batch size of one) delivers to one server at a time.
+     */
+    @Test
+    public void canDeliverToOneServerAtATime () {
+        assertThat(getBatchSizes(OtpServer.DeliveryStrategy.ROLLING, 0, 3), equalTo(Arrays.asList(1, 1, 1)));
+        assertThat(getBatchSizes(OtpServer.DeliveryStrategy.ROLLING, 1, 3), equalTo(Arrays.asList(1, 1, 1)));
+        // Rolling delivery is the default.
+        assertThat(getBatchSizes(null, 0, 2), equalTo(Arrays.asList(1, 1)));
+    }
+
+    /**
+     * Tests that a rolling delivery whose batch size does not divide the number of servers delivers to the remaining
+     * servers in a smaller final batch.
+     */
+    @Test
+    public void canDeliverInUnevenBatches () {
+        assertThat(getBatchSizes(OtpServer.DeliveryStrategy.ROLLING, 2, 5), equalTo(Arrays.asList(2, 2, 1)));
+        assertThat(getBatchSizes(OtpServer.DeliveryStrategy.ROLLING, 4, 3), equalTo(Arrays.asList(3)));
+    }
+
+    /**
+     * Tests that canary deliveries deliver to the first server before the rest (and to a lone server on its own).
+     */
+    @Test
+    public void canDeliverToCanaryServerFirst () {
+        assertThat(getBatchSizes(OtpServer.DeliveryStrategy.CANARY, 0, 4), equalTo(Arrays.asList(1, 3)));
+        assertThat(getBatchSizes(OtpServer.DeliveryStrategy.CANARY, 0, 1), equalTo(Arrays.asList(1)));
+        assertThat(getBatchSizes(OtpServer.DeliveryStrategy.PARALLEL, 0, 4), equalTo(Arrays.asList(4)));
+    }
+
+    /**
+     * Tests that a failed delivery fails the job and skips the batches that follow it, while the other servers in the
+     * failed server's batch still complete.
+     */
+    @Test
+    public void canSkipServersAfterFailedDelivery () {
+        OtpServer otpServer = createOtpServerWithUrls(OtpServer.DeliveryStrategy.ROLLING, 2, 5);
+        String failingUrl = otpServer.internalUrl.get(2);
+        DeployJob deployJob = new DeployJob(
+            deployment,
+            Auth0UserProfile.createTestAdminUser(),
+            otpServer,
+            "test-deploy",
+            DeployJob.DeployType.REPLACE
+        ) {
+            @Override
+            void deliverGraph(DeployJob.ServerDeliveryStatus server) {
+                if (server.url.equals(failingUrl)) server.fail("Test failure", null);
+                else server.state = DeployJob.ServerDeliveryState.COMPLETED;
+            }
+        };
+        assertFalse(deployJob.buildGraphOverWire());
+        assertTrue(deployJob.status.error);
+        List<DeployJob.ServerDeliveryState> states = deployJob.status.servers.stream()
+            .map(server -> server.state)
+            .collect(Collectors.toList());
+        assertThat(states, equalTo(Arrays.asList(
+            DeployJob.ServerDeliveryState.COMPLETED,
+            DeployJob.ServerDeliveryState.COMPLETED,
+            DeployJob.ServerDeliveryState.FAILED,
+            DeployJob.ServerDeliveryState.COMPLETED,
+            DeployJob.ServerDeliveryState.SKIPPED
+        )));
+    }
+
+    /**
+     * Get the sizes of the delivery batches for the strategy and number of servers.
+     */
+    private static List<Integer> getBatchSizes(OtpServer.DeliveryStrategy strategy, int batchSize, int serverCount) {
+        OtpServer otpServer = createOtpServerWithUrls(strategy, batchSize, serverCount);
+        DeployJob deployJob = new DeployJob(
+            deployment,
+            Auth0UserProfile.createTestAdminUser(),
+            otpServer,
+            "test-deploy",
+            DeployJob.DeployType.REPLACE
+        );
+        List<DeployJob.ServerDeliveryStatus> servers = otpServer.internalUrl.stream()
+            .map(DeployJob.ServerDeliveryStatus::new)
+            .collect(Collectors.toList());
+        return deployJob.getDeliveryBatches(servers).stream()
+            .map(List::size)
+            .collect(Collectors.toList());
+    }
+
+    private static OtpServer createOtpServerWithUrls(OtpServer.DeliveryStrategy strategy, int batchSize, int serverCount) {
+        OtpServer otpServer = new OtpServer();
+        otpServer.projectId = project.id;
+        otpServer.s3Bucket = "datatools-dev";
+        otpServer.deliveryStrategy = strategy;
+        otpServer.deliveryBatchSize = batchSize;
+        otpServer.internalUrl = new ArrayList<>();
+        for (int i = 0; i < serverCount; i++) {
+            otpServer.internalUrl.add(String.format("http://otp-%d.example.com/otp", i));
+        }
+        return otpServer;
+    }
+
     /**
      * Tests that Data Tools can run an ELB deployment.
      *
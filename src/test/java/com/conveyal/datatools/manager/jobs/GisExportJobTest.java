@@ -8,6 +8,8 @@ import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.json.JsonUtil;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.io.Files;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.MultiLineString;
@@ -130,6 +132,76 @@ public class GisExportJobTest extends UnitTest {
         assertThat(featureCount, equalTo(calTrainVersion.feedLoadResult.stops.rowCount));
     }
 
+    /**
+     * Ensures that stops can be exported as GeoJSON and that the layer contains a point feature for each stop.
+     */
+    @Test
+    public void canExportStopsAsGeoJson () throws IOException {
+        File zipFile = File.createTempFile("stops", ".zip");
+        Set<String> ids = new HashSet<>();
+        ids.add(calTrainVersion.id);
+        Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+        GisExportJob gisExportJob = new GisExportJob(
+            GisExportJob.ExportType.STOPS,
+            GisExportJob.ExportFormat.GEOJSON,
+            zipFile,
+            ids,
+            user
+        );
+        gisExportJob.run();
+        assertThat(gisExportJob.status.error, equalTo(false));
+        File geoJsonFile = null;
+        for (File file : getFilesFromZippedShapefile(zipFile)) {
+            if (file.getName().endsWith(".geojson")) geoJsonFile = file;
+        }
+        assertThat("GeoJSON file is present in zip.", geoJsonFile, notNullValue());
+        JsonNode features = JsonUtil.objectMapper.readTree(geoJsonFile).get("features");
+        assertThat(features.size(), equalTo(calTrainVersion.feedLoadResult.stops.rowCount));
+        for (JsonNode feature : features) {
+            JsonNode geometry = feature.get("geometry");
+            assertThat(geometry.get("type").asText(), equalTo("Point"));
+            double lon = geometry.get("coordinates").get(0).asDouble();
+            double lat = geometry.get("coordinates").get(1).asDouble();
+            assertThat(lon, greaterThan(CALTRAIN_WEST));
+            assertThat(lon, lessThan(CALTRAIN_EAST));
+            assertThat(lat, greaterThan(CALTRAIN_SOUTH));
+            assertThat(lat, lessThan(CALTRAIN_NORTH));
+        }
+    }
+
+    /**
+     * Ensures that routes can be exported as GeoJSON with the same attribute types as the shapefile (e.g., route type as
+     * a string).
+     */
+    @Test
+    public void canExportRoutesAsGeoJson () throws IOException {
+        File zipFile = File.createTempFile("routes", ".zip");
+        Set<String> ids = new HashSet<>();
+        ids.add(calTrainVersion.id);
+        Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+        GisExportJob gisExportJob = new GisExportJob(
+            GisExportJob.ExportType.ROUTES,
+            GisExportJob.ExportFormat.GEOJSON,
+            zipFile,
+            ids,
+            user
+        );
+        gisExportJob.run();
+        assertThat(gisExportJob.status.error, equalTo(false));
+        File geoJsonFile = null;
+        for (File file : getFilesFromZippedShapefile(zipFile)) {
+            if (file.getName().endsWith(".geojson")) geoJsonFile = file;
+        }
+        assertThat("GeoJSON file is present in zip.", geoJsonFile, notNullValue());
+        JsonNode features = JsonUtil.objectMapper.readTree(geoJsonFile).get("features");
+        assertThat(features.size(), greaterThan(0));
+        for (JsonNode feature : features) {
+            assertThat(feature.get("geometry").get("type").asText(), equalTo("LineString"));
+            JsonNode routeType = feature.get("properties").get("type");
+            assertThat(routeType.isTextual(), equalTo(true));
+        }
+    }
+
     /** Get CRS from unzipped shapefile set of files and ensure it's not null. */
     private void assertCrsIsNotNull(File[] files) throws IOException {
         CoordinateReferenceSystem crs = getCRSFromShapefiles(files);
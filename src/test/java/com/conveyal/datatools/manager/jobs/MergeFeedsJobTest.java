@@ -26,6 +26,7 @@ import static com.conveyal.datatools.TestUtils.createFeedVersionFromGtfsZip;
 import static com.conveyal.datatools.TestUtils.zipFolderFiles;
 import static com.conveyal.datatools.manager.models.FeedRetrievalMethod.MANUALLY_UPLOADED;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -153,6 +154,36 @@ public class MergeFeedsJobTest extends UnitTest {
         );
     }
 
+    /**
+     * Ensures that merging tables in parallel for a regional merge produces the same result as merging them serially
+     * and logs the wall-clock time of each approach for comparison.
+     */
+    @Test
+    public void parallelRegionalMergeMatchesSerialMerge() {
+        Set<FeedVersion> versions = new HashSet<>();
+        versions.add(bartVersion1);
+        versions.add(calTrainVersion);
+        versions.add(napaVersion);
+        MergeFeedsJob serialMergeJob = new MergeFeedsJob(user, versions, project.id, MergeFeedsType.REGIONAL, false);
+        serialMergeJob.mergeTablesInParallel = false;
+        long serialStartTime = System.currentTimeMillis();
+        serialMergeJob.run();
+        long serialDuration = System.currentTimeMillis() - serialStartTime;
+
+        MergeFeedsJob parallelMergeJob = new MergeFeedsJob(user, versions, project.id, MergeFeedsType.REGIONAL, false);
+        parallelMergeJob.mergeTablesInParallel = true;
+        long parallelStartTime = System.currentTimeMillis();
+        parallelMergeJob.run();
+        long parallelDuration = System.currentTimeMillis() - parallelStartTime;
+
+        LOG.info("Regional merge took {} ms serially and {} ms in parallel", serialDuration, parallelDuration);
+        assertFalse(serialMergeJob.mergeFeedsResult.failed);
+        assertFalse(parallelMergeJob.mergeFeedsResult.failed);
+        assertEquals(serialMergeJob.mergeFeedsResult.linesPerTable, parallelMergeJob.mergeFeedsResult.linesPerTable);
+        assertEquals(serialMergeJob.mergeFeedsResult.feedCount, parallelMergeJob.mergeFeedsResult.feedCount);
+        assertEquals(serialMergeJob.mergeFeedsResult.recordsSkipCount, parallelMergeJob.mergeFeedsResult.recordsSkipCount);
+    }
+
     /**
      * Tests whether the calendar_dates and trips tables get proper feed scoping in a merge with one feed with only
      * calendar_dates and another with only the calendar.
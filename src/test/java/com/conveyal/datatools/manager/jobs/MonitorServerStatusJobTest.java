@@ -0,0 +1,164 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.amazonaws.services.ec2.AbstractAmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.elasticloadbalancingv2.AbstractAmazonElasticLoadBalancing;
+import com.amazonaws.services.elasticloadbalancingv2.AmazonElasticLoadBalancing;
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.Deployment;
+import com.conveyal.datatools.manager.models.EC2Info;
+import com.conveyal.datatools.manager.models.OtpServer;
+import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the stages of {@link MonitorServerStatusJob}. The job is driven directly (as the
+ * {@link ServerStatusPoller} would drive it) with a deploy job whose AWS clients are stubbed, so no instances or HTTP
+ * checks are involved.
+ */
+public class MonitorServerStatusJobTest extends UnitTest {
+    private static final long FIVE_MINUTES_MILLIS = 5 * 60 * 1000;
+    private static Project project;
+    private static OtpServer server;
+    private static Deployment deployment;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+        project = new Project();
+        project.name = String.format("Test %s", new Date().toString());
+        Persistence.projects.create(project);
+        server = new OtpServer();
+        server.projectId = project.id;
+        server.s3Bucket = "datatools-dev";
+        server.ec2Info = new EC2Info();
+        server.ec2Info.instanceCount = 1;
+        server.ec2Info.targetGroupArn = "test-target-group";
+        deployment = new Deployment();
+        deployment.feedVersionIds = new ArrayList<>();
+        deployment.projectId = project.id;
+        deployment.name = "Test deployment";
+        Persistence.deployments.create(deployment);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        deployment.delete();
+        project.delete();
+    }
+
+    /**
+     * Tests that the job fails once a stage has taken longer than allowed, and that it stays finished.
+     */
+    @Test
+    public void canTimeOutStage() {
+        MonitorServerStatusJob job = startMonitoring();
+        long now = System.currentTimeMillis();
+        assertFalse(job.checkForTimeout(now));
+        assertTrue(job.checkForTimeout(now + FIVE_MINUTES_MILLIS + 1000));
+        assertTrue(job.status.error);
+        assertThat(job.status.message, containsString("status file"));
+        assertTrue(job.checkForTimeout(now));
+        assertFalse(job.claimServerCheck(Long.MAX_VALUE));
+    }
+
+    /**
+     * Tests that only one check is claimed at a time, that the first check in a stage is delayed, and that failed checks
+     * back off up to the maximum interval.
+     */
+    @Test
+    public void canClaimOneCheckAtATimeWithBackoff() {
+        MonitorServerStatusJob job = startMonitoring();
+        long now = System.currentTimeMillis();
+        assertFalse(job.claimServerCheck(now));
+        long due = now + ServerStatusPoller.POLL_INTERVAL_MILLIS + 1000;
+        assertTrue(job.claimServerCheck(due));
+        // A check is already in progress.
+        assertFalse(job.claimServerCheck(due));
+        job.scheduleNextCheck(false);
+        // The interval doubles after the first failed check.
+        assertFalse(job.claimServerCheck(System.currentTimeMillis() + ServerStatusPoller.POLL_INTERVAL_MILLIS));
+        assertTrue(job.claimServerCheck(System.currentTimeMillis() + 2 * ServerStatusPoller.POLL_INTERVAL_MILLIS + 1000));
+        // Fail enough checks to reach the maximum interval.
+        for (int i = 0; i < 5; i++) {
+            job.scheduleNextCheck(false);
+            assertTrue(job.claimServerCheck(Long.MAX_VALUE));
+        }
+        job.scheduleNextCheck(false);
+        assertFalse(job.claimServerCheck(System.currentTimeMillis() + 29 * 1000));
+        assertTrue(job.claimServerCheck(System.currentTimeMillis() + 31 * 1000));
+        assertFalse(job.status.error);
+    }
+
+    /**
+     * Tests that a stopped instance fails the job and releases the thread running the job.
+     */
+    @Test
+    public void canFailWhenInstanceStopped() {
+        MonitorServerStatusJob job = startMonitoring();
+        job.instanceStopped("stopped");
+        assertTrue(job.status.error);
+        assertThat(job.status.message, containsString("stopped or terminated"));
+        assertTrue(job.checkForTimeout(System.currentTimeMillis()));
+        assertFalse(job.claimServerCheck(Long.MAX_VALUE));
+        // Running the job should not block now that monitoring has finished.
+        job.jobLogic();
+        // Later reports of the instance state are ignored.
+        job.instanceStopped("terminated");
+        assertTrue(job.status.error);
+    }
+
+    /**
+     * Start monitoring a fake instance, but stop the shared poller from driving the job so that the tests can drive it.
+     */
+    private static MonitorServerStatusJob startMonitoring() {
+        Instance instance = new Instance()
+            .withInstanceId("i-" + System.nanoTime())
+            .withPublicIpAddress("127.0.0.1");
+        MonitorServerStatusJob job = new MonitorServerStatusJob(
+            Auth0UserProfile.createTestAdminUser(),
+            new StubDeployJob(),
+            instance,
+            false
+        );
+        job.startMonitoring();
+        ServerStatusPoller.unregister(job);
+        return job;
+    }
+
+    /** Deploy job with AWS clients that fail if used. */
+    private static class StubDeployJob extends DeployJob {
+        private final AmazonEC2 ec2 = new AbstractAmazonEC2() { };
+        private final AmazonElasticLoadBalancing elb = new AbstractAmazonElasticLoadBalancing() { };
+
+        StubDeployJob() {
+            super(deployment, Auth0UserProfile.createTestAdminUser(), server, "test-monitor", DeployType.REPLACE);
+        }
+
+        @Override
+        public AmazonEC2 getEC2Client() {
+            return ec2;
+        }
+
+        @Override
+        public synchronized AmazonElasticLoadBalancing getELBClient() {
+            return elb;
+        }
+    }
+}
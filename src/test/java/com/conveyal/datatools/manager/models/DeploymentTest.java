@@ -0,0 +1,80 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static com.conveyal.datatools.TestUtils.createFeedVersionFromGtfsZip;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class DeploymentTest extends UnitTest {
+    private static Deployment deployment;
+    private static FeedVersion feedVersion;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+        Project project = new Project();
+        project.name = String.format("Test %s", new Date().toString());
+        Persistence.projects.create(project);
+        FeedSource caltrain = new FeedSource("Caltrain");
+        caltrain.projectId = project.id;
+        Persistence.feedSources.create(caltrain);
+        feedVersion = createFeedVersionFromGtfsZip(caltrain, "caltrain_gtfs.zip");
+        deployment = new Deployment();
+        deployment.name = "Test deployment";
+        deployment.projectId = project.id;
+        deployment.feedVersionIds = Collections.singletonList(feedVersion.id);
+        Persistence.deployments.create(deployment);
+    }
+
+    /**
+     * The GTFS files in a deployment bundle are already compressed, so they should be stored in the bundle without
+     * being compressed again.
+     */
+    @Test
+    public void canDumpBundleWithStoredGtfsEntries() throws IOException {
+        File bundle = File.createTempFile("deployment", ".zip");
+        deployment.dump(bundle, true, false, false);
+        try (ZipFile zipFile = new ZipFile(bundle)) {
+            assertThat(zipFile.getEntry("manifest.json"), notNullValue());
+            File gtfsFile = feedVersion.retrieveGtfsFile();
+            ZipEntry gtfsEntry = zipFile.getEntry(gtfsFile.getName());
+            assertThat(gtfsEntry, notNullValue());
+            assertThat(gtfsEntry.getMethod(), equalTo(ZipEntry.STORED));
+            assertThat(gtfsEntry.getSize(), equalTo(gtfsFile.length()));
+        } finally {
+            bundle.delete();
+        }
+    }
+
+    /**
+     * The bundle cache key should only change when the inputs to the bundle change, so that an unchanged deployment
+     * reuses its cached bundle.
+     */
+    @Test
+    public void canComputeBundleKeyFromInputs() throws IOException {
+        String key = deployment.retrieveBundleKey(false);
+        assertThat(deployment.retrieveBundleKey(false), equalTo(key));
+        deployment.customRouterConfig = "{\"routingDefaults\": {\"walkSpeed\": 1.2}}";
+        try {
+            assertThat(deployment.retrieveBundleKey(false), not(equalTo(key)));
+        } finally {
+            deployment.customRouterConfig = null;
+        }
+        assertThat(deployment.retrieveBundleKey(false), equalTo(key));
+    }
+}
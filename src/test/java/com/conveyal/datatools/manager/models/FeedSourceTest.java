@@ -0,0 +1,147 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.TestUtils;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.jobs.FetchSingleFeedJob;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for fetching feeds with conditional requests. Feeds are served by a local HTTP server that either honors
+ * If-None-Match (responding with 304 Not Modified) or ignores it (as some feed hosts do).
+ */
+public class FeedSourceTest extends UnitTest {
+    private static final String ETAG = "\"caltrain-1\"";
+    private static HttpServer server;
+    private static Project project;
+    private static byte[] gtfsBytes;
+    /** The If-None-Match header of the last request made to the server. */
+    private static volatile String lastIfNoneMatch;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+        gtfsBytes = Files.readAllBytes(Paths.get(TestUtils.class.getResource("gtfs/caltrain_gtfs.zip").getFile()));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/conditional.zip", exchange -> {
+            lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ETAG.equals(lastIfNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                sendFeed(exchange);
+            }
+            exchange.close();
+        });
+        server.createContext("/unconditional.zip", exchange -> {
+            lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            sendFeed(exchange);
+            exchange.close();
+        });
+        server.start();
+        project = new Project();
+        project.name = TestUtils.appendDate("Fetch project");
+        Persistence.projects.create(project);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) server.stop(0);
+        if (project != null) project.delete();
+    }
+
+    private static void sendFeed(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        exchange.getResponseHeaders().set("Content-Type", "application/zip");
+        exchange.sendResponseHeaders(200, gtfsBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(gtfsBytes);
+        }
+    }
+
+    /**
+     * Once a fetched version has been processed and stored, the next fetch should send the stored ETag and handle the
+     * server's 304 response without creating a version.
+     */
+    @Test
+    public void canSkipFetchOnNotModified() throws IOException {
+        FeedSource feedSource = createFetchedFeedSource("conditional.zip");
+        new FetchSingleFeedJob(feedSource, Auth0UserProfile.createTestAdminUser(), true).run();
+        FeedSource fetched = Persistence.feedSources.getById(feedSource.id);
+        assertThat(fetched.lastFetchETag, equalTo(ETAG));
+        assertThat(fetched.lastFetched, not(nullValue()));
+        assertThat(fetched.feedVersionCount(), equalTo(1));
+
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        assertThat(fetched.fetch(status), nullValue());
+        assertThat(lastIfNoneMatch, equalTo(ETAG));
+        assertThat(status.error, equalTo(false));
+        assertThat(status.message, containsString("has not been modified"));
+        assertThat(Persistence.feedSources.getById(feedSource.id).feedVersionCount(), equalTo(1));
+    }
+
+    /**
+     * If the server ignores the conditional request, the response headers matching those from the last fetch should
+     * still prevent the feed from being downloaded again.
+     */
+    @Test
+    public void canSkipFetchOnUnchangedValidators() throws IOException {
+        FeedSource feedSource = createFetchedFeedSource("unconditional.zip");
+        new FetchSingleFeedJob(feedSource, Auth0UserProfile.createTestAdminUser(), true).run();
+        FeedSource fetched = Persistence.feedSources.getById(feedSource.id);
+        assertThat(fetched.lastFetchETag, equalTo(ETAG));
+
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        assertThat(fetched.fetch(status), nullValue());
+        assertThat(status.error, equalTo(false));
+        assertThat(status.message, containsString("response headers match last fetch"));
+        assertThat(Persistence.feedSources.getById(feedSource.id).feedVersionCount(), equalTo(1));
+    }
+
+    /**
+     * A fetched version that has not been stored (e.g., because processing failed) must not update the last fetched
+     * value or validators, otherwise the next fetch would skip the feed.
+     */
+    @Test
+    public void doesNotStoreValidatorsBeforeVersionIsStored() throws IOException {
+        FeedSource feedSource = createFetchedFeedSource("conditional.zip");
+        FeedVersion version = feedSource.fetch(new MonitorableJob.Status());
+        assertThat(version, not(nullValue()));
+        assertThat(version.fetchETag, equalTo(ETAG));
+        FeedSource fetched = Persistence.feedSources.getById(feedSource.id);
+        assertThat(fetched.lastFetchETag, nullValue());
+        assertThat(fetched.lastFetched, nullValue());
+    }
+
+    private FeedSource createFetchedFeedSource(String path) throws IOException {
+        FeedSource feedSource = new FeedSource(
+            String.format("Fetched feed %s", new Date().getTime()),
+            project.id,
+            FeedRetrievalMethod.FETCHED_AUTOMATICALLY
+        );
+        feedSource.url = new URL(String.format("http://localhost:%d/%s", server.getAddress().getPort(), path));
+        Persistence.feedSources.create(feedSource);
+        return feedSource;
+    }
+}
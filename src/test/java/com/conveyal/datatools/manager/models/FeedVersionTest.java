@@ -3,16 +3,33 @@ package com.conveyal.datatools.manager.models;
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.UnitTest;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 
 public class FeedVersionTest extends UnitTest {
+    // Zip entry timestamps have a two second resolution, so these must be far enough apart to produce different files.
+    private static final long FIRST_ZIP_TIME = 1577836800000L;
+    private static final long SECOND_ZIP_TIME = FIRST_ZIP_TIME + 3600000L;
 
     /** Initialize application for tests to run. */
     @BeforeClass
@@ -41,4 +58,160 @@ public class FeedVersionTest extends UnitTest {
         FeedVersion feedVersion2 = new FeedVersion(testFeedsoure);
         assertThat(feedVersion1.id, not(equalTo(feedVersion2.id)));
     }
+
+    /**
+     * Make sure that prefetching related objects for a list of feed versions resolves the same previous/next version
+     * IDs and parent feed source as the individual (per-version query) getters.
+     */
+    @Test
+    public void canPrefetchRelatedObjects() {
+        FeedSource feedSource = new FeedSource("Prefetch feed source");
+        Persistence.feedSources.create(feedSource);
+        List<FeedVersion> versions = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            FeedVersion version = new FeedVersion(feedSource);
+            version.version = i;
+            Persistence.feedVersions.create(version);
+            versions.add(version);
+        }
+        List<String> expectedPreviousIds = new ArrayList<>();
+        List<String> expectedNextIds = new ArrayList<>();
+        for (FeedVersion version : versions) {
+            expectedPreviousIds.add(version.previousVersionId());
+            expectedNextIds.add(version.nextVersionId());
+        }
+        FeedVersion.prefetchRelatedObjects(versions);
+        for (int i = 0; i < versions.size(); i++) {
+            FeedVersion version = versions.get(i);
+            assertThat(version.previousVersionId(), equalTo(expectedPreviousIds.get(i)));
+            assertThat(version.nextVersionId(), equalTo(expectedNextIds.get(i)));
+            assertThat(version.parentFeedSource().id, equalTo(feedSource.id));
+        }
+        assertThat(versions.get(0).previousVersionId(), nullValue());
+        assertThat(versions.get(1).previousVersionId(), equalTo(versions.get(0).id));
+        assertThat(versions.get(1).nextVersionId(), equalTo(versions.get(2).id));
+    }
+
+    /**
+     * Make sure that the hash computed while storing a new GTFS file covers the full file content, so that files
+     * differing only in bytes outside of any sampled region are still detected as changed.
+     */
+    @Test
+    public void canHashFullContentWhenStoringFile() throws IOException {
+        FeedSource feedSource = new FeedSource("Hash feed source");
+        Persistence.feedSources.create(feedSource);
+        byte[] content = new byte[100000];
+        FeedVersion version1 = new FeedVersion(feedSource);
+        File file1 = version1.newGtfsFile(new ByteArrayInputStream(content));
+        assertThat(version1.hash, equalTo(HashUtils.hashFile(file1)));
+        // Change a single byte near the end of the file (outside of the regions sampled by the legacy hash).
+        content[content.length - 10] = 1;
+        FeedVersion version2 = new FeedVersion(feedSource);
+        version2.newGtfsFile(new ByteArrayInputStream(content));
+        assertThat(version2.hasSameContentAs(version1), equalTo(false));
+        // Identical content should match.
+        FeedVersion version3 = new FeedVersion(feedSource);
+        version3.newGtfsFile(new ByteArrayInputStream(content));
+        assertThat(version3.hasSameContentAs(version2), equalTo(true));
+    }
+
+    /**
+     * Make sure that a re-zipped feed with identical tables is considered unchanged and that the tables changed between
+     * versions are detected.
+     */
+    @Test
+    public void canCompareTableHashes() throws IOException {
+        FeedSource feedSource = new FeedSource("Table hash feed source");
+        Persistence.feedSources.create(feedSource);
+        FeedVersion version1 = new FeedVersion(feedSource);
+        File file1 = version1.newGtfsFile(
+            new ByteArrayInputStream(zip(FIRST_ZIP_TIME, "stop_id\n1\n", "date\n20200101\n"))
+        );
+        // The entry hashes computed while the file was written should match those read from the stored file.
+        Map<String, String> entryHashes = HashUtils.hashZipEntries(file1);
+        assertThat(version1.tableHashes.size(), equalTo(2));
+        assertThat(version1.tableHashes, equalTo(HashUtils.toTableHashes(entryHashes)));
+        assertThat(version1.entriesHash, equalTo(HashUtils.combineEntryHashes(entryHashes)));
+        assertThat(version1.hash, equalTo(HashUtils.hashFile(file1)));
+        // Same tables, but different zip entry timestamps.
+        FeedVersion version2 = new FeedVersion(feedSource);
+        version2.newGtfsFile(new ByteArrayInputStream(zip(SECOND_ZIP_TIME, "stop_id\n1\n", "date\n20200101\n")));
+        assertThat(version2.hash, not(equalTo(version1.hash)));
+        assertThat(version2.hasSameContentAs(version1), equalTo(true));
+        // Modified calendar_dates.
+        FeedVersion version3 = new FeedVersion(feedSource);
+        version3.newGtfsFile(new ByteArrayInputStream(zip(SECOND_ZIP_TIME, "stop_id\n1\n", "date\n20200102\n")));
+        assertThat(version3.hasSameContentAs(version2), equalTo(false));
+        assertThat(version3.retrieveTablesChangedSince(version2), equalTo(Collections.singleton("calendar_dates")));
+    }
+
+    /**
+     * Make sure that a feed whose only change is to a file other than a GTFS table is not considered unchanged.
+     */
+    @Test
+    public void canDetectChangedNonTableEntry() throws IOException {
+        FeedSource feedSource = new FeedSource("Entry hash feed source");
+        Persistence.feedSources.create(feedSource);
+        FeedVersion version1 = new FeedVersion(feedSource);
+        version1.newGtfsFile(new ByteArrayInputStream(zip(
+            FIRST_ZIP_TIME,
+            StandardCharsets.UTF_8,
+            new String[][] {{"stops.txt", "stop_id\n1\n"}, {"locations.geojson", "{\"features\":[]}"}}
+        )));
+        FeedVersion version2 = new FeedVersion(feedSource);
+        version2.newGtfsFile(new ByteArrayInputStream(zip(
+            SECOND_ZIP_TIME,
+            StandardCharsets.UTF_8,
+            new String[][] {{"stops.txt", "stop_id\n1\n"}, {"locations.geojson", "{\"features\":[{}]}"}}
+        )));
+        assertThat(version2.tableHashes, equalTo(version1.tableHashes));
+        assertThat(version2.hasSameContentAs(version1), equalTo(false));
+        assertThat(version2.retrieveTablesChangedSince(version1).isEmpty(), equalTo(true));
+    }
+
+    /**
+     * Make sure that a zip file with a malformed entry name is still stored in full (to be reported as invalid by
+     * validation) rather than failing while its entries are hashed.
+     */
+    @Test
+    public void canStoreFileWithMalformedEntryName() throws IOException {
+        FeedSource feedSource = new FeedSource("Malformed entry feed source");
+        Persistence.feedSources.create(feedSource);
+        // An entry name that is not valid UTF-8 (and is not flagged as such) cannot be read with the default charset.
+        byte[] content = zip(
+            FIRST_ZIP_TIME,
+            StandardCharsets.ISO_8859_1,
+            new String[][] {{"stops\u00e9.txt", "stop_id\n1\n"}}
+        );
+        FeedVersion version = new FeedVersion(feedSource);
+        File file = version.newGtfsFile(new ByteArrayInputStream(content));
+        assertThat(file.length(), equalTo((long) content.length));
+        assertThat(version.hash, equalTo(HashUtils.hashFile(file)));
+        assertThat(version.tableHashes.isEmpty(), equalTo(true));
+        assertThat(version.entriesHash, nullValue());
+    }
+
+    /** Construct a zip file with stops and calendar_dates tables with the provided contents and entry timestamps. */
+    private static byte[] zip(long entryTime, String stops, String calendarDates) throws IOException {
+        String[][] tables = {{"stops.txt", stops}, {"calendar_dates.txt", calendarDates}};
+        return zip(entryTime, StandardCharsets.UTF_8, tables);
+    }
+
+    /**
+     * Construct a zip file with the provided entries (name and contents pairs), entry timestamps and charset for entry
+     * names.
+     */
+    private static byte[] zip(long entryTime, Charset nameCharset, String[][] entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes, nameCharset)) {
+            for (String[] nameAndContents : entries) {
+                ZipEntry entry = new ZipEntry(nameAndContents[0]);
+                entry.setTime(entryTime);
+                out.putNextEntry(entry);
+                out.write(nameAndContents[1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
 }
@@ -0,0 +1,63 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.conveyal.datatools.UnitTest;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the eviction and pinning behavior of {@link FeedCache}.
+ */
+public class FeedCacheTest extends UnitTest {
+    private static final int FILE_SIZE = 100;
+
+    /**
+     * Once the cache is over budget, the least recently used file that is not pinned should be evicted.
+     */
+    @Test
+    public void evictsLeastRecentlyUsedUnpinnedFiles() throws IOException {
+        File directory = Files.createTempDirectory("feed-cache").toFile();
+        // Budget for two files with no minimum age.
+        FeedCache cache = new FeedCache(2 * FILE_SIZE, 0);
+        File first = writeFile(directory, "first");
+        File second = writeFile(directory, "second");
+        File third = writeFile(directory, "third");
+        cache.put(first, false);
+        FeedCache.Pin pinnedSecond = cache.put(second, true);
+        // Accessing the first file makes the (pinned) second file the least recently used.
+        assertNotNull(cache.acquire(first, false));
+        cache.put(third, false);
+        // The second file is pinned, so the first file should be evicted instead.
+        assertTrue(second.exists());
+        assertFalse(first.exists());
+        assertNull(cache.acquire(first, false));
+        // Once the second file is released, it is the least recently used file and can be evicted.
+        pinnedSecond.close();
+        File fourth = writeFile(directory, "fourth");
+        cache.put(fourth, false);
+        assertFalse(second.exists());
+        assertTrue(third.exists());
+        assertTrue(fourth.exists());
+        FeedCache.Metrics metrics = cache.getMetrics();
+        assertEquals(2, metrics.files);
+        assertEquals(2 * FILE_SIZE, metrics.bytes);
+        assertEquals(2, metrics.evictions);
+        assertEquals(1, metrics.hits);
+        assertEquals(1, metrics.misses);
+    }
+
+    private static File writeFile(File directory, String name) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), new byte[FILE_SIZE]);
+        file.deleteOnExit();
+        return file;
+    }
+}
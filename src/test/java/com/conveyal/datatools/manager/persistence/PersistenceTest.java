@@ -4,12 +4,22 @@ import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.UnitTest;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.Project;
+import com.mongodb.client.model.Sorts;
+import org.bson.conversions.Bson;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.mongodb.client.model.Filters.eq;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by landon on 9/6/17.
@@ -62,6 +72,41 @@ public class PersistenceTest extends UnitTest {
         String retrievedId = Persistence.projects.getById(id).id;
         assertEquals("Found Project ID should equal inserted ID.", id, retrievedId);
     }
+
+    /**
+     * Ensure that indexes declared on the model classes are created on startup and not re-created thereafter.
+     */
+    @Test
+    public void createsDeclaredIndexes() {
+        List<String> indexNames = Persistence.feedVersions.getMongoCollection().listIndexes()
+            .map(index -> index.getString("name"))
+            .into(new ArrayList<>());
+        assertTrue("Feed versions should be indexed on feed source ID and version.", indexNames.contains("feedSourceId_1_version_1"));
+        assertTrue("Reconciling indexes again should not create any.", Persistence.feedVersions.reconcileIndexes().isEmpty());
+    }
+
+    /**
+     * Ensure that the cursor-backed stream, page and count queries apply their filter, sort and limit on the server.
+     */
+    @Test
+    public void canStreamAndPageFilteredFeedSources() {
+        String projectId = UUID.randomUUID().toString();
+        for (int i = 0; i < 3; i++) {
+            FeedSource feedSource = new FeedSource("streamed feed source " + i);
+            feedSource.projectId = projectId;
+            Persistence.feedSources.create(feedSource);
+        }
+        Bson filter = eq("projectId", projectId);
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.stream(filter, Sorts.ascending("name"))) {
+            List<String> names = feedSources.map(feedSource -> feedSource.name).collect(Collectors.toList());
+            assertEquals("All matching feed sources should be streamed.", 3, names.size());
+            assertEquals("Streamed feed sources should be sorted.", "streamed feed source 0", names.get(0));
+        }
+        List<FeedSource> page = Persistence.feedSources.getPage(filter, Sorts.ascending("name"), 1, 1);
+        assertEquals("Page should be limited to one feed source.", 1, page.size());
+        assertEquals("Page should skip first feed source.", "streamed feed source 1", page.get(0).name);
+        assertEquals("Count should match number of feed sources.", 3, Persistence.feedSources.count(filter));
+    }
 //
 //    @Test
 //    public void createDeployment() {
@@ -0,0 +1,39 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class HostRateLimiterTest extends UnitTest {
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+    }
+
+    /**
+     * Requests to the same host (regardless of case) should be limited to the default rate of two per second, while
+     * requests to another host should not wait for them.
+     */
+    @Test
+    public void canLimitRequestsPerHost() {
+        String host = UUID.randomUUID() + ".example.com";
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            HostRateLimiter.acquire(i % 2 == 0 ? host : host.toUpperCase());
+        }
+        // The first request is permitted immediately and the following four are spaced 500 ms apart.
+        assertThat(System.currentTimeMillis() - start, greaterThanOrEqualTo(1900L));
+
+        start = System.currentTimeMillis();
+        HostRateLimiter.acquire(UUID.randomUUID() + ".example.com");
+        assertThat(System.currentTimeMillis() - start, lessThan(250L));
+    }
+}